@@ -22,8 +22,8 @@ import arkhados.gamemode.TeamDeathmatch;
 import arkhados.spell.buffs.AbstractBuff;
 import arkhados.spell.buffs.AbstractBuffBuilder;
 import arkhados.util.Builder;
+import arkhados.util.ComponentStore;
 import arkhados.util.RoundStats;
-import arkhados.util.UserData;
 import com.jme3.scene.Spatial;
 import java.util.ArrayList;
 import java.util.List;
@@ -31,12 +31,6 @@ import com.jme3.util.IntMap;
 
 public class CharacterInteraction {
 
-    private static final List<RoundStats> playerRoundsStats = new ArrayList<>();
-    private static final List<RoundStats> teamRoundsStats = new ArrayList<>();
-    // TODO: Consider if we really want to put gameMode here or not
-    static GameMode gameMode = null;
-    private static final IntMap<Integer> latestDamager = new IntMap<>();
-
     public static void harm(CInfluenceInterface attacker,
             CInfluenceInterface target, final float rawDamage,
             List<AbstractBuffBuilder> buffBuilders, boolean canBreakCC) {
@@ -49,31 +43,27 @@ public class CharacterInteraction {
                 .getControl(CCharacterDamage.class)
                 .doDamage(rawDamage, canBreakCC);
 
-        int targetPlayerId = target.getSpatial()
-                .getUserData(UserData.PLAYER_ID);
+        int targetPlayerId = target.getPlayerId();
         int attackerPlayerId;
 
         if (attacker != null) {
             Spatial attackerSpatial = attacker.getSpatial();
-            float lifeSteal = attackerSpatial
-                    .getUserData(UserData.LIFE_STEAL);
+            float lifeSteal = attacker.getFloat(ComponentStore.LIFE_STEAL);
             float lifeStolen = lifeSteal * damageDone;
 
             attackerSpatial.getControl(CCharacterHeal.class).heal(lifeStolen);
 
-            attackerPlayerId
-                    = attackerSpatial.getUserData(UserData.PLAYER_ID);
+            attackerPlayerId = attacker.getPlayerId();
             getCurrentPlayerRoundStats()
                     .addDamageForPlayer(attackerPlayerId, damageDone);
             getCurrentPlayerRoundStats()
                     .addHealthRestorationForPlayer(attackerPlayerId,
                             lifeStolen);
 
-            latestDamager.put(targetPlayerId, attackerPlayerId);
+            state().latestDamager.put(targetPlayerId, attackerPlayerId);
 
-            if (gameMode instanceof TeamDeathmatch) {
-                int attackerTeamId
-                        = attackerSpatial.getUserData(UserData.TEAM_ID);
+            if (state().gameMode instanceof TeamDeathmatch) {
+                int attackerTeamId = attacker.getTeamId();
                 getCurrentTeamRoundStats().addDamageForPlayer(attackerTeamId,
                         damageDone);
                 getCurrentTeamRoundStats().addHealthRestorationForPlayer(
@@ -84,11 +74,12 @@ public class CharacterInteraction {
         }
 
         if (target.isDead()) {
+            IntMap<Integer> latestDamager = state().latestDamager;
             Integer latestDamagerId = latestDamager.get(targetPlayerId);
             if (latestDamagerId != null) {
                 latestDamager.remove(latestDamagerId);
                 getCurrentPlayerRoundStats().addKill(latestDamagerId);
-                if (gameMode instanceof TeamDeathmatch) {
+                if (state().gameMode instanceof TeamDeathmatch) {
                     int damagerTeam = PlayerData.getIntData(latestDamagerId,
                             PlayerData.TEAM_ID);
                     getCurrentTeamRoundStats().addKill(damagerTeam);
@@ -97,7 +88,7 @@ public class CharacterInteraction {
                 latestDamagerId = -1;
             }
 
-            gameMode.playerDied(targetPlayerId, latestDamagerId);
+            state().gameMode.playerDied(targetPlayerId, latestDamagerId);
         }
 
         if (buffBuilders != null) {
@@ -132,13 +123,11 @@ public class CharacterInteraction {
                 .getControl(CCharacterHeal.class).heal(heal);
 
         if (healer != null) {
-            int healerPlayerId = healer.getSpatial()
-                    .getUserData(UserData.PLAYER_ID);
+            int healerPlayerId = healer.getPlayerId();
             getCurrentPlayerRoundStats().addHealthRestorationForPlayer(
                     healerPlayerId, healingDone);
-            if (gameMode instanceof TeamDeathmatch) {
-                int healerTeamId = healer.getSpatial()
-                        .getUserData(UserData.TEAM_ID);
+            if (state().gameMode instanceof TeamDeathmatch) {
+                int healerTeamId = healer.getTeamId();
                 getCurrentTeamRoundStats().addHealthRestorationForPlayer(
                         healerTeamId, healingDone);
             }
@@ -172,40 +161,64 @@ public class CharacterInteraction {
     public static void startNewRound() {
         RoundStats playerRoundStats = new RoundStats();
         playerRoundStats.initialize();
-        playerRoundsStats.add(playerRoundStats);
+        state().playerRoundsStats.add(playerRoundStats);
 
-        if (gameMode instanceof TeamDeathmatch) {
+        if (state().gameMode instanceof TeamDeathmatch) {
             RoundStats teamRoundStats = new RoundStats();
             teamRoundStats.initialize();
-            teamRoundsStats.add(teamRoundStats);
+            state().teamRoundsStats.add(teamRoundStats);
         }
     }
 
     public static void addPlayer(int playerId) {
-        RoundStats round = playerRoundsStats.get(playerRoundsStats.size() - 1);
+        RoundStats round = last(state().playerRoundsStats);
         round.addPlayer(playerId);
     }
 
     public static void addTeam(int teamId) {
-        RoundStats round = teamRoundsStats.get(teamRoundsStats.size() - 1);
+        RoundStats round = last(state().teamRoundsStats);
         round.addPlayer(teamId);
     }
 
     public static void removePlayer(int playerId) {
-        RoundStats round = playerRoundsStats.get(playerRoundsStats.size() - 1);
+        RoundStats round = last(state().playerRoundsStats);
         round.removePlayer(playerId);
     }
 
     public static RoundStats getCurrentPlayerRoundStats() {
-        return playerRoundsStats.get(playerRoundsStats.size() - 1);
+        return last(state().playerRoundsStats);
     }
 
     public static RoundStats getCurrentTeamRoundStats() {
-        return teamRoundsStats.get(teamRoundsStats.size() - 1);
+        return last(state().teamRoundsStats);
     }
 
     public static void cleanup() {
-        playerRoundsStats.clear();
-        teamRoundsStats.clear();
+        state().playerRoundsStats.clear();
+        state().teamRoundsStats.clear();
+    }
+
+    // TODO: Consider if we really want to put gameMode here or not
+    static void setGameMode(GameMode gameMode) {
+        state().gameMode = gameMode;
+    }
+
+    private static RoundStats last(List<RoundStats> rounds) {
+        return rounds.get(rounds.size() - 1);
+    }
+
+    private static State state() {
+        return MatchContext.current().getAttachment(State.class, State::new);
+    }
+
+    /**
+     * Round statistics of one match
+     */
+    private static class State {
+
+        final List<RoundStats> playerRoundsStats = new ArrayList<>();
+        final List<RoundStats> teamRoundsStats = new ArrayList<>();
+        final IntMap<Integer> latestDamager = new IntMap<>();
+        GameMode gameMode = null;
     }
 }
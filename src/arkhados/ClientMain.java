@@ -24,6 +24,7 @@ import arkhados.ui.KeySetter;
 import arkhados.messages.MessageUtils;
 import arkhados.net.ClientSender;
 import arkhados.net.DefaultReceiver;
+import arkhados.net.InboundPipeline;
 import arkhados.net.OneTrueMessage;
 import arkhados.net.Receiver;
 import arkhados.net.Sender;
@@ -204,7 +205,8 @@ public class ClientMain extends SimpleApplication {
         hud.setNifty(nifty);
     }
 
-    public void connect(String username, final String address, final int port) {
+    public void connect(String username, final String address, final int port,
+            int matchId) {
         cancelConnectionIfNotDone();
 
         client = new NetworkUdpClient("Arkhados", 42);
@@ -223,6 +225,7 @@ public class ClientMain extends SimpleApplication {
         ((ClientSender) sender).setClient(client);
 
         listenerManager.setName(username);
+        listenerManager.setMatchId(matchId);
 
         connectionFuture = threadPoolExecutor.submit(() -> {
             try {
@@ -344,11 +347,13 @@ public class ClientMain extends SimpleApplication {
         ConnectionMenu connectionMenu = (ConnectionMenu) nifty
                 .findScreenController("arkhados.ui.ConnectionMenu");
         ClientNetListener netListener = new ClientNetListener(connectionMenu);
+        // Received commands are applied before other states are updated
+        swappableStates.add(0, new InboundPipeline());
         swappableStates.add(new ClientBlind());
         swappableStates.add(new Death());
         swappableStates.add(netListener);
 
-        EffectHandler effectHandler = new EffectHandler(this);
+        EffectHandler effectHandler = new EffectHandler();
         World world = new World(effectHandler);
         effectHandler.setWorld(world);
         swappableStates.add(world);
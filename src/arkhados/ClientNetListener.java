@@ -19,6 +19,7 @@ import com.jme3.network.Client;
 import com.jme3.network.ClientStateListener;
 import arkhados.messages.CmdClientLogin;
 import arkhados.messages.CmdClientSettings;
+import arkhados.messages.CmdJoinMatch;
 import arkhados.messages.CmdPlayerDataTable;
 import arkhados.messages.CmdPlayerStatusChange;
 import arkhados.messages.CmdServerLogin;
@@ -40,6 +41,7 @@ public class ClientNetListener extends AbstractAppState
 
     private ClientMain app;
     private String name = "";
+    private int matchId = 0;
     private final Timer udpHandshakeAckTimer = new Timer(1f);
     private boolean handshakeComplete = false;
     private final ConnectionMenu connectionMenu;
@@ -75,6 +77,12 @@ public class ClientNetListener extends AbstractAppState
 
     @Override
     public void clientConnected(Client c) {
+        // MatchHost does not answer before it knows which match we join
+        app.enqueue(() -> {
+            app.getStateManager().getState(Sender.class)
+                    .addCommand(new CmdJoinMatch(matchId));
+            return null;
+        });
     }
 
     @Override
@@ -90,6 +98,10 @@ public class ClientNetListener extends AbstractAppState
         this.name = name;
     }
 
+    public void setMatchId(int matchId) {
+        this.matchId = matchId;
+    }
+
     @Override
     public void readGuaranteed(Object source, Command command) {
         if (command instanceof CmdTopicOnly) {
@@ -148,8 +160,8 @@ public class ClientNetListener extends AbstractAppState
         boolean movingInterrupts = settings
                 .getBoolean(PlayerData.COMMAND_MOVE_INTERRUPTS);
 
-        CmdClientSettings clientSettingsCommand =
-                new CmdClientSettings(movingInterrupts);
+        CmdClientSettings clientSettingsCommand = new CmdClientSettings(
+                movingInterrupts, ClientSettings.getRenderDelay());
         Sender sender = app.getStateManager().getState(Sender.class);
         sender.addCommand(clientSettingsCommand);
 
@@ -33,6 +33,7 @@ public class ClientSettings implements ScreenController {
     private static final ClientSettings clientSettings = new ClientSettings();
     private AppSettings appSettings = null;
     private float freeCameraSpeed = 500f;
+    private float renderDelay = 0.1f;
     private ClientMain clientMain;
 
     public static void initialize(ClientMain clientMain) {
@@ -52,6 +53,13 @@ public class ClientSettings implements ScreenController {
                 clientSettings.freeCameraSpeed = freeCamSpeed;
             }
         }
+
+        if (getAppSettings().containsKey("render_delay")) {
+            int renderDelayMs = getAppSettings().getInteger("render_delay");
+            if (renderDelayMs >= 0) {
+                clientSettings.renderDelay = renderDelayMs / 1000f;
+            }
+        }
     }
 
     public static float getFreeCameraSpeed() {
@@ -66,6 +74,22 @@ public class ClientSettings implements ScreenController {
         }
     }
 
+    /**
+     * @return how many seconds behind latest snapshot synced entities are
+     * shown
+     */
+    public static float getRenderDelay() {
+        return clientSettings.renderDelay;
+    }
+
+    public static void setRenderDelay(float renderDelay) {
+        clientSettings.renderDelay = renderDelay;
+        if (getAppSettings() != null) {
+            getAppSettings().putInteger("render_delay",
+                    (int) (renderDelay * 1000f));
+        }
+    }
+
     public void bind(Nifty nifty, Screen screen) {
         this.nifty = nifty;
         this.screen = screen;
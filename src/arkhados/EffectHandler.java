@@ -20,8 +20,8 @@ import arkhados.messages.CmdWorldEffect;
 import arkhados.messages.sync.CmdAction;
 import arkhados.net.Command;
 import arkhados.net.CommandHandler;
+import arkhados.net.InboundQueue;
 import arkhados.util.UserData;
-import com.jme3.app.Application;
 import com.jme3.scene.Spatial;
 import com.jme3.util.IntMap;
 import java.util.ArrayList;
@@ -29,24 +29,34 @@ import java.util.List;
 
 public class EffectHandler implements CommandHandler {
 
-    private final Application app;
     private World world;
     private final IntMap<EffectBox> actionEffects = new IntMap<>();
-    private static int runningIndex = 0;
-    private static final List<WorldEffect> worldEffects = new ArrayList<>();
+    /**
+     * Drained by InboundPipeline. World adds it after its own queue
+     */
+    private final InboundQueue<Command> inbound
+            = new InboundQueue<>("Effects", 512, this::handleCommand);
 
     public static int addWorldEffect(WorldEffect effect) {
+        List<WorldEffect> worldEffects = worldEffects();
         worldEffects.add(effect);
-        return runningIndex++;
+        return worldEffects.size() - 1;
     }
 
     public static void clearWorldEffects() {
-        runningIndex = 0;
-        worldEffects.clear();
+        worldEffects().clear();
     }
 
-    public EffectHandler(Application app) {
-        this.app = app;
+    /**
+     * World effects are registered per match so that their indices are the
+     * same as on clients
+     */
+    private static List<WorldEffect> worldEffects() {
+        return MatchContext.current().getAttachment(WorldEffects.class,
+                WorldEffects::new);
+    }
+
+    public EffectHandler() {
     }
 
     public void addEffectBox(int id, EffectBox effectBox) {
@@ -66,27 +76,19 @@ public class EffectHandler implements CommandHandler {
             return;
         }
 
-        app.enqueue(() -> {
-            box.executeActionEffect(actionCommand.getActionId(),
-                    world.getWorldRoot(),
-                    entity.getLocalTranslation());
-            return null;
-        });
+        box.executeActionEffect(actionCommand.getActionId(),
+                world.getWorldRoot(), entity.getLocalTranslation());
     }
 
     private void handleWorldEffect(final CmdWorldEffect command) {
+        final List<WorldEffect> worldEffects = worldEffects();
         if (command.getEffectId() >= worldEffects.size()) {
             return;
         }
 
-        app.enqueue(() -> {
-            WorldEffect worldEffect =
-                    worldEffects.get(command.getEffectId());
-            worldEffect.execute(world.getWorldRoot(),
-                    command.getLocation(), null);
-            return null;
-        });
-
+        WorldEffect worldEffect = worldEffects.get(command.getEffectId());
+        worldEffect.execute(world.getWorldRoot(), command.getLocation(),
+                null);
     }
 
     public void setWorld(World world) {
@@ -95,14 +97,28 @@ public class EffectHandler implements CommandHandler {
 
     @Override
     public void readGuaranteed(Object source, Command guaranteed) {
-        if (guaranteed instanceof CmdAction) {
-            handleAction((CmdAction) guaranteed);
-        } else if (guaranteed instanceof CmdWorldEffect) {
-            handleWorldEffect((CmdWorldEffect) guaranteed);
+        if (guaranteed instanceof CmdAction
+                || guaranteed instanceof CmdWorldEffect) {
+            inbound.offer(source, guaranteed);
+        }
+    }
+
+    private void handleCommand(Object source, Command command) {
+        if (command instanceof CmdAction) {
+            handleAction((CmdAction) command);
+        } else if (command instanceof CmdWorldEffect) {
+            handleWorldEffect((CmdWorldEffect) command);
         }
     }
 
+    public InboundQueue<Command> getInboundQueue() {
+        return inbound;
+    }
+
     @Override
     public void readUnreliable(Object source, Command unreliable) {
     }
-}
\ No newline at end of file
+
+    private static class WorldEffects extends ArrayList<WorldEffect> {
+    }
+}
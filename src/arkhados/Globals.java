@@ -26,10 +26,24 @@ public class Globals {
     public static boolean replayMode = false;
     
     public static AssetManager assets = null;
+    /**
+     * Application of client or single match server. Use getApp() so that
+     * matches of MatchHost get their own application.
+     */
     public static Application app = null;
     
-    // FIXME: Make own class for variables that describe world state
-    public static boolean worldRunning = false;
-    
     public static final Vector3f DOWN = new Vector3f(0f, -1f, 0f);
+
+    public static Application getApp() {
+        Application matchApp = MatchContext.current().getApp();
+        return matchApp != null ? matchApp : app;
+    }
+
+    public static boolean isWorldRunning() {
+        return MatchContext.current().isWorldRunning();
+    }
+
+    public static void setWorldRunning(boolean worldRunning) {
+        MatchContext.current().setWorldRunning(worldRunning);
+    }
 }
\ No newline at end of file
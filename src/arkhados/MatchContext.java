@@ -0,0 +1,149 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados;
+
+import com.jme3.app.Application;
+import com.jme3.network.HostedConnection;
+import com.jme3.util.IntMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * State of one match that used to live in static fields. Code that runs for
+ * a match gets it with current(), which returns context that is bound to
+ * current thread or default context if none is bound.
+ *
+ * Client and single match server use only the default context. MatchHost
+ * binds match's context to match's update thread and around network events
+ * that are dispatched to the match.
+ */
+public class MatchContext {
+
+    private static final MatchContext DEFAULT = new MatchContext(-1);
+    private static final ThreadLocal<MatchContext> bound = new ThreadLocal<>();
+    private final int matchId;
+    private final Map<Class<?>, Object> attachments
+            = new ConcurrentHashMap<>();
+    /**
+     * Used by PlayerData
+     */
+    final PlayerTable players = new PlayerTable();
+    /**
+     * Used by ServerClientData. Maps player ids to connections
+     */
+    final IntMap<HostedConnection> connections = new IntMap<>();
+    private volatile Application app;
+    private volatile World world;
+    private volatile boolean worldRunning = false;
+    private ServerInput input;
+
+    public MatchContext(int matchId) {
+        this.matchId = matchId;
+    }
+
+    public static MatchContext current() {
+        MatchContext context = bound.get();
+        return context != null ? context : DEFAULT;
+    }
+
+    public static MatchContext getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Binds this context to current thread
+     *
+     * @return previously bound context or null. Give it to restore when done
+     */
+    public MatchContext bind() {
+        MatchContext previous = bound.get();
+        bound.set(this);
+        return previous;
+    }
+
+    public static void restore(MatchContext previous) {
+        if (previous == null) {
+            bound.remove();
+        } else {
+            bound.set(previous);
+        }
+    }
+
+    /**
+     * @return id of the match or -1 for default context
+     */
+    public int getMatchId() {
+        return matchId;
+    }
+
+    public boolean isDefault() {
+        return this == DEFAULT;
+    }
+
+    public Application getApp() {
+        return app;
+    }
+
+    public void setApp(Application app) {
+        this.app = app;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public void setWorld(World world) {
+        this.world = world;
+    }
+
+    public boolean isWorldRunning() {
+        return worldRunning;
+    }
+
+    public void setWorldRunning(boolean worldRunning) {
+        this.worldRunning = worldRunning;
+    }
+
+    public synchronized ServerInput getInput() {
+        if (input == null) {
+            input = new ServerInput();
+        }
+
+        return input;
+    }
+
+    /**
+     * Returns per match object of given type, creating it with factory if
+     * there is none yet. Used for registries that classes keep privately.
+     */
+    public <T> T getAttachment(Class<T> type, Supplier<T> factory) {
+        Object attachment = attachments.get(type);
+        if (attachment == null) {
+            attachment = attachments.computeIfAbsent(type,
+                    key -> factory.get());
+        }
+
+        return type.cast(attachment);
+    }
+
+    public <T> T getAttachment(Class<T> type) {
+        return type.cast(attachments.get(type));
+    }
+
+    public <T> void setAttachment(Class<T> type, T attachment) {
+        attachments.put(type, attachment);
+    }
+}
@@ -0,0 +1,201 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados;
+
+import arkhados.messages.CmdJoinMatch;
+import arkhados.net.Command;
+import arkhados.net.OneTrueMessage;
+import arkhados.net.OtmIdCommandListPair;
+import arkhados.net.connection.MyUdpKernel;
+import arkhados.net.connection.UdpServer;
+import arkhados.profiling.MetricsEndpoint;
+import arkhados.settings.server.Settings;
+import com.jme3.network.ConnectionListener;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Server;
+import com.jme3.system.JmeContext;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs many matches in one process. Every match is its own headless
+ * ServerMain with its own update thread, physics space and MatchContext.
+ * All matches share one UDP port. Client tells which match it wants to join
+ * with CmdJoinMatch and all its messages are routed to that match after
+ * that. When match ends, new one is started in its place.
+ */
+public class MatchHost implements ConnectionListener,
+        MessageListener<HostedConnection> {
+
+    private static final Logger logger
+            = Logger.getLogger(MatchHost.class.getName());
+    private final Server server;
+    private final MatchServer[] matches;
+    /**
+     * Maps connection ids to matches
+     */
+    private final Map<Integer, MatchServer> routes
+            = new ConcurrentHashMap<>();
+    private volatile boolean running = false;
+
+    public static void main(String[] args) {
+        ServerMain.setupLogging();
+
+        int matchCount = args.length > 0 ? Integer.parseInt(args[0])
+                : Settings.get().General().getMatchCount();
+        int port = Settings.get().General().getPort();
+        if (port <= 0 || port > 65535) {
+            System.out.println("Port must be between 0 and 65535");
+            System.exit(1);
+        }
+
+        try {
+            new MatchHost(port, Math.max(1, matchCount)).start();
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Could not start match host", ex);
+            System.exit(1);
+        }
+    }
+
+    public MatchHost(int port, int matchCount) throws IOException {
+        server = new UdpServer("Arkhados", 42, new MyUdpKernel(port));
+        matches = new MatchServer[matchCount];
+    }
+
+    public void start() {
+        // Serializer registrations are sent to clients when server starts
+        // so they must be done before that
+        ServerMain.registerClasses();
+
+        server.addConnectionListener(this);
+        server.addMessageListener(this, OneTrueMessage.class);
+
+        running = true;
+        for (int i = 0; i < matches.length; ++i) {
+            startMatch(i);
+        }
+
+        server.start();
+        MetricsEndpoint.start(Settings.get().General().getMetricsPort());
+        logger.log(Level.INFO, "Hosting {0} matches", matches.length);
+    }
+
+    public void stop() {
+        running = false;
+        for (MatchServer match : matches) {
+            if (match != null) {
+                match.getContext().getApp().stop();
+            }
+        }
+
+        server.close();
+        MetricsEndpoint.stop();
+    }
+
+    /**
+     * Matches are started one at a time because initialization fills some
+     * registries that are not thread safe.
+     */
+    private synchronized void startMatch(int matchId) {
+        MatchContext context = new MatchContext(matchId);
+        MatchServer match = new MatchServer(this, server, context);
+        ServerMain app = new ServerMain(context, match);
+        ServerMain.configure(app);
+        match.start();
+        matches[matchId] = match;
+        app.start(JmeContext.Type.Headless, true);
+    }
+
+    void matchClosed(MatchServer match) {
+        routes.values().removeIf(routed -> routed == match);
+        logger.log(Level.INFO, "Match {0} ended", match.getMatchId());
+        if (running) {
+            startMatch(match.getMatchId());
+        }
+    }
+
+    @Override
+    public void connectionAdded(Server server, HostedConnection conn) {
+        // Connection is routed when client tells which match it joins
+    }
+
+    @Override
+    public void connectionRemoved(Server server, HostedConnection conn) {
+        MatchServer match = routes.remove(conn.getId());
+        if (match != null) {
+            match.connectionRemoved(conn);
+        }
+    }
+
+    @Override
+    public void messageReceived(HostedConnection source, Message message) {
+        MatchServer match = routes.get(source.getId());
+        if (match == null) {
+            match = route(source, (OneTrueMessage) message);
+            if (match == null) {
+                return;
+            }
+        }
+
+        match.messageReceived(source, message);
+    }
+
+    /**
+     * Finds CmdJoinMatch from message and adds connection to that match.
+     * Messages that come before it are dropped.
+     */
+    private MatchServer route(HostedConnection source,
+            OneTrueMessage message) {
+        int matchId = findMatchId(message);
+        if (matchId == -1) {
+            return null;
+        }
+
+        MatchServer match = matchId < matches.length
+                ? matches[matchId] : null;
+        if (match == null || !match.isRunning()) {
+            logger.log(Level.INFO, "Client {0} tried to join match {1}"
+                    + " that does not exist",
+                    new Object[]{source.getId(), matchId});
+            source.close("No such match");
+            return null;
+        }
+
+        MatchServer existing = routes.putIfAbsent(source.getId(), match);
+        if (existing != null) {
+            return existing;
+        }
+
+        match.connectionAdded(source);
+        return match;
+    }
+
+    private static int findMatchId(OneTrueMessage message) {
+        for (OtmIdCommandListPair pair : message.getGuaranteed()) {
+            for (Command command : pair.getCommandList()) {
+                if (command instanceof CmdJoinMatch) {
+                    return ((CmdJoinMatch) command).getMatchId();
+                }
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,263 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados;
+
+import com.jme3.network.ConnectionListener;
+import com.jme3.network.Filter;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Server;
+import com.jme3.network.service.HostedServiceManager;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * View of shared server that only contains connections of one match.
+ * MatchHost gives one to each ServerMain, so that ServerMain and everything
+ * it uses can treat it as if it was the whole server. Events are dispatched
+ * with match's context bound.
+ */
+public class MatchServer implements Server {
+
+    private final MatchHost host;
+    private final Server server;
+    private final MatchContext context;
+    private final Set<HostedConnection> connections
+            = ConcurrentHashMap.newKeySet();
+    private final Collection<HostedConnection> readOnlyConnections
+            = Collections.unmodifiableSet(connections);
+    private final Filter<HostedConnection> inMatch = connections::contains;
+    private final List<ConnectionListener> connectionListeners
+            = new CopyOnWriteArrayList<>();
+    private final List<Registration> messageListeners
+            = new CopyOnWriteArrayList<>();
+    private volatile boolean running = false;
+
+    MatchServer(MatchHost host, Server server, MatchContext context) {
+        this.host = host;
+        this.server = server;
+        this.context = context;
+    }
+
+    public int getMatchId() {
+        return context.getMatchId();
+    }
+
+    public MatchContext getContext() {
+        return context;
+    }
+
+    void connectionAdded(HostedConnection connection) {
+        connections.add(connection);
+        MatchContext previous = context.bind();
+        try {
+            for (ConnectionListener listener : connectionListeners) {
+                listener.connectionAdded(this, connection);
+            }
+        } finally {
+            MatchContext.restore(previous);
+        }
+    }
+
+    void connectionRemoved(HostedConnection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+
+        MatchContext previous = context.bind();
+        try {
+            for (ConnectionListener listener : connectionListeners) {
+                listener.connectionRemoved(this, connection);
+            }
+        } finally {
+            MatchContext.restore(previous);
+        }
+    }
+
+    void messageReceived(HostedConnection source, Message message) {
+        MatchContext previous = context.bind();
+        try {
+            for (Registration registration : messageListeners) {
+                if (registration.accepts(message)) {
+                    registration.listener.messageReceived(source, message);
+                }
+            }
+        } finally {
+            MatchContext.restore(previous);
+        }
+    }
+
+    @Override
+    public String getGameName() {
+        return server.getGameName();
+    }
+
+    @Override
+    public int getVersion() {
+        return server.getVersion();
+    }
+
+    @Override
+    public HostedServiceManager getServices() {
+        return server.getServices();
+    }
+
+    @Override
+    public void broadcast(Message message) {
+        server.broadcast(inMatch, message);
+    }
+
+    @Override
+    public void broadcast(Filter<? super HostedConnection> filter,
+            Message message) {
+        server.broadcast(inMatch(filter), message);
+    }
+
+    @Override
+    public void broadcast(int channel,
+            Filter<? super HostedConnection> filter, Message message) {
+        server.broadcast(channel, inMatch(filter), message);
+    }
+
+    @Override
+    public int addChannel(int port) {
+        throw new UnsupportedOperationException(
+                "Channels are added to shared server by MatchHost");
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running && server.isRunning();
+    }
+
+    /**
+     * Kicks players of this match. Shared server stays open.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        for (HostedConnection connection : connections) {
+            connection.close("Match ended");
+        }
+
+        host.matchClosed(this);
+    }
+
+    @Override
+    public HostedConnection getConnection(int id) {
+        HostedConnection connection = server.getConnection(id);
+        return connection != null && connections.contains(connection)
+                ? connection : null;
+    }
+
+    @Override
+    public boolean hasConnections() {
+        return !connections.isEmpty();
+    }
+
+    @Override
+    public Collection<HostedConnection> getConnections() {
+        return readOnlyConnections;
+    }
+
+    @Override
+    public void addConnectionListener(ConnectionListener listener) {
+        connectionListeners.add(listener);
+    }
+
+    @Override
+    public void removeConnectionListener(ConnectionListener listener) {
+        connectionListeners.remove(listener);
+    }
+
+    @Override
+    public void addMessageListener(
+            MessageListener<? super HostedConnection> listener) {
+        messageListeners.add(new Registration(listener, null));
+    }
+
+    @Override
+    public void addMessageListener(
+            MessageListener<? super HostedConnection> listener,
+            Class... classes) {
+        messageListeners.add(new Registration(listener, classes));
+    }
+
+    @Override
+    public void removeMessageListener(
+            MessageListener<? super HostedConnection> listener) {
+        messageListeners.removeIf(
+                registration -> registration.listener == listener);
+    }
+
+    @Override
+    public void removeMessageListener(
+            MessageListener<? super HostedConnection> listener,
+            Class... classes) {
+        messageListeners.removeIf(registration
+                -> registration.listener == listener
+                && Arrays.equals(registration.classes, classes));
+    }
+
+    private Filter<HostedConnection> inMatch(
+            Filter<? super HostedConnection> filter) {
+        return connection -> connections.contains(connection)
+                && filter.apply(connection);
+    }
+
+    private static class Registration {
+
+        final MessageListener<? super HostedConnection> listener;
+        /**
+         * Null if listener accepts all messages
+         */
+        final Class[] classes;
+
+        Registration(MessageListener<? super HostedConnection> listener,
+                Class[] classes) {
+            this.listener = listener;
+            this.classes = classes;
+        }
+
+        boolean accepts(Message message) {
+            if (classes == null) {
+                return true;
+            }
+
+            for (Class type : classes) {
+                if (type.isInstance(message)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
@@ -32,22 +32,21 @@
 package arkhados;
 
 import com.jme3.network.serializing.Serializable;
-import com.jme3.util.IntMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Basic class to store data about players (Human and AI), could be replaced by
- * a database or similar, static access with synchronization. Access is assured
- * to be sequential during the game, so in theory syncing is not needed. Used on
- * server and on client.
+ * Basic class to store data about players (Human and AI). Static methods are
+ * a facade over PlayerTable of current match. Frequently used keys live in
+ * table's columns and can be read without locking; other keys are kept in
+ * player's own maps. Used on server and on client.
  *
- * @author normenhansen
+ * Instances are also sent to clients in CmdPlayerDataTable. Use copyPlayers
+ * for that, because values of players in table are in columns.
  *
- * TODO: Many methods use LinkedList instead of ArrayList. Consider converting
- * to ArrayList.
+ * @author normenhansen
  */
 @Serializable
 public final class PlayerData {
@@ -59,128 +58,162 @@ public final class PlayerData {
     public static final String COMMAND_MOVE_INTERRUPTS = "command-move-interrupts";
     public static final String NAME = "name";
     public static final String TEAM_ID = "team-id";
-    private static IntMap<PlayerData> players = new IntMap<>();
+    public static final String RENDER_DELAY = "render-delay";
     private int id;
     private Map<String, Float> floatData = new HashMap<>();
     private Map<String, Integer> intData = new HashMap<>();
     private Map<String, Long> longData = new HashMap<>();
     private Map<String, Boolean> booleanData = new HashMap<>();
     private Map<String, String> stringData = new HashMap<>();
+    /**
+     * Table this player is in or null
+     */
+    private transient volatile PlayerTable table = null;
+
+    /**
+     * Players of current match
+     */
+    private static PlayerTable players() {
+        return MatchContext.current().players;
+    }
+
+    public static PlayerData getPlayerId(int id) {
+        return players().get(id);
+    }
 
-    public static synchronized PlayerData getPlayerId(int id) {
-        return players.get(id);
+    public static List<PlayerData> getPlayers() {
+        return players().getAll();
     }
 
-    public static synchronized List<PlayerData> getPlayers() {
-        List<PlayerData> list = new ArrayList<>();
-        for (IntMap.Entry<PlayerData> player : players) {
-            list.add(player.getValue());
+    /**
+     * @return detached copies of players that have all values in their maps
+     */
+    public static List<PlayerData> copyPlayers() {
+        List<PlayerData> list = getPlayers();
+        for (int i = 0; i < list.size(); ++i) {
+            list.set(i, list.get(i).copy());
         }
         return list;
     }
 
-    public static synchronized void setPlayers(List<PlayerData> playerDataList) {
+    public static void setPlayers(List<PlayerData> playerDataList) {
         for (PlayerData playerData : playerDataList) {
-            players.put(playerData.getId(), playerData);
+            players().put(playerData);
         }
     }
 
-    public static synchronized int getNew(String name) {
-        int id = 0;
-        while (players.containsKey(id)) {
-            id++;
-        }
-        players.put(id, new PlayerData(id, name));
-        return id;
+    public static int getNew(String name) {
+        return players().add(name);
     }
 
-    public static synchronized void add(int id, PlayerData player) {
-        players.put(id, player);
+    /**
+     * @param id must be same as player's id
+     */
+    public static void add(int id, PlayerData player) {
+        players().put(player);
     }
 
-    public static synchronized void remove(int id) {
-        players.remove(id);
+    public static void remove(int id) {
+        players().remove(id);
     }
 
-    public static synchronized float getFloatData(int id, String key) {
-        if (!players.containsKey(id)) {
+    public static float getFloatData(int id, String key) {
+        PlayerData player = players().get(id);
+        if (player == null) {
             return -1;
         }
-        return players.get(id).getFloatData(key);
+        Float data = player.getFloatData(key);
+        return data != null ? data : -1;
     }
 
-    public static synchronized void setData(int id, String key, float data) {
-        if (!players.containsKey(id)) {
-            return;
+    public static void setData(int id, String key, float data) {
+        PlayerData player = players().get(id);
+        if (player != null) {
+            player.setData(key, data);
         }
-        players.get(id).setData(key, data);
     }
 
-    public static synchronized int getIntData(int id, String key) {
-        if (!players.containsKey(id)) {
+    public static int getIntData(int id, String key) {
+        PlayerTable table = players();
+        int column = PlayerTable.intColumn(key);
+        if (column != -1) {
+            return table.getInt(id, column);
+        }
+
+        PlayerData player = table.get(id);
+        if (player == null) {
             return -1;
         }
-        Integer data = players.get(id).getIntData(key);
+        Integer data = player.getIntData(key);
         return data != null ? data : -1;
     }
 
-    public static synchronized void setData(int id, String key, int data) {
-        if (!players.containsKey(id)) {
-            return;
+    public static void setData(int id, String key, int data) {
+        PlayerData player = players().get(id);
+        if (player != null) {
+            player.setData(key, data);
         }
-        players.get(id).setData(key, data);
     }
 
-    public static synchronized Long getLongData(int id, String key) {
-        if (!players.containsKey(id)) {
+    public static Long getLongData(int id, String key) {
+        PlayerData player = players().get(id);
+        if (player == null) {
             return (long) -1;
         }
-        return players.get(id).getLongData(key);
+        return player.getLongData(key);
     }
 
-    public static synchronized void setData(int id, String key, long data) {
-        if (!players.containsKey(id)) {
-            return;
+    public static void setData(int id, String key, long data) {
+        PlayerData player = players().get(id);
+        if (player != null) {
+            player.setData(key, data);
         }
-        players.get(id).setData(key, data);
     }
 
-    public static synchronized Boolean getBooleanData(int id, String key) {
-        if (!players.containsKey(id)) {
+    public static Boolean getBooleanData(int id, String key) {
+        PlayerTable table = players();
+        int column = PlayerTable.booleanColumn(key);
+        if (column != -1) {
+            return table.getBoolean(id, column);
+        }
+
+        PlayerData player = table.get(id);
+        if (player == null) {
             return false;
         }
-        return players.get(id).getBooleanData(key);
+        return player.getBooleanData(key);
     }
 
-    public static synchronized void setData(int id, String key, boolean data) {
-        if (!players.containsKey(id)) {
-            return;
+    public static void setData(int id, String key, boolean data) {
+        PlayerData player = players().get(id);
+        if (player != null) {
+            player.setData(key, data);
         }
-        players.get(id).setData(key, data);
     }
 
-    public static synchronized String getStringData(int id, String key) {
-        if (!players.containsKey(id)) {
+    public static String getStringData(int id, String key) {
+        PlayerData player = players().get(id);
+        if (player == null) {
             return "unknown";
         }
-        return players.get(id).getStringData(key);
+        return player.getStringData(key);
     }
 
-    public static synchronized void setData(int id, String key, String data) {
-        if (!players.containsKey(id)) {
-            return;
+    public static void setData(int id, String key, String data) {
+        PlayerData player = players().get(id);
+        if (player != null) {
+            player.setData(key, data);
         }
-        players.get(id).setData(key, data);
     }
 
-    public static synchronized void setDataForAll(String key, boolean data) {
+    public static void setDataForAll(String key, boolean data) {
         for (PlayerData player : PlayerData.getPlayers()) {
             player.setData(key, data);
         }
     }
 
-    public static synchronized void destroyAllData() {
-        players.clear();
+    public static void destroyAllData() {
+        players().clear();
     }
 
     public PlayerData() {
@@ -196,43 +229,161 @@ public final class PlayerData {
         return id;
     }
 
-    public Float getFloatData(String key) {
+    public synchronized Float getFloatData(String key) {
         return floatData.get(key);
     }
 
-    public void setData(String key, float data) {
+    public synchronized void setData(String key, float data) {
         floatData.put(key, data);
     }
 
     public Integer getIntData(String key) {
-        return intData.get(key);
+        PlayerTable attached = table;
+        int column = PlayerTable.intColumn(key);
+        if (attached != null && column != -1) {
+            return attached.getInt(id, column);
+        }
+
+        synchronized (this) {
+            return intData.get(key);
+        }
     }
 
     public void setData(String key, int data) {
-        intData.put(key, data);
+        PlayerTable attached = table;
+        int column = PlayerTable.intColumn(key);
+        if (attached != null && column != -1) {
+            attached.setInt(id, column, data);
+            return;
+        }
+
+        synchronized (this) {
+            intData.put(key, data);
+        }
     }
 
-    public Long getLongData(String key) {
+    public synchronized Long getLongData(String key) {
         return longData.get(key);
     }
 
-    public void setData(String key, long data) {
+    public synchronized void setData(String key, long data) {
         longData.put(key, data);
     }
 
     public Boolean getBooleanData(String key) {
-        return booleanData.get(key);
+        PlayerTable attached = table;
+        int column = PlayerTable.booleanColumn(key);
+        if (attached != null && column != -1) {
+            return attached.getBoolean(id, column);
+        }
+
+        synchronized (this) {
+            return booleanData.get(key);
+        }
     }
 
     public void setData(String key, boolean data) {
-        booleanData.put(key, data);
+        PlayerTable attached = table;
+        int column = PlayerTable.booleanColumn(key);
+        if (attached != null && column != -1) {
+            attached.setBoolean(id, column, data);
+            return;
+        }
+
+        synchronized (this) {
+            booleanData.put(key, data);
+        }
     }
 
     public String getStringData(String key) {
-        return stringData.get(key);
+        PlayerTable attached = table;
+        int column = PlayerTable.stringColumn(key);
+        if (attached != null && column != -1) {
+            return attached.getString(id, column);
+        }
+
+        synchronized (this) {
+            return stringData.get(key);
+        }
     }
 
     public void setData(String key, String data) {
-        stringData.put(key, data);
+        PlayerTable attached = table;
+        int column = PlayerTable.stringColumn(key);
+        if (attached != null && column != -1) {
+            attached.setString(id, column, data);
+            return;
+        }
+
+        synchronized (this) {
+            stringData.put(key, data);
+        }
+    }
+
+    /**
+     * @return detached copy that has all values in its maps
+     */
+    public synchronized PlayerData copy() {
+        PlayerData copy = new PlayerData();
+        copy.id = id;
+        copy.floatData.putAll(floatData);
+        copy.intData.putAll(intData);
+        copy.longData.putAll(longData);
+        copy.booleanData.putAll(booleanData);
+        copy.stringData.putAll(stringData);
+        if (table != null) {
+            copy.readColumns(table);
+        }
+        return copy;
+    }
+
+    /**
+     * Moves values of column keys to table. Called by PlayerTable
+     */
+    synchronized void attach(PlayerTable table) {
+        for (int i = 0; i < PlayerTable.intColumnCount(); ++i) {
+            Integer value = intData.remove(PlayerTable.intKey(i));
+            table.setInt(id, i, value != null ? value : -1);
+        }
+
+        for (int i = 0; i < PlayerTable.stringColumnCount(); ++i) {
+            table.setString(id, i,
+                    stringData.remove(PlayerTable.stringKey(i)));
+        }
+
+        for (int i = 0; i < PlayerTable.booleanColumnCount(); ++i) {
+            Boolean value = booleanData.remove(PlayerTable.booleanKey(i));
+            table.setBoolean(id, i, value != null && value);
+        }
+
+        this.table = table;
+    }
+
+    /**
+     * Copies values of column keys back to maps. Called by PlayerTable
+     */
+    synchronized void detach() {
+        if (table != null) {
+            readColumns(table);
+            table = null;
+        }
+    }
+
+    private void readColumns(PlayerTable from) {
+        for (int i = 0; i < PlayerTable.intColumnCount(); ++i) {
+            intData.put(PlayerTable.intKey(i), from.getInt(id, i));
+        }
+
+        for (int i = 0; i < PlayerTable.stringColumnCount(); ++i) {
+            String value = from.getString(id, i);
+            if (value != null) {
+                stringData.put(PlayerTable.stringKey(i), value);
+            }
+        }
+
+        for (int i = 0; i < PlayerTable.booleanColumnCount(); ++i) {
+            booleanData.put(PlayerTable.booleanKey(i),
+                    from.getBoolean(id, i));
+        }
     }
 }
@@ -0,0 +1,256 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Players of one match. Frequently used keys are stored in typed columns
+ * indexed by player id, so reading them does not hash, box or lock. Columns
+ * are atomic arrays that are replaced when the table grows; writes are
+ * synchronized. Other keys are kept in PlayerData's own maps.
+ *
+ * PlayerData's static methods are a facade over this table.
+ */
+public class PlayerTable {
+
+    private static final String[] INT_KEYS
+            = {PlayerData.ENTITY_ID, PlayerData.TEAM_ID};
+    private static final String[] STRING_KEYS
+            = {PlayerData.NAME, PlayerData.HERO};
+    /**
+     * Stored as bits of one int per player
+     */
+    private static final String[] BOOLEAN_KEYS
+            = {PlayerData.COMMAND_MOVE_INTERRUPTS, PlayerData.READY_FOR_ROUND,
+                PlayerData.WORLD_CREATED};
+    private static final int INITIAL_CAPACITY = 16;
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY);
+
+    /**
+     * @return column of int key or -1 if key has no column
+     */
+    public static int intColumn(String key) {
+        return indexOf(INT_KEYS, key);
+    }
+
+    public static int stringColumn(String key) {
+        return indexOf(STRING_KEYS, key);
+    }
+
+    public static int booleanColumn(String key) {
+        return indexOf(BOOLEAN_KEYS, key);
+    }
+
+    static String intKey(int column) {
+        return INT_KEYS[column];
+    }
+
+    static String stringKey(int column) {
+        return STRING_KEYS[column];
+    }
+
+    static String booleanKey(int column) {
+        return BOOLEAN_KEYS[column];
+    }
+
+    static int intColumnCount() {
+        return INT_KEYS.length;
+    }
+
+    static int stringColumnCount() {
+        return STRING_KEYS.length;
+    }
+
+    static int booleanColumnCount() {
+        return BOOLEAN_KEYS.length;
+    }
+
+    private static int indexOf(String[] keys, String key) {
+        for (int i = 0; i < keys.length; ++i) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    public PlayerData get(int id) {
+        Columns c = columns;
+        return c.contains(id) ? c.rows.get(id) : null;
+    }
+
+    public boolean contains(int id) {
+        return columns.contains(id);
+    }
+
+    public List<PlayerData> getAll() {
+        Columns c = columns;
+        List<PlayerData> list = new ArrayList<>();
+        for (int i = 0; i < c.capacity; ++i) {
+            PlayerData player = c.rows.get(i);
+            if (player != null) {
+                list.add(player);
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Adds player with smallest free id
+     *
+     * @return id of new player
+     */
+    public synchronized int add(String name) {
+        int id = 0;
+        while (contains(id)) {
+            id++;
+        }
+
+        put(new PlayerData(id, name));
+        return id;
+    }
+
+    /**
+     * Adds or replaces player. Values of column keys are moved from player's
+     * maps to columns.
+     */
+    public synchronized void put(PlayerData player) {
+        int id = player.getId();
+        remove(id);
+        ensureCapacity(id + 1);
+        player.attach(this);
+        // Row is published last so that readers never see missing columns
+        columns.rows.set(id, player);
+    }
+
+    public synchronized void remove(int id) {
+        Columns c = columns;
+        if (!c.contains(id)) {
+            return;
+        }
+
+        PlayerData player = c.rows.get(id);
+        c.rows.set(id, null);
+        player.detach();
+        for (int i = 0; i < INT_KEYS.length; ++i) {
+            c.ints.set(id * INT_KEYS.length + i, -1);
+        }
+
+        for (int i = 0; i < STRING_KEYS.length; ++i) {
+            c.strings.set(id * STRING_KEYS.length + i, null);
+        }
+
+        c.flags.set(id, 0);
+    }
+
+    public synchronized void clear() {
+        for (int id = 0; id < columns.capacity; ++id) {
+            remove(id);
+        }
+    }
+
+    /**
+     * @return value or -1 if player does not exist or value is not set
+     */
+    public int getInt(int id, int column) {
+        Columns c = columns;
+        return id >= 0 && id < c.capacity
+                ? c.ints.get(id * INT_KEYS.length + column) : -1;
+    }
+
+    public synchronized void setInt(int id, int column, int value) {
+        ensureCapacity(id + 1);
+        columns.ints.set(id * INT_KEYS.length + column, value);
+    }
+
+    public String getString(int id, int column) {
+        Columns c = columns;
+        return id >= 0 && id < c.capacity
+                ? c.strings.get(id * STRING_KEYS.length + column) : null;
+    }
+
+    public synchronized void setString(int id, int column, String value) {
+        ensureCapacity(id + 1);
+        columns.strings.set(id * STRING_KEYS.length + column, value);
+    }
+
+    public boolean getBoolean(int id, int column) {
+        Columns c = columns;
+        return id >= 0 && id < c.capacity
+                && (c.flags.get(id) & (1 << column)) != 0;
+    }
+
+    public synchronized void setBoolean(int id, int column, boolean value) {
+        ensureCapacity(id + 1);
+        int flags = columns.flags.get(id);
+        flags = value ? flags | (1 << column) : flags & ~(1 << column);
+        columns.flags.set(id, flags);
+    }
+
+    private void ensureCapacity(int capacity) {
+        Columns old = columns;
+        if (capacity <= old.capacity) {
+            return;
+        }
+
+        Columns grown = new Columns(Math.max(capacity, old.capacity * 2));
+        for (int id = 0; id < old.capacity; ++id) {
+            grown.rows.set(id, old.rows.get(id));
+            grown.flags.set(id, old.flags.get(id));
+        }
+
+        for (int i = 0; i < old.ints.length(); ++i) {
+            grown.ints.set(i, old.ints.get(i));
+        }
+
+        for (int i = 0; i < old.strings.length(); ++i) {
+            grown.strings.set(i, old.strings.get(i));
+        }
+
+        columns = grown;
+    }
+
+    private static class Columns {
+
+        final int capacity;
+        final AtomicReferenceArray<PlayerData> rows;
+        final AtomicIntegerArray ints;
+        final AtomicReferenceArray<String> strings;
+        final AtomicIntegerArray flags;
+
+        Columns(int capacity) {
+            this.capacity = capacity;
+            rows = new AtomicReferenceArray<>(capacity);
+            ints = new AtomicIntegerArray(capacity * INT_KEYS.length);
+            for (int i = 0; i < ints.length(); ++i) {
+                ints.set(i, -1);
+            }
+
+            strings = new AtomicReferenceArray<>(
+                    capacity * STRING_KEYS.length);
+            flags = new AtomicIntegerArray(capacity);
+        }
+
+        boolean contains(int id) {
+            return id >= 0 && id < capacity && rows.get(id) != null;
+        }
+    }
+}
@@ -40,7 +40,10 @@ import com.jme3.util.IntMap;
  */
 public class ServerClientData {
     
-    private static final IntMap<HostedConnection> connections = new IntMap<>();
+    /**
+     * Connection ids are unique in the whole server, even if there are many
+     * matches
+     */
     private static final IntMap<ServerClientData> players = new IntMap<>();
     private long latencySampleCount = 0;
     private float latestLatency;
@@ -90,15 +93,15 @@ public class ServerClientData {
 
     public static synchronized void addConnection(int playerId,
             HostedConnection connection) {
-        connections.put(playerId, connection);
+        MatchContext.current().connections.put(playerId, connection);
     }
     
     public static synchronized void removeConnection(int playerId) {
-        connections.remove(playerId);
+        MatchContext.current().connections.remove(playerId);
     }
     
     public static synchronized HostedConnection getConnection(int playerId) {
-        return connections.get(playerId);
+        return MatchContext.current().connections.get(playerId);
     }    
 
     public int getPlayerId() {
@@ -117,9 +120,13 @@ public class ServerClientData {
         this.connected = connected;
     }
     
+    /**
+     * Average follows recent samples so that it can be used for lag
+     * compensation
+     */
     public void addLatencySample(float latency) {
-        averageLatency = (averageLatency * latencySampleCount + latency)
-                / (latencySampleCount + 1);
+        averageLatency = latencySampleCount == 0 ? latency
+                : averageLatency + (latency - averageLatency) * 0.1f;
         latestLatency = latency;
         ++latencySampleCount;
     }
@@ -19,9 +19,13 @@ import arkhados.controls.CInfluenceInterface;
 import arkhados.controls.PlayerEntityAwareness;
 import arkhados.messages.sync.CmdAddEntity;
 import arkhados.messages.sync.CmdBuff;
+import arkhados.messages.CmdTopicOnly;
 import arkhados.messages.sync.CmdRemoveEntity;
+import arkhados.messages.sync.CmdSnapshot;
+import arkhados.messages.sync.statedata.QuantizedState;
+import arkhados.messages.sync.statedata.StateData;
 import arkhados.net.Command;
-import arkhados.net.ServerSender;
+import arkhados.net.RecordingServerSender;
 import arkhados.spell.buffs.AbstractBuff;
 import arkhados.util.ConnectionHelper;
 import arkhados.util.RemovalReasons;
@@ -36,9 +40,9 @@ import com.jme3.math.Vector3f;
 import com.jme3.network.HostedConnection;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,23 +50,64 @@ import java.util.logging.Logger;
  * Manages things so that players are not aware of other entities behind walls
  * or too far away TODO: ServerFog is too complex and error prone.
  * Refactor it
+ *
+ * Commands about entities are buffered with entity's index and fanned out to
+ * connections when buffer is flushed. Flush finds players that are aware of
+ * buffered entities by ANDing bitsets of awarenesses with bitset of
+ * buffered entities, and then routes every command with one mask. Buffer is
+ * flushed before RecordingServerSender takes any other command or sends, so
+ * connections get commands in the order they were added. It is also flushed
+ * before visibility of a buffered entity changes.
  */
 public class ServerFog extends AbstractAppState {
 
     private static final Logger logger =
             Logger.getLogger(ServerFog.class.getName());
-    private Application app;
-    private final Map<PlayerEntityAwareness, HostedConnection> awarenessConnectionMap =
-            new LinkedHashMap<>();
-    private Node walls;
+    /**
+     * Estimated size of state that is not sent in CmdSnapshot
+     */
+    private static final int UNQUANTIZED_STATE_SIZE = 40;
+    /**
+     * Awareness at index i belongs to connection at index i
+     */
+    private final List<PlayerEntityAwareness> awarenesses = new ArrayList<>();
+    private final List<HostedConnection> connections = new ArrayList<>();
     private float checkTimer = 0;
     private World world;
+    private final SnapshotEncoder snapshotEncoder = new SnapshotEncoder();
+    private final StatePriorities priorities = new StatePriorities();
+    private final VisibilityEngine visibilityEngine = new VisibilityEngine();
+    private RecordingServerSender sender;
+    /**
+     * Buffered commands. Entity slot is index to bufferedEntities or -1 if
+     * command has single target connection
+     */
+    private Command[] outCommands = new Command[64];
+    private int[] outEntitySlots = new int[64];
+    private HostedConnection[] outTargets = new HostedConnection[64];
+    private int outCount = 0;
+    /**
+     * Entities that have buffered commands as bitset and as list. Slot of
+     * entity is its position in list
+     */
+    private final long[] bufferedBits = new long[65536 / 64];
+    private final int[] entitySlots = new int[65536];
+    private int[] bufferedEntities = new int[16];
+    private int bufferedCount = 0;
+    private int minWord = Integer.MAX_VALUE;
+    private int maxWord = -1;
+    /**
+     * Viewer masks of buffered entities. Words per entity depend on count of
+     * awarenesses
+     */
+    private long[] viewers = new long[16];
 
     @Override
     public void initialize(AppStateManager stateManager, Application app) {
         super.initialize(stateManager, app);
-        this.app = app;
         world = stateManager.getState(World.class);
+        sender = stateManager.getState(RecordingServerSender.class);
+        sender.setFog(this);
     }
 
     @Override
@@ -74,67 +119,233 @@ public class ServerFog extends AbstractAppState {
 
         checkTimer = Settings.get().General().getDefaultSyncFrequency() / 2f;
 
-        for (PlayerEntityAwareness playerEntityAwareness
-                : awarenessConnectionMap.keySet()) {
-            playerEntityAwareness.update(tpf);
-        }
+        visibilityEngine.update(awarenesses, world.getWorldTime());
     }
 
+    /**
+     * Sends command to connections whose players are aware of spatial
+     */
     public void addCommand(Spatial spatial, Command command) {
-        ServerSender sender =
-                app.getStateManager().getState(ServerSender.class);
-
-        for (Map.Entry<PlayerEntityAwareness, HostedConnection> entry
-                : awarenessConnectionMap.entrySet()) {
-            PlayerEntityAwareness awareness = entry.getKey();
-            if (awareness.isAwareOf(spatial)) {
-                sender.addCommandForSingle(command, entry.getValue());
+        int index = PlayerEntityAwareness.index(spatial);
+        int word = index >> 6;
+        if ((bufferedBits[word] & 1L << index) == 0) {
+            bufferedBits[word] |= 1L << index;
+            minWord = Math.min(minWord, word);
+            maxWord = Math.max(maxWord, word);
+            if (bufferedCount == bufferedEntities.length) {
+                bufferedEntities = Arrays.copyOf(bufferedEntities,
+                        bufferedCount * 2);
             }
+            entitySlots[index] = bufferedCount;
+            bufferedEntities[bufferedCount++] = index;
         }
+
+        buffer(command, entitySlots[index], null);
     }
 
-    public void createNewEntity(Spatial spatial, Command command) {
-        ServerSender sender =
-                app.getStateManager().getState(ServerSender.class);
+    private void addCommandForSingle(Command command,
+            HostedConnection connection) {
+        buffer(command, -1, connection);
+    }
 
-//        PlayerEntityAwareness myAwareness = searchForAwareness(spatial);
+    private void buffer(Command command, int entitySlot,
+            HostedConnection target) {
+        if (outCount == outCommands.length) {
+            int length = outCount * 2;
+            outCommands = Arrays.copyOf(outCommands, length);
+            outEntitySlots = Arrays.copyOf(outEntitySlots, length);
+            outTargets = Arrays.copyOf(outTargets, length);
+        }
 
-        for (Map.Entry<PlayerEntityAwareness, HostedConnection> entry
-                : awarenessConnectionMap.entrySet()) {
-            PlayerEntityAwareness awareness = entry.getKey();
-            awareness.addEntity(spatial);
-            if (awareness.testVisibility(spatial)) {
-                sender.addCommandForSingle(command, entry.getValue());
+        outCommands[outCount] = command;
+        outEntitySlots[outCount] = entitySlot;
+        outTargets[outCount] = target;
+        ++outCount;
+    }
+
+    /**
+     * Must be called before visibility of entity with given index changes,
+     * so that its buffered commands are routed with old visibility
+     */
+    public void beforeVisibilityChange(int index) {
+        if ((bufferedBits[index >> 6] & 1L << index) != 0) {
+            flushCommands();
+        }
+    }
+
+    /**
+     * Gives buffered commands to sender
+     */
+    public void flushCommands() {
+        if (outCount == 0 || sender == null) {
+            return;
+        }
+
+        int count = outCount;
+        // Sender calls this again when commands are added
+        outCount = 0;
+
+        int words = (awarenesses.size() + 63) >> 6;
+        int viewerLength = bufferedCount * words;
+        if (viewers.length < viewerLength) {
+            viewers = new long[Math.max(viewers.length * 2, viewerLength)];
+        }
+        Arrays.fill(viewers, 0, viewerLength, 0L);
+
+        for (int i = 0; i < awarenesses.size(); ++i) {
+            PlayerEntityAwareness awareness = awarenesses.get(i);
+            long viewerBit = 1L << i;
+            int viewerWord = i >> 6;
+            for (int word = minWord; word <= maxWord; ++word) {
+                long aware = awareness.awareBits(word, bufferedBits[word]);
+                while (aware != 0) {
+                    int index = (word << 6) + Long.numberOfTrailingZeros(aware);
+                    aware &= aware - 1;
+                    viewers[entitySlots[index] * words + viewerWord]
+                            |= viewerBit;
+                }
+            }
+        }
+
+        for (int i = 0; i < count; ++i) {
+            Command command = outCommands[i];
+            int entitySlot = outEntitySlots[i];
+            if (entitySlot == -1) {
+                sender.addCommandForSingle(command, outTargets[i]);
+            } else {
+                for (int word = 0; word < words; ++word) {
+                    long mask = viewers[entitySlot * words + word];
+                    while (mask != 0) {
+                        int viewer = (word << 6)
+                                + Long.numberOfTrailingZeros(mask);
+                        mask &= mask - 1;
+                        sender.addCommandForSingle(command,
+                                connections.get(viewer));
+                    }
+                }
             }
 
-            // This is at least temporarily disabled because it seems to cause problems and it's
-            // not clear what its benefits are
-//            if (awareness != myAwareness && myAwareness != null) {
-//                if (myAwareness.testVisibility(awareness.getOwnSpatial()) &&
-//                        !myAwareness.isAwareOf(awareness.getOwnSpatial())) {
-////                    visibilityChanged(myAwareness, awareness.getOwnSpatial(), true);
-//                }
-//            }
+            outCommands[i] = null;
+            outTargets[i] = null;
         }
+
+        for (int word = minWord; word <= maxWord; ++word) {
+            bufferedBits[word] = 0L;
+        }
+        minWord = Integer.MAX_VALUE;
+        maxWord = -1;
+        bufferedCount = 0;
+    }
+
+    /**
+     * Sends every connection states of those entities that it is aware of.
+     * Quantized states are sent in one CmdSnapshot. States are sent in
+     * priority order until connection's byte budget for the sync is used and
+     * the rest wait for later syncs. Guaranteed states are events that
+     * clients must not miss, so they skip priorities and budget.
+     *
+     * @param interval seconds since previous call
+     */
+    public void addStates(List<Spatial> spatials, List<StateData> states,
+            float interval) {
+        flushCommands();
+        int otmId = sender.getNextOtmId();
+        int budget = Settings.get().General().getStateBytesPerTick();
+        if (budget <= 0) {
+            budget = Integer.MAX_VALUE;
+        }
+
+        for (int a = 0; a < awarenesses.size(); ++a) {
+            PlayerEntityAwareness awareness = awarenesses.get(a);
+            HostedConnection connection = connections.get(a);
+            Spatial viewer = awareness.getOwnSpatial();
+
+            priorities.begin(connection);
+            for (int i = 0; i < spatials.size(); ++i) {
+                Spatial spatial = spatials.get(i);
+                int index = PlayerEntityAwareness.index(
+                        states.get(i).getSyncId());
+                if (!awareness.isAwareOf(index)) {
+                    continue;
+                }
+
+                if (states.get(i).isGuaranteed()) {
+                    sender.addCommandForSingle(states.get(i), connection);
+                } else {
+                    priorities.offer(i, viewer, spatial, states.get(i),
+                            interval);
+                }
+            }
+
+            snapshotEncoder.begin(connection, otmId);
+            int remaining = budget;
+            int candidates = priorities.sort();
+            for (int rank = 0; rank < candidates; ++rank) {
+                StateData state = states.get(priorities.get(rank));
+                int written;
+                if (state instanceof QuantizedState) {
+                    written = snapshotEncoder.write(state.getSyncId(),
+                            (QuantizedState) state, remaining);
+                } else if (remaining >= UNQUANTIZED_STATE_SIZE) {
+                    sender.addCommandForSingle(state, connection);
+                    written = UNQUANTIZED_STATE_SIZE;
+                } else {
+                    written = -1;
+                }
+
+                if (written >= 0) {
+                    remaining -= written;
+                    priorities.sent(state.getSyncId());
+                }
+            }
+
+            CmdSnapshot snapshot = snapshotEncoder.end();
+            if (snapshot != null) {
+                sender.addCommandForSingle(snapshot, connection);
+            }
+
+            if (snapshotEncoder.wantsAcknowledgement(connection)) {
+                sender.addCommandForSingle(
+                        new CmdTopicOnly(Topic.SNAPSHOT_ACK_REQUEST),
+                        connection);
+            }
+        }
+    }
+
+    public void acknowledgeSnapshot(HostedConnection connection, int otmId) {
+        snapshotEncoder.acknowledge(connection, otmId);
+    }
+
+    public void createNewEntity(Spatial spatial, Command command) {
+        int entityId = spatial.getUserData(UserData.ENTITY_ID);
+        snapshotEncoder.removeEntity(entityId);
+        priorities.removeEntity(entityId);
+
+        // Every awareness tracks new entity, so command reaches those that
+        // see it
+        for (PlayerEntityAwareness awareness : awarenesses) {
+            awareness.addEntity(spatial);
+        }
+
+        addCommand(spatial, command);
     }
 
     public void removeEntity(Spatial spatial, Command command) {
-        ServerSender sender =
-                app.getStateManager().getState(ServerSender.class);
+        int removedId = spatial.getUserData(UserData.ENTITY_ID);
+        snapshotEncoder.removeEntity(removedId);
+        priorities.removeEntity(removedId);
 
-        for (Map.Entry<PlayerEntityAwareness, HostedConnection> entry
-                : awarenessConnectionMap.entrySet()) {
-            PlayerEntityAwareness awareness = entry.getKey();
+        for (int i = 0; i < awarenesses.size(); ++i) {
+            PlayerEntityAwareness awareness = awarenesses.get(i);
             if (awareness.removeEntity(spatial)) {
-                sender.addCommandForSingle(command, entry.getValue());
+                addCommandForSingle(command, connections.get(i));
             }
 
             if (awareness.getOwnSpatial() == spatial) {
-                int entityId = spatial.getUserData(UserData.ENTITY_ID);
                 logger.log(Level.INFO,
                         "Character with id {0} belonged for player with id {1}."
                         + " Nulling",
-                        new Object[]{entityId, awareness.getPlayerId()});
+                        new Object[]{removedId, awareness.getPlayerId()});
                 awareness.setOwnSpatial(null);
             }
         }
@@ -147,8 +358,9 @@ public class ServerFog extends AbstractAppState {
 //        logger.log(Level.INFO, "Visibility of target {0} changed for awareness {1}. Sees: {2}",
 //                new Object[]{entityId, awareness.getPlayerId(), sees});
 
-        ServerSender sender =
-                app.getStateManager().getState(ServerSender.class);
+        HostedConnection connection = connectionOf(awareness);
+        snapshotEncoder.reset(connection, entityId);
+        priorities.reset(connection, entityId);
 
         if (sees) {
             int nodeBuilderId =
@@ -178,40 +390,43 @@ public class ServerFog extends AbstractAppState {
             }
             Command command = new CmdAddEntity(entityId, nodeBuilderId,
                     location, rotation, playerId, age);
-            sender.addCommandForSingle(command,
-                    awarenessConnectionMap.get(awareness));
+            addCommandForSingle(command, connection);
+
+            StateData spawnState = world.getSpawnState(target);
+            if (spawnState != null) {
+                addCommandForSingle(spawnState, connection);
+            }
 
             CInfluenceInterface influenceInterface =
                     target.getControl(CInfluenceInterface.class);
             if (influenceInterface != null) {
-                informAboutBuffs(sender, awareness,
-                        influenceInterface.getBuffs());
+                informAboutBuffs(connection, influenceInterface.getBuffs());
             }
         } else {
             Command command = new CmdRemoveEntity(entityId,
                     RemovalReasons.DISAPPEARED);
-            sender.addCommandForSingle(command,
-                    awarenessConnectionMap.get(awareness));
+            addCommandForSingle(command, connection);
         }
     }
 
-    private <T extends AbstractBuff> void informAboutBuffs(ServerSender sender,
-            PlayerEntityAwareness awareness, List<T> buffs) {
+    private <T extends AbstractBuff> void informAboutBuffs(
+            HostedConnection connection, List<T> buffs) {
         for (AbstractBuff abstractBuff : buffs) {
             CmdBuff command = abstractBuff.generateBuffCommand(true);
             if (command != null) {
                 command.setJustCreated(false);
-                sender.addCommandForSingle(command,
-                        awarenessConnectionMap.get(awareness));
+                addCommandForSingle(command, connection);
             }
         }
     }
 
+    private HostedConnection connectionOf(PlayerEntityAwareness awareness) {
+        return connections.get(awarenesses.indexOf(awareness));
+    }
+
     public void addPlayerListToPlayers() {
-        for (PlayerEntityAwareness awareness
-                : awarenessConnectionMap.keySet()) {
-            for (PlayerEntityAwareness awareness2
-                    : awarenessConnectionMap.keySet()) {
+        for (PlayerEntityAwareness awareness : awarenesses) {
+            for (PlayerEntityAwareness awareness2 : awarenesses) {
                 awareness.addEntity(awareness2.getOwnSpatial());
             }
         }
@@ -219,7 +434,7 @@ public class ServerFog extends AbstractAppState {
 
     public PlayerEntityAwareness createAwarenessForPlayer(int playerId) {
         PlayerEntityAwareness playerAwareness =
-                new PlayerEntityAwareness(playerId, walls, this);
+                new PlayerEntityAwareness(playerId, visibilityEngine, this);
 
         HostedConnection connection = ConnectionHelper.getSource(playerId);
         if (connection == null) {
@@ -229,14 +444,14 @@ public class ServerFog extends AbstractAppState {
             throw npe;
         }
 
-        awarenessConnectionMap.put(playerAwareness, connection);
+        awarenesses.add(playerAwareness);
+        connections.add(connection);
         return playerAwareness;
     }
 
     public void teachAboutPrecedingEntities(PlayerEntityAwareness awareness) {
         // TODO IMPORTANT: This is not enough. There might be something near player at spawn time
-        for (PlayerEntityAwareness otherAwareness
-                : awarenessConnectionMap.keySet()) {
+        for (PlayerEntityAwareness otherAwareness : awarenesses) {
             if (otherAwareness == awareness) {
                 break;
             }
@@ -250,8 +465,7 @@ public class ServerFog extends AbstractAppState {
         logger.log(Level.INFO, "Registering character with id {0}"
                 + " for player with id {1}",
                 new Object[]{entityId, playerId});
-        for (PlayerEntityAwareness playerEntityAwareness
-                : awarenessConnectionMap.keySet()) {
+        for (PlayerEntityAwareness playerEntityAwareness : awarenesses) {
             if (playerEntityAwareness.getPlayerId() == playerId) {
                 playerEntityAwareness.setOwnSpatial(character);
                 character.getControl(CEntityVariable.class)
@@ -262,12 +476,12 @@ public class ServerFog extends AbstractAppState {
     }
 
     public void setWalls(Node walls) {
-        this.walls = walls;
+        visibilityEngine.setWalls(walls);
     }
 
     public void clearAwarenesses() {
-        for (PlayerEntityAwareness playerEntityAwareness
-                : awarenessConnectionMap.keySet()) {
+        flushCommands();
+        for (PlayerEntityAwareness playerEntityAwareness : awarenesses) {
             Spatial spatial = playerEntityAwareness.getOwnSpatial();
             if (spatial != null) {
                 spatial.getControl(CEntityVariable.class)
@@ -275,10 +489,23 @@ public class ServerFog extends AbstractAppState {
             }
         }
 
-        awarenessConnectionMap.clear();
+        awarenesses.clear();
+        connections.clear();
+        snapshotEncoder.clear();
+        priorities.clear();
+        visibilityEngine.clear();
     }
 
     public void removeConnection(HostedConnection connection) {
-        awarenessConnectionMap.values().remove(connection);
+        // Buffered commands are routed with indices of awarenesses
+        flushCommands();
+        int index = connections.indexOf(connection);
+        if (index != -1) {
+            awarenesses.remove(index);
+            connections.remove(index);
+        }
+
+        snapshotEncoder.removeConnection(connection);
+        priorities.removeConnection(connection);
     }
 }
@@ -46,7 +46,7 @@ public class ServerGame extends AbstractAppState {
                 throw new RuntimeException("Unrecognized game mode");
         }
 
-        CharacterInteraction.gameMode = gameMode;
+        CharacterInteraction.setGameMode(gameMode);
     }
 
     @Override
@@ -56,11 +56,11 @@ public class ServerGame extends AbstractAppState {
         world = app.getStateManager().getState(World.class);
         fog = new ServerFog();
 
-        stateManager.attach(fog);
+        ServerMain serverApp = (ServerMain) app;
+        serverApp.getProfiler().attach(stateManager, fog);
 
         this.app = app;
 
-        ServerMain serverApp = (ServerMain) app;
         serverApp.startGame();
     }
 
@@ -14,32 +14,58 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados;
 
+import arkhados.controls.CCharacterPhysics;
+import arkhados.controls.CSpellCast;
 import arkhados.controls.CUserInput;
-import arkhados.messages.usercommands.CmdUcMouseTarget;
-import arkhados.messages.usercommands.CmdUcWalkDirection;
+import arkhados.messages.usercommands.CmdInputFrame;
+import arkhados.messages.usercommands.InputFrame;
 import arkhados.net.Command;
 import arkhados.net.CommandHandler;
+import arkhados.net.InboundPipeline;
+import arkhados.net.InboundQueue;
 import com.jme3.app.Application;
+import com.jme3.app.state.AbstractAppState;
+import com.jme3.app.state.AppStateManager;
+import com.jme3.math.Vector3f;
 import com.jme3.network.HostedConnection;
+import com.jme3.scene.Spatial;
 import com.jme3.util.IntMap;
 
 /**
- * Stores player input states.
+ * Stores player input states. There is one per match.
  *
- * TODO: Refactor later so that it's not singleton.
+ * Input frames are collected from network thread and applied in one batch
+ * when InboundPipeline drains them. Frames that were already applied from
+ * earlier commands are skipped.
  */
-public class ServerInput implements CommandHandler {
+public class ServerInput extends AbstractAppState implements CommandHandler {
 
-    private static final ServerInput instance = new ServerInput();
     private final IntMap<ServerInputState> inputStates = new IntMap<>();
-    private final Application app;
-
-    private ServerInput() {
-        app = Globals.app;
+    private final InboundQueue<CmdInputFrame> inbound
+            = new InboundQueue<>("Input", 1024, this::handleFrames);
+    private final InputFrame[] frames
+            = new InputFrame[CmdInputFrame.FRAME_COUNT];
+    private final Vector3f target = new Vector3f();
+    private Sync sync;
+
+    ServerInput() {
+        for (int i = 0; i < frames.length; ++i) {
+            frames[i] = new InputFrame();
+        }
     }
 
+    /**
+     * @return ServerInput of current match
+     */
     public static ServerInput get() {
-        return instance;
+        return MatchContext.current().getInput();
+    }
+
+    @Override
+    public void initialize(AppStateManager stateManager, Application app) {
+        super.initialize(stateManager, app);
+        sync = stateManager.getState(Sync.class);
+        stateManager.getState(InboundPipeline.class).add(inbound);
     }
 
     public void addInputState(int id) {
@@ -62,38 +88,83 @@ public class ServerInput implements CommandHandler {
 
     private void handleCommands(HostedConnection source,
             final Command command) {
-        final int playerId = ServerClientData.getPlayerId(source.getId());
-
-        if (playerId != -1) {
-            // TODO: Consider if this is the best place to put app.enqueue
-            app.enqueue(() -> {
-                doMessage(playerId, command);
-                return null;
-            });
-        } else {
-            System.out.println("There is no playerId for sourceId "
-                    + source.getId());
+        if (command instanceof CmdInputFrame) {
+            inbound.offer(source, (CmdInputFrame) command);
         }
     }
 
-    private void doMessage(int playerId, Command command) {
-        ServerInputState inputState = inputStates.get(playerId);
+    private void handleFrames(Object source, CmdInputFrame command) {
+        HostedConnection connection = (HostedConnection) source;
+        int playerId = ServerClientData.getPlayerId(connection.getId());
 
+        if (playerId == -1) {
+            System.out.println("There is no playerId for sourceId "
+                    + connection.getId());
+            return;
+        }
+
+        ServerInputState inputState = inputStates.get(playerId);
         if (inputState == null) {
             return;
         }
 
-        if (command instanceof CmdUcWalkDirection) {
-            CmdUcWalkDirection uc = (CmdUcWalkDirection) command;
-            inputState.previousDown = uc.getDown();
-            inputState.previousRight = uc.getRight();
+        int count = command.read(frames);
+        for (int i = inputState.takeNewFrames(frames, count); i < count; ++i) {
+            applyFrame(playerId, inputState, frames[i]);
+        }
+    }
+
+    private void applyFrame(int playerId, ServerInputState inputState,
+            InputFrame frame) {
+        if (frame.down != inputState.previousDown
+                || frame.right != inputState.previousRight) {
+            inputState.previousDown = frame.down;
+            inputState.previousRight = frame.right;
+            inputState.inputSequence = frame.sequence;
+            inputState.inputTime
+                    = MatchContext.current().getWorld().getWorldTime();
             if (inputState.currentActiveSpatial != null) {
                 inputState.currentActiveSpatial.getControl(
                         CUserInput.class).updateDirection();
             }
-        } else if (command instanceof CmdUcMouseTarget) {
-            CmdUcMouseTarget uc = (CmdUcMouseTarget) command;
-            inputState.mouseTarget = uc.getLocation();
+        }
+
+        frame.getTarget(target);
+        if (inputState.mouseTarget == null
+                || !inputState.mouseTarget.equals(target)) {
+            // Spells may keep the target, so it is not changed in place
+            inputState.mouseTarget = target.clone();
+        }
+
+        if (sync == null || !sync.isListening()) {
+            return;
+        }
+
+        int entityId = PlayerData.getIntData(playerId, PlayerData.ENTITY_ID);
+        Spatial character = entityId != -1
+                ? MatchContext.current().getWorld().getEntity(entityId)
+                : null;
+        if (character == null) {
+            return;
+        }
+
+        CCharacterPhysics physics
+                = character.getControl(CCharacterPhysics.class);
+        physics.setTargetLocation(inputState.mouseTarget);
+        if (!physics.isMotionControlled()
+                && physics.getWalkDirection().equals(Vector3f.ZERO)) {
+            physics.lookAt(inputState.mouseTarget);
+        }
+
+        for (int i = 0; i < frame.castCount; ++i) {
+            byte input = frame.casts[i];
+            character.getControl(CSpellCast.class)
+                    .castIfDifferentSpell(input, inputState.mouseTarget);
+
+            CUserInput cInput = character.getControl(CUserInput.class);
+            if (cInput != null) {
+                cInput.setCastInput(input);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -14,6 +14,7 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados;
 
+import arkhados.messages.usercommands.InputFrame;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Spatial;
 
@@ -23,4 +24,35 @@ public class ServerInputState {
     public int previousDown = 0;
     public Vector3f mouseTarget = null;
     public int input = Byte.MAX_VALUE; // No active spell
+    /**
+     * Sequence number of latest walk direction and world time when it came
+     */
+    public int inputSequence = -1;
+    public float inputTime = 0f;
+    /**
+     * Sequence of latest applied input frame
+     */
+    public int lastFrame = -1;
+
+    /**
+     * Skips frames that were already applied from earlier commands and sets
+     * lastFrame to newest frame.
+     *
+     * @param frames frames from oldest to newest like CmdInputFrame.read
+     * gives them
+     * @return index of first frame that should be applied or count if there
+     * is none
+     */
+    public int takeNewFrames(InputFrame[] frames, int count) {
+        int first = 0;
+        while (first < count && frames[first].sequence <= lastFrame) {
+            ++first;
+        }
+
+        if (first < count) {
+            lastFrame = frames[count - 1].sequence;
+        }
+
+        return first;
+    }
 }
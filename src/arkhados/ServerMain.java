@@ -17,6 +17,7 @@ package arkhados;
 import arkhados.master.ServerMasterCommunicator;
 import arkhados.messages.MessageUtils;
 import arkhados.net.DefaultReceiver;
+import arkhados.net.InboundPipeline;
 import com.jme3.app.SimpleApplication;
 import com.jme3.bullet.BulletAppState;
 import com.jme3.network.Server;
@@ -31,6 +32,9 @@ import arkhados.net.Receiver;
 import arkhados.net.RecordingServerSender;
 import arkhados.net.connection.MyUdpKernel;
 import arkhados.net.connection.UdpServer;
+import arkhados.profiling.MetricsEndpoint;
+import arkhados.profiling.ProfiledNode;
+import arkhados.profiling.TickProfiler;
 import arkhados.replay.ReplayCmdData;
 import arkhados.replay.ReplayData;
 import arkhados.replay.ReplayHeader;
@@ -43,6 +47,15 @@ import java.util.logging.SimpleFormatter;
 public class ServerMain extends SimpleApplication {
 
     public static void main(String[] args) {
+        setupLogging();
+
+        ServerMain app = new ServerMain();
+        configure(app);
+        app.start(JmeContext.Type.Headless);
+//        app.start();
+    }
+
+    static void setupLogging() {
         Logger.getLogger("").setLevel(Level.ALL);
         try {
             FileHandler fileHandler
@@ -55,16 +68,35 @@ public class ServerMain extends SimpleApplication {
         } catch (Exception ex) {
             System.exit(-1);
         }
+    }
+
+    static void configure(ServerMain app) {
         AppSettings settings = new AppSettings(true);
         settings.setFrameRate(60);
 
-        ServerMain app = new ServerMain();
         app.setShowSettings(false);
         app.setSettings(settings);
         app.setPauseOnLostFocus(false);
-        app.start(JmeContext.Type.Headless);
-//        app.start();
     }
+
+    /**
+     * Registers all classes that are sent over network or saved to replays.
+     * Must be done before server is started.
+     */
+    static void registerClasses() {
+        MessageUtils.registerDataClasses();
+        MessageUtils.registerMessages();
+
+        Serializer.registerClass(ReplayHeader.class);
+        Serializer.registerClass(ReplayCmdData.class);
+        Serializer.registerClass(ReplayData.class);
+    }
+    private final MatchContext matchContext;
+    /**
+     * True if this is one of MatchHost's matches
+     */
+    private final boolean hosted;
+    private final TickProfiler profiler;
     private Server server;
     private ServerNetListener listenerManager;
     private ServerGame game;
@@ -76,34 +108,67 @@ public class ServerMain extends SimpleApplication {
     private final ServerMasterCommunicator masterCommunicator
             = new ServerMasterCommunicator();
 
+    public ServerMain() {
+        matchContext = MatchContext.getDefault();
+        hosted = false;
+        profiler = new TickProfiler("Server",
+                Settings.get().General().getMetricsInterval());
+        rootNode = new ProfiledNode("Root Node", profiler);
+    }
+
+    /**
+     * Creates match that uses server of MatchHost
+     */
+    public ServerMain(MatchContext matchContext, MatchServer server) {
+        this.matchContext = matchContext;
+        this.server = server;
+        hosted = true;
+        profiler = new TickProfiler("Match " + matchContext.getMatchId(),
+                Settings.get().General().getMetricsInterval());
+        rootNode = new ProfiledNode("Root Node", profiler);
+    }
+
     @Override
-    public void simpleInitApp() {
-        MessageUtils.registerDataClasses();
-        MessageUtils.registerMessages();
+    public void initialize() {
+        // Whole match runs on this thread, so match's state is found
+        // through its context
+        matchContext.bind();
+        super.initialize();
+    }
 
-        Serializer.registerClass(ReplayHeader.class);
-        Serializer.registerClass(ReplayCmdData.class);
-        Serializer.registerClass(ReplayData.class);
+    @Override
+    public void simpleInitApp() {
+        if (!hosted) {
+            registerClasses();
+            Globals.app = this;
+        }
 
         Globals.assets = getAssetManager();
-        Globals.app = this;
+        matchContext.setApp(this);
         world = new World();
         game = new ServerGame();
         physics = new BulletAppState();
-        physics.setThreadingType(BulletAppState.ThreadingType.PARALLEL);
+        // Physics of hosted match is stepped on match's own thread.
+        // Collision callbacks need match's context and there are already as
+        // many threads as matches
+        physics.setThreadingType(hosted
+                ? BulletAppState.ThreadingType.SEQUENTIAL
+                : BulletAppState.ThreadingType.PARALLEL);
         flyCam.setEnabled(false);
 
-        int port = Settings.get().General().getPort();
-        if (port <= 0 || port > 65535) {
-            System.out.println("Port must be between 0 and 65535");
-            System.exit(1);
-        }
+        if (!hosted) {
+            int port = Settings.get().General().getPort();
+            if (port <= 0 || port > 65535) {
+                System.out.println("Port must be between 0 and 65535");
+                System.exit(1);
+            }
 
-        try {
-            server = new UdpServer("Arkhados", 42, new MyUdpKernel(port));
-            server.start();
-        } catch (IOException ex) {
-            System.exit(1);
+            try {
+                server = new UdpServer("Arkhados", 42, new MyUdpKernel(port));
+                server.start();
+            } catch (IOException ex) {
+                System.exit(1);
+            }
         }
 
         receiver = new DefaultReceiver();
@@ -123,12 +188,24 @@ public class ServerMain extends SimpleApplication {
         receiver.registerCommandHandler(input);
         receiver.registerCommandHandler(sync);
 
-        stateManager.attach(sender);
-        stateManager.attach(receiver);
-        stateManager.attach(sync);
-        stateManager.attach(world);
-        stateManager.attach(game);
-        stateManager.attach(physics);
+        InboundPipeline inbound = new InboundPipeline();
+        profiler.attach(stateManager, inbound);
+        profiler.attach(stateManager, sender);
+        profiler.attach(stateManager, receiver);
+        profiler.attach(stateManager, input);
+        profiler.attach(stateManager, sync);
+        profiler.attach(stateManager, world);
+        profiler.attach(stateManager, game);
+        profiler.attach(stateManager, physics);
+        profiler.setNetworkMetrics(sender.getNetworkMetrics());
+        profiler.setInbound(inbound);
+        profiler.setOutbound(sender.getOutbound());
+        profiler.setSync(sync);
+
+        MetricsEndpoint.register(profiler);
+        if (!hosted) {
+            MetricsEndpoint.start(Settings.get().General().getMetricsPort());
+        }
 
         sender.setWorld(world);
         // Accuracy should be > 45 or projectiles might "disappear" before
@@ -146,7 +223,20 @@ public class ServerMain extends SimpleApplication {
             return null;
         });
         
-        masterCommunicator.connectToMaster();
+        if (!hosted) {
+            masterCommunicator.connectToMaster();
+        }
+    }
+
+    public TickProfiler getProfiler() {
+        return profiler;
+    }
+
+    @Override
+    public void update() {
+        profiler.beginTick();
+        super.update();
+        profiler.endTick();
     }
 
     @Override
@@ -159,8 +249,13 @@ public class ServerMain extends SimpleApplication {
 
     @Override
     public void destroy() {
+        sender.stopSending();
         server.close();
         sender.saveToFile();
+        MetricsEndpoint.unregister(profiler);
+        if (!hosted) {
+            MetricsEndpoint.stop();
+        }
         super.destroy();
     }
 }
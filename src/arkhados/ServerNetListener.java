@@ -200,6 +200,8 @@ public class ServerNetListener implements ConnectionListener,
         int playerId = ServerClientData.getPlayerId(source.getId());
         PlayerData.setData(playerId, PlayerData.COMMAND_MOVE_INTERRUPTS,
                 clientSettings.commandMoveInterrupts());
+        PlayerData.setData(playerId, PlayerData.RENDER_DELAY,
+                clientSettings.getRenderDelay());
     }
 
     @Override
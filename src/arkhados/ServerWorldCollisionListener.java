@@ -14,6 +14,7 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados;
 
+import arkhados.actions.ASplash;
 import arkhados.actions.ATrance;
 import arkhados.actions.EntityAction;
 import arkhados.controls.CActionQueue;
@@ -23,16 +24,37 @@ import arkhados.controls.CProjectile;
 import arkhados.controls.CSkyDrop;
 import arkhados.controls.CSpellBuff;
 import arkhados.spell.spells.rockgolem.CSpiritStonePhysics;
+import arkhados.util.ComponentStore;
+import arkhados.util.EntityHandle;
+import arkhados.util.PositionHistory;
+import arkhados.util.ProjectileEngine;
 import arkhados.util.RemovalReasons;
 import arkhados.util.UserData;
 import com.jme3.bullet.collision.PhysicsCollisionEvent;
 import com.jme3.bullet.collision.PhysicsCollisionListener;
+import com.jme3.bullet.collision.PhysicsRayTestResult;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.SphereCollisionShape;
+import com.jme3.bullet.control.RigidBodyControl;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
-public class ServerWorldCollisionListener implements PhysicsCollisionListener {
+public class ServerWorldCollisionListener implements PhysicsCollisionListener,
+        ProjectileEngine.Listener {
 
     private final World world;
+    private final Vector3f start = new Vector3f();
+    private final Vector3f velocity = new Vector3f();
+    private final Vector3f hitLocation = new Vector3f();
+    private final Vector3f projectileLocation = new Vector3f();
+    private float[] hitFractions = new float[16];
+    /**
+     * Reused by isWallBetween so that rewound hits do not allocate a list
+     */
+    private final List<PhysicsRayTestResult> rayResults = new ArrayList<>();
 
     public ServerWorldCollisionListener(World world) {
         this.world = world;
@@ -55,18 +77,19 @@ public class ServerWorldCollisionListener implements PhysicsCollisionListener {
             wallB = event.getNodeB();
         }
 
+        // Walls and other nodes that are not entities have no handle
+        EntityHandle handleA = EntityHandle.of(event.getNodeA());
+        EntityHandle handleB = EntityHandle.of(event.getNodeB());
+
         CInfluenceInterface characterA
-                = event.getNodeA().getControl(CInfluenceInterface.class);
+                = handleA != null ? handleA.getInfluence() : null;
         CInfluenceInterface characterB
-                = event.getNodeB().getControl(CInfluenceInterface.class);
-
-        CProjectile projectileA = event.getNodeA().getControl(CProjectile.class);
-        CProjectile projectileB = event.getNodeB().getControl(CProjectile.class);
+                = handleB != null ? handleB.getInfluence() : null;
 
-        CSpiritStonePhysics ssPhysicsA
-                = event.getNodeA().getControl(CSpiritStonePhysics.class);
-        CSpiritStonePhysics ssPhysicsB
-                = event.getNodeB().getControl(CSpiritStonePhysics.class);
+        CProjectile projectileA
+                = handleA != null ? handleA.getProjectile() : null;
+        CProjectile projectileB
+                = handleB != null ? handleB.getProjectile() : null;
 
         CSkyDrop skyDrop = event.getNodeA().getControl(CSkyDrop.class);
         if (skyDrop == null) {
@@ -85,9 +108,13 @@ public class ServerWorldCollisionListener implements PhysicsCollisionListener {
                 projectileCharacterCollision(projectileA, characterB);
             } else if (wallB != null) {
                 projectileWallCollision(projectileA, wallB);
-            } else if (ssPhysicsB != null) {
-                projectileWallCollision(projectileA,
-                        (Spatial) ssPhysicsB.getUserObject());
+            } else {
+                CSpiritStonePhysics ssPhysicsB = event.getNodeB()
+                        .getControl(CSpiritStonePhysics.class);
+                if (ssPhysicsB != null) {
+                    projectileWallCollision(projectileA,
+                            (Spatial) ssPhysicsB.getUserObject());
+                }
             }
         }
         if (projectileB != null) {
@@ -99,9 +126,13 @@ public class ServerWorldCollisionListener implements PhysicsCollisionListener {
                 projectileCharacterCollision(projectileB, characterA);
             } else if (wallA != null) {
                 projectileWallCollision(projectileB, wallA);
-            } else if (ssPhysicsA != null) {
-                projectileWallCollision(projectileB,
-                        (Spatial) ssPhysicsA.getUserObject());
+            } else {
+                CSpiritStonePhysics ssPhysicsA = event.getNodeA()
+                        .getControl(CSpiritStonePhysics.class);
+                if (ssPhysicsA != null) {
+                    projectileWallCollision(projectileB,
+                            (Spatial) ssPhysicsA.getUserObject());
+                }
             }
         }
 
@@ -110,8 +141,9 @@ public class ServerWorldCollisionListener implements PhysicsCollisionListener {
     private void projectileCharacterCollision(CProjectile projectile,
             CInfluenceInterface target) {
 
-        int projectileTeamId = projectile.getSpatial().getUserData(UserData.TEAM_ID);
-        int targetPlayerId = target.getSpatial().getUserData(UserData.PLAYER_ID);
+        int projectileTeamId = world.getComponents()
+                .getInt(projectile.getSpatial(), ComponentStore.TEAM_ID);
+        int targetPlayerId = target.getPlayerId();
         int targetTeamId = PlayerData.getIntData(targetPlayerId, PlayerData.TEAM_ID);
 
         if (targetTeamId == projectileTeamId) {
@@ -124,9 +156,24 @@ public class ServerWorldCollisionListener implements PhysicsCollisionListener {
         
         projectile.getHurted().add(target.getSpatial());
 
-        final float damage = projectile.getSpatial().getUserData(UserData.DAMAGE);
+        hitCharacter(projectile.getSpatial(), projectile.getOwnerInterface(),
+                target, projectile.getRigidBodyControl()
+                .getPhysicsLocation(projectileLocation),
+                projectile.getSplashAction(), projectile.isProjectile());
+    }
+
+    /**
+     * Applies projectile's damage, buffs and impulse to target and removes
+     * projectile
+     *
+     * @param location where projectile is. Changed by this method
+     */
+    private void hitCharacter(Spatial projectile, CInfluenceInterface owner,
+            CInfluenceInterface target, Vector3f location, ASplash splash,
+            boolean isProjectile) {
+        final float damage = projectile.getUserData(UserData.DAMAGE);
         int removalReason = RemovalReasons.COLLISION;
-        if (target.isImmuneToProjectiles() && projectile.isProjectile()) {
+        if (target.isImmuneToProjectiles() && isProjectile) {
             target.reducePurifyingFlame(damage);
             removalReason = RemovalReasons.ABSORBED;
         } else {
@@ -136,48 +183,183 @@ public class ServerWorldCollisionListener implements PhysicsCollisionListener {
 
             if (currentAction instanceof ATrance) {
                 ATrance trance = (ATrance) currentAction;
-                trance.activate(projectile.getOwnerInterface().getSpatial());
+                trance.activate(owner != null ? owner.getSpatial() : null);
 
-                if (projectile.isProjectile()) {
-                    int entityId = projectile.getSpatial()
-                            .getUserData(UserData.ENTITY_ID);
+                if (isProjectile) {
+                    int entityId = projectile.getUserData(UserData.ENTITY_ID);
                     world.removeEntity(entityId, removalReason);
                 }
                 return;
             }
 
-            CSpellBuff buffControl = projectile.getSpatial()
-                    .getControl(CSpellBuff.class);
+            CSpellBuff buffControl = projectile.getControl(CSpellBuff.class);
 
             final boolean canBreakCC = damage > 0f;
 
-            CharacterInteraction.harm(projectile.getOwnerInterface(), target,
-                    damage, buffControl.getBuffs(), canBreakCC);
+            CharacterInteraction.harm(owner, target, damage,
+                    buffControl.getBuffs(), canBreakCC);
 
-            Float impulseFactor = projectile.getSpatial()
-                    .getUserData(UserData.IMPULSE_FACTOR);
+            Float impulseFactor
+                    = projectile.getUserData(UserData.IMPULSE_FACTOR);
 
             Vector3f impulse = target.getSpatial().getLocalTranslation()
-                    .subtract(projectile.getRigidBodyControl()
-                            .getPhysicsLocation().setY(0)).normalizeLocal()
+                    .subtract(location.setY(0)).normalizeLocal()
                     .multLocal(impulseFactor);
 
             target.getSpatial().getControl(CCharacterPhysics.class)
                     .applyImpulse(impulse);
 
-            if (projectile.getSplashAction() != null) {
-                projectile.getSplashAction().excludeSpatial(target.getSpatial());
-                projectile.getSplashAction().update(0);
+            if (splash != null) {
+                splash.excludeSpatial(target.getSpatial());
+                splash.update(0);
             }
         }
 
-        int entityId = projectile.getSpatial()
-                .getUserData(UserData.ENTITY_ID);
-        if (projectile.isProjectile()) {
+        int entityId = projectile.getUserData(UserData.ENTITY_ID);
+        if (isProjectile) {
             world.removeEntity(entityId, removalReason);
         }
     }
 
+    @Override
+    public void projectileHit(int projectileId, int ownerId, int targetId,
+            float x, float z) {
+        Spatial projectile = world.getEntity(projectileId);
+        if (projectile == null) {
+            return;
+        }
+
+        Spatial target = targetId != ProjectileEngine.WALL
+                ? world.getEntity(targetId) : null;
+        CInfluenceInterface targetInterface = target != null
+                ? target.getControl(CInfluenceInterface.class) : null;
+        if (targetInterface == null) {
+            world.removeEntity(projectileId, RemovalReasons.COLLISION);
+            return;
+        }
+
+        Spatial owner = world.getEntity(ownerId);
+        CInfluenceInterface ownerInterface = owner != null
+                ? owner.getControl(CInfluenceInterface.class) : null;
+        projectileLocation.set(x, 0f, z);
+        hitCharacter(projectile, ownerInterface, targetInterface,
+                projectileLocation, null, true);
+    }
+
+    @Override
+    public void projectileExpired(int projectileId) {
+        world.removeEntity(projectileId, RemovalReasons.EXPIRED);
+    }
+
+    /**
+     * Projectile is launched when shooter's command arrives, but shooter
+     * aimed at characters as they were at view time. This hits characters
+     * that projectile would have hit if it had flown since view time.
+     * Characters are hit in the order projectile reaches them and walls stop
+     * the projectile.
+     */
+    void rewoundCollisions(CProjectile projectile, PositionHistory history,
+            float viewTime) {
+        RigidBodyControl body = projectile.getRigidBodyControl();
+        body.getPhysicsLocation(start);
+        body.getLinearVelocity(velocity);
+        CollisionShape shape = body.getCollisionShape();
+        float radius = shape instanceof SphereCollisionShape
+                ? ((SphereCollisionShape) shape).getRadius() : 0f;
+        rewoundCollisions(projectile.getSpatial(),
+                projectile.getOwnerInterface().getSpatial(), radius, history,
+                viewTime,
+                target -> projectileCharacterCollision(projectile, target));
+    }
+
+    /**
+     * Same for projectiles that ProjectileEngine flies
+     */
+    void rewoundCollisions(Spatial projectile, Vector3f velocity,
+            float radius, CInfluenceInterface owner, PositionHistory history,
+            float viewTime) {
+        start.set(projectile.getLocalTranslation());
+        this.velocity.set(velocity);
+        int teamId = world.getComponents()
+                .getInt(projectile, ComponentStore.TEAM_ID);
+        rewoundCollisions(projectile, owner.getSpatial(), radius, history,
+                viewTime, target -> {
+                    if (target.getTeamId() != teamId) {
+                        hitCharacter(projectile, owner, target,
+                                projectileLocation.set(hitLocation), null,
+                                true);
+                    }
+                });
+    }
+
+    /**
+     * Sweeps from start along velocity against history
+     */
+    private void rewoundCollisions(Spatial projectile, Spatial shooter,
+            float radius, PositionHistory history, float viewTime,
+            Consumer<CInfluenceInterface> hit) {
+        float rewind = world.getWorldTime() - viewTime;
+        if (rewind <= 0f) {
+            return;
+        }
+
+        int size = history.size();
+        if (hitFractions.length < size) {
+            hitFractions = new float[size * 2];
+        }
+
+        for (int i = 0; i < size; ++i) {
+            hitFractions[i] = history.getCharacter(i) == shooter ? -1f
+                    : history.sweep(i, start, velocity, radius, viewTime,
+                            rewind);
+        }
+
+        while (projectile.getParent() != null && history.size() == size) {
+            int first = -1;
+            for (int i = 0; i < size; ++i) {
+                if (hitFractions[i] >= 0f && (first == -1
+                        || hitFractions[i] < hitFractions[first])) {
+                    first = i;
+                }
+            }
+
+            if (first == -1) {
+                return;
+            }
+
+            hitLocation.set(velocity).multLocal(rewind * hitFractions[first])
+                    .addLocal(start);
+            hitFractions[first] = -1f;
+            if (isWallBetween(start, hitLocation)) {
+                return;
+            }
+
+            CInfluenceInterface target = history.getCharacter(first)
+                    .getControl(CInfluenceInterface.class);
+            if (target != null) {
+                hit.accept(target);
+            }
+        }
+    }
+
+    private boolean isWallBetween(Vector3f from, Vector3f to) {
+        world.getSpace().rayTest(from, to, rayResults);
+        boolean wall = false;
+        for (int i = 0; i < rayResults.size(); ++i) {
+            int group = rayResults.get(i).getCollisionObject()
+                    .getCollisionGroup();
+            // Spirit stones stop projectiles like walls
+            if (group == CollisionGroups.WALLS
+                    || group == CollisionGroups.SPIRIT_STONE) {
+                wall = true;
+                break;
+            }
+        }
+
+        rayResults.clear();
+        return wall;
+    }
+
     private void projectileWallCollision(CProjectile projectile, Spatial wall) {
         if (projectile.getSplashAction() != null) {
             projectile.getSplashAction().update(0);
@@ -0,0 +1,170 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados;
+
+import arkhados.characters.EliteSoldierSyncData;
+import arkhados.messages.sync.CmdSnapshot;
+import arkhados.messages.sync.statedata.CharacterSyncData;
+import arkhados.messages.sync.statedata.ProjectileSyncData;
+import arkhados.messages.sync.statedata.QuantizedState;
+import arkhados.messages.sync.statedata.StateData;
+import arkhados.util.EntityIds;
+import arkhados.util.VarInt;
+import com.jme3.util.IntMap;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads CmdSnapshots on client. Fields that are missing from snapshot are
+ * taken from latest state that was received for same entity.
+ */
+public class SnapshotDecoder {
+
+    private static final Logger logger
+            = Logger.getLogger(SnapshotDecoder.class.getName());
+    private static final int[] FIELD_COUNTS = new int[3];
+    private final IntMap<Latest> latestStates = new IntMap<>();
+    private final int[] fields = new int[SnapshotEncoder.MAX_FIELDS];
+
+    static {
+        for (int type = 0; type < FIELD_COUNTS.length; ++type) {
+            FIELD_COUNTS[type] = ((QuantizedState) createStateData(type))
+                    .getFieldCount();
+        }
+    }
+
+    /**
+     * Decodes snapshot and adds resulting states to stateDatas. If
+     * stateDatas is null, only latest states are updated.
+     */
+    public <T extends Collection<StateData>> T decode(CmdSnapshot snapshot,
+            T stateDatas) {
+        ByteBuffer buffer = ByteBuffer.wrap(snapshot.getData());
+
+        while (buffer.hasRemaining()) {
+            int entityId = EntityIds.get(buffer);
+            int type = buffer.get();
+            int mask = VarInt.get(buffer);
+
+            if (type < 0 || type >= FIELD_COUNTS.length) {
+                logger.log(Level.WARNING,
+                        "Unknown state type {0} in snapshot", type);
+                return stateDatas;
+            }
+
+            int count = FIELD_COUNTS[type];
+            for (int i = 0; i < count; ++i) {
+                if ((mask & (1 << i)) != 0) {
+                    fields[i] = VarInt.getSigned(buffer);
+                }
+            }
+
+            int fullMask = (int) ((1L << count) - 1);
+            Latest latest = latestStates.get(entityId);
+            if (latest == null || latest.type != type) {
+                if (mask != fullMask) {
+                    // Server will send full state later
+                    continue;
+                }
+                latest = new Latest(type, count);
+                latestStates.put(entityId, latest);
+            }
+
+            for (int i = 0; i < count; ++i) {
+                if ((mask & (1 << i)) != 0) {
+                    latest.fields[i] = fields[i];
+                }
+            }
+
+            if (stateDatas != null) {
+                StateData stateData = createStateData(type);
+                stateData.setSyncId(entityId);
+                ((QuantizedState) stateData).readFields(latest.fields);
+                stateDatas.add(stateData);
+            }
+        }
+
+        return stateDatas;
+    }
+
+    /**
+     * @return snapshot that has all latest states in full or null if there
+     * are none
+     */
+    public CmdSnapshot fullSnapshot() {
+        if (latestStates.size() == 0) {
+            return null;
+        }
+
+        int size = 0;
+        for (IntMap.Entry<Latest> entry : latestStates) {
+            Latest latest = entry.getValue();
+            size += EntityIds.size(entry.getKey()) + 1
+                    + VarInt.size((int) ((1L << latest.fields.length) - 1));
+            for (int field : latest.fields) {
+                size += VarInt.sizeSigned(field);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (IntMap.Entry<Latest> entry : latestStates) {
+            Latest latest = entry.getValue();
+            EntityIds.put(buffer, entry.getKey());
+            buffer.put((byte) latest.type);
+            VarInt.put(buffer, (int) ((1L << latest.fields.length) - 1));
+            for (int field : latest.fields) {
+                VarInt.putSigned(buffer, field);
+            }
+        }
+
+        return new CmdSnapshot(Arrays.copyOf(buffer.array(),
+                buffer.position()));
+    }
+
+    public void forget(int entityId) {
+        latestStates.remove(entityId);
+    }
+
+    public void clear() {
+        latestStates.clear();
+    }
+
+    private static StateData createStateData(int type) {
+        switch (type) {
+            case QuantizedState.TYPE_CHARACTER:
+                return new CharacterSyncData();
+            case QuantizedState.TYPE_ELITE_SOLDIER:
+                return new EliteSoldierSyncData();
+            case QuantizedState.TYPE_PROJECTILE:
+                return new ProjectileSyncData();
+            default:
+                return null;
+        }
+    }
+
+    private static class Latest {
+
+        final int type;
+        final int[] fields;
+
+        Latest(int type, int count) {
+            this.type = type;
+            fields = new int[count];
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados;
+
+import arkhados.messages.sync.CmdSnapshot;
+import arkhados.messages.sync.statedata.QuantizedState;
+import arkhados.util.EntityIds;
+import arkhados.util.VarInt;
+import com.jme3.network.HostedConnection;
+import com.jme3.util.IntMap;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds CmdSnapshots on server. Every entity is compared against the state
+ * that connection has acknowledged and against states that are still in
+ * flight. Field is written only if client might have a different value, so
+ * idle entities cost nothing.
+ *
+ * Acknowledgements are normal Acks. Since client sends Ack only for
+ * OneTrueMessages that contain guaranteed commands, encoder tells when
+ * acknowledgement should be requested.
+ *
+ * Format per entity: signed varint entity id, state type byte, varint field
+ * mask and signed varint for every field in mask.
+ */
+public class SnapshotEncoder {
+
+    public static final int MAX_FIELDS = 32;
+    /**
+     * If this many states are unacknowledged, baseline is dropped and full
+     * states are sent until client acknowledges again.
+     */
+    private static final int MAX_PENDING = 32;
+    /**
+     * Every entity is sent in full after this many sends to recover from
+     * possible disagreement about client's state.
+     */
+    private static final int FULL_REFRESH_INTERVAL = 40;
+    /**
+     * How many snapshots can be sent without Ack before acknowledgement is
+     * requested
+     */
+    private static final int ACK_REQUEST_INTERVAL = 5;
+    private final Map<HostedConnection, ConnectionBaselines> connections
+            = new HashMap<>();
+    private final ArrayDeque<Pending> pendingPool = new ArrayDeque<>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(32768);
+    private final int[] fields = new int[MAX_FIELDS];
+    private ConnectionBaselines current;
+    private int currentOtmId;
+
+    public void begin(HostedConnection connection, int otmId) {
+        current = connections.get(connection);
+        if (current == null) {
+            current = new ConnectionBaselines();
+            connections.put(connection, current);
+        }
+
+        currentOtmId = otmId;
+        buffer.clear();
+    }
+
+    /**
+     * Writes fields of state that client might not have
+     *
+     * @param maxBytes how many bytes entry may take
+     * @return bytes written, 0 if client has the state already or -1 if
+     * entry did not fit. Entity that did not fit is sent with some later
+     * snapshot
+     */
+    public int write(int entityId, QuantizedState state, int maxBytes) {
+        int type = state.getStateType();
+        int count = state.getFieldCount();
+        state.writeFields(fields);
+
+        EntityBaseline baseline = current.entities.get(entityId);
+        if (baseline == null || baseline.type != type) {
+            if (baseline != null) {
+                baseline.clear(pendingPool);
+            }
+            baseline = new EntityBaseline(type, count);
+            current.entities.put(entityId, baseline);
+        }
+
+        boolean full = baseline.acked == null
+                || baseline.sendsSinceFull + 1 >= FULL_REFRESH_INTERVAL;
+
+        int mask = 0;
+        int size = EntityIds.size(entityId) + 1;
+        for (int i = 0; i < count; ++i) {
+            if (full || baseline.differs(i, fields[i])) {
+                mask |= 1 << i;
+                size += VarInt.sizeSigned(fields[i]);
+            }
+        }
+
+        if (mask == 0) {
+            // Client has this state whatever it has received
+            ++baseline.sendsSinceFull;
+            baseline.clear(pendingPool);
+            System.arraycopy(fields, 0, baseline.acked, 0, count);
+            return 0;
+        }
+
+        size += VarInt.size(mask);
+        if (size > maxBytes || size > buffer.remaining()) {
+            return -1;
+        }
+
+        baseline.sendsSinceFull = full ? 0 : baseline.sendsSinceFull + 1;
+
+        EntityIds.put(buffer, entityId);
+        buffer.put((byte) type);
+        VarInt.put(buffer, mask);
+        for (int i = 0; i < count; ++i) {
+            if ((mask & (1 << i)) != 0) {
+                VarInt.putSigned(buffer, fields[i]);
+            }
+        }
+
+        baseline.addPending(currentOtmId, fields, pendingPool);
+        return size;
+    }
+
+    /**
+     * @return snapshot for connection given in begin or null if there is
+     * nothing to send
+     */
+    public CmdSnapshot end() {
+        if (buffer.position() == 0) {
+            return null;
+        }
+
+        ++current.snapshotsSinceAck;
+        return new CmdSnapshot(Arrays.copyOf(buffer.array(),
+                buffer.position()));
+    }
+
+    /**
+     * @return true if connection should be sent something guaranteed so that
+     * it would send Ack back
+     */
+    public boolean wantsAcknowledgement(HostedConnection connection) {
+        ConnectionBaselines baselines = connections.get(connection);
+        if (baselines == null
+                || baselines.snapshotsSinceAck < ACK_REQUEST_INTERVAL) {
+            return false;
+        }
+
+        baselines.snapshotsSinceAck = 0;
+        return true;
+    }
+
+    public void acknowledge(HostedConnection connection, int otmId) {
+        ConnectionBaselines baselines = connections.get(connection);
+        if (baselines == null) {
+            return;
+        }
+
+        baselines.snapshotsSinceAck = 0;
+        for (IntMap.Entry<EntityBaseline> entry : baselines.entities) {
+            entry.getValue().acknowledge(otmId, pendingPool);
+        }
+    }
+
+    /**
+     * Forget what connection knows about entity. Must be called whenever
+     * client might lose entity's state, for example when entity is added or
+     * removed.
+     */
+    public void reset(HostedConnection connection, int entityId) {
+        ConnectionBaselines baselines = connections.get(connection);
+        if (baselines == null) {
+            return;
+        }
+
+        EntityBaseline baseline = baselines.entities.remove(entityId);
+        if (baseline != null) {
+            baseline.clear(pendingPool);
+        }
+    }
+
+    public void removeEntity(int entityId) {
+        for (HostedConnection connection : connections.keySet()) {
+            reset(connection, entityId);
+        }
+    }
+
+    public void removeConnection(HostedConnection connection) {
+        connections.remove(connection);
+    }
+
+    public void clear() {
+        connections.clear();
+    }
+
+    private static class ConnectionBaselines {
+
+        final IntMap<EntityBaseline> entities = new IntMap<>();
+        int snapshotsSinceAck = 0;
+    }
+
+    private static class EntityBaseline {
+
+        final int type;
+        final int count;
+        /**
+         * Latest state that client surely has. Null if there is none
+         */
+        int[] acked = null;
+        /**
+         * States that client might have applied after acked one
+         */
+        final ArrayDeque<Pending> pending = new ArrayDeque<>();
+        int sendsSinceFull = 0;
+
+        EntityBaseline(int type, int count) {
+            this.type = type;
+            this.count = count;
+        }
+
+        boolean differs(int field, int value) {
+            if (acked[field] != value) {
+                return true;
+            }
+
+            for (Pending state : pending) {
+                if (state.fields[field] != value) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        void addPending(int otmId, int[] fields,
+                ArrayDeque<Pending> pool) {
+            if (pending.size() >= MAX_PENDING) {
+                acked = null;
+                pool.add(pending.pollFirst());
+            }
+
+            Pending state = pool.isEmpty() ? new Pending() : pool.poll();
+            state.otmId = otmId;
+            System.arraycopy(fields, 0, state.fields, 0, count);
+            pending.addLast(state);
+        }
+
+        /**
+         * Only acknowledgement of message that actually had the state tells
+         * what client has. Older messages are either applied or lost.
+         */
+        void acknowledge(int otmId, ArrayDeque<Pending> pool) {
+            Pending match = null;
+            for (Pending state : pending) {
+                if (state.otmId == otmId) {
+                    match = state;
+                    break;
+                } else if (state.otmId > otmId) {
+                    break;
+                }
+            }
+
+            if (match == null) {
+                return;
+            }
+
+            if (acked == null) {
+                acked = new int[count];
+            }
+
+            System.arraycopy(match.fields, 0, acked, 0, count);
+
+            while (!pending.isEmpty() && pending.peekFirst().otmId <= otmId) {
+                pool.add(pending.pollFirst());
+            }
+        }
+
+        void clear(ArrayDeque<Pending> pool) {
+            pool.addAll(pending);
+            pending.clear();
+        }
+    }
+
+    private static class Pending {
+
+        int otmId;
+        final int[] fields = new int[MAX_FIELDS];
+    }
+}
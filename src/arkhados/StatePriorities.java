@@ -0,0 +1,164 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados;
+
+import arkhados.messages.sync.statedata.CharacterSyncData;
+import arkhados.messages.sync.statedata.ProjectileSyncData;
+import arkhados.messages.sync.statedata.StateData;
+import com.jme3.network.HostedConnection;
+import com.jme3.scene.Spatial;
+import com.jme3.util.IntMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Priority accumulator for entity states. Every entity gains priority for
+ * every connection while its state waits to be sent. Gain depends on type
+ * of entity and its distance to connection's character, so near heroes are
+ * sent more often than far away area effects, but everything is sent
+ * eventually. Sending state resets its priority.
+ */
+public class StatePriorities {
+
+    private static final float OWN_WEIGHT = 2f;
+    private static final float CHARACTER_WEIGHT = 1f;
+    private static final float PROJECTILE_WEIGHT = 0.75f;
+    private static final float OTHER_WEIGHT = 0.5f;
+    /**
+     * Weight is halved at this distance, divided by three at twice the
+     * distance and so on
+     */
+    private static final float DISTANCE_SCALE = 60f;
+    private final Map<HostedConnection, IntMap<Priority>> connections
+            = new HashMap<>();
+    private IntMap<Priority> current;
+    /**
+     * Priority bits in high half and candidate's index in low half so that
+     * sorting orders candidates by priority without allocating
+     */
+    private long[] order = new long[64];
+    private int count = 0;
+
+    public void begin(HostedConnection connection) {
+        current = connections.get(connection);
+        if (current == null) {
+            current = new IntMap<>();
+            connections.put(connection, current);
+        }
+
+        count = 0;
+    }
+
+    /**
+     * Adds candidate to current connection's queue
+     *
+     * @param index index that is returned by get
+     * @param viewer connection's own character or null
+     * @param interval seconds since previous sync
+     */
+    public void offer(int index, Spatial viewer, Spatial target,
+            StateData state, float interval) {
+        Priority priority = current.get(state.getSyncId());
+        if (priority == null) {
+            priority = new Priority();
+            current.put(state.getSyncId(), priority);
+        }
+
+        priority.value += weight(viewer, target, state) * interval;
+
+        if (count == order.length) {
+            order = Arrays.copyOf(order, count * 2);
+        }
+
+        order[count++] = ((long) Float.floatToIntBits(priority.value) << 32)
+                | index;
+    }
+
+    /**
+     * Sorts offered candidates
+     *
+     * @return amount of candidates
+     */
+    public int sort() {
+        Arrays.sort(order, 0, count);
+        return count;
+    }
+
+    /**
+     * @param rank 0 for candidate with highest priority
+     * @return index that candidate was offered with
+     */
+    public int get(int rank) {
+        return (int) order[count - 1 - rank];
+    }
+
+    public void sent(int entityId) {
+        Priority priority = current.get(entityId);
+        if (priority != null) {
+            priority.value = 0f;
+        }
+    }
+
+    public void reset(HostedConnection connection, int entityId) {
+        IntMap<Priority> priorities = connections.get(connection);
+        if (priorities != null) {
+            priorities.remove(entityId);
+        }
+    }
+
+    public void removeEntity(int entityId) {
+        for (IntMap<Priority> priorities : connections.values()) {
+            priorities.remove(entityId);
+        }
+    }
+
+    public void removeConnection(HostedConnection connection) {
+        connections.remove(connection);
+    }
+
+    public void clear() {
+        connections.clear();
+    }
+
+    private static float weight(Spatial viewer, Spatial target,
+            StateData state) {
+        if (target == viewer) {
+            return OWN_WEIGHT;
+        }
+
+        float weight;
+        if (state instanceof CharacterSyncData) {
+            weight = CHARACTER_WEIGHT;
+        } else if (state instanceof ProjectileSyncData) {
+            weight = PROJECTILE_WEIGHT;
+        } else {
+            weight = OTHER_WEIGHT;
+        }
+
+        if (viewer != null) {
+            float distance = viewer.getWorldTranslation()
+                    .distance(target.getWorldTranslation());
+            weight /= 1f + distance / DISTANCE_SCALE;
+        }
+
+        return weight;
+    }
+
+    private static class Priority {
+
+        float value = 0f;
+    }
+}
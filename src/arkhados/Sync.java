@@ -19,27 +19,47 @@ import com.jme3.app.state.AbstractAppState;
 import com.jme3.app.state.AppStateManager;
 import com.jme3.network.HostedConnection;
 import com.jme3.scene.Spatial;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import arkhados.controls.CProjectile;
 import arkhados.controls.CSync;
+import arkhados.messages.sync.CmdSnapshot;
 import arkhados.messages.sync.statedata.StateData;
+import arkhados.net.Ack;
 import arkhados.net.Command;
 import arkhados.net.CommandHandler;
+import arkhados.net.InboundPipeline;
+import arkhados.net.InboundQueue;
+import arkhados.net.RecordingServerSender;
 import arkhados.net.Sender;
 import arkhados.settings.server.Settings;
 import com.jme3.util.IntMap;
+import java.util.Locale;
 
 public class Sync extends AbstractAppState implements CommandHandler {
 
     private final Application app;
     private final AppStateManager stateManager;
     private Sender sender;
+    private World world;
     private final IntMap<Spatial> syncObjects = new IntMap<>();
     private float syncTimer = 0.0f;
     private float defaultSyncFrequency;
     private final Queue<StateData> stateDataQueue = new LinkedList<>();
+    private final SnapshotDecoder snapshotDecoder = new SnapshotDecoder();
+    private final List<Spatial> stateSpatials = new ArrayList<>();
+    private final List<StateData> states = new ArrayList<>();
     private boolean listening = false; // NOTE: Only server is affected
+    private final InboundQueue<Command> inbound
+            = new InboundQueue<>("Sync", 1024, this::handleCommand);
+    private long projectileStates = 0;
+    /**
+     * States that spawn only projectiles did not need to send
+     */
+    private long projectileStatesSaved = 0;
 
     public Sync(Application app) {
         this.app = app;
@@ -50,6 +70,8 @@ public class Sync extends AbstractAppState implements CommandHandler {
     public void initialize(AppStateManager stateManager, Application app) {
         super.initialize(stateManager, app);
         sender = stateManager.getState(Sender.class);
+        world = stateManager.getState(World.class);
+        stateManager.getState(InboundPipeline.class).add(inbound);
         if (sender.isServer()) {
             defaultSyncFrequency = Settings.get().General()
                     .getDefaultSyncFrequency();
@@ -63,23 +85,19 @@ public class Sync extends AbstractAppState implements CommandHandler {
             for (Iterator<StateData> it = stateDataQueue.iterator();
                     it.hasNext();) {
                 StateData stateData = it.next();
-                Spatial spatial = syncObjects.get(stateData.getSyncId());
-                if (spatial != null) {
-                    stateData.applyData(spatial);
-                }
-
+                doMessage(stateData.getSyncId(), stateData);
                 it.remove();
             }
         } else {
             syncTimer += tpf;
             if (syncTimer >= defaultSyncFrequency) {
-                sendSyncData();
+                sendSyncData(syncTimer);
                 syncTimer = 0.0f;
             }
         }
     }
 
-    private void sendSyncData() {
+    private void sendSyncData(float interval) {
         ServerFog fog = stateManager.getState(ServerFog.class);
 
         for (IntMap.Entry<Spatial> entry : syncObjects) {
@@ -89,13 +107,34 @@ public class Sync extends AbstractAppState implements CommandHandler {
             if (syncControl != null) {
                 StateData data = syncControl.getSyncableData(null);
                 if (data != null) {
-                    fog.addCommand(spatial, data);
+                    stateSpatials.add(spatial);
+                    states.add(data);
+                }
+
+                if (syncControl instanceof CProjectile) {
+                    if (data != null) {
+                        ++projectileStates;
+                    } else {
+                        ++projectileStatesSaved;
+                    }
                 }
             }
         }
+
+        fog.addStates(stateSpatials, states, interval);
+        stateSpatials.clear();
+        states.clear();
     }
 
+    /**
+     * Drops command if its id is stale, so late state of removed entity is
+     * not applied to entity that got its slot
+     */
     private void doMessage(int syncId, Command command) {
+        if (!world.isCurrentEntity(syncId)) {
+            return;
+        }
+
         Spatial spatial = syncObjects.get(syncId);
 
         if (spatial == null) {
@@ -109,15 +148,31 @@ public class Sync extends AbstractAppState implements CommandHandler {
 
     public void addObject(int id, Spatial spatial) {
         syncObjects.put(id, spatial);
+        snapshotDecoder.forget(id);
     }
 
     public void removeEntity(int id) {
         syncObjects.remove(id);
+        snapshotDecoder.forget(id);
     }
 
     public void clear() {
         syncObjects.clear();
         stateDataQueue.clear();
+        snapshotDecoder.clear();
+    }
+
+    public void appendReport(StringBuilder builder) {
+        long total = projectileStates + projectileStatesSaved;
+        builder.append(String.format(Locale.ROOT,
+                "Projectile states: sent %d, saved by spawn only sync %d"
+                + " (%.1f %%)%n", projectileStates, projectileStatesSaved,
+                total > 0 ? 100.0 * projectileStatesSaved / total : 0.0));
+    }
+
+    public void resetMetrics() {
+        projectileStates = 0;
+        projectileStatesSaved = 0;
     }
 
     public void stopListening() {
@@ -128,46 +183,62 @@ public class Sync extends AbstractAppState implements CommandHandler {
         listening = true;
     }
 
+    public boolean isListening() {
+        return listening;
+    }
+
     @Override
     public void readGuaranteed(Object source, Command guaranteed) {
-        if (sender.isClient()) {
-            clientHandleCommands(guaranteed);
-        } else {
-            serverHandleCommands((HostedConnection) source, guaranteed);
-        }
+        offer(source, guaranteed);
     }
 
     @Override
     public void readUnreliable(Object source, Command unreliable) {
+        offer(source, unreliable);
+    }
+
+    private void offer(Object source, Command command) {
+        if (command instanceof StateData || command instanceof CmdSnapshot
+                || command instanceof Ack) {
+            inbound.offer(source, command);
+        }
+    }
+
+    private void handleCommand(Object source, Command command) {
         if (sender.isClient()) {
-            clientHandleCommands(unreliable);
+            clientHandleCommand(command);
         } else {
-            serverHandleCommands((HostedConnection) source, unreliable);
+            serverHandleCommand((HostedConnection) source, command);
         }
     }
 
-    private void clientHandleCommands(final Command command) {
-        app.enqueue(() -> {
-            if (command instanceof StateData) {
-                stateDataQueue.add((StateData) command);
-            }
-            return null;
-        });
+    private void clientHandleCommand(Command command) {
+        if (command instanceof StateData) {
+            stateDataQueue.add((StateData) command);
+        } else if (command instanceof CmdSnapshot) {
+            snapshotDecoder.decode((CmdSnapshot) command, stateDataQueue);
+        }
     }
 
-    private void serverHandleCommands(HostedConnection source,
-            final Command command) {
+    private void serverHandleCommand(HostedConnection source,
+            Command command) {
+        if (command instanceof Ack) {
+            int otmId = ((Ack) command).getConfirmedOtmId();
+            stateManager.getState(ServerFog.class)
+                    .acknowledgeSnapshot(source, otmId);
+            stateManager.getState(RecordingServerSender.class)
+                    .acknowledge(source, otmId);
+            return;
+        }
+
         if (!listening) {
             return;
         }
 
         int player = ServerClientData.getPlayerId(source.getId());
-        final int syncId = PlayerData.getIntData(player, PlayerData.ENTITY_ID);
+        int syncId = PlayerData.getIntData(player, PlayerData.ENTITY_ID);
         if (syncId != -1) {
-            app.enqueue(() -> {
-                doMessage(syncId, command);
-                return null;
-            });
+            doMessage(syncId, command);
         } else {
             System.out.println("Entity id for player " + player
                     + " does not exist");
@@ -25,4 +25,9 @@ public class Topic {
     public static final int CLIENT_WORLD_CREATED = 6;
     public static final int FIRST_BLOOD_HAPPENED = 7;
     public static final int TEAM_STATISTICS_REQUEST = 8;
+    /**
+     * Sent as guaranteed so that client acknowledges received snapshots.
+     * Client does not need to do anything with it.
+     */
+    public static final int SNAPSHOT_ACK_REQUEST = 9;
 }
@@ -15,13 +15,14 @@
 package arkhados;
 
 import arkhados.controls.CCharacterHud;
+import arkhados.controls.CCharacterPrediction;
 import arkhados.controls.CFreeCamera;
 import arkhados.controls.CInfluenceInterface;
 import arkhados.controls.CSpellCast;
+import arkhados.controls.CSyncInterpolation;
 import arkhados.effects.Death;
-import arkhados.messages.usercommands.CmdUcCastSpell;
-import arkhados.messages.usercommands.CmdUcMouseTarget;
-import arkhados.messages.usercommands.CmdUcWalkDirection;
+import arkhados.messages.usercommands.CmdInputFrame;
+import arkhados.messages.usercommands.InputFrame;
 import arkhados.net.Sender;
 import arkhados.ui.hud.ClientHud;
 import arkhados.util.InputMapping;
@@ -45,6 +46,10 @@ import java.util.Map;
 
 public class UserCommandManager extends AbstractAppState {
 
+    /**
+     * Input frames are sent at this interval and whenever keys are pressed
+     */
+    private static final float INPUT_INTERVAL = 1f / 30f;
     private final InputManager inputManager;
     private World world;
     private Application app;
@@ -54,8 +59,14 @@ public class UserCommandManager extends AbstractAppState {
     private Node character;
     private int down = 0;
     private int right = 0;
+    private int inputSequence = 0;
+    private final InputFrame[] sentFrames
+            = new InputFrame[CmdInputFrame.FRAME_COUNT];
+    private int newestFrame = -1;
+    private int sentFrameCount = 0;
+    private final InputFrame pendingFrame = new InputFrame();
     private boolean inputListenersActive = false;
-    private float mouseTargetUpdateTimer = 0f;
+    private float inputTimer = 0f;
     private Plane floorPlane = new Plane(Vector3f.UNIT_Y, 0f);
     private Vector3f mouseGroundPosition = new Vector3f();
     private Map<String, Boolean> movementKeyFlags = new HashMap<>(4);
@@ -66,6 +77,9 @@ public class UserCommandManager extends AbstractAppState {
     public UserCommandManager(InputManager inputManager) {
         this.inputManager = inputManager;
         clearMovementFlags();
+        for (int i = 0; i < sentFrames.length; ++i) {
+            sentFrames[i] = new InputFrame();
+        }
     }
 
     @Override
@@ -111,31 +125,26 @@ public class UserCommandManager extends AbstractAppState {
                 return;
             }
             if (!isPressed) {
-                CmdUcCastSpell uc = new CmdUcCastSpell(Byte.MAX_VALUE,
-                        false, mouseGroundPosition);
-                app.getStateManager().getState(Sender.class).addCommand(uc);
+                addCast(InputFrame.RELEASE, false);
+                sendInputFrame();
                 return;
             }
 
-            calculateMouseGroundPosition();
-
             if (InputMapping.SEC1.equals(name)
                     || InputMapping.SEC2.equals(name)) {
                 Integer input = getCharacter().getControl(CSpellCast.class)
                         .getInput(name);
                 if (input != null) {
                     // In this case we just ignore the modifier
-                    CmdUcCastSpell uc = new CmdUcCastSpell(input, false,
-                            mouseGroundPosition);
-                    app.getStateManager().getState(Sender.class).addCommand(uc);
+                    addCast(input, false);
                 }
             }
 
             if (name != null) {
-                CmdUcCastSpell uc = new CmdUcCastSpell(InputMapping.getId(name),
-                        modifierFlag, mouseGroundPosition);
-                app.getStateManager().getState(Sender.class).addCommand(uc);
+                addCast(InputMapping.getId(name), modifierFlag);
             }
+
+            sendInputFrame();
         }
     };
     private ActionListener actionMoveDirection = new ActionListener() {
@@ -157,7 +166,7 @@ public class UserCommandManager extends AbstractAppState {
                 down += isPressed ? 1 : -1;
             }
 
-            sendWalkDirection();
+            sendInputFrame();
         }
     };
 
@@ -192,12 +201,9 @@ public class UserCommandManager extends AbstractAppState {
         }
 
         listener.setLocation(localCharacter.getWorldTranslation());
-        mouseTargetUpdateTimer -= tpf;
-        if (mouseTargetUpdateTimer <= 0f) {
-            calculateMouseGroundPosition();
-            app.getStateManager().getState(Sender.class).addCommand(
-                    new CmdUcMouseTarget(mouseGroundPosition));
-            mouseTargetUpdateTimer = 0.075f;
+        inputTimer -= tpf;
+        if (inputTimer <= 0f) {
+            sendInputFrame();
         }
     }
 
@@ -211,9 +217,48 @@ public class UserCommandManager extends AbstractAppState {
                 .getControl(CFreeCamera.class).setCharacter(spatial);
     }
 
-    private void sendWalkDirection() {
-        app.getStateManager().getState(Sender.class)
-                .addCommand(new CmdUcWalkDirection(down, right));
+    private void addCast(int input, boolean modifier) {
+        if (!pendingFrame.addCast(input, modifier)) {
+            // Casts of full frame are sent before new one is added
+            sendInputFrame();
+            pendingFrame.addCast(input, modifier);
+        }
+    }
+
+    /**
+     * Sends pending frame with previous frames. Walk direction is predicted
+     * from the moment frame is sent so that client and server agree when
+     * it changed.
+     */
+    private void sendInputFrame() {
+        calculateMouseGroundPosition();
+        pendingFrame.sequence = ++inputSequence;
+        pendingFrame.down = Integer.signum(down);
+        pendingFrame.right = Integer.signum(right);
+        pendingFrame.setTarget(mouseGroundPosition);
+
+        boolean directionChanged = sentFrameCount == 0
+                || !pendingFrame.sameDirection(sentFrames[newestFrame]);
+
+        newestFrame = (newestFrame + 1) % sentFrames.length;
+        sentFrames[newestFrame].set(pendingFrame);
+        sentFrameCount = Math.min(sentFrameCount + 1, sentFrames.length);
+        pendingFrame.clearCasts();
+        inputTimer = INPUT_INTERVAL;
+
+        app.getStateManager().getState(Sender.class).addCommand(
+                new CmdInputFrame(sentFrames, newestFrame, sentFrameCount));
+
+        if (!directionChanged || character == null) {
+            return;
+        }
+
+        CCharacterPrediction prediction
+                = character.getControl(CCharacterPrediction.class);
+        if (prediction != null) {
+            prediction.inputChanged(pendingFrame.down, pendingFrame.right,
+                    inputSequence);
+        }
     }
 
     @Override
@@ -307,6 +352,14 @@ public class UserCommandManager extends AbstractAppState {
         hud.hideStatistics();
 
         character.getControl(CCharacterHud.class).setHud(hud);
+
+        if (!Globals.replayMode
+                && character.getControl(CCharacterPrediction.class) == null) {
+            // Own character is predicted instead of interpolated
+            character.getControl(CSyncInterpolation.class).setEnabled(false);
+            character.addControl(new CCharacterPrediction());
+        }
+
         followPlayer();
         characterChanged = false;
         return true;
@@ -317,7 +370,6 @@ public class UserCommandManager extends AbstractAppState {
             return;
         }
 
-        app.getStateManager().getState(Sender.class)
-                .addCommand(new CmdUcWalkDirection(down, right));
+        sendInputFrame();
     }
 }
@@ -0,0 +1,213 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados;
+
+import arkhados.controls.CVisibility;
+import arkhados.controls.PlayerEntityAwareness;
+import arkhados.util.UserData;
+import arkhados.util.WallOcclusion;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates visibility of all awarenesses in three phases:
+ *
+ * 1. Everything that is needed from scene graph is copied to Targets on main
+ * thread. 2. Awarenesses are evaluated independently, in parallel on
+ * fork-join pool if there is enough work. Evaluation only touches awareness'
+ * own state, Targets and immutable WallOcclusion. 3. Changes are applied and
+ * ServerFog is notified on main thread.
+ */
+public class VisibilityEngine {
+
+    private static final float CELL_SIZE = 8f;
+    /**
+     * If there are less entities to evaluate than this, it is faster to do it
+     * on main thread
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+    /**
+     * Target that stands for null spatial. Never visible
+     */
+    private static final Target MISSING = new Target(null);
+    private final Map<Spatial, Target> targets = new IdentityHashMap<>();
+    private final List<PlayerEntityAwareness> evaluated = new ArrayList<>();
+    private final ForkJoinPool pool;
+    private WallOcclusion occlusion = new WallOcclusion(null, CELL_SIZE);
+    private int generation = 0;
+
+    static {
+        MISSING.invisible = true;
+    }
+
+    public VisibilityEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public VisibilityEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public void setWalls(Node walls) {
+        occlusion = new WallOcclusion(walls, CELL_SIZE);
+    }
+
+    public WallOcclusion getOcclusion() {
+        return occlusion;
+    }
+
+    /**
+     * @param time world time
+     */
+    public void update(Collection<PlayerEntityAwareness> awarenesses,
+            float time) {
+        ++generation;
+
+        int work = 0;
+        evaluated.clear();
+        for (PlayerEntityAwareness awareness : awarenesses) {
+            if (awareness.prepare(time)) {
+                evaluated.add(awareness);
+                work += awareness.getEntityCount();
+            }
+        }
+
+        if (evaluated.size() > 1 && work >= PARALLEL_THRESHOLD) {
+            pool.invoke(new Evaluation(evaluated, occlusion, 0,
+                    evaluated.size()));
+        } else {
+            for (PlayerEntityAwareness awareness : evaluated) {
+                awareness.evaluate(occlusion);
+            }
+        }
+
+        for (PlayerEntityAwareness awareness : evaluated) {
+            awareness.applyChanges();
+        }
+
+        evaluated.clear();
+
+        for (Iterator<Target> it = targets.values().iterator();
+                it.hasNext();) {
+            if (it.next().generation != generation) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns Target of spatial that is up to date for this update. Must be
+     * called on main thread.
+     */
+    public Target target(Spatial spatial) {
+        if (spatial == null) {
+            return MISSING;
+        }
+
+        Target target = targets.get(spatial);
+        if (target == null) {
+            target = new Target(spatial);
+            targets.put(spatial, target);
+        }
+
+        if (target.generation != generation) {
+            target.read();
+            target.generation = generation;
+        }
+
+        return target;
+    }
+
+    public void clear() {
+        targets.clear();
+    }
+
+    /**
+     * Copy of entity's state that is safe to read from any thread during
+     * evaluation
+     */
+    public static class Target {
+
+        public final Spatial spatial;
+        public float x;
+        public float y;
+        public float z;
+        /**
+         * Radius of CVisibility or 0 if there is none
+         */
+        public float radius;
+        public boolean invisible;
+        private int generation = -1;
+
+        public Target(Spatial spatial) {
+            this.spatial = spatial;
+        }
+
+        /**
+         * Reads state from spatial. Main thread only
+         */
+        public void read() {
+            invisible = spatial.getUserData(UserData.INVISIBLE_TO_ALL);
+
+            CVisibility visibility = spatial.getControl(CVisibility.class);
+            RigidBodyControl body = spatial.getControl(RigidBodyControl.class);
+            Vector3f location = visibility == null && body != null
+                    ? body.getPhysicsLocation()
+                    : spatial.getLocalTranslation();
+            x = location.x;
+            y = location.y;
+            z = location.z;
+            radius = visibility != null ? visibility.getRadius() : 0f;
+        }
+    }
+
+    private static class Evaluation extends RecursiveAction {
+
+        private final List<PlayerEntityAwareness> awarenesses;
+        private final WallOcclusion occlusion;
+        private final int from;
+        private final int to;
+
+        Evaluation(List<PlayerEntityAwareness> awarenesses,
+                WallOcclusion occlusion, int from, int to) {
+            this.awarenesses = awarenesses;
+            this.occlusion = occlusion;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                awarenesses.get(from).evaluate(occlusion);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new Evaluation(awarenesses, occlusion, from, middle),
+                    new Evaluation(awarenesses, occlusion, middle, to));
+        }
+    }
+}
@@ -25,6 +25,7 @@ import com.jme3.app.SimpleApplication;
 import com.jme3.app.state.AbstractAppState;
 import com.jme3.app.state.AppStateManager;
 import com.jme3.asset.AssetManager;
+import com.jme3.bounding.BoundingBox;
 import com.jme3.bullet.BulletAppState;
 import com.jme3.bullet.PhysicsSpace;
 import com.jme3.bullet.control.RigidBodyControl;
@@ -34,31 +35,47 @@ import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import arkhados.controls.CCharacterPhysics;
 import arkhados.controls.CEntityEvent;
 import arkhados.controls.CEntityVariable;
+import arkhados.controls.CInfluenceInterface;
+import arkhados.controls.CProjectile;
 import arkhados.controls.CSyncInterpolation;
-import arkhados.controls.CTimedExistence;
 import arkhados.controls.CUserInput;
 import arkhados.effects.BuffEffect;
 import arkhados.messages.sync.CmdAddEntity;
 import arkhados.messages.sync.CmdRemoveEntity;
+import arkhados.messages.sync.statedata.ProjectileSyncData;
+import arkhados.messages.sync.statedata.StateData;
 import arkhados.net.Command;
 import arkhados.net.CommandHandler;
+import arkhados.net.InboundPipeline;
+import arkhados.net.InboundQueue;
 import arkhados.net.Sender;
 import arkhados.spell.Spell;
 import arkhados.spell.buffs.info.BuffInfo;
 import arkhados.util.BuildParameters;
+import arkhados.util.ComponentStore;
 import arkhados.util.EntityFactory;
+import arkhados.util.EntityHandle;
+import arkhados.util.EntityIds;
 import arkhados.util.PhysicsWorkaround;
+import arkhados.util.PositionHistory;
+import arkhados.util.ProjectileEngine;
 import arkhados.util.RemovalReasons;
-import arkhados.util.Selector;
+import arkhados.util.SpatialGrid;
+import arkhados.util.TimerWheel;
 import arkhados.util.UserData;
 import com.jme3.bullet.collision.shapes.PlaneCollisionShape;
 import com.jme3.bullet.debug.BulletDebugAppState;
 import com.jme3.light.Light;
 import com.jme3.math.Plane;
+import com.jme3.network.HostedConnection;
 import com.jme3.scene.control.LightControl;
 import com.jme3.util.IntMap;
 import java.util.logging.Level;
@@ -68,6 +85,15 @@ public class World extends AbstractAppState implements CommandHandler {
 
     private final static Logger logger
             = Logger.getLogger(World.class.getName());
+    /**
+     * Hit tests are never rewound further than this
+     */
+    private static final float MAX_REWIND = 0.4f;
+    /**
+     * How long client keeps characters that disappeared to fog
+     */
+    private static final float HIDDEN_LIFETIME = 10f;
+    private static final int MAX_HIDDEN = 32;
 
     static {
         logger.setLevel(Level.WARNING);
@@ -78,10 +104,25 @@ public class World extends AbstractAppState implements CommandHandler {
     private Node fakeWorldRoot;
     private AbstractArena arena = new PillarArena();
     private final IntMap<Spatial> entities = new IntMap<>();
+    /**
+     * Characters that disappeared to fog on client, oldest first. If they
+     * come back soon they are attached again instead of built
+     */
+    private final LinkedHashMap<Integer, Hidden> hiddenEntities
+            = new LinkedHashMap<>();
+    private final SpatialGrid spatialGrid = new SpatialGrid(16f);
+    private final ComponentStore components = new ComponentStore();
+    private final TimerWheel timers = new TimerWheel();
     private Sync sync;
-    private short idCounter = 0;
+    private final EntityIds ids = new EntityIds();
     private boolean isClient = false;
     private EffectHandler effectHandler = null;
+    /**
+     * Marker that queueRemoveAllEntities puts to inbound queue
+     */
+    private static final Command REMOVE_ALL = () -> true;
+    private final InboundQueue<Command> inbound
+            = new InboundQueue<>("World", 256, this::handleCommand);
 
     public World() {
     }
@@ -97,13 +138,18 @@ public class World extends AbstractAppState implements CommandHandler {
     private Camera cam;
     private EntityFactory entityFactory;
     private ServerWorldCollisionListener serverCollisionListener = null;
+    private PositionHistory positionHistory = null;
+    private ProjectileEngine projectileEngine = null;
+    /**
+     * Movable entities that stop projectiles of projectileEngine. Server only
+     */
+    private final List<Obstacle> projectileObstacles = new ArrayList<>();
     private ClientMain clientMain;
     private float worldTime = 0f;
 
     @Override
     public void initialize(AppStateManager stateManager, Application app) {
-        CTimedExistence.setWorld(this);
-        Selector.setWorld(this);
+        MatchContext.current().setWorld(this);
         super.initialize(stateManager, app);
         this.app = (SimpleApplication) app;
         rootNode = this.app.getRootNode();
@@ -115,11 +161,21 @@ public class World extends AbstractAppState implements CommandHandler {
 
         sync = app.getStateManager().getState(Sync.class);
 
+        // Entities are added before their states and effects are applied
+        InboundPipeline pipeline = stateManager.getState(InboundPipeline.class);
+        pipeline.add(inbound);
+        if (effectHandler != null) {
+            pipeline.add(effectHandler.getInboundQueue());
+        }
+
         Sender sender = stateManager.getState(Sender.class);
 
         if (sender.isServer()) {
             serverCollisionListener = new ServerWorldCollisionListener(this);
             space.addCollisionListener(serverCollisionListener);
+            positionHistory = new PositionHistory();
+            projectileEngine = new ProjectileEngine();
+            resetProjectileWalls();
             entityFactory = new EntityFactory();
         } else if (isClient()) {
             clientMain = (ClientMain) app;
@@ -139,7 +195,7 @@ public class World extends AbstractAppState implements CommandHandler {
 //            app.getStateManager().attach(new BulletDebugAppState(space));
         }
 
-        Spell.initSpells(entityFactory, this);
+        Spell.initSpells(entityFactory);
         BuffInfo.initBuffs();
         BuffEffect.setAssetManager(assetManager);
     }
@@ -169,6 +225,20 @@ public class World extends AbstractAppState implements CommandHandler {
         worldRoot.setName("world-root");
 
         arena.readWorld(this, assetManager);
+        if (projectileEngine != null) {
+            resetProjectileWalls();
+        }
+    }
+
+    private void resetProjectileWalls() {
+        projectileEngine.clearWalls();
+        for (BoundingBox bound : arena.getWallBounds()) {
+            Vector3f center = bound.getCenter();
+            projectileEngine.addBox(center.x - bound.getXExtent(),
+                    center.z - bound.getZExtent(),
+                    center.x + bound.getXExtent(),
+                    center.z + bound.getZExtent());
+        }
     }
 
     public void attachLevel() {
@@ -200,13 +270,6 @@ public class World extends AbstractAppState implements CommandHandler {
         }
     }
 
-    private int giveNewId() {
-        while (entities.containsKey((int) (++idCounter))) {
-        }
-
-        return idCounter;
-    }
-
     /**
      * Adds new entity on server
      *
@@ -218,12 +281,18 @@ public class World extends AbstractAppState implements CommandHandler {
      */
     public int addNewEntity(int nodeBuilderId, Vector3f location,
             Quaternion rotation, int playerId) {
-        addEntity(giveNewId(), nodeBuilderId, location, rotation, playerId, 0f);
-        return idCounter;
+        int id = ids.allocate();
+        addEntity(id, nodeBuilderId, location, rotation, playerId, 0f);
+        return id;
     }
 
     public void addEntity(int id, int nodeBuilderId, Vector3f location,
             Quaternion rotation, int playerId, float age) {
+        if (isClient() && reviveEntity(id, nodeBuilderId, location, rotation,
+                age)) {
+            return;
+        }
+
         Sender sender = app.getStateManager().getState(Sender.class);
         Spatial entity = entityFactory.build(nodeBuilderId,
                 new BuildParameters(age, location));
@@ -243,13 +312,19 @@ public class World extends AbstractAppState implements CommandHandler {
         }
 
         entities.put(id, entity);
+        if (isClient) {
+            ids.claim(id);
+        }
+        registerComponents(id, entity);
         sync.addObject(id, entity);
 
         PhysicsWorkaround.addAll(space, entity);
 
         worldRoot.attachChild(entity);
+        spatialGrid.add(id, entity);
         CEntityVariable cVariable = new CEntityVariable(this, sender);
         entity.addControl(cVariable);
+        EntityHandle.of(entity).setEntity(id, cVariable);
 
         boolean isCharacter
                 = entity.getControl(CCharacterPhysics.class) != null;
@@ -261,6 +336,7 @@ public class World extends AbstractAppState implements CommandHandler {
 
             CUserInput cUserInput = new CUserInput();
             if (isServer()) {
+                positionHistory.track(entity);
                 ServerInputState inputState = ServerInput.get()
                         .getInputState(playerId);
                 inputState.currentActiveSpatial = entity;
@@ -288,36 +364,144 @@ public class World extends AbstractAppState implements CommandHandler {
         }
 
         if (isClient()) {
-            UserCommandManager userCommandManager = app.getStateManager()
-                    .getState(UserCommandManager.class);
-            boolean ownedByMe
-                    = userCommandManager.trySetPlayersCharacter(entity);
-
-            if (ownedByMe) {
-                app.getStateManager().getState(ClientFog.class)
-                        .setPlayerNode(entity);
-                logger.log(Level.INFO,
-                        "Setting player''s node. Id {0}, playerId {1}",
-                        new Object[]{id, playerId});
-            } else if (playerId == userCommandManager.getPlayerId()
-                    && followMe) {
-                app.getStateManager().getState(ClientFog.class)
-                        .setPlayerNode(entity);
-                userCommandManager.followSpatial(entity);
+            claimEntity(id, entity, playerId, followMe);
+        }
+    }
+
+    private void claimEntity(int id, Spatial entity, int playerId,
+            boolean followMe) {
+        UserCommandManager userCommandManager = app.getStateManager()
+                .getState(UserCommandManager.class);
+        boolean ownedByMe = userCommandManager.trySetPlayersCharacter(entity);
+
+        if (ownedByMe) {
+            app.getStateManager().getState(ClientFog.class)
+                    .setPlayerNode(entity);
+            logger.log(Level.INFO,
+                    "Setting player''s node. Id {0}, playerId {1}",
+                    new Object[]{id, playerId});
+        } else if (playerId == userCommandManager.getPlayerId()
+                && followMe) {
+            app.getStateManager().getState(ClientFog.class)
+                    .setPlayerNode(entity);
+            userCommandManager.followSpatial(entity);
+        }
+    }
+
+    /**
+     * Attaches character that disappeared recently instead of building it
+     * again. Server sends its buffs again after CmdAddEntity.
+     *
+     * @return false if entity has to be built
+     */
+    private boolean reviveEntity(int id, int nodeBuilderId,
+            Vector3f location, Quaternion rotation, float age) {
+        Hidden hidden = hiddenEntities.remove(id);
+        if (hidden == null) {
+            return false;
+        }
+
+        Spatial entity = hidden.spatial;
+        int builtWith = entity.getUserData(UserData.NODE_BUILDER_ID);
+        if (age < 0f || builtWith != nodeBuilderId) {
+            // Dead characters are built in dead state and id may have been
+            // given to other entity
+            destroyHidden(entity);
+            return false;
+        }
+
+        logger.log(Level.FINE, "Reviving hidden entity {0}", id);
+        entities.put(id, entity);
+        if (isClient) {
+            ids.claim(id);
+        }
+        registerComponents(id, entity);
+        sync.addObject(id, entity);
+        PhysicsWorkaround.addAll(space, entity);
+        worldRoot.attachChild(entity);
+        setEntityTranslation(entity, location, rotation);
+        spatialGrid.add(id, entity);
+
+        CSyncInterpolation cInterpolation
+                = entity.getControl(CSyncInterpolation.class);
+        if (cInterpolation != null) {
+            cInterpolation.ignoreNext();
+        }
+
+        LightControl cLight = entity.getControl(LightControl.class);
+        if (cLight != null && cLight.getLight() != null) {
+            worldRoot.addLight(cLight.getLight());
+        }
+
+        app.getStateManager().getState(ClientHud.class).addCharacter(entity);
+        claimEntity(id, entity, entity.getUserData(UserData.PLAYER_ID),
+                entity.getUserDataKeys().contains(UserData.FOLLOW_ME));
+        return true;
+    }
+
+    private void hideEntity(int id, Spatial spatial) {
+        CCharacterBuff cBuff = spatial.getControl(CCharacterBuff.class);
+        if (cBuff != null) {
+            cBuff.clear();
+        }
+
+        detach(spatial);
+
+        Hidden hidden = new Hidden();
+        hidden.spatial = spatial;
+        hidden.time = worldTime;
+        hiddenEntities.put(id, hidden);
+
+        if (hiddenEntities.size() > MAX_HIDDEN) {
+            Iterator<Hidden> oldest = hiddenEntities.values().iterator();
+            destroyHidden(oldest.next().spatial);
+            oldest.remove();
+        }
+    }
+
+    private void expireHidden() {
+        for (Iterator<Hidden> it = hiddenEntities.values().iterator();
+                it.hasNext();) {
+            Hidden hidden = it.next();
+            if (worldTime - hidden.time < HIDDEN_LIFETIME) {
+                break;
             }
+
+            destroyHidden(hidden.spatial);
+            it.remove();
         }
     }
 
+    /**
+     * Does what removeEntity leaves undone for hidden entities
+     */
+    private void destroyHidden(Spatial spatial) {
+        spatial.removeControl(CCharacterBuff.class);
+        spatial.removeControl(CCharacterHud.class);
+    }
+
+    private void clearHidden() {
+        for (Hidden hidden : hiddenEntities.values()) {
+            destroyHidden(hidden.spatial);
+        }
+
+        hiddenEntities.clear();
+    }
+
     public void temporarilyRemoveEntity(int id) {
         logger.log(Level.FINE, "Temporarily removing entity with id {0}", id);
         Spatial spatial = getEntity(id);
         spatial.setUserData(UserData.INVISIBLE_TO_ALL, true);
         spatial.removeFromParent();
+        spatialGrid.remove(id);
         sync.removeEntity(id);
 
         CCharacterPhysics physics = spatial.getControl(CCharacterPhysics.class);
         if (physics != null) {
             physics.setEnabled(false);
+            if (positionHistory != null) {
+                positionHistory.untrack(spatial);
+            }
         }
     }
 
@@ -333,6 +517,9 @@ public class World extends AbstractAppState implements CommandHandler {
         CCharacterPhysics physics = spatial.getControl(CCharacterPhysics.class);
         if (physics != null) {
             physics.setEnabled(true);
+            if (positionHistory != null) {
+                positionHistory.track(spatial);
+            }
         }
 
         CSyncInterpolation cInterpolation
@@ -342,6 +529,16 @@ public class World extends AbstractAppState implements CommandHandler {
         }
 
         setEntityTranslation(spatial, location, rotation);
+        spatialGrid.add(id, spatial);
+    }
+
+    private void registerComponents(int id, Spatial entity) {
+        components.register(id, entity);
+        CInfluenceInterface cInfluence
+                = entity.getControl(CInfluenceInterface.class);
+        if (cInfluence != null) {
+            cInfluence.setComponents(components, id);
+        }
     }
 
     private void setEntityTranslation(Spatial entity, Vector3f location,
@@ -369,9 +566,21 @@ public class World extends AbstractAppState implements CommandHandler {
             return;
         }
 
+        if (isClient) {
+            ids.release(id);
+        } else {
+            ids.free(id);
+        }
+
         ServerFog serverFog = app.getStateManager().getState(ServerFog.class);
 
         sync.removeEntity(id);
+        spatialGrid.remove(id);
+        components.unregister(id);
+        if (positionHistory != null) {
+            positionHistory.untrack(spatial);
+            projectileEngine.remove(id);
+        }
 
         if (serverFog != null) {
             serverFog.removeEntity(spatial, new CmdRemoveEntity(id, reason));
@@ -404,6 +613,12 @@ public class World extends AbstractAppState implements CommandHandler {
             app.getStateManager().getState(ClientHud.class)
                     .entityDisappeared(spatial);
 
+            if (reason == RemovalReasons.DISAPPEARED
+                    && spatial.getControl(CCharacterPhysics.class) != null) {
+                hideEntity(id, spatial);
+                return;
+            }
+
 //             TODO: Consider doing this to all controls to generalize destruction
             CCharacterBuff cBuff = spatial.getControl(CCharacterBuff.class);
             spatial.removeControl(cBuff);
@@ -412,6 +627,13 @@ public class World extends AbstractAppState implements CommandHandler {
             spatial.removeControl(cHud);
         }
 
+        detach(spatial);
+    }
+
+    /**
+     * Removes entity from scene, lights and physics space
+     */
+    private void detach(Spatial spatial) {
         spatial.removeFromParent();
         LightControl cLight = spatial.getControl(LightControl.class);
         if (cLight != null) {
@@ -424,10 +646,156 @@ public class World extends AbstractAppState implements CommandHandler {
         PhysicsWorkaround.removeAll(space, spatial);
     }
 
+    /**
+     * Removes all entities after commands that are already in inbound queue
+     * are applied, so that commands queued after this are applied to empty
+     * world. Used when replay seeks to keyframe
+     */
+    public void queueRemoveAllEntities() {
+        inbound.offer(this, REMOVE_ALL);
+    }
+
+    /**
+     * Removes every entity without removal effects. Used when replay seeks
+     */
+    public void removeAllEntities() {
+        int[] ids = new int[entities.size()];
+        int i = 0;
+        for (IntMap.Entry<Spatial> entry : entities) {
+            ids[i++] = entry.getKey();
+        }
+
+        for (int id : ids) {
+            removeEntity(id, -1);
+        }
+
+        clearHidden();
+    }
+
     @Override
     public void update(float tpf) {
         super.update(tpf);
+        if (positionHistory != null) {
+            positionHistory.record(worldTime);
+            if (projectileEngine.size() > 0) {
+                updateProjectiles(tpf);
+            }
+        }
+
         worldTime += tpf;
+        timers.advance(worldTime);
+        spatialGrid.update();
+        if (!hiddenEntities.isEmpty()) {
+            expireHidden();
+        }
+    }
+
+    private void updateProjectiles(float tpf) {
+        projectileEngine.clearTargets();
+        for (int i = 0; i < positionHistory.size(); ++i) {
+            Spatial character = positionHistory.getCharacter(i);
+            Vector3f location = character.getLocalTranslation();
+            projectileEngine.addTarget(
+                    (int) character.getUserData(UserData.ENTITY_ID),
+                    (int) character.getUserData(UserData.TEAM_ID),
+                    location.x, location.z, location.y,
+                    location.y + positionHistory.getHeight(i),
+                    positionHistory.getRadius(i));
+        }
+
+        projectileEngine.clearObstacles();
+        for (int i = 0; i < projectileObstacles.size(); ++i) {
+            Obstacle obstacle = projectileObstacles.get(i);
+            Vector3f location = obstacle.spatial.getLocalTranslation();
+            projectileEngine.addObstacle(location.x, location.z,
+                    location.y - obstacle.radius,
+                    location.y + obstacle.radius, obstacle.radius);
+        }
+
+        projectileEngine.update(tpf, serverCollisionListener);
+
+        // Fog and new viewers use spatial's location
+        for (int slot = 0; slot < projectileEngine.size(); ++slot) {
+            entities.get(projectileEngine.getId(slot)).setLocalTranslation(
+                    projectileEngine.getX(slot), projectileEngine.getY(slot),
+                    projectileEngine.getZ(slot));
+        }
+    }
+
+    /**
+     * Makes entity stop projectiles that ProjectileEngine flies like wall
+     * does, until removeProjectileObstacle is called. Server only
+     *
+     * @param radius radius of entity's collision sphere
+     */
+    public void addProjectileObstacle(Spatial entity, float radius) {
+        removeProjectileObstacle(entity);
+        Obstacle obstacle = new Obstacle();
+        obstacle.spatial = entity;
+        obstacle.radius = radius;
+        projectileObstacles.add(obstacle);
+    }
+
+    public void removeProjectileObstacle(Spatial entity) {
+        projectileObstacles.removeIf(obstacle -> obstacle.spatial == entity);
+    }
+
+    /**
+     * Launches projectile that ProjectileEngine flies in straight line
+     * instead of physics. Projectile must not have physics controls on
+     * server. It is removed with COLLISION when it hits character or wall
+     * and with EXPIRED when it has flown its range. Server only.
+     *
+     * @param velocity velocity on XZ-plane
+     * @param lagCompensated see compensateLag
+     */
+    public void launchProjectile(int id, Vector3f velocity, float radius,
+            float range, CInfluenceInterface owner, boolean lagCompensated) {
+        Spatial projectile = entities.get(id);
+        Vector3f location = projectile.getLocalTranslation();
+        projectile.setLocalRotation(
+                new Quaternion().lookAt(velocity, Vector3f.UNIT_Y));
+        projectileEngine.add(id, location.x, location.y, location.z,
+                velocity.x, velocity.z, radius, range,
+                (int) owner.getSpatial().getUserData(UserData.ENTITY_ID),
+                (int) projectile.getUserData(UserData.TEAM_ID));
+
+        ServerFog serverFog = app.getStateManager().getState(ServerFog.class);
+        if (serverFog != null) {
+            serverFog.addCommand(projectile, getSpawnState(projectile));
+        }
+
+        if (lagCompensated) {
+            int playerId = owner.getSpatial().getUserData(UserData.PLAYER_ID);
+            serverCollisionListener.rewoundCollisions(projectile, velocity,
+                    radius, owner, positionHistory, getViewTime(playerId));
+        }
+    }
+
+    /**
+     * @return guaranteed state that lets client fly projectile by itself or
+     * null if entity is not such projectile
+     */
+    public StateData getSpawnState(Spatial entity) {
+        CProjectile cProjectile = entity.getControl(CProjectile.class);
+        if (cProjectile != null && cProjectile.isSpawnOnlySync()) {
+            return cProjectile.createSpawnState();
+        }
+
+        int id = entity.getUserData(UserData.ENTITY_ID);
+        int slot = projectileEngine != null
+                ? projectileEngine.slotOf(id) : -1;
+        if (slot == -1) {
+            return null;
+        }
+
+        ProjectileSyncData state = new ProjectileSyncData(id,
+                entity.getLocalTranslation(),
+                new Vector3f(projectileEngine.getVelocityX(slot), 0f,
+                        projectileEngine.getVelocityZ(slot)),
+                entity.getLocalRotation());
+        state.setGuaranteed(true);
+        return state;
     }
 
     public boolean isServer() {
@@ -456,9 +824,18 @@ public class World extends AbstractAppState implements CommandHandler {
         }
         
         entities.clear();
+        clearHidden();
+        spatialGrid.clear();
+        components.clear();
+        timers.clear();
         sync.clear();
+        if (positionHistory != null) {
+            positionHistory.clear();
+            projectileEngine.clear();
+        }
 
-        idCounter = 0;
+        projectileObstacles.clear();
+        ids.clear();
 
         worldRoot = null;
 
@@ -480,8 +857,76 @@ public class World extends AbstractAppState implements CommandHandler {
         return worldRoot;
     }
 
+    /**
+     * @return null if there is no entity with given id or id is stale and
+     * its slot has been given to other entity
+     */
     public Spatial getEntity(int id) {
-        return entities.get(id);
+        return ids.isCurrent(id) ? entities.get(id) : null;
+    }
+
+    public boolean isCurrentEntity(int id) {
+        return ids.isCurrent(id);
+    }
+
+    public SpatialGrid getSpatialGrid() {
+        return spatialGrid;
+    }
+
+    public ComponentStore getComponents() {
+        return components;
+    }
+
+    /**
+     * Timers that run in world time on update thread. They are cancelled
+     * when world is cleared.
+     */
+    public TimerWheel getTimers() {
+        return timers;
+    }
+
+    /**
+     * @return history of character locations or null on client
+     */
+    public PositionHistory getPositionHistory() {
+        return positionHistory;
+    }
+
+    /**
+     * @return world time that player was seeing when they gave their latest
+     * command. Includes round trip time and client's render delay.
+     */
+    public float getViewTime(int playerId) {
+        float rewind = 0f;
+        HostedConnection connection
+                = ServerClientData.getConnection(playerId);
+        if (connection != null
+                && ServerClientData.exists(connection.getId())) {
+            rewind = ServerClientData.getAverageLatency(connection.getId())
+                    + Math.max(0f, PlayerData.getFloatData(playerId,
+                            PlayerData.RENDER_DELAY));
+        }
+
+        float viewTime = worldTime - Math.min(rewind, MAX_REWIND);
+        return positionHistory != null
+                ? Math.max(viewTime, positionHistory.getOldestTime())
+                : viewTime;
+    }
+
+    /**
+     * Hits characters that projectile would have hit between owner's view
+     * time and now. Should be called right after projectile is launched.
+     */
+    public void compensateLag(Spatial projectile) {
+        if (serverCollisionListener == null) {
+            return;
+        }
+
+        CProjectile cProjectile = projectile.getControl(CProjectile.class);
+        int playerId = cProjectile.getOwnerInterface().getSpatial()
+                .getUserData(UserData.PLAYER_ID);
+        serverCollisionListener.rewoundCollisions(cProjectile,
+                positionHistory, getViewTime(playerId));
     }
 
     public boolean validateLocation(Vector3f location) {
@@ -510,17 +955,34 @@ public class World extends AbstractAppState implements CommandHandler {
 
     @Override
     public void readGuaranteed(Object o, Command cmd) {
-        app.enqueue(() -> {
-            if (cmd instanceof CmdAddEntity) {
-                ((CmdAddEntity) cmd).applyData(this);
-            } else if (cmd instanceof CmdRemoveEntity) {
-                ((CmdRemoveEntity) cmd).applyData(this);
-            }
-            return null;
-        });
+        if (cmd instanceof CmdAddEntity || cmd instanceof CmdRemoveEntity) {
+            inbound.offer(o, cmd);
+        }
+    }
+
+    private void handleCommand(Object source, Command cmd) {
+        if (cmd == REMOVE_ALL) {
+            removeAllEntities();
+        } else if (cmd instanceof CmdAddEntity) {
+            ((CmdAddEntity) cmd).applyData(this);
+        } else if (cmd instanceof CmdRemoveEntity) {
+            ((CmdRemoveEntity) cmd).applyData(this);
+        }
     }
 
     @Override
     public void readUnreliable(Object o, Command cmnd) {
     }
+
+    private static class Hidden {
+
+        Spatial spatial;
+        float time;
+    }
+
+    private static class Obstacle {
+
+        Spatial spatial;
+        float radius;
+    }
 }
@@ -22,7 +22,7 @@ import arkhados.controls.CCharacterMovement;
 import arkhados.controls.CCharacterPhysics;
 import arkhados.controls.CInfluenceInterface;
 import arkhados.spell.buffs.AbstractBuffBuilder;
-import arkhados.util.UserData;
+import arkhados.util.EntityHandle;
 import com.jme3.bullet.collision.PhysicsCollisionEvent;
 import com.jme3.bullet.collision.PhysicsCollisionListener;
 import com.jme3.bullet.collision.PhysicsCollisionObject;
@@ -115,10 +115,11 @@ public class ACharge extends EntityAction implements PhysicsCollisionListener {
     }
 
     private void collided(Spatial target) {
-        int myTeam = spatial.getUserData(UserData.TEAM_ID);
-        int targetTeam = target.getUserData(UserData.TEAM_ID);
+        CInfluenceInterface myInfluence = EntityHandle.influenceOf(spatial);
+        CInfluenceInterface targetInfluenceControl
+                = EntityHandle.influenceOf(target);
         
-        if (myTeam == targetTeam) {
+        if (myInfluence.getTeamId() == targetInfluenceControl.getTeamId()) {
             return;
         }
         
@@ -131,22 +132,17 @@ public class ACharge extends EntityAction implements PhysicsCollisionListener {
             return;
         }
 
-        float damageFactor = spatial.getUserData(UserData.DAMAGE_FACTOR);
-        float rawDamage = hitDamage * damageFactor;
+        float rawDamage = hitDamage * myInfluence.getDamageFactor();
 
-        CInfluenceInterface targetInfluenceControl =
-                target.getControl(CInfluenceInterface.class);
-
-        CharacterInteraction
-                .harm(spatial.getControl(CInfluenceInterface.class),
-                targetInfluenceControl, rawDamage, buffs, true);
+        CharacterInteraction.harm(myInfluence, targetInfluenceControl,
+                rawDamage, buffs, true);
     }
 
     @Override
     public void end() {
         super.end();
 
-        Globals.app.enqueue(() -> {
+        Globals.getApp().enqueue(() -> {
             ghost.getPhysicsSpace()
                     .removeCollisionListener(ACharge.this);
             ghost.getPhysicsSpace().remove(ghost);
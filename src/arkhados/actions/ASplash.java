@@ -109,8 +109,7 @@ public class ASplash extends EntityAction {
 
         int myTeam = spatial.getUserData(UserData.TEAM_ID);
         if (getCasterInterface() != null) {
-            myTeam = getCasterInterface().getSpatial()
-                    .getUserData(UserData.TEAM_ID);
+            myTeam = getCasterInterface().getTeamId();
         }
 
         for (SpatialDistancePair pair : spatialsOnDistance) {
@@ -136,7 +135,7 @@ public class ASplash extends EntityAction {
                 continue;
             }
 
-            if (pair.spatial.getUserData(UserData.TEAM_ID).equals(myTeam)) {
+            if (targetInterface.getTeamId() == myTeam) {
                 positive(pair, targetInterface, buffsToApply);
             } else {
                 negative(pair, targetInterface, buffsToApply);
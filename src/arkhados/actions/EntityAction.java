@@ -73,7 +73,7 @@ public abstract class EntityAction {
     protected void announceEnd() {
         int entityId = spatial.getUserData(UserData.ENTITY_ID);
         CmdEndAction endAction = new CmdEndAction(entityId);
-        Globals.app.getStateManager().getState(ServerFog.class)
+        Globals.getApp().getStateManager().getState(ServerFog.class)
                 .addCommand(spatial, endAction);
     }
 }
@@ -51,7 +51,8 @@ public class ACastGrenade extends EntityAction {
 
         float distance = xz.length();
 
-        World world = Globals.app.getStateManager().getState(World.class);
+        World world = Globals.getApp().getStateManager()
+                .getState(World.class);
 
         int entityId = world.addNewEntity(spell.getId(),
                 casterLocation, Quaternion.IDENTITY, playerId);
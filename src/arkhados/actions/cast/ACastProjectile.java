@@ -23,6 +23,7 @@ import arkhados.controls.CSpellBuff;
 import arkhados.spell.Spell;
 import arkhados.spell.buffs.AbstractBuffBuilder;
 import arkhados.util.CastSpawn;
+import arkhados.util.EntityHandle;
 import arkhados.util.UserData;
 import com.jme3.scene.Spatial;
 import java.util.ArrayList;
@@ -38,6 +39,7 @@ public class ACastProjectile extends EntityAction {
     private final World world;
     private final List<AbstractBuffBuilder> additionalBuffs = new ArrayList<>();
     private boolean detonateAtTarget;
+    private boolean lagCompensated = false;
 
     public ACastProjectile(Spell spell, World world) {
         this.spell = spell;
@@ -53,9 +55,12 @@ public class ACastProjectile extends EntityAction {
         CastSpawn.SpawnInfo spawn =  CastSpawn.spawn(spatial, spell);
         Spatial projectile = spawn.spatial;
 
+        CInfluenceInterface influenceInterface
+                = EntityHandle.influenceOf(spatial);
+
         float damage = projectile.getUserData(UserData.DAMAGE);
-        float damageFactor = spatial.getUserData(UserData.DAMAGE_FACTOR);
-        projectile.setUserData(UserData.DAMAGE, damage * damageFactor);
+        projectile.setUserData(UserData.DAMAGE,
+                damage * influenceInterface.getDamageFactor());
 
         CProjectile cProjectile = projectile.getControl(CProjectile.class);
 
@@ -66,9 +71,6 @@ public class ACastProjectile extends EntityAction {
             cProjectile.setRange(spell.getRange());
         }
 
-        CInfluenceInterface influenceInterface =
-                spatial.getControl(CInfluenceInterface.class);
-
         cProjectile.setOwnerInterface(influenceInterface);
 
         ASplash aSplash = cProjectile.getSplashAction();
@@ -85,10 +87,22 @@ public class ACastProjectile extends EntityAction {
         
         cBuff.setOwnerInterface(influenceInterface);
 
+        if (lagCompensated) {
+            world.compensateLag(projectile);
+        }
+
         return false;
     }
 
     public void detonateAtTarget(boolean detonateAtTarget) {
         this.detonateAtTarget = detonateAtTarget;
     }
+
+    /**
+     * Fast projectiles should be checked against characters as caster saw
+     * them. See World.compensateLag
+     */
+    public void setLagCompensated(boolean lagCompensated) {
+        this.lagCompensated = lagCompensated;
+    }
 }
@@ -15,16 +15,21 @@
 package arkhados.actions.cast;
 
 import arkhados.CharacterInteraction;
+import arkhados.MatchContext;
 import arkhados.SpatialDistancePair;
+import arkhados.World;
 import arkhados.actions.ATrance;
 import arkhados.actions.EntityAction;
 import arkhados.controls.CActionQueue;
 import arkhados.controls.CCharacterPhysics;
 import arkhados.controls.CInfluenceInterface;
 import arkhados.spell.buffs.AbstractBuffBuilder;
+import arkhados.util.EntityHandle;
+import arkhados.util.PositionHistory;
 import arkhados.util.Selector;
 import arkhados.util.UserData;
 import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Predicate;
@@ -55,39 +60,30 @@ public class AMeleeAttack extends EntityAction {
         Vector3f hitDirection = physicsControl.calculateTargetDirection()
                 .normalize().multLocal(range);
 
-        final int myTeamId = spatial.getUserData(UserData.TEAM_ID);
+        CInfluenceInterface myInterface = EntityHandle.influenceOf(spatial);
+        final int myTeamId = myInterface.getTeamId();
 
         physicsControl.setViewDirection(hitDirection);
 
-        Predicate<SpatialDistancePair> pred = (SpatialDistancePair value) -> {
-            if (value.spatial == spatial) {
+        Predicate<Spatial> pred = (Spatial value) -> {
+            if (value == spatial) {
                 return false;
             }
 
-            Integer nullableTeamId
-                    = value.spatial.getUserData(UserData.TEAM_ID);
-            if (nullableTeamId == null) {
-                return false;
-            }
-
-            CInfluenceInterface influenceInterface = value.spatial
-                    .getControl(CInfluenceInterface.class);
+            CInfluenceInterface influenceInterface
+                    = EntityHandle.influenceOf(value);
 
             return influenceInterface != null
-                    && !nullableTeamId.equals(myTeamId);
+                    && influenceInterface.getTeamId() != myTeamId;
         };
 
-        SpatialDistancePair closest = Selector.giveClosest(
-                Selector.coneSelect(new ArrayList<SpatialDistancePair>(), pred,
-                        spatial.getLocalTranslation(), hitDirection,
-                        range, (float) Math.toRadians(50f)));
-
+        Spatial closest = findTarget(hitDirection, pred);
         if (closest == null) {
             return false;
         }
 
         CInfluenceInterface targetInterface
-                = closest.spatial.getControl(CInfluenceInterface.class);
+                = EntityHandle.influenceOf(closest);
         if (targetInterface != null) {
             CActionQueue cQueue = targetInterface.getSpatial()
                     .getControl(CActionQueue.class);
@@ -98,15 +94,36 @@ public class AMeleeAttack extends EntityAction {
                 return false;
             }
 
-            float damageFactor = spatial.getUserData(UserData.DAMAGE_FACTOR);
-            float rawDamage = damage * damageFactor;
+            float rawDamage = damage * myInterface.getDamageFactor();
             // TODO: Calculate damage for possible Damage over Time -buffs
-            CharacterInteraction.harm(
-                    spatial.getControl(CInfluenceInterface.class),
-                    targetInterface, rawDamage, buffs, true);
+            CharacterInteraction.harm(myInterface, targetInterface, rawDamage,
+                    buffs, true);
             setTypeIdOnHit();
         }
 
         return false;
     }
+
+    /**
+     * On server targets are where attacker saw them
+     */
+    private Spatial findTarget(Vector3f hitDirection,
+            Predicate<Spatial> pred) {
+        float coneAngle = (float) Math.toRadians(50f);
+        World world = MatchContext.current().getWorld();
+        PositionHistory history = world.getPositionHistory();
+        if (history != null) {
+            int playerId = spatial.getUserData(UserData.PLAYER_ID);
+            return history.closestInCone(spatial.getLocalTranslation(),
+                    hitDirection, range, coneAngle,
+                    world.getViewTime(playerId), pred);
+        }
+
+        SpatialDistancePair closest = Selector.giveClosest(
+                Selector.coneSelect(new ArrayList<SpatialDistancePair>(),
+                        (SpatialDistancePair value) -> pred.test(value.spatial),
+                        spatial.getLocalTranslation(), hitDirection,
+                        range, coneAngle));
+        return closest != null ? closest.spatial : null;
+    }
 }
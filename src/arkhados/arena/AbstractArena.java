@@ -16,15 +16,22 @@ package arkhados.arena;
 
 import arkhados.World;
 import com.jme3.asset.AssetManager;
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingVolume;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.List;
 
 public abstract class AbstractArena {
     private Node terrain;
     private World world;
     private AssetManager assetManager;
+    private final List<BoundingBox> wallBounds = new ArrayList<>();
 
     public void readWorld(World world, AssetManager assetManager) {
+        wallBounds.clear();
         this.world = world;
         this.assetManager = assetManager;
         this.terrain = (Node)this.world.getWorldRoot().getChild("terrain");
@@ -45,4 +52,19 @@ public abstract class AbstractArena {
     protected AssetManager getAssetManager() {
         return assetManager;
     }
+
+    /**
+     * Arenas call this for every static wall so that walls can be tested
+     * without physics space
+     */
+    protected void addWallBounds(Spatial wall) {
+        BoundingVolume bound = wall.getWorldBound();
+        if (bound instanceof BoundingBox) {
+            wallBounds.add((BoundingBox) bound.clone());
+        }
+    }
+
+    public List<BoundingBox> getWallBounds() {
+        return wallBounds;
+    }
 }
@@ -99,6 +99,7 @@ public class BasicSquareArena extends AbstractArena {
                     = CollisionShapeFactory.createMeshShape(wall);
 
             wall.scale(1f / 6f);
+            addWallBounds(wall);
             RigidBodyControl wallPhysics = new RigidBodyControl(meshShape, 0);
             wallPhysics.setCollideWithGroups(CollisionGroups.NONE);
 
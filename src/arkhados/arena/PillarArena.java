@@ -115,6 +115,7 @@ public class PillarArena extends AbstractArena {
                     .createMeshShape(wall);
             
             wall.setLocalScale(originalScale);
+            addWallBounds(wall);
 
             RigidBodyControl wallPhysics = new RigidBodyControl(meshShape, 0);
             wallPhysics.setCollideWithGroups(CollisionGroups.NONE);
@@ -150,7 +150,7 @@ public class ElectroBot extends AbstractNodeBuilder {
 
         entity.addControl(new CCharacterSync());
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             CCharacterSound soundControl = new CCharacterSound();
             soundControl.addSufferSound("Effects/Sound/EmberMagePain.wav");
             soundControl.setDeathSound("Effects/Sound/EmberMageDeath.wav");
@@ -198,7 +198,7 @@ public class EliteSoldier extends AbstractNodeBuilder {
 
         entity.addControl(new CEliteSoldierSync());
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             CCharacterSound soundControl = new CCharacterSound();
             entity.addControl(soundControl);
             soundControl.addSufferSound("Effects/Sound/EliteSoldierPain.wav");
@@ -5,6 +5,7 @@ import arkhados.messages.sync.statedata.CharacterSyncData;
 import arkhados.ui.hud.elitesoldier.CEliteSoldierHud;
 import com.jme3.network.serializing.Serializable;
 import com.jme3.scene.Spatial;
+import java.nio.ByteBuffer;
 
 @Serializable
 public class EliteSoldierSyncData extends CharacterSyncData {
@@ -35,6 +36,32 @@ public class EliteSoldierSyncData extends CharacterSyncData {
         hud.updateAmmo(pellets, plasmas, rockets);
     }
 
+    @Override
+    public int getStateType() {
+        return TYPE_ELITE_SOLDIER;
+    }
+
+    @Override
+    public int getFieldCount() {
+        return FIELD_COUNT + 3;
+    }
+
+    @Override
+    public void writeFields(int[] fields) {
+        super.writeFields(fields);
+        fields[FIELD_COUNT] = pellets;
+        fields[FIELD_COUNT + 1] = plasmas;
+        fields[FIELD_COUNT + 2] = rockets;
+    }
+
+    @Override
+    public void readFields(int[] fields) {
+        super.readFields(fields);
+        pellets = (byte) fields[FIELD_COUNT];
+        plasmas = (byte) fields[FIELD_COUNT + 1];
+        rockets = (byte) fields[FIELD_COUNT + 2];
+    }
+
     public void setPellets(int pellets) {
         this.pellets = (byte) pellets;
     }
@@ -46,4 +73,18 @@ public class EliteSoldierSyncData extends CharacterSyncData {
     public void setRockets(int rockets) {
         this.rockets = (byte) rockets;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        super.write(buffer);
+        buffer.put(pellets).put(plasmas).put(rockets);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        super.read(buffer);
+        pellets = buffer.get();
+        plasmas = buffer.get();
+        rockets = buffer.get();
+    }
 }
\ No newline at end of file
@@ -146,7 +146,7 @@ public class EmberMage extends AbstractNodeBuilder {
 
         entity.addControl(new CCharacterSync());
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             CCharacterSound soundControl = new CCharacterSound();
             soundControl.addSufferSound("Effects/Sound/EmberMagePain.wav");
             soundControl.setDeathSound("Effects/Sound/EmberMageDeath.wav");
@@ -196,7 +196,7 @@ public class Madblow extends AbstractNodeBuilder {
         entity.addControl(new CCharacterHeal());
         entity.addControl(new CCharacterSync());
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             CCharacterSound soundControl = new CCharacterSound();
             soundControl.addSufferSound("Effects/Sound/VenatorPain.wav");
             soundControl.setDeathSound("Effects/Sound/VenatorDeath.wav");
@@ -168,7 +168,7 @@ public class RockGolem extends AbstractNodeBuilder {
         entity.addControl(new CCharacterHeal());
         entity.addControl(new CCharacterSync());
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             CCharacterSound soundControl = new CCharacterSound();
             entity.addControl(soundControl);
             soundControl.addSufferSound("Effects/Sound/RockGolemPain.wav");
@@ -165,7 +165,7 @@ public class Shadowmancer extends AbstractNodeBuilder {
         entity.addControl(new CCharacterHeal());
         entity.addControl(new CCharacterSync());
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             CCharacterSound soundControl = new CCharacterSound();
             soundControl.addSufferSound("Effects/Sound/ShadowmancerPain1.wav");
             soundControl.addSufferSound("Effects/Sound/ShadowmancerPain2.wav");
@@ -56,7 +56,7 @@ public class CActionPlayer extends AbstractControl {
     }
     
     private void playEffect(final int id, final IntMap<WorldEffect> map) {
-        Globals.app.enqueue(() -> {
+        Globals.getApp().enqueue(() -> {
             if (effectHandle != null) {
                 effectHandle.end();
                 effectHandle = null;
@@ -74,7 +74,7 @@ public class CActionPlayer extends AbstractControl {
 
     public void endEffect() {
         if (effectHandle != null) {
-            Globals.app.enqueue(() -> {
+            Globals.getApp().enqueue(() -> {
                 effectHandle.end();
                 effectHandle = null;
                 return null;
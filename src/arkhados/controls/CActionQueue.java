@@ -21,13 +21,14 @@ import java.util.LinkedList;
 import java.util.Queue;
 import arkhados.actions.EntityAction;
 import arkhados.messages.sync.CmdAction;
-import arkhados.util.UserData;
+import arkhados.util.EntityHandle;
 
 public class CActionQueue extends AbstractControl {
 
     private Queue<EntityAction> actions = new LinkedList<>();
     private EntityAction current = null;
     private boolean shouldSimulate = false;
+    private EntityHandle handle;
 
     public void enqueueAction(EntityAction action) {
         if (!enabled) {
@@ -92,17 +93,17 @@ public class CActionQueue extends AbstractControl {
         if (action.getTypeId() == -1) {
             return;
         }
-        CCharacterAnimation animationControl = 
-                spatial.getControl(CCharacterAnimation.class);
+        if (handle == null) {
+            handle = EntityHandle.of(spatial);
+        }
+        CCharacterAnimation animationControl = handle.getAnimation();
         if (animationControl != null) {
             animationControl.animateAction(action.getTypeId());
         }
-        PlayerEntityAwareness awareness =
-                spatial.getControl(CEntityVariable.class).getAwareness();
+        PlayerEntityAwareness awareness = handle.getVariable().getAwareness();
         if (awareness != null) {
-            int id = spatial.getUserData(UserData.ENTITY_ID);
             awareness.getFog().addCommand(spatial,
-                    new CmdAction(id, action.getTypeId()));
+                    new CmdAction(handle.getEntityId(), action.getTypeId()));
         }
     }
 }
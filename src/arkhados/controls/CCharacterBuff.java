@@ -192,7 +192,10 @@ public class CCharacterBuff extends AbstractControl {
         return buffs;
     }
 
-    private void clear() {
+    /**
+     * Destroys buff effects. Server sends buffs again if entity comes back
+     */
+    public void clear() {
         for (IntMap.Entry<BuffEffect> effect : effects) {
             effect.getValue().destroy();
         }
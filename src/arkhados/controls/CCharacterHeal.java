@@ -14,6 +14,7 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados.controls;
 
+import arkhados.util.ComponentStore;
 import arkhados.util.UserData;
 import com.jme3.math.FastMath;
 import com.jme3.renderer.RenderManager;
@@ -35,22 +36,23 @@ public class CCharacterHeal extends AbstractControl {
         recordLowHealth = spatial.getUserData(UserData.HEALTH_MAX);
     }
 
-    private float getHealingCap() {
-        float max = spatial.getUserData(UserData.HEALTH_MAX);
+    private float getHealingCap(CInfluenceInterface me) {
+        float max = me.getFloat(ComponentStore.HEALTH_MAX);
         return FastMath.clamp(recordLowHealth + HEALING_CAP_CONST,
                 HEALING_CAP_CONST, max);
     }
 
     public void regenerate(float healing) {
-        float max = spatial.getUserData(UserData.HEALTH_MAX);
+        float max = spatial.getControl(CInfluenceInterface.class)
+                .getFloat(ComponentStore.HEALTH_MAX);
         recordLowHealth =
                 FastMath.clamp(recordLowHealth + healing, recordLowHealth, max);
         heal(healing);
     }
 
     public void tookDamage() {
-        float currentHealth = 
-                spatial.getUserData(UserData.HEALTH_CURRENT);
+        float currentHealth = spatial.getControl(CInfluenceInterface.class)
+                .getFloat(ComponentStore.HEALTH_CURRENT);
         if (currentHealth < recordLowHealth) {
             recordLowHealth = currentHealth;
         }
@@ -63,11 +65,10 @@ public class CCharacterHeal extends AbstractControl {
             return 0f;
         }
         // TODO: Healing mitigation from negative buff
-        float healthBefore = 
-                spatial.getUserData(UserData.HEALTH_CURRENT);
+        float healthBefore = me.getFloat(ComponentStore.HEALTH_CURRENT);
         float health = FastMath.clamp(healthBefore + healing, healthBefore,
-                getHealingCap());
-        spatial.setUserData(UserData.HEALTH_CURRENT, health);
+                getHealingCap(me));
+        me.setFloat(ComponentStore.HEALTH_CURRENT, health);
         return health - healthBefore;
     }
 
@@ -17,7 +17,7 @@ package arkhados.controls;
 import arkhados.actions.ACastingSpell;
 import arkhados.actions.AChannelingSpell;
 import arkhados.actions.EntityAction;
-import arkhados.util.UserData;
+import arkhados.util.ComponentStore;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
@@ -48,7 +48,7 @@ public class CCharacterMovement extends AbstractControl {
             return;
         }
 
-        float speed = spatial.getUserData(UserData.SPEED);
+        float speed = cInfluence.getFloat(ComponentStore.SPEED);
         Vector3f scaledDirection = direction.normalize().multLocal(speed);
 
         cPhysics.setWalkDirection(scaledDirection);
@@ -59,7 +59,8 @@ public class CCharacterMovement extends AbstractControl {
             return;
         }
 
-        float speed = spatial.getUserData(UserData.SPEED);
+        float speed = spatial.getControl(CInfluenceInterface.class)
+                .getFloat(ComponentStore.SPEED);
 
         Vector3f scaledDirection
                 = getWalkDirection().normalize().multLocal(speed);
@@ -77,8 +78,10 @@ public class CCharacterMovement extends AbstractControl {
 
     public void setSpeedToBase() {
         if (!isSpeedConstant()) {
-            float msBase = spatial.getUserData(UserData.SPEED_BASE);
-            spatial.setUserData(UserData.SPEED, msBase);
+            CInfluenceInterface cInfluence
+                    = spatial.getControl(CInfluenceInterface.class);
+            cInfluence.setFloat(ComponentStore.SPEED,
+                    cInfluence.getFloat(ComponentStore.SPEED_BASE));
         }
     }
 
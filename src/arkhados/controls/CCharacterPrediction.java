@@ -0,0 +1,201 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.controls;
+
+import arkhados.messages.sync.statedata.CharacterSyncData;
+import arkhados.util.UserData;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.control.AbstractControl;
+
+/**
+ * Predicts movement of client's own character. Walk direction is given to
+ * local physics as soon as player presses a key, and location of every frame
+ * is recorded.
+ *
+ * Server tells which input it has processed and how long ago. Own input
+ * timeline gives the moment when local character had moved equally long
+ * with that input, so server's location is compared with recorded location
+ * of that moment. Movement after it, including unacknowledged inputs, is
+ * kept and only the difference is corrected.
+ */
+public class CCharacterPrediction extends AbstractControl {
+
+    private static final int CAPACITY = 256;
+    private static final int INPUT_CAPACITY = 64;
+    private static final float IGNORED_ERROR = 0.05f;
+    /**
+     * Larger errors are corrected at once
+     */
+    private static final float SNAP_DISTANCE = 4f;
+    /**
+     * Part of smaller error that is corrected per server state
+     */
+    private static final float CORRECTION_RATE = 0.3f;
+    private final float[] times = new float[CAPACITY];
+    private final float[] xs = new float[CAPACITY];
+    private final float[] ys = new float[CAPACITY];
+    private final float[] zs = new float[CAPACITY];
+    private final int[] inputSequences = new int[INPUT_CAPACITY];
+    private final float[] inputTimes = new float[INPUT_CAPACITY];
+    private final Vector3f recorded = new Vector3f();
+    private final Vector3f correction = new Vector3f();
+    private final Vector3f walkDirection = new Vector3f();
+    private int newest = -1;
+    private int count = 0;
+    private float clock = 0f;
+    /**
+     * Estimated time from moment that server state describes to its arrival
+     */
+    private float delay = 0f;
+    private int latestSequence = -1;
+    private float speed = -1f;
+
+    public CCharacterPrediction() {
+        for (int i = 0; i < INPUT_CAPACITY; ++i) {
+            inputSequences[i] = -1;
+        }
+    }
+
+    @Override
+    protected void controlUpdate(float tpf) {
+        clock += tpf;
+        newest = (newest + 1) % CAPACITY;
+        count = Math.min(count + 1, CAPACITY);
+
+        Vector3f location = spatial.getLocalTranslation();
+        times[newest] = clock;
+        xs[newest] = location.x;
+        ys[newest] = location.y;
+        zs[newest] = location.z;
+    }
+
+    @Override
+    protected void controlRender(RenderManager rm, ViewPort vp) {
+    }
+
+    /**
+     * Starts moving to new direction without waiting for server
+     */
+    public void inputChanged(int down, int right, int sequence) {
+        int slot = sequence & (INPUT_CAPACITY - 1);
+        inputSequences[slot] = sequence;
+        inputTimes[slot] = clock;
+        latestSequence = sequence;
+
+        if (speed < 0f) {
+            speed = spatial.getUserData(UserData.SPEED);
+        }
+
+        CCharacterPhysics physics
+                = spatial.getControl(CCharacterPhysics.class);
+        walkDirection.set(right, 0f, down);
+        if (walkDirection.lengthSquared() == 0f) {
+            physics.setWalkDirection(walkDirection);
+            return;
+        }
+
+        walkDirection.normalizeLocal();
+        physics.setViewDirection(walkDirection);
+        physics.setWalkDirection(walkDirection.multLocal(speed));
+    }
+
+    /**
+     * Corrects prediction with server's state
+     *
+     * @param sequence latest input that server has processed
+     * @param inputAge seconds since server processed it
+     */
+    public void correct(Vector3f serverLocation, Vector3f serverWalkDirection,
+            int sequence, float inputAge) {
+        CCharacterPhysics physics
+                = spatial.getControl(CCharacterPhysics.class);
+
+        float serverSpeed = serverWalkDirection.length();
+        if (serverSpeed > 0f) {
+            speed = serverSpeed;
+        }
+
+        if (sequence == latestSequence) {
+            // Server knows all input so its movement includes slows, crowd
+            // control and such
+            physics.setWalkDirection(serverWalkDirection);
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        int slot = sequence & (INPUT_CAPACITY - 1);
+        float matchTime;
+        if (sequence >= 0 && inputSequences[slot] == sequence
+                && inputAge * 1000f < CharacterSyncData.MAX_INPUT_AGE_MS) {
+            matchTime = inputTimes[slot] + inputAge;
+            float sample = clock - matchTime;
+            delay = delay == 0f ? sample : delay + (sample - delay) * 0.1f;
+        } else {
+            matchTime = clock - delay;
+        }
+
+        locationAt(matchTime, recorded);
+        correction.set(serverLocation).subtractLocal(recorded);
+        float error = correction.length();
+        if (error < IGNORED_ERROR) {
+            return;
+        }
+
+        if (error < SNAP_DISTANCE) {
+            correction.multLocal(CORRECTION_RATE);
+        }
+
+        shiftSince(matchTime, correction);
+        physics.warp(correction.addLocal(spatial.getLocalTranslation()));
+    }
+
+    private void locationAt(float time, Vector3f store) {
+        int index = newest;
+        for (int i = 0; i < count - 1; ++i) {
+            int older = (index - 1 + CAPACITY) % CAPACITY;
+            if (times[older] <= time) {
+                float span = times[index] - times[older];
+                float factor = span > 0f
+                        ? Math.min((time - times[older]) / span, 1f) : 1f;
+                store.set(xs[older] + (xs[index] - xs[older]) * factor,
+                        ys[older] + (ys[index] - ys[older]) * factor,
+                        zs[older] + (zs[index] - zs[older]) * factor);
+                return;
+            }
+
+            index = older;
+        }
+
+        store.set(xs[index], ys[index], zs[index]);
+    }
+
+    /**
+     * Corrected movement is replayed from corrected location, so recorded
+     * locations after match time move with it
+     */
+    private void shiftSince(float time, Vector3f shift) {
+        int index = newest;
+        for (int i = 0; i < count && times[index] >= time; ++i) {
+            xs[index] += shift.x;
+            ys[index] += shift.y;
+            zs[index] += shift.z;
+            index = (index - 1 + CAPACITY) % CAPACITY;
+        }
+    }
+}
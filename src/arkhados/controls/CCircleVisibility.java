@@ -49,4 +49,9 @@ public class CCircleVisibility extends AbstractControl implements CVisibility {
         vec.normalizeLocal().multLocal(radius);
         return vec.addLocal(spatial.getLocalTranslation());
     }
+
+    @Override
+    public float getRadius() {
+        return radius;
+    }
 }
\ No newline at end of file
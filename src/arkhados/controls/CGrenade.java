@@ -63,7 +63,8 @@ public class CGrenade extends AbstractControl implements PhysicsControl,
             }
 
             int entityId = spatial.getUserData(UserData.ENTITY_ID);
-            World world = Globals.app.getStateManager().getState(World.class);
+            World world = Globals.getApp().getStateManager()
+                    .getState(World.class);
             world.removeEntity(entityId, RemovalReasons.EXPIRED);
         }
     }
@@ -140,7 +141,7 @@ public class CGrenade extends AbstractControl implements PhysicsControl,
         }
 
         World world =
-                Globals.app.getStateManager().getState(World.class);
+                Globals.getApp().getStateManager().getState(World.class);
 
         RigidBodyControl body = spatial.getControl(RigidBodyControl.class);
 
@@ -208,7 +209,7 @@ public class CGrenade extends AbstractControl implements PhysicsControl,
 
     @Override
     public void setPhysicsSpace(final PhysicsSpace space) {
-        Globals.app.enqueue(() -> {
+        Globals.getApp().enqueue(() -> {
             if (CGrenade.this.space == null && space != null) {
                 space.addCollisionListener(CGrenade.this);
                 space.addTickListener(CGrenade.this);
@@ -15,22 +15,18 @@
 package arkhados.controls;
 
 import arkhados.Globals;
-import arkhados.spell.buffs.AbleToCastWhileMovingBuff;
 import arkhados.spell.buffs.AbsorbingShieldBuff;
 import arkhados.spell.buffs.AbstractBuff;
 import arkhados.spell.buffs.ArmorBuff;
 import arkhados.spell.buffs.BlindCC;
-import arkhados.spell.buffs.CrowdControlBuff;
+import arkhados.spell.buffs.BuffStats;
 import arkhados.spell.buffs.CastSpeedBuff;
-import arkhados.spell.buffs.DamageBuff;
-import arkhados.spell.buffs.LifeStealBuff;
 import arkhados.spell.buffs.PetrifyCC;
-import arkhados.spell.buffs.SlowCC;
-import arkhados.spell.buffs.SpeedBuff;
 import arkhados.spell.influences.Influence;
 import arkhados.spell.influences.SlowInfluence;
 import arkhados.spell.influences.SpeedInfluence;
-import arkhados.util.UserData;
+import arkhados.util.ComponentStore;
+import arkhados.util.EntityHandle;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
@@ -47,12 +43,22 @@ public class CInfluenceInterface extends AbstractControl {
     private final List<Influence> influences = new ArrayList<>();
     private final List<SlowInfluence> slowInfluences = new ArrayList<>();
     private final List<SpeedInfluence> speedInfluences = new ArrayList<>();
+    private final BuffStats stats = new BuffStats();
+    /**
+     * Cached from buffs whenever buffs change
+     */
+    private boolean preventsMoving = false;
+    private boolean preventsCasting = false;
+    private boolean castsWhileMoving = false;
     private boolean dead = false;
     private boolean canControlMovement = true;
     private boolean speedConstant = false;
     private boolean immuneToProjectiles = false;
     // HACK: Maybe this should be global?
     private boolean isServer = true;
+    private ComponentStore components;
+    private int entityId = -1;
+    private EntityHandle handle;
 
     public float mitigateDamage(float damage) {
         // TODO: Generic damage mitigation by shields, petrify etc.
@@ -74,31 +80,25 @@ public class CInfluenceInterface extends AbstractControl {
         }
 
         buffs.add(buff);
+        updateFlags();
 
         if (!buff.isFriendly()) {
             getSpatial().getControl(CResting.class).stopRegen();
         }
 
-        if (!(buff instanceof CrowdControlBuff)) {
-            return;
-        }
-
-        CrowdControlBuff cc = (CrowdControlBuff) buff;
-
-        if (cc.preventsMoving()) {
-            spatial.getControl(CCharacterMovement.class).stop();
+        if (buff.preventsMoving()) {
+            getHandle().getMovement().stop();
         }
 
-        if (cc.preventsCasting()) {
-            spatial.getControl(CSpellCast.class).setCasting(false);
-            spatial.getControl(CActionQueue.class).clear();
+        if (buff.preventsCasting()) {
+            getHandle().getSpellCast().setCasting(false);
+            getHandle().getActionQueue().clear();
         }
     }
 
     public void setHealth(float health) {
-        float healthBefore = spatial
-                .getUserData(UserData.HEALTH_CURRENT);
-        spatial.setUserData(UserData.HEALTH_CURRENT, health);
+        float healthBefore = getFloat(ComponentStore.HEALTH_CURRENT);
+        setFloat(ComponentStore.HEALTH_CURRENT, health);
         if (healthBefore > 0f && health == 0f && !dead) {
             death();
         } else if (health < healthBefore && !isServer && health > 0f) {
@@ -107,21 +107,21 @@ public class CInfluenceInterface extends AbstractControl {
         }
     }
 
-    public boolean canMove() {
-        for (AbstractBuff buff : buffs) {
-            if (buff instanceof CrowdControlBuff) {
-                if (((CrowdControlBuff) buff).preventsMoving()) {
-                    return false;
-                }
-            }
+    /**
+     * Removes buff without destroying it
+     */
+    public void removeBuff(AbstractBuff buff) {
+        if (buffs.remove(buff)) {
+            updateFlags();
         }
+    }
 
-        return true;
+    public boolean canMove() {
+        return !preventsMoving;
     }
 
     public boolean canControlMovement() {
-        CCharacterPhysics physics
-                = spatial.getControl(CCharacterPhysics.class);
+        CCharacterPhysics physics = getHandle().getPhysics();
         if (!physics.getDictatedDirection().equals(Vector3f.ZERO)) {
             return false;
         }
@@ -138,22 +138,14 @@ public class CInfluenceInterface extends AbstractControl {
             return false;
         }
 
-        for (AbstractBuff buff : buffs) {
-            if (buff instanceof CrowdControlBuff) {
-                if (((CrowdControlBuff) buff).preventsCasting()) {
-                    return false;
-                }
-            }
-        }
-
-        return true;
+        return !preventsCasting;
     }
 
     public void death() {
         dead = true;
-        spatial.getControl(CCharacterMovement.class).stop();
-        spatial.getControl(CCharacterAnimation.class).death();
-        spatial.getControl(CSpellCast.class).setEnabled(false);
+        getHandle().getMovement().stop();
+        getHandle().getAnimation().death();
+        getHandle().getSpellCast().setEnabled(false);
         if (!isServer) {
             spatial.getControl(CCharacterSound.class).death();
         }
@@ -161,121 +153,185 @@ public class CInfluenceInterface extends AbstractControl {
 
     @Override
     protected void controlUpdate(float tpf) {
-        if (!Globals.worldRunning) {
+        if (!Globals.isWorldRunning()) {
             return;
         }
 
-        /**
-         * First set entity's attributes to their defaults like damagefactor and
-         * movement speed.
-         */
-        spatial.setUserData(UserData.DAMAGE_FACTOR, 1f);
-        float lifeStealBase
-                = spatial.getUserData(UserData.LIFE_STEAL_BASE);
-        spatial.setUserData(UserData.LIFE_STEAL, lifeStealBase);
+        stats.reset(getFloat(ComponentStore.LIFE_STEAL_BASE));
         immuneToProjectiles = false;
 
-        CCharacterMovement cMovement
-                = spatial.getControl(CCharacterMovement.class);
-        /**
-         * Some buff or action might require entity's speed to remain constant
-         * until the end (for example, Venator's ChargeAction).
-         */
-        cMovement.setSpeedToBase();
-
-        applyBuffs(tpf);
-        applySlowsAndSpeedBuffs();
-        applyDamageBuffs();
-        applyLifeStealBuffs();
+        updateBuffs(tpf);
+        applyStats();
         applyInfluences(tpf);
 
         // Why is this here?
         if (isServer) {
-            cMovement.updateMovement(tpf);
+            getHandle().getMovement().updateMovement(tpf);
         }
     }
 
-    private void applyDamageBuffs() {
-        float damageFactor = 1f;
-        for (AbstractBuff buff : buffs) {
-            if (buff instanceof DamageBuff) {
-                damageFactor *= ((DamageBuff) buff).getFactor();
+    /**
+     * Updates buffs, removes ended ones and adds effects of the rest to stats
+     * in one pass.
+     */
+    private void updateBuffs(float tpf) {
+        // Use C-style for-loop in case that update / destroy adds a new buff.
+        // New buffs are not updated until next tick but they do apply.
+        int size = buffs.size();
+        boolean ended = false;
+        for (int i = 0; i < buffs.size(); ++i) {
+            AbstractBuff buff = buffs.get(i);
+            if (i < size) {
+                buff.update(tpf);
+                if (!buff.shouldContinue()) {
+                    buff.destroy();
+                }
+            }
+
+            if (buff.shouldContinue()) {
+                buff.applyStats(stats);
+            } else {
+                ended = true;
             }
         }
 
-        spatial.setUserData(UserData.DAMAGE_FACTOR, damageFactor);
-    }
+        if (!ended) {
+            return;
+        }
 
-    private void applyLifeStealBuffs() {
-        float lifeSteal = spatial.getUserData(UserData.LIFE_STEAL_BASE);
-        for (AbstractBuff buff : buffs) {
-            if (buff instanceof LifeStealBuff) {
-                LifeStealBuff lifeStealBuff = (LifeStealBuff) buff;
-                lifeSteal += lifeStealBuff.getAmount();
+        // Same reason for removing in a separate loop
+        int kept = 0;
+        for (int i = 0; i < buffs.size(); ++i) {
+            AbstractBuff buff = buffs.get(i);
+            if (buff.shouldContinue()) {
+                buffs.set(kept++, buff);
             }
         }
 
-        spatial.setUserData(UserData.LIFE_STEAL, lifeSteal);
-    }
+        while (buffs.size() > kept) {
+            buffs.remove(buffs.size() - 1);
+        }
 
-    private void applySlowsAndSpeedBuffs() {
-        if (!spatial.getControl(CCharacterMovement.class).isSpeedConstant()) {
-            float speedFactor = 1f;
-            float constantSpeedAddition = 0f;
+        updateFlags();
+    }
 
-            for (AbstractBuff buff : buffs) {
-                if (buff instanceof SlowCC) {
-                    speedFactor *= ((SlowCC) buff).getSlowFactor();
-                } else if (buff instanceof SpeedBuff) {
-                    SpeedBuff speedBuff = (SpeedBuff) buff;
-                    speedFactor *= speedBuff.getFactor();
-                    constantSpeedAddition += speedBuff.getConstant();
-                }
+    private void applyStats() {
+        /**
+         * Some buff or action might require entity's speed to remain constant
+         * until the end (for example, Venator's ChargeAction).
+         */
+        if (!getHandle().getMovement().isSpeedConstant()) {
+            for (int i = 0; i < slowInfluences.size(); ++i) {
+                stats.speedFactor *= slowInfluences.get(i).getSlowFactor();
             }
 
-            for (SlowInfluence slow : slowInfluences) {
-                speedFactor *= slow.getSlowFactor();
+            for (int i = 0; i < speedInfluences.size(); ++i) {
+                SpeedInfluence speed = speedInfluences.get(i);
+                stats.speedFactor *= speed.getSpeedFactor();
+                stats.speedConstant += speed.getConstant();
             }
 
-            slowInfluences.clear();
+            float msBase = getFloat(ComponentStore.SPEED_BASE);
+            setFloat(ComponentStore.SPEED,
+                    msBase * stats.speedFactor + stats.speedConstant);
+        }
 
-            for (SpeedInfluence speed : speedInfluences) {
-                speedFactor *= speed.getSpeedFactor();
-                constantSpeedAddition += speed.getConstant();
-            }
+        slowInfluences.clear();
+        speedInfluences.clear();
 
-            speedInfluences.clear();
+        setFloat(ComponentStore.DAMAGE_FACTOR, stats.damageFactor);
+        setFloat(ComponentStore.LIFE_STEAL, stats.lifeSteal);
+    }
 
-            float msCurrent = spatial.getUserData(UserData.SPEED);
+    /**
+     * World calls this when entity is added to it
+     */
+    public void setComponents(ComponentStore components, int entityId) {
+        this.components = components;
+        this.entityId = entityId;
+    }
 
-            spatial.setUserData(UserData.SPEED,
-                    msCurrent * speedFactor + constantSpeedAddition);
+    /**
+     * @return handle of this entity. It is looked up once because
+     * EntityFactory builds it after controls are added
+     */
+    public EntityHandle getHandle() {
+        if (handle == null) {
+            handle = EntityHandle.of(spatial);
         }
+
+        return handle;
     }
 
-    private void applyBuffs(float tpf) {
-        // Use C-style for-loop in case that update / destroy adds a new buff
-        int size = buffs.size();
-        for (int i = 0; i < size; ++i) {
-            AbstractBuff buff = buffs.get(i);
-            buff.update(tpf);
-            if (!buff.shouldContinue()) {
-                buff.destroy();
-            }
+    public int getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * Reads float column of this entity. Falls back to UserData when entity
+     * is not in world, for example when buff outlives its owner.
+     */
+    public float getFloat(int column) {
+        if (components != null && components.contains(entityId)) {
+            return components.getFloat(entityId, column);
         }
 
-        // Same reason for removing in a separate loop
-        for (Iterator<AbstractBuff> it = buffs.iterator(); it.hasNext();) {
-            AbstractBuff buff = it.next();
-            if (!buff.shouldContinue()) {
-                it.remove();
-            }
+        Float value = spatial.getUserData(ComponentStore.getFloatKey(column));
+        return value != null ? value : 0f;
+    }
+
+    /**
+     * Setting UserData allocates, so values are written only when they change
+     */
+    public void setFloat(int column, float value) {
+        if (components != null && components.contains(entityId)) {
+            components.setFloat(entityId, column, value);
+            return;
+        }
+
+        String key = ComponentStore.getFloatKey(column);
+        Float current = spatial.getUserData(key);
+        if (current == null || current != value) {
+            spatial.setUserData(key, value);
+        }
+    }
+
+    public int getInt(int column) {
+        if (components != null && components.contains(entityId)) {
+            return components.getInt(entityId, column);
+        }
+
+        Integer value = spatial.getUserData(ComponentStore.getIntKey(column));
+        return value != null ? value : -1;
+    }
+
+    public int getTeamId() {
+        return getInt(ComponentStore.TEAM_ID);
+    }
+
+    public int getPlayerId() {
+        return getInt(ComponentStore.PLAYER_ID);
+    }
+
+    public float getDamageFactor() {
+        return getFloat(ComponentStore.DAMAGE_FACTOR);
+    }
+
+    private void updateFlags() {
+        preventsMoving = false;
+        preventsCasting = false;
+        castsWhileMoving = false;
+        for (int i = 0; i < buffs.size(); ++i) {
+            AbstractBuff buff = buffs.get(i);
+            preventsMoving |= buff.preventsMoving();
+            preventsCasting |= buff.preventsCasting();
+            castsWhileMoving |= buff.allowsCastingWhileMoving();
         }
     }
 
     private void applyInfluences(float tpf) {
-        for (Influence influence : influences) {
-            influence.affect(this, tpf);
+        for (int i = 0; i < influences.size(); ++i) {
+            influences.get(i).affect(this, tpf);
         }
 
         influences.clear();
@@ -301,6 +357,8 @@ public class CInfluenceInterface extends AbstractControl {
                 it.remove();
             }
         }
+
+        updateFlags();
     }
 
     public void setSpeedConstant(boolean constantSpeed) {
@@ -319,20 +377,13 @@ public class CInfluenceInterface extends AbstractControl {
         this.immuneToProjectiles = immuneToProjectiles;
     }
 
+    /**
+     * Buffs must be added and removed with addBuff and removeBuff
+     */
     public List<AbstractBuff> getBuffs() {
         return buffs;
     }
 
-    private <T extends AbstractBuff> boolean hasBuff(Class<T> buffClass) {
-        for (AbstractBuff buff : buffs) {
-            if (buffClass.isAssignableFrom(buff.getClass())) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     public void addInfluence(Influence influence) {
         influences.add(influence);
 
@@ -353,7 +404,7 @@ public class CInfluenceInterface extends AbstractControl {
     }
 
     public boolean isAbleToCastWhileMoving() {
-        return hasBuff(AbleToCastWhileMovingBuff.class);
+        return castsWhileMoving;
     }
 
     public List<BlindCC> getBlinds() {
@@ -135,7 +135,7 @@ public class CMovementForcer extends AbstractControl implements
     }
 
     private void end() {
-        Globals.app.enqueue(() -> {
+        Globals.getApp().enqueue(() -> {
             PhysicsSpace physicsSpace = ghost.getPhysicsSpace();
             physicsSpace.removeCollisionListener(CMovementForcer.this);
             physicsSpace.remove(ghost);
@@ -21,7 +21,7 @@ import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.control.AbstractControl;
-import arkhados.World;
+import arkhados.MatchContext;
 import arkhados.actions.ASplash;
 import arkhados.messages.sync.statedata.ProjectileSyncData;
 import arkhados.messages.sync.statedata.StateData;
@@ -37,13 +37,23 @@ public class CProjectile extends AbstractControl implements CSync {
     private Vector3f direction = null;
     private RigidBodyControl rigidBodyControl;
     private float age = 0;
-    private static World world;
     private static final float timeToLive = 3.0f;
     private float range = 0f;
     private float speed = 0f;
     private CInfluenceInterface ownerInterface;
     private ASplash splashAction = null;
+    /**
+     * Distance between server's projectile and client's simulated projectile
+     * that causes correction in spawn only sync
+     */
+    private static final float CORRECTION_DISTANCE = 1.5f;
+    private boolean spawnOnlySync = false;
     private boolean needsSync = true;
+    private final Vector3f sentLocation = new Vector3f();
+    private final Vector3f sentVelocity = new Vector3f();
+    private float sentAge = 0f;
+    private final Vector3f tempLocation = new Vector3f();
+    private final Vector3f tempVelocity = new Vector3f();
     // This is if we want spatial to behave like projectile without certain properties
     private boolean isProjectile = true;
     private final Set<Spatial> hurtList = new HashSet<>();
@@ -61,6 +71,7 @@ public class CProjectile extends AbstractControl implements CSync {
         rigidBodyControl.setGravity(Vector3f.ZERO);
         range = rigidBodyControl.getPhysicsLocation().distance(target);
         range = FastMath.clamp(range, 0.001f, range);
+        needsSync = true;
     }
 
     /**
@@ -80,6 +91,7 @@ public class CProjectile extends AbstractControl implements CSync {
         rigidBodyControl.setLinearVelocity(direction);
         speed = direction.length();
         rigidBodyControl.setGravity(Vector3f.ZERO);
+        needsSync = true;
     }
 
     @Override
@@ -109,7 +121,8 @@ public class CProjectile extends AbstractControl implements CSync {
             }
 
             int entityId = spatial.getUserData(UserData.ENTITY_ID);
-            world.removeEntity(entityId, RemovalReasons.EXPIRED);
+            MatchContext.current().getWorld().removeEntity(entityId,
+                    RemovalReasons.EXPIRED);
             return;
         }
 
@@ -117,7 +130,8 @@ public class CProjectile extends AbstractControl implements CSync {
             if (splashAction != null) {
                 splashAction.update(tpf);
             }
-            world.removeEntity((int) spatial.getUserData(UserData.ENTITY_ID),
+            int entityId = spatial.getUserData(UserData.ENTITY_ID);
+            MatchContext.current().getWorld().removeEntity(entityId,
                     RemovalReasons.EXPIRED);
         }
     }
@@ -130,10 +144,6 @@ public class CProjectile extends AbstractControl implements CSync {
         return rigidBodyControl;
     }
 
-    public static void setWorld(World world) {
-        CProjectile.world = world;
-    }
-
     public void setRange(float range) {
         this.range = range;
     }
@@ -152,14 +162,66 @@ public class CProjectile extends AbstractControl implements CSync {
 
     @Override
     public StateData getSyncableData(StateData stateData) {
-        if (needsSync) {
-            needsSync = true;
+        if (!spawnOnlySync) {
             return new ProjectileSyncData(
                     (int) getSpatial().getUserData(UserData.ENTITY_ID),
                     rigidBodyControl);
         }
 
-        return null;
+        if (!needsSync && !hasDiverged()) {
+            return null;
+        }
+
+        needsSync = false;
+        rigidBodyControl.getPhysicsLocation(sentLocation);
+        rigidBodyControl.getLinearVelocity(sentVelocity);
+        sentAge = age;
+        return createSpawnState();
+    }
+
+    /**
+     * @return guaranteed state that lets client simulate rest of the flight.
+     * Sent also to players that start to see projectile mid flight
+     */
+    public ProjectileSyncData createSpawnState() {
+        ProjectileSyncData data = new ProjectileSyncData(
+                (int) getSpatial().getUserData(UserData.ENTITY_ID),
+                rigidBodyControl);
+        data.setGuaranteed(true);
+        return data;
+    }
+
+    /**
+     * Compares projectile to straight flight that clients simulate from
+     * previously sent state. Catches knockbacks and collisions that change
+     * velocity without setDirection or setTarget
+     */
+    private boolean hasDiverged() {
+        rigidBodyControl.getLinearVelocity(tempVelocity);
+        if (tempVelocity.distanceSquared(sentVelocity) > 0.01f) {
+            return true;
+        }
+
+        rigidBodyControl.getPhysicsLocation(tempLocation);
+        tempVelocity.set(sentVelocity).multLocal(age - sentAge)
+                .addLocal(sentLocation);
+        // Age and physics location can be couple of physics steps apart
+        float tolerance = CORRECTION_DISTANCE + speed / 30f;
+        return tempLocation.distanceSquared(tempVelocity)
+                > tolerance * tolerance;
+    }
+
+    public boolean isSpawnOnlySync() {
+        return spawnOnlySync;
+    }
+
+    /**
+     * Spells whose projectiles fly straight can opt in to send their state
+     * only when flight starts or changes. Clients simulate the flight and
+     * hit, expiry and other removals come as CmdRemoveEntity as before.
+     */
+    public void setSpawnOnlySync(boolean spawnOnlySync) {
+        this.spawnOnlySync = spawnOnlySync;
     }
 
     public ASplash getSplashAction() {
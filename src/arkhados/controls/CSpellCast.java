@@ -20,6 +20,7 @@ import com.jme3.renderer.ViewPort;
 import com.jme3.scene.control.AbstractControl;
 import java.util.HashMap;
 import java.util.Map;
+import arkhados.MatchContext;
 import arkhados.actions.ACastingSpell;
 import arkhados.actions.AChannelingSpell;
 import arkhados.actions.ATrance;
@@ -30,7 +31,7 @@ import arkhados.spell.Spell;
 import arkhados.spell.SpellCastListener;
 import arkhados.spell.SpellCastValidator;
 import arkhados.spell.buffs.CastSpeedBuff;
-import arkhados.util.UserData;
+import arkhados.util.EntityHandle;
 import com.jme3.scene.Node;
 import com.jme3.util.IntMap;
 import java.util.ArrayList;
@@ -42,6 +43,10 @@ public class CSpellCast extends AbstractControl {
 
     private static IntMap<Float> clientCooldowns;
     private final IntMap<Spell> spells = new IntMap<>();
+    /**
+     * World times when spells are ready again. Cooldowns are not counted
+     * down every tick.
+     */
     private IntMap<Float> cooldowns = new IntMap<>();
     private final IntMap<Spell> keySpellMappings = new IntMap<>();
     private final Map<String, Integer> secondaryInputMapping = new HashMap<>(2);
@@ -50,6 +55,7 @@ public class CSpellCast extends AbstractControl {
     private final List<SpellCastValidator> castValidators = new ArrayList<>();
     private final List<SpellCastListener> castListeners = new ArrayList<>();
     private float castSpeedFactor = 1f;
+    private EntityHandle handle;
 
     public void thisIsOwnedByClient() {
         clientCooldowns = cooldowns;
@@ -95,7 +101,7 @@ public class CSpellCast extends AbstractControl {
     // FIXME: safeInterrupt isn't safe anymore
     public void safeInterrupt() {
         EntityAction action
-                = spatial.getControl(CActionQueue.class).getCurrent();
+                = handle().getActionQueue().getCurrent();
 
         if (action == null) {
             return;
@@ -104,14 +110,14 @@ public class CSpellCast extends AbstractControl {
         if (action instanceof ACastingSpell) {
             casting = false;
             Spell spell = ((ACastingSpell) action).getSpell();
-            spatial.getControl(CActionQueue.class).clear();
+            handle().getActionQueue().clear();
             setCooldown(spell.getId(), 0f);
         } else if (action instanceof AChannelingSpell) {
             AChannelingSpell channeling = (AChannelingSpell) action;
             putOnCooldown(channeling.getSpell());
-            spatial.getControl(CActionQueue.class).clear();
+            handle().getActionQueue().clear();
         } else if (action instanceof ATrance) { // TODO: Refactor
-            spatial.getControl(CActionQueue.class).clear();
+            handle().getActionQueue().clear();
         }
     }
 
@@ -127,7 +133,7 @@ public class CSpellCast extends AbstractControl {
         }
 
         EntityAction action
-                = spatial.getControl(CActionQueue.class).getCurrent();
+                = handle().getActionQueue().getCurrent();
         if (action != null && ((action instanceof ACastingSpell)
                 || (action instanceof AChannelingSpell))) {
 
@@ -144,7 +150,7 @@ public class CSpellCast extends AbstractControl {
                 return;
             }
 
-            spatial.getControl(CActionQueue.class).clear();
+            handle().getActionQueue().clear();
             if (action instanceof ACastingSpell) {
                 setCooldown(currentSpellId, 0f);
             }
@@ -157,14 +163,12 @@ public class CSpellCast extends AbstractControl {
     }
 
     private boolean basicValidation(final Spell spell) {
-        if (spell == null || cooldowns.get(spell.getId()) > 0f) {
+        if (spell == null || getCooldown(spell.getId()) > 0f) {
             return false;
         }
 
-        if (getSpatial().getControl(CEntityVariable.class)
-                .getSender().isServer()) {
-            if (!spatial.getControl(CInfluenceInterface.class)
-                    .canCast()) {
+        if (handle().getVariable().getSender().isServer()) {
+            if (!handle().getInfluence().canCast()) {
                 return false;
             }
         }
@@ -172,8 +176,8 @@ public class CSpellCast extends AbstractControl {
     }
 
     private float calculateCastSpeedFactor() {
-        List<CastSpeedBuff> buffs = spatial
-                .getControl(CInfluenceInterface.class).getCastSpeedBuffs();
+        List<CastSpeedBuff> buffs
+                = handle().getInfluence().getCastSpeedBuffs();
         float newFactor = 1f;
         for (CastSpeedBuff buff : buffs) {
             newFactor *= buff.getFactor();
@@ -197,28 +201,23 @@ public class CSpellCast extends AbstractControl {
     public void cast(int input, Vector3f targetLocation) {
         Spell spell = keySpellMappings.get(input);
 
-        PlayerEntityAwareness awareness = getSpatial()
-                .getControl(CEntityVariable.class).getAwareness();
+        EntityHandle handle = handle();
+        PlayerEntityAwareness awareness = handle.getVariable().getAwareness();
         if (awareness != null) {
 
-            CCharacterPhysics physics
-                    = spatial.getControl(CCharacterPhysics.class);
+            CCharacterPhysics physics = handle.getPhysics();
             physics.setViewDirection(physics.calculateTargetDirection());
-            spatial.getControl(CCharacterAnimation.class)
-                    .castSpell(spell, castSpeedFactor);
-            spatial.getControl(CActionQueue.class)
-                    .enqueueAction(new ACastingSpell(spell,
-                                    spell.isMultipart()));
+            handle.getAnimation().castSpell(spell, castSpeedFactor);
+            handle.getActionQueue().enqueueAction(new ACastingSpell(spell,
+                    spell.isMultipart()));
 
             EntityAction castingAction
                     = spell.buildCastAction((Node) spatial, targetLocation);
-            spatial.getControl(CActionQueue.class)
-                    .enqueueAction(castingAction);
+            handle.getActionQueue().enqueueAction(castingAction);
             Vector3f direction = targetLocation
                     .subtract(spatial.getLocalTranslation());
             awareness.getFog().addCommand(spatial,
-                    new CmdStartCastingSpell(
-                            (int) spatial.getUserData(UserData.ENTITY_ID),
+                    new CmdStartCastingSpell(handle.getEntityId(),
                             spell.getId(), direction, castSpeedFactor));
             getSpatial().getControl(CResting.class).stopRegen();
         }
@@ -243,12 +242,11 @@ public class CSpellCast extends AbstractControl {
     }
 
     public void setCooldown(int spellId, float cooldown) {
-        cooldowns.put(spellId, cooldown);
-        PlayerEntityAwareness awareness = getSpatial()
-                .getControl(CEntityVariable.class).getAwareness();
+        cooldowns.put(spellId, worldTime() + cooldown);
+        PlayerEntityAwareness awareness = handle().getVariable().getAwareness();
 
         if (awareness != null) {
-            int entityId = spatial.getUserData(UserData.ENTITY_ID);
+            int entityId = handle().getEntityId();
             // TODO: Consider NOT sending this message to all players
             awareness.getFog().addCommand(spatial,
                     new CmdSetCooldown(entityId, spellId, cooldown, true));
@@ -256,13 +254,12 @@ public class CSpellCast extends AbstractControl {
     }
 
     public void putOnCooldown(Spell spell) {
-        cooldowns.put(spell.getId(), spell.getCooldown());
+        cooldowns.put(spell.getId(), worldTime() + spell.getCooldown());
 
-        PlayerEntityAwareness awareness = getSpatial()
-                .getControl(CEntityVariable.class).getAwareness();
+        PlayerEntityAwareness awareness = handle().getVariable().getAwareness();
 
         if (awareness != null) {
-            int entityId = spatial.getUserData(UserData.ENTITY_ID);
+            int entityId = handle().getEntityId();
             awareness.getFog().addCommand(spatial,
                     new CmdSetCooldown(entityId, spell.getId(),
                             spell.getCooldown(), true));
@@ -270,13 +267,11 @@ public class CSpellCast extends AbstractControl {
     }
 
     public boolean isOnCooldown(String spellName) {
-        float cooldown = cooldowns.get(Spell.getSpell(spellName).getId());
-        return cooldown > 0f;
+        return getCooldown(Spell.getSpell(spellName).getId()) > 0f;
     }
 
     public Vector3f getClosestPointToTarget(Spell spell) {
-        Vector3f targetLocation = spatial
-                .getControl(CCharacterPhysics.class).getTargetLocation();
+        Vector3f targetLocation = handle().getPhysics().getTargetLocation();
 
         float distance = targetLocation.distance(spatial.getLocalTranslation());
         float interpolationFactor = spell.getRange() / distance;
@@ -290,12 +285,20 @@ public class CSpellCast extends AbstractControl {
         return target;
     }
 
-    @Override
-    protected void controlUpdate(float tpf) {
-        for (IntMap.Entry<Float> entry : cooldowns) {
-            cooldowns.put(entry.getKey(), entry.getValue() - tpf);
+    private EntityHandle handle() {
+        if (handle == null) {
+            handle = EntityHandle.of(spatial);
         }
 
+        return handle;
+    }
+
+    private static float worldTime() {
+        return MatchContext.current().getWorld().getWorldTime();
+    }
+
+    @Override
+    protected void controlUpdate(float tpf) {
         castSpeedFactor = calculateCastSpeedFactor();
     }
 
@@ -304,11 +307,10 @@ public class CSpellCast extends AbstractControl {
     }
 
     public void globalCooldown() {
+        float ready = worldTime() + GLOBAL_COOLDOWN;
         for (IntMap.Entry<Float> entry : cooldowns) {
-            int spell = entry.getKey();
-
-            if (cooldowns.get(spell) < GLOBAL_COOLDOWN) {
-                cooldowns.put(spell, GLOBAL_COOLDOWN);
+            if (entry.getValue() < ready) {
+                cooldowns.put(entry.getKey(), ready);
             }
         }
     }
@@ -325,8 +327,11 @@ public class CSpellCast extends AbstractControl {
         return keySpellMappings.get(key);
     }
 
+    /**
+     * @return seconds until spell is ready. Negative if it is ready
+     */
     public float getCooldown(int spellId) {
-        return cooldowns.get(spellId);
+        return cooldowns.get(spellId) - worldTime();
     }
 
     public boolean isCasting() {
@@ -335,7 +340,7 @@ public class CSpellCast extends AbstractControl {
 
     public boolean isChanneling() {
         EntityAction action
-                = spatial.getControl(CActionQueue.class).getCurrent();
+                = handle().getActionQueue().getCurrent();
         return action instanceof AChannelingSpell;
     }
 
@@ -343,6 +348,9 @@ public class CSpellCast extends AbstractControl {
         this.casting = casting;
     }
 
+    /**
+     * @return world times when spells are ready
+     */
     public IntMap<Float> getCooldowns() {
         return cooldowns;
     }
@@ -14,68 +14,187 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados.controls;
 
-import com.jme3.math.FastMath;
+import arkhados.ClientSettings;
 import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
 import com.jme3.scene.control.AbstractControl;
 
+/**
+ * Shows synced entity slightly in the past so that there is usually a
+ * snapshot on both sides of shown time. Snapshots are kept in a ring of
+ * preallocated states. If snapshots stop coming, entity is moved with its
+ * latest velocity for a while. Difference between shown position and
+ * position that new snapshot gives is smoothed away instead of jumping.
+ */
 public class CSyncInterpolation extends AbstractControl {
 
-    private final Vector3f oldLocation = new Vector3f();
-    private final Vector3f targetLocation = new Vector3f();
-    
-    private final Quaternion oldRotation = new Quaternion();
-    private final Quaternion targetRotation = new Quaternion();
-//    private Vector3f velocity;
-    private float timeBetween = 0f;
-    private float timeSinceLast = 0f;
-    private float timeInterpolated = 0f;
+    private static final int CAPACITY = 16;
+    /**
+     * Render delay is at least this many average snapshot intervals
+     */
+    private static final float INTERVALS_OF_DELAY = 1.5f;
+    private static final float MAX_EXTRAPOLATION = 0.25f;
+    private static final float CORRECTION_TIME = 0.1f;
+    private final Snapshot[] ring = new Snapshot[CAPACITY];
+    private final Vector3f correction = new Vector3f();
+    private final Vector3f sampledLocation = new Vector3f();
+    private final Quaternion sampledRotation = new Quaternion();
+    private final float renderDelay;
+    private int newest = -1;
+    private int count = 0;
+    private float clock = 0f;
+    private float renderTime = 0f;
+    private float averageInterval = 0f;
     private boolean ignoreNext = false;
 
+    public CSyncInterpolation() {
+        for (int i = 0; i < CAPACITY; ++i) {
+            ring[i] = new Snapshot();
+        }
+
+        renderDelay = ClientSettings.getRenderDelay();
+    }
+
     @Override
     protected void controlUpdate(float tpf) {
-        timeSinceLast += tpf;
-        timeInterpolated += tpf;
-        if (timeBetween == 0f) {
+        clock += tpf;
+        if (count == 0) {
             return;
         }
-        float factor = FastMath.clamp(timeInterpolated / timeBetween,
-                0f, 1f);
-        Vector3f trans = spatial.getLocalTranslation()
-                .interpolateLocal(oldLocation, targetLocation, factor);
-        spatial.setLocalTranslation(trans);
-        
-        Quaternion rot = spatial.getLocalRotation()
-                .slerp(oldRotation, targetRotation, factor);
-        spatial.setLocalRotation(rot);
+
+        renderTime = clock - Math.max(renderDelay,
+                averageInterval * INTERVALS_OF_DELAY);
+        sample(renderTime, sampledLocation, sampledRotation);
+
+        correction.multLocal(Math.max(0f, 1f - tpf / CORRECTION_TIME));
+        spatial.setLocalTranslation(sampledLocation.addLocal(correction));
+        spatial.setLocalRotation(sampledRotation);
     }
 
     @Override
     protected void controlRender(RenderManager rm, ViewPort vp) {
     }
 
+    /**
+     * Adds snapshot of entity that has no known velocity. Velocity for
+     * extrapolation is estimated from previous snapshot.
+     */
     public void interpolate(Vector3f newLocation, Quaternion newRotation) {
-        if (ignoreNext) {
-            oldLocation.set(newLocation);
-            oldRotation.set(newRotation);
+        Snapshot snapshot = push(newLocation);
+        snapshot.rotation.set(newRotation);
+        if (count > 1) {
+            Snapshot previous = ring[(newest - 1 + CAPACITY) % CAPACITY];
+            snapshot.velocity.set(newLocation).subtractLocal(previous.location)
+                    .divideLocal(snapshot.time - previous.time);
         } else {
-            oldLocation.set(spatial.getLocalTranslation());
-            oldRotation.set(spatial.getLocalRotation());
+            snapshot.velocity.zero();
         }
- 
-        targetLocation.set(newLocation);
-        targetRotation.set(newRotation);
 
-        timeBetween = timeSinceLast;
-        timeSinceLast = 0f;
-        timeInterpolated = 0f;
+        settle();
+    }
 
-        ignoreNext = false;
+    /**
+     * Adds snapshot of character
+     *
+     * @param velocity used for extrapolation
+     */
+    public void interpolate(Vector3f newLocation, Vector3f viewDirection,
+            Vector3f velocity) {
+        Snapshot snapshot = push(newLocation);
+        snapshot.rotation.lookAt(viewDirection, Vector3f.UNIT_Y);
+        snapshot.velocity.set(velocity);
+        settle();
     }
 
     public void ignoreNext() {
         ignoreNext = true;
     }
+
+    private Snapshot push(Vector3f location) {
+        if (ignoreNext) {
+            count = 0;
+            averageInterval = 0f;
+        }
+
+        if (count > 0) {
+            Snapshot last = ring[newest];
+            float interval = clock - last.time;
+            if (interval <= 0f) {
+                // Many snapshots in one frame. Only latest matters
+                last.location.set(location);
+                return last;
+            }
+
+            averageInterval = averageInterval == 0f ? interval
+                    : averageInterval + (interval - averageInterval) * 0.1f;
+        }
+
+        newest = (newest + 1) % CAPACITY;
+        count = Math.min(count + 1, CAPACITY);
+
+        Snapshot snapshot = ring[newest];
+        snapshot.time = clock;
+        snapshot.location.set(location);
+        return snapshot;
+    }
+
+    /**
+     * Turns change of sampled position into correction that decays over
+     * time. First snapshot and snapshot after ignoreNext are shown as is.
+     */
+    private void settle() {
+        if (count == 1) {
+            renderTime = clock;
+            correction.zero();
+            spatial.setLocalTranslation(ring[newest].location);
+            spatial.setLocalRotation(ring[newest].rotation);
+        } else {
+            sample(renderTime, sampledLocation, sampledRotation);
+            correction.set(spatial.getLocalTranslation())
+                    .subtractLocal(sampledLocation);
+        }
+
+        ignoreNext = false;
+    }
+
+    private void sample(float time, Vector3f location, Quaternion rotation) {
+        Snapshot last = ring[newest];
+        if (time >= last.time) {
+            float extrapolation = Math.min(time - last.time,
+                    MAX_EXTRAPOLATION);
+            location.set(last.velocity).multLocal(extrapolation)
+                    .addLocal(last.location);
+            rotation.set(last.rotation);
+            return;
+        }
+
+        Snapshot newer = last;
+        for (int i = 1; i < count; ++i) {
+            Snapshot older = ring[(newest - i + CAPACITY) % CAPACITY];
+            if (older.time <= time) {
+                float factor = (time - older.time)
+                        / (newer.time - older.time);
+                location.interpolateLocal(older.location, newer.location,
+                        factor);
+                rotation.slerp(older.rotation, newer.rotation, factor);
+                return;
+            }
+
+            newer = older;
+        }
+
+        // Shown time is older than all snapshots
+        location.set(newer.location);
+        rotation.set(newer.rotation);
+    }
+
+    private static class Snapshot {
+
+        float time;
+        final Vector3f location = new Vector3f();
+        final Quaternion rotation = new Quaternion();
+        final Vector3f velocity = new Vector3f();
+    }
 }
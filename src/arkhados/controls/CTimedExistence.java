@@ -17,22 +17,28 @@ package arkhados.controls;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
 import com.jme3.scene.control.AbstractControl;
+import arkhados.MatchContext;
 import arkhados.World;
 import arkhados.util.RemovalReasons;
+import arkhados.util.TimerWheel;
 import arkhados.util.UserData;
 import com.jme3.bullet.PhysicsSpace;
+import com.jme3.scene.Spatial;
 
+/**
+ * Removes spatial when time runs out. Time starts at first update and is
+ * waited with World's timers, so control is disabled after that.
+ */
 public class CTimedExistence extends AbstractControl {
 
-    private static World world;
-    private float timeOut;
-    private float age = 0.0f;
-    private boolean removeEntity;
+    private final float timeOut;
+    private final boolean removeEntity;
     private PhysicsSpace space = null;
+    private TimerWheel timers;
+    private TimerWheel.Task task;
 
     public CTimedExistence(float timeOut) {
-        this.timeOut = timeOut;
-        removeEntity = false;
+        this(timeOut, false);
     }
 
     public CTimedExistence(float timeOut, boolean removeEntity) {
@@ -40,22 +46,41 @@ public class CTimedExistence extends AbstractControl {
         this.removeEntity = removeEntity;
     }
 
+    @Override
+    public void setSpatial(Spatial spatial) {
+        if (spatial == null && timers != null) {
+            timers.cancel(task);
+        }
+
+        super.setSpatial(spatial);
+    }
+
     @Override
     protected void controlUpdate(float tpf) {
-        age += tpf;
-        if (age >= timeOut) {
-            if (removeEntity) {
-                if (world.isServer()) {
-                    world.removeEntity((Integer) getSpatial()
-                            .getUserData(UserData.ENTITY_ID),
-                            RemovalReasons.EXPIRED);
-                }
-            } else {
-                if (space != null) {
-                    space.removeAll(spatial);
-                }
-                spatial.removeFromParent();
+        if (timers == null) {
+            timers = MatchContext.current().getWorld().getTimers();
+            task = timers.schedule(timeOut, this::expire);
+        }
+
+        setEnabled(false);
+    }
+
+    private void expire() {
+        if (removeEntity) {
+            World world = MatchContext.current().getWorld();
+            if (!world.isServer()) {
+                return;
+            }
+
+            int id = spatial.getUserData(UserData.ENTITY_ID);
+            if (world.getEntity(id) == spatial) {
+                world.removeEntity(id, RemovalReasons.EXPIRED);
             }
+        } else {
+            if (space != null) {
+                space.removeAll(spatial);
+            }
+            spatial.removeFromParent();
         }
     }
 
@@ -63,10 +88,6 @@ public class CTimedExistence extends AbstractControl {
     protected void controlRender(RenderManager rm, ViewPort vp) {
     }
 
-    public static void setWorld(World world) {
-        CTimedExistence.world = world;
-    }
-
     public void setSpace(PhysicsSpace space) {
         if (this.space != null) {
             this.space.removeAll(spatial);
@@ -59,7 +59,7 @@ public class CUserInput extends AbstractControl {
                 || !influenceInterface.canMove()
                 || physics.isMotionControlled()
                 || influenceInterface.isDead()
-                || !Globals.worldRunning) {
+                || !Globals.isWorldRunning()) {
             return;
         }
 
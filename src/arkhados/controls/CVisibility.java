@@ -21,4 +21,10 @@ import com.jme3.scene.control.Control;
 
 public interface CVisibility extends Control {
     public Vector3f giveClosestPoint(Vector3f lookerLocation);
+
+    /**
+     * @return radius of circle around spatial that is visible if any part of
+     * it is visible
+     */
+    public float getRadius();
 }
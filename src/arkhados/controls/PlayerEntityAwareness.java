@@ -32,55 +32,155 @@
 package arkhados.controls;
 
 import arkhados.ServerFog;
+import arkhados.VisibilityEngine;
+import arkhados.VisibilityEngine.Target;
 import arkhados.util.UserData;
-import com.jme3.bullet.control.RigidBodyControl;
-import com.jme3.collision.CollisionResults;
+import arkhados.util.WallOcclusion;
 import com.jme3.math.FastMath;
-import com.jme3.math.Ray;
 import com.jme3.math.Vector3f;
-import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * What one player knows about entities. Tracked entities are kept in arrays
+ * indexed by entity index (see index) and their visibility in bitsets, so
+ * ServerFog can route commands with bitwise operations.
+ *
+ * Visibility has hysteresis so that entities at the edge of range or
+ * behind a wall corner do not flap. Visible entity is hidden only after it
+ * has been out of leave range or occluded for LEAVE_DWELL seconds. Hidden
+ * entity is shown as soon as it is inside enter range and not occluded.
+ */
 public class PlayerEntityAwareness {
 
-    private static final float BLIND_RANGE_SQUARED = FastMath.sqr(20f);
+    private static final float BLIND_RANGE = 20f;
+    private static final float RANGE = 170f;
+    /**
+     * Visible entity stays visible until it is this much further than the
+     * range where it became visible
+     */
+    private static final float LEAVE_MARGIN = 10f;
+    private static final float LEAVE_DWELL = 0.4f;
+    /**
+     * Visibility is tested again only if player or entity has moved more than
+     * this since last test
+     */
+    private static final float MOVE_THRESHOLD_SQUARED = FastMath.sqr(0.5f);
     private static final Logger logger
             = Logger.getLogger(PlayerEntityAwareness.class.getName());
     private Spatial ownSpatial;
-    private Map<Spatial, Boolean> entityFlags = new HashMap<>(6);
+    private int ownIndex = -1;
+    private Tracked[] tracked = new Tracked[64];
+    private long[] trackedBits = new long[1];
+    /**
+     * Entities that are tracked but not visible. Entities that are not
+     * tracked at all are considered to be known
+     */
+    private long[] hiddenBits = new long[1];
+    private int trackedCount = 0;
     private final int playerId;
-    private Node walls;
-    private Ray ray = new Ray();
-    private float rangeSquared = FastMath.sqr(170f);
-    private Vector3f _reUsableVec = new Vector3f();
+    private final VisibilityEngine engine;
+    private final float enterRangeSquared = FastMath.sqr(RANGE);
+    private final float leaveRangeSquared = FastMath.sqr(RANGE + LEAVE_MARGIN);
+    private final float enterBlindSquared = FastMath.sqr(BLIND_RANGE);
+    private final float leaveBlindSquared
+            = FastMath.sqr(BLIND_RANGE + LEAVE_MARGIN / 4f);
     private ServerFog fog;
+    private float viewerX;
+    private float viewerY;
+    private float viewerZ;
+    private boolean viewerBlind;
+    private float time;
 
-    public PlayerEntityAwareness(int playerId, Node walls, ServerFog fog) {
+    public PlayerEntityAwareness(int playerId, VisibilityEngine engine,
+            ServerFog fog) {
         this.playerId = playerId;
-        this.walls = walls;
+        this.engine = engine;
         this.fog = fog;
     }
 
-    public void update(float tpf) {
+    /**
+     * Copies state of player and tracked entities for evaluate. Main thread
+     * only.
+     *
+     * @param time world time
+     * @return false if there is nothing to evaluate
+     */
+    public boolean prepare(float time) {
+        this.time = time;
         if (ownSpatial == null) {
-            return;
+            return false;
+        }
+
+        readViewer();
+        for (int i = nextTracked(0); i >= 0; i = nextTracked(i + 1)) {
+            tracked[i].target = engine.target(tracked[i].spatial);
         }
-        for (Map.Entry<Spatial, Boolean> entry : entityFlags.entrySet()) {
-            Spatial character = entry.getKey();
 
-            boolean previousFlag = entry.getValue();
-            boolean newFlag;
+        return true;
+    }
 
-            newFlag = testVisibility(character);
+    /**
+     * Computes new visibility of tracked entities. Touches only state of this
+     * awareness so awarenesses can be evaluated in parallel.
+     */
+    public void evaluate(WallOcclusion occlusion) {
+        for (int i = nextTracked(0); i >= 0; i = nextTracked(i + 1)) {
+            Tracked tracked = this.tracked[i];
+            Target target = tracked.target;
+            if (target.invisible || target.spatial == ownSpatial) {
+                tracked.next = !target.invisible;
+                tracked.tested = false;
+                continue;
+            }
 
-            entry.setValue(newFlag);
+            if (!tracked.tested || hasMoved(tracked)) {
+                test(tracked, target, occlusion);
+            }
 
-            if (newFlag != previousFlag) {
-                fog.visibilityChanged(this, character, newFlag);
+            if (tracked.seen) {
+                tracked.seenAt = time;
+                tracked.next = true;
+            } else {
+                tracked.next = tracked.visible
+                        && time - tracked.seenAt < LEAVE_DWELL;
+            }
+        }
+    }
+
+    /**
+     * Result stays valid when visibility changes: entity that was seen with
+     * enter thresholds is seen with leave thresholds too, and entity that
+     * was not seen with leave thresholds is not seen with enter thresholds
+     */
+    private void test(Tracked tracked, Target target,
+            WallOcclusion occlusion) {
+        tracked.seen = computeVisibility(target, occlusion, tracked.visible);
+        tracked.tested = true;
+        tracked.viewerX = viewerX;
+        tracked.viewerY = viewerY;
+        tracked.viewerZ = viewerZ;
+        tracked.viewerBlind = viewerBlind;
+        tracked.targetX = target.x;
+        tracked.targetY = target.y;
+        tracked.targetZ = target.z;
+    }
+
+    /**
+     * Stores results of evaluate and informs ServerFog about changes. Main
+     * thread only.
+     */
+    public void applyChanges() {
+        for (int i = nextTracked(0); i >= 0; i = nextTracked(i + 1)) {
+            Tracked tracked = this.tracked[i];
+            tracked.target = null;
+            if (tracked.next != tracked.visible) {
+                fog.beforeVisibilityChange(i);
+                tracked.visible = tracked.next;
+                hiddenBits = setBit(hiddenBits, i, !tracked.visible);
+                fog.visibilityChanged(this, tracked.spatial, tracked.visible);
             }
         }
     }
@@ -102,88 +202,225 @@ public class PlayerEntityAwareness {
             return true;
         }
 
-        Vector3f otherLocation;
+        readViewer();
+        Target target = new Target(other);
+        target.read();
+        return computeVisibility(target, engine.getOcclusion(), false);
+    }
 
-        RigidBodyControl rigidBody = other.getControl(RigidBodyControl.class);
-        otherLocation = rigidBody != null
-                ? rigidBody.getPhysicsLocation()
-                : other.getLocalTranslation();
+    private void readViewer() {
+        Vector3f location = ownSpatial.getLocalTranslation();
+        viewerX = location.x;
+        viewerY = location.y;
+        viewerZ = location.z;
 
-        CVisibility cVisibility = other.getControl(CVisibility.class);
-        Vector3f ownLocation = getOwnSpatial().getLocalTranslation();
-        Vector3f closestPoint;
+        CInfluenceInterface influenceInterface
+                = ownSpatial.getControl(CInfluenceInterface.class);
+        viewerBlind = influenceInterface != null
+                && influenceInterface.isBlind();
+    }
 
-        closestPoint = cVisibility == null
-                ? otherLocation
-                : cVisibility.giveClosestPoint(ownLocation);
+    private boolean hasMoved(Tracked tracked) {
+        if (tracked.viewerBlind != viewerBlind) {
+            return true;
+        }
 
-        float distanceSquared = closestPoint.distanceSquared(ownLocation);
+        Target target = tracked.target;
+        return distanceSquared(tracked.viewerX, tracked.viewerY,
+                tracked.viewerZ, viewerX, viewerY, viewerZ)
+                > MOVE_THRESHOLD_SQUARED
+                || distanceSquared(tracked.targetX, tracked.targetY,
+                        tracked.targetZ, target.x, target.y, target.z)
+                > MOVE_THRESHOLD_SQUARED;
+    }
+
+    /**
+     * @param visible true to use leave thresholds instead of enter ones
+     */
+    private boolean computeVisibility(Target target,
+            WallOcclusion occlusion, boolean visible) {
+        float closestX = target.x;
+        float closestY = target.y;
+        float closestZ = target.z;
 
-        if (distanceSquared > rangeSquared) {
+        if (target.radius > 0f) {
+            float toViewerSquared = distanceSquared(target.x, target.y,
+                    target.z, viewerX, viewerY, viewerZ);
+            if (toViewerSquared <= target.radius * target.radius) {
+                // Player is inside visible area
+                return true;
+            }
+
+            float scale = target.radius / FastMath.sqrt(toViewerSquared);
+            closestX += (viewerX - target.x) * scale;
+            closestY += (viewerY - target.y) * scale;
+            closestZ += (viewerZ - target.z) * scale;
+        }
+
+        float distanceSquared = distanceSquared(closestX, closestY, closestZ,
+                viewerX, viewerY, viewerZ);
+
+        if (distanceSquared > (visible ? leaveRangeSquared
+                : enterRangeSquared)) {
             return false;
         }
 
-        CInfluenceInterface influenceInterface
-                = getOwnSpatial().getControl(CInfluenceInterface.class);
-        if (influenceInterface != null
-                && influenceInterface.isBlind()
-                && distanceSquared > BLIND_RANGE_SQUARED) {
+        if (viewerBlind && distanceSquared > (visible ? leaveBlindSquared
+                : enterBlindSquared)) {
             return false;
         }
 
-        return wallTest(closestPoint, FastMath.sqrt(distanceSquared));
+        return !occlusion.isBlocked(viewerX, viewerZ, closestX, closestZ);
     }
 
-    private boolean wallTest(Vector3f location, float distance) {
-        Vector3f direction = _reUsableVec;
-        direction.set(location);
-        direction.subtractLocal(getOwnSpatial().getLocalTranslation())
-                .normalizeLocal();
+    private static float distanceSquared(float x1, float y1, float z1,
+            float x2, float y2, float z2) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float dz = z2 - z1;
+        return dx * dx + dy * dy + dz * dz;
+    }
 
-        CollisionResults collisionResults = new CollisionResults();
+    public ServerFog getFog() {
+        return fog;
+    }
 
-        ray.setOrigin(getOwnSpatial().getLocalTranslation());
-        ray.setDirection(direction);
-        ray.setLimit(distance);
-        walls.collideWith(ray, collisionResults);
+    public boolean isAwareOf(Spatial other) {
+        return isAwareOf(index(other));
+    }
 
-        if (collisionResults.size() == 0
-                || collisionResults.getClosestCollision()
-                .getDistance() > distance) {
+    /**
+     * @param index entity index. See index
+     */
+    public boolean isAwareOf(int index) {
+        if (index == ownIndex && seesSelf()) {
             return true;
         }
 
-        return false;
+        // Untracked entities are known. Entities that are not tracked are
+        // ones that existed before this awareness
+        return !getBit(hiddenBits, index);
     }
 
-    public ServerFog getFog() {
-        return fog;
+    private boolean seesSelf() {
+        return !((boolean) ownSpatial.getUserData(UserData.INVISIBLE_TO_ALL));
     }
 
-    public boolean isAwareOf(Spatial other) {
-        if (other == getOwnSpatial() && !((boolean) other
-                .getUserData(UserData.INVISIBLE_TO_ALL))) {
-            return true;
-        }
-        if (!entityFlags.containsKey(other)) {
-            return true; // This needs explanation. It seems counter-intuitive
+    /**
+     * @return bits of given entities in word that this is aware of
+     */
+    public long awareBits(int word, long entities) {
+        long aware = word < hiddenBits.length
+                ? entities & ~hiddenBits[word] : entities;
+        if (ownIndex >> 6 == word && (entities & 1L << ownIndex) != 0
+                && seesSelf()) {
+            aware |= 1L << ownIndex;
         }
 
-        return entityFlags.get(other);
+        return aware;
     }
 
     public boolean addEntity(Spatial character) {
+        if (character == null) {
+            return false;
+        }
+
+        int index = index(character);
+        fog.beforeVisibilityChange(index);
+
         boolean sees = testVisibility(character);
-        entityFlags.put(character, sees);
+        if (index >= tracked.length) {
+            tracked = Arrays.copyOf(tracked,
+                    Math.max(tracked.length * 2, index + 1));
+        }
+
+        if (!getBit(trackedBits, index)) {
+            ++trackedCount;
+        }
+
+        Tracked entry = new Tracked();
+        entry.spatial = character;
+        entry.visible = sees;
+        entry.seenAt = time;
+        tracked[index] = entry;
+        trackedBits = setBit(trackedBits, index, true);
+        hiddenBits = setBit(hiddenBits, index, !sees);
         return sees;
     }
 
     public boolean removeEntity(Spatial entity) {
-        Boolean saw = entityFlags.remove(entity);
-        if (saw == null) {
+        int index = index(entity);
+        if (!getBit(trackedBits, index) || tracked[index].spatial != entity) {
             return false;
         }
-        return saw;
+
+        fog.beforeVisibilityChange(index);
+
+        boolean visible = tracked[index].visible;
+        tracked[index] = null;
+        trackedBits = setBit(trackedBits, index, false);
+        hiddenBits = setBit(hiddenBits, index, false);
+        --trackedCount;
+        return visible;
+    }
+
+    public int getEntityCount() {
+        return trackedCount;
+    }
+
+    /**
+     * Index is slot of generational entity id, which is its low 16 bits
+     * (see EntityIds), so every entity has index below 65536
+     */
+    public static int index(Spatial entity) {
+        return (int) entity.getUserData(UserData.ENTITY_ID) & 0xFFFF;
+    }
+
+    public static int index(int entityId) {
+        return entityId & 0xFFFF;
+    }
+
+    private int nextTracked(int from) {
+        int word = from >> 6;
+        if (word >= trackedBits.length) {
+            return -1;
+        }
+
+        long bits = trackedBits[word] & -1L << (from & 63);
+        while (bits == 0) {
+            if (++word == trackedBits.length) {
+                return -1;
+            }
+            bits = trackedBits[word];
+        }
+
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    private static boolean getBit(long[] bits, int index) {
+        int word = index >> 6;
+        return word < bits.length && (bits[word] & 1L << index) != 0;
+    }
+
+    /**
+     * @return bits or grown copy of it
+     */
+    private static long[] setBit(long[] bits, int index, boolean value) {
+        int word = index >> 6;
+        if (word >= bits.length) {
+            if (!value) {
+                return bits;
+            }
+            bits = Arrays.copyOf(bits, Math.max(bits.length * 2, word + 1));
+        }
+
+        if (value) {
+            bits[word] |= 1L << index;
+        } else {
+            bits[word] &= ~(1L << index);
+        }
+
+        return bits;
     }
 
     public Spatial getOwnSpatial() {
@@ -196,5 +433,33 @@ public class PlayerEntityAwareness {
 
     public void setOwnSpatial(Spatial ownNode) {
         this.ownSpatial = ownNode;
+        ownIndex = ownNode != null ? index(ownNode) : -1;
+    }
+
+    /**
+     * Visibility of one entity and locations that it was last tested with
+     */
+    private static class Tracked {
+
+        Spatial spatial;
+        Target target;
+        boolean visible;
+        boolean next;
+        /**
+         * Result of latest test
+         */
+        boolean seen;
+        /**
+         * World time when entity was last seen
+         */
+        float seenAt;
+        boolean tested = false;
+        float viewerX;
+        float viewerY;
+        float viewerZ;
+        boolean viewerBlind;
+        float targetX;
+        float targetY;
+        float targetZ;
     }
 }
@@ -49,7 +49,6 @@ import com.jme3.util.IntMap;
 import de.lessvoid.nifty.Nifty;
 import de.lessvoid.nifty.elements.Element;
 import de.lessvoid.nifty.screen.Screen;
-import java.util.concurrent.Callable;
 
 public class DeathmatchCommon {
 
@@ -98,7 +97,7 @@ public class DeathmatchCommon {
         if (states.getState(Sender.class).isServer()) {
             sync.setEnabled(true);
             sync.startListening();
-            Globals.worldRunning = true;
+            Globals.setWorldRunning(true);
         } else {
             states.getState(UserCommandManager.class).setEnabled(true);
             states.getState(ClientHud.class).clearMessages();
@@ -233,12 +232,10 @@ public class DeathmatchCommon {
         }
         canPickHeroMap.put(playerId, Boolean.FALSE);
 
-        long delay = (long) trackers.get(playerId).getSpawnTimeLeft() * 1000;
-        if (delay < 0) {
-            delay = 100;
-        }
+        float spawnTimeLeft = trackers.get(playerId).getSpawnTimeLeft();
+        final float delay = spawnTimeLeft < 0f ? 0.1f : spawnTimeLeft;
 
-        final Callable<Void> callable = () -> {
+        final Runnable spawn = () -> {
             int oldEntityId = PlayerData
                     .getIntData(playerId, PlayerData.ENTITY_ID);
             world.removeEntity(oldEntityId, RemovalReasons.DEATH);
@@ -258,16 +255,12 @@ public class DeathmatchCommon {
                     = new CmdSetPlayersCharacter(entityId, playerId);
 
             states.getState(ServerSender.class).addCommand(cmdPlayersCharacter);
-
-            return null;
         };
 
-        new java.util.Timer().schedule(new java.util.TimerTask() {
-            @Override
-            public void run() {
-                getApp().enqueue(callable);
-            }
-        }, delay);
+        getApp().enqueue(() -> {
+            world.getTimers().schedule(delay, spawn);
+            return null;
+        });
     }
 
     void gameEnded() {
@@ -292,7 +285,7 @@ public class DeathmatchCommon {
                 return null;
             });
 
-            final Callable<Void> callable = () -> {
+            final Runnable end = () -> {
                 if (sender instanceof ClientSender) {
                     ((ClientSender) sender).getClient().close();
                 }
@@ -303,15 +296,12 @@ public class DeathmatchCommon {
                 states.getState(UserCommandManager.class).nullifyCharacter();
                 ((ClientMain) getApp()).gameEnded();
                 getTrackers().clear();
-                return null;
             };
 
-            new java.util.Timer().schedule(new java.util.TimerTask() {
-                @Override
-                public void run() {
-                    getApp().enqueue(callable);
-                }
-            }, 15000);
+            getApp().enqueue(() -> {
+                world.getTimers().schedule(15f, end);
+                return null;
+            });
         }
     }
 
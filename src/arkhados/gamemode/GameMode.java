@@ -18,6 +18,7 @@ import arkhados.ClientMain;
 import arkhados.Sync;
 import arkhados.Topic;
 import arkhados.UserCommandManager;
+import arkhados.World;
 import arkhados.messages.CmdTopicOnly;
 import arkhados.net.ServerSender;
 import arkhados.ui.hud.ClientHud;
@@ -59,15 +60,11 @@ public abstract class GameMode {
         } else {
             getApp().getStateManager().getState(ServerSender.class)
                     .addCommand(new CmdTopicOnly(Topic.GAME_ENDED));
-            new java.util.Timer().schedule(new java.util.TimerTask() {
-                @Override
-                public void run() {
-                    app.enqueue(() -> {
-                        app.stop();
-                        return null;
-                    });
-                }
-            }, 4000);
+            app.enqueue(() -> {
+                app.getStateManager().getState(World.class).getTimers()
+                        .schedule(4f, app::stop);
+                return null;
+            });
         }
     }
 
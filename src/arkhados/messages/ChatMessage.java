@@ -16,10 +16,13 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.CommandCodecs;
+import arkhados.net.Encodable;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class ChatMessage implements Command {
+public class ChatMessage implements Command, Encodable {
     private String name;
     private String message;
 
@@ -43,4 +46,16 @@ public class ChatMessage implements Command {
     public boolean isGuaranteed() {
         return true;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        CommandCodecs.putString(buffer, name);
+        CommandCodecs.putString(buffer, message);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        name = CommandCodecs.getString(buffer);
+        message = CommandCodecs.getString(buffer);
+    }
 }
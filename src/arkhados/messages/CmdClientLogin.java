@@ -16,10 +16,13 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.CommandCodecs;
+import arkhados.net.Encodable;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdClientLogin implements Command {
+public class CmdClientLogin implements Command, Encodable {
     private String name;
 
     public CmdClientLogin() {
@@ -37,4 +40,14 @@ public class CmdClientLogin implements Command {
     public boolean isGuaranteed() {
         return true;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        CommandCodecs.putString(buffer, name);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        name = CommandCodecs.getString(buffer);
+    }
 }
@@ -16,25 +16,46 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.Encodable;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdClientSettings implements Command {
+public class CmdClientSettings implements Command, Encodable {
     private boolean commandMoveInterrupts;
+    private float renderDelay;
 
     public CmdClientSettings() {
     }
 
-    public CmdClientSettings(boolean commandMoveInterrupts) {
+    public CmdClientSettings(boolean commandMoveInterrupts,
+            float renderDelay) {
         this.commandMoveInterrupts = commandMoveInterrupts;
+        this.renderDelay = renderDelay;
     }
 
     public boolean commandMoveInterrupts() {
         return commandMoveInterrupts;
     }        
 
+    public float getRenderDelay() {
+        return renderDelay;
+    }
+
     @Override
     public boolean isGuaranteed() {
         return true;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        buffer.put((byte) (commandMoveInterrupts ? 1 : 0));
+        buffer.putFloat(renderDelay);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        commandMoveInterrupts = buffer.get() != 0;
+        renderDelay = buffer.getFloat();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.messages;
+
+import arkhados.net.Command;
+import arkhados.net.Encodable;
+import arkhados.util.VarInt;
+import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * First command that client sends. MatchHost uses it to route connection to
+ * right match. Single match server ignores it.
+ */
+@Serializable
+public class CmdJoinMatch implements Command, Encodable {
+
+    private short matchId;
+
+    public CmdJoinMatch() {
+    }
+
+    public CmdJoinMatch(int matchId) {
+        this.matchId = (short) matchId;
+    }
+
+    public int getMatchId() {
+        return matchId;
+    }
+
+    @Override
+    public boolean isGuaranteed() {
+        return true;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        VarInt.putSigned(buffer, matchId);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        matchId = (short) VarInt.getSigned(buffer);
+    }
+}
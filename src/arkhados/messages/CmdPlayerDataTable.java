@@ -36,7 +36,7 @@ public class CmdPlayerDataTable implements Command {
     }
 
     public static CmdPlayerDataTable makeFromPlayerDataList() {        
-        return new CmdPlayerDataTable(PlayerData.getPlayers());
+        return new CmdPlayerDataTable(PlayerData.copyPlayers());
     }
 
     @Override
@@ -16,10 +16,12 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.Encodable;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdPlayerKill implements Command {
+public class CmdPlayerKill implements Command, Encodable {
     private byte diedPlayerId;
     private byte killerPlayerId;
     private byte killingSpree;
@@ -62,4 +64,19 @@ public class CmdPlayerKill implements Command {
     public int getEndedSpree() {
         return endedSpree;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        buffer.put(diedPlayerId).put(killerPlayerId).put(killingSpree)
+                .put(combo).put(endedSpree);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        diedPlayerId = buffer.get();
+        killerPlayerId = buffer.get();
+        killingSpree = buffer.get();
+        combo = buffer.get();
+        endedSpree = buffer.get();
+    }
 }
\ No newline at end of file
@@ -16,10 +16,12 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.Encodable;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdPlayerStatusChange implements Command {
+public class CmdPlayerStatusChange implements Command, Encodable {
     private byte playerId;
     private byte newStatus;
 
@@ -56,4 +58,15 @@ public class CmdPlayerStatusChange implements Command {
         newStatus = 1;
         return this;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        buffer.put(playerId).put(newStatus);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        playerId = buffer.get();
+        newStatus = buffer.get();
+    }
 }
@@ -15,10 +15,13 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.CommandCodecs;
+import arkhados.net.Encodable;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdSelectHero implements Command {
+public class CmdSelectHero implements Command, Encodable {
     private String heroName;
 
     public CmdSelectHero() {
@@ -36,4 +39,14 @@ public class CmdSelectHero implements Command {
     public boolean isGuaranteed() {
         return true;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        CommandCodecs.putString(buffer, heroName);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        heroName = CommandCodecs.getString(buffer);
+    }
 }
\ No newline at end of file
@@ -16,10 +16,13 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.CommandCodecs;
+import arkhados.net.Encodable;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdSelectTeam implements Command {
+public class CmdSelectTeam implements Command, Encodable {
     public String team;
 
     public CmdSelectTeam() {
@@ -33,4 +36,14 @@ public class CmdSelectTeam implements Command {
     public boolean isGuaranteed() {
         return true;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        CommandCodecs.putString(buffer, team);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        team = CommandCodecs.getString(buffer);
+    }
 }
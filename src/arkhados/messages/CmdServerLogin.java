@@ -16,10 +16,14 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.CommandCodecs;
+import arkhados.net.Encodable;
+import arkhados.util.VarInt;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdServerLogin implements Command {
+public class CmdServerLogin implements Command, Encodable {
     private String name;
     private int playerId;
     private boolean accepted;    
@@ -55,4 +59,20 @@ public class CmdServerLogin implements Command {
     public String getGameMode() {
         return gameMode;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        CommandCodecs.putString(buffer, name);
+        VarInt.putSigned(buffer, playerId);
+        buffer.put((byte) (accepted ? 1 : 0));
+        CommandCodecs.putString(buffer, gameMode);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        name = CommandCodecs.getString(buffer);
+        playerId = VarInt.getSigned(buffer);
+        accepted = buffer.get() != 0;
+        gameMode = CommandCodecs.getString(buffer);
+    }
 }
\ No newline at end of file
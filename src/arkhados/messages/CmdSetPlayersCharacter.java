@@ -16,10 +16,14 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.Encodable;
+import arkhados.util.EntityIds;
+import arkhados.util.VarInt;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdSetPlayersCharacter implements Command{
+public class CmdSetPlayersCharacter implements Command, Encodable {
     private int entityId;
     private int playerId;
 
@@ -43,4 +47,16 @@ public class CmdSetPlayersCharacter implements Command{
     public boolean isGuaranteed() {
         return true;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        EntityIds.put(buffer, entityId);
+        VarInt.putSigned(buffer, playerId);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        entityId = EntityIds.get(buffer);
+        playerId = VarInt.getSigned(buffer);
+    }
 }
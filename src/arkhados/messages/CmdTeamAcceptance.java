@@ -15,10 +15,13 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.Encodable;
+import arkhados.util.VarInt;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdTeamAcceptance implements Command {
+public class CmdTeamAcceptance implements Command, Encodable {
 
     private int playerId;
     private int teamId;
@@ -42,4 +45,16 @@ public class CmdTeamAcceptance implements Command {
     public boolean isGuaranteed() {
         return true;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        VarInt.putSigned(buffer, playerId);
+        VarInt.putSigned(buffer, teamId);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        playerId = VarInt.getSigned(buffer);
+        teamId = VarInt.getSigned(buffer);
+    }
 }
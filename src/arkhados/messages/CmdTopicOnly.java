@@ -15,10 +15,12 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.Encodable;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdTopicOnly implements Command {    
+public class CmdTopicOnly implements Command, Encodable {
     
     private transient boolean isGuaranteed = true;
     private byte topicId;
@@ -42,5 +44,15 @@ public class CmdTopicOnly implements Command {
 
     public int getTopicId() {
         return topicId;
-    }   
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        buffer.put(topicId);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        topicId = buffer.get();
+    }
 }
\ No newline at end of file
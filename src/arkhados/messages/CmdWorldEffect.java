@@ -16,11 +16,15 @@
 package arkhados.messages;
 
 import arkhados.net.Command;
+import arkhados.net.CommandCodecs;
+import arkhados.net.Encodable;
+import arkhados.util.VarInt;
 import com.jme3.math.Vector3f;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdWorldEffect implements Command {
+public class CmdWorldEffect implements Command, Encodable {
     private short effectId;
     private Vector3f location = new Vector3f();
 
@@ -43,5 +47,17 @@ public class CmdWorldEffect implements Command {
 
     public Vector3f getLocation() {
         return location;
-    }    
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        VarInt.putSigned(buffer, effectId);
+        CommandCodecs.putVector(buffer, location);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        effectId = (short) VarInt.getSigned(buffer);
+        CommandCodecs.getVector(buffer, location);
+    }
 }
@@ -24,19 +24,25 @@ import arkhados.messages.sync.CmdBuffStacks;
 import arkhados.messages.sync.CmdEndAction;
 import arkhados.messages.sync.CmdRemoveEntity;
 import arkhados.messages.sync.CmdSetCooldown;
+import arkhados.messages.sync.CmdSnapshot;
 import arkhados.messages.sync.CmdStartCastingSpell;
 import arkhados.messages.sync.statedata.CharacterSyncData;
 import arkhados.messages.sync.statedata.GenericSyncData;
 import arkhados.messages.sync.statedata.ProjectileSyncData;
 import arkhados.messages.sync.statedata.StateData;
+import arkhados.messages.usercommands.CmdInputFrame;
 import arkhados.messages.usercommands.CmdUcCastSpell;
 import arkhados.messages.usercommands.CmdUcMouseTarget;
 import arkhados.messages.usercommands.CmdUcWalkDirection;
 import arkhados.net.Ack;
+import arkhados.net.CommandCodecs;
 import arkhados.net.OneTrueMessage;
+import arkhados.net.OneTrueMessageSerializer;
 import arkhados.net.OtmIdCommandListPair;
 import arkhados.net.connection.ConnectionMessageContainer;
 import arkhados.util.PlayerRoundStats;
+import arkhados.util.VarInt;
+import java.nio.ByteBuffer;
 
 public class MessageUtils {
 
@@ -46,7 +52,8 @@ public class MessageUtils {
     }
 
     public static void registerMessages() {
-        Serializer.registerClass(OneTrueMessage.class);
+        Serializer.registerClass(OneTrueMessage.class,
+                new OneTrueMessageSerializer());
         Serializer.registerClass(OtmIdCommandListPair.class);
 
         Serializer.registerClass(Ack.class);
@@ -80,6 +87,7 @@ public class MessageUtils {
         // </Sync>
 
         // <UserCommands>
+        // Not sent anymore. Kept so that ids of later classes stay the same
         Serializer.registerClass(CmdUcCastSpell.class);
         Serializer.registerClass(CmdUcWalkDirection.class);
         Serializer.registerClass(CmdUcMouseTarget.class);
@@ -93,5 +101,75 @@ public class MessageUtils {
         // </Other>        
 
         Serializer.registerClass(ConnectionMessageContainer.class);
+
+        // New classes are registered last so that ids of older classes
+        // stay the same
+        Serializer.registerClass(CmdSnapshot.class);
+        Serializer.registerClass(CmdJoinMatch.class);
+        Serializer.registerClass(CmdInputFrame.class);
+
+        registerCodecs();
+    }
+
+    /**
+     * Commands inside OneTrueMessage are written with these. Classes stay
+     * registered to Serializer too, because replays store commands with it
+     * and unregistered commands fall back to it. Replays have no format
+     * version, so replays recorded before a field of a command changed do
+     * not decode. Codec ids come from order, so new codecs must be
+     * registered last.
+     */
+    private static void registerCodecs() {
+        CommandCodecs.register(Ack.class, new CommandCodecs.Codec<Ack>() {
+            @Override
+            public void write(ByteBuffer buffer, Ack command) {
+                VarInt.put(buffer, command.getConfirmedOtmId());
+            }
+
+            @Override
+            public Ack read(ByteBuffer buffer) {
+                return new Ack(VarInt.get(buffer));
+            }
+        });
+        CommandCodecs.register(CmdTopicOnly.class, CmdTopicOnly::new);
+
+        CommandCodecs.register(CmdServerLogin.class, CmdServerLogin::new);
+        CommandCodecs.register(CmdClientLogin.class, CmdClientLogin::new);
+        CommandCodecs.register(CmdClientSettings.class,
+                CmdClientSettings::new);
+        CommandCodecs.register(ChatMessage.class, ChatMessage::new);
+        CommandCodecs.register(CmdSelectHero.class, CmdSelectHero::new);
+        CommandCodecs.register(CmdPlayerStatusChange.class,
+                CmdPlayerStatusChange::new);
+        CommandCodecs.register(CmdSelectTeam.class, CmdSelectTeam::new);
+        CommandCodecs.register(CmdTeamAcceptance.class,
+                CmdTeamAcceptance::new);
+
+        CommandCodecs.register(CmdAddEntity.class, CmdAddEntity::new);
+        CommandCodecs.register(CmdRemoveEntity.class, CmdRemoveEntity::new);
+        CommandCodecs.register(CharacterSyncData.class,
+                CharacterSyncData::new);
+        CommandCodecs.register(GenericSyncData.class, GenericSyncData::new);
+        CommandCodecs.register(ProjectileSyncData.class,
+                ProjectileSyncData::new);
+        CommandCodecs.register(EliteSoldierSyncData.class,
+                EliteSoldierSyncData::new);
+        CommandCodecs.register(CmdStartCastingSpell.class,
+                CmdStartCastingSpell::new);
+        CommandCodecs.register(CmdSetCooldown.class, CmdSetCooldown::new);
+        CommandCodecs.register(CmdAction.class, CmdAction::new);
+        CommandCodecs.register(CmdEndAction.class, CmdEndAction::new);
+        CommandCodecs.register(CmdBuff.class, CmdBuff::new);
+        CommandCodecs.register(CmdBuffStacks.class, CmdBuffStacks::new);
+
+        CommandCodecs.register(CmdInputFrame.class, CmdInputFrame::new);
+
+        CommandCodecs.register(CmdSetPlayersCharacter.class,
+                CmdSetPlayersCharacter::new);
+        CommandCodecs.register(CmdPlayerKill.class, CmdPlayerKill::new);
+        CommandCodecs.register(CmdWorldEffect.class, CmdWorldEffect::new);
+
+        CommandCodecs.register(CmdSnapshot.class, CmdSnapshot::new);
+        CommandCodecs.register(CmdJoinMatch.class, CmdJoinMatch::new);
     }
 }
\ No newline at end of file
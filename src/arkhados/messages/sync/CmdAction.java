@@ -19,6 +19,7 @@ import arkhados.controls.CCharacterAnimation;
 import arkhados.messages.sync.statedata.StateData;
 import com.jme3.network.serializing.Serializable;
 import com.jme3.scene.Spatial;
+import java.nio.ByteBuffer;
 
 @Serializable
 public class CmdAction extends StateData {
@@ -46,4 +47,16 @@ public class CmdAction extends StateData {
     public int getActionId() {
         return actionId;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        super.write(buffer);
+        buffer.put(actionId);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        super.read(buffer);
+        actionId = buffer.get();
+    }
 }
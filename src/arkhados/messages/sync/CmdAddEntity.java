@@ -17,17 +17,22 @@ package arkhados.messages.sync;
 
 import arkhados.World;
 import arkhados.net.Command;
+import arkhados.net.CommandCodecs;
+import arkhados.net.Encodable;
+import arkhados.util.EntityIds;
+import arkhados.util.VarInt;
 import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdAddEntity implements Command {
-    private short entityId;
+public class CmdAddEntity implements Command, Encodable {
+    private int entityId;
     private short nodeBuilderId;
     private Vector3f loc = new Vector3f();
     private Quaternion rot = new Quaternion();
-    private byte playerId;
+    private int playerId;
     private float age;
 
     public CmdAddEntity() {
@@ -40,11 +45,11 @@ public class CmdAddEntity implements Command {
 
     public CmdAddEntity(int entityId, int nodeBuilderId, Vector3f location,
             Quaternion rotation, int playerId, float age) {
-        this.entityId = (short) entityId;
+        this.entityId = entityId;
         this.nodeBuilderId = (short) nodeBuilderId;
         this.loc.set(location);
         this.rot.set(rotation);
-        this.playerId = (byte) playerId;
+        this.playerId = playerId;
         this.age = age;
     }
 
@@ -52,8 +57,56 @@ public class CmdAddEntity implements Command {
         world.addEntity(entityId, nodeBuilderId, loc, rot, playerId, age);
     }
 
+    /**
+     * @return copy of this command for entity that is given amount of seconds
+     * older
+     */
+    public CmdAddEntity aged(float seconds) {
+        return new CmdAddEntity(entityId, nodeBuilderId, loc, rot, playerId,
+                age < 0f ? age : age + seconds);
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
     @Override
     public boolean isGuaranteed() {
         return true;
     }
+
+    /**
+     * Mask byte tells which of rotation and age are written. Most entities
+     * are added unrotated and without age
+     */
+    @Override
+    public void write(ByteBuffer buffer) {
+        EntityIds.put(buffer, entityId);
+        VarInt.putSigned(buffer, nodeBuilderId);
+        VarInt.putSigned(buffer, playerId);
+        CommandCodecs.putVector(buffer, loc);
+        boolean rotated = !rot.isIdentity();
+        buffer.put((byte) ((rotated ? 1 : 0) | (age != 0f ? 2 : 0)));
+        if (rotated) {
+            CommandCodecs.putQuaternion(buffer, rot);
+        }
+        if (age != 0f) {
+            buffer.putFloat(age);
+        }
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        entityId = EntityIds.get(buffer);
+        nodeBuilderId = (short) VarInt.getSigned(buffer);
+        playerId = VarInt.getSigned(buffer);
+        CommandCodecs.getVector(buffer, loc);
+        byte mask = buffer.get();
+        if ((mask & 1) != 0) {
+            CommandCodecs.getQuaternion(buffer, rot);
+        } else {
+            rot.loadIdentity();
+        }
+        age = (mask & 2) != 0 ? buffer.getFloat() : 0f;
+    }
 }
@@ -16,8 +16,10 @@ package arkhados.messages.sync;
 
 import arkhados.controls.CCharacterBuff;
 import arkhados.messages.sync.statedata.StateData;
+import arkhados.util.VarInt;
 import com.jme3.network.serializing.Serializable;
 import com.jme3.scene.Node;
+import java.nio.ByteBuffer;
 
 @Serializable
 public class CmdBuff extends StateData {
@@ -69,4 +71,30 @@ public class CmdBuff extends StateData {
     public final void setJustCreated(boolean value) {
         flags = (byte) (value ? (flags | 2) : (flags & ~2));
     }
+
+    /**
+     * Bit 2 of written flags tells if duration follows. Removals have none
+     */
+    @Override
+    public void write(ByteBuffer buffer) {
+        super.write(buffer);
+        VarInt.putSigned(buffer, buffTypeId);
+        VarInt.put(buffer, buffId);
+        buffer.put(stacks);
+        buffer.put((byte) (duration != 0f ? flags | 4 : flags));
+        if (duration != 0f) {
+            buffer.putFloat(duration);
+        }
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        super.read(buffer);
+        buffTypeId = (short) VarInt.getSigned(buffer);
+        buffId = VarInt.get(buffer);
+        stacks = buffer.get();
+        byte mask = buffer.get();
+        flags = (byte) (mask & 3);
+        duration = (mask & 4) != 0 ? buffer.getFloat() : 0f;
+    }
 }
\ No newline at end of file
@@ -17,8 +17,10 @@ package arkhados.messages.sync;
 
 import arkhados.controls.CCharacterBuff;
 import arkhados.messages.sync.statedata.StateData;
+import arkhados.util.VarInt;
 import com.jme3.network.serializing.Serializable;
 import com.jme3.scene.Node;
+import java.nio.ByteBuffer;
 
 @Serializable
 public class CmdBuffStacks extends StateData{
@@ -40,4 +42,18 @@ public class CmdBuffStacks extends StateData{
         node.getControl(CCharacterBuff.class).changeStacks(buffId, stacks);
         
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        super.write(buffer);
+        VarInt.put(buffer, buffId);
+        buffer.put(stacks);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        super.read(buffer);
+        buffId = VarInt.get(buffer);
+        stacks = buffer.get();
+    }
 }
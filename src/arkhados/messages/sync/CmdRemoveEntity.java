@@ -15,21 +15,24 @@
 
 package arkhados.messages.sync;
 
+import arkhados.net.Encodable;
+import arkhados.util.EntityIds;
 import com.jme3.network.serializing.Serializable;
 import arkhados.World;
 import arkhados.net.Command;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CmdRemoveEntity implements Command {
+public class CmdRemoveEntity implements Command, Encodable {
 
-    private short entityId;
+    private int entityId;
     private byte reason;
 
     public CmdRemoveEntity() {
     }
 
     public CmdRemoveEntity(int entityId, int reason) {
-        this.entityId = (short) entityId;
+        this.entityId = entityId;
         this.reason = (byte) reason;
     }
 
@@ -37,8 +40,24 @@ public class CmdRemoveEntity implements Command {
         world.removeEntity(entityId, reason);
     }
 
+    public int getEntityId() {
+        return entityId;
+    }
+
     @Override
     public boolean isGuaranteed() {
         return true;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        EntityIds.put(buffer, entityId);
+        buffer.put(reason);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        entityId = EntityIds.get(buffer);
+        reason = buffer.get();
+    }
 }
@@ -16,8 +16,10 @@ package arkhados.messages.sync;
 
 import arkhados.controls.CSpellCast;
 import arkhados.messages.sync.statedata.StateData;
+import arkhados.util.VarInt;
 import com.jme3.network.serializing.Serializable;
 import com.jme3.scene.Spatial;
+import java.nio.ByteBuffer;
 
 @Serializable
 public class CmdSetCooldown extends StateData {
@@ -44,4 +46,20 @@ public class CmdSetCooldown extends StateData {
             castControl.globalCooldown();
         }
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        super.write(buffer);
+        VarInt.putSigned(buffer, spellId);
+        buffer.putFloat(cooldown);
+        buffer.put((byte) (globalCooldown ? 1 : 0));
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        super.read(buffer);
+        spellId = (short) VarInt.getSigned(buffer);
+        cooldown = buffer.getFloat();
+        globalCooldown = buffer.get() != 0;
+    }
 }
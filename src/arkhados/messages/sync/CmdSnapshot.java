@@ -0,0 +1,70 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.messages.sync;
+
+import arkhados.net.Command;
+import arkhados.net.Encodable;
+import arkhados.util.VarInt;
+import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Quantized and delta encoded states of all entities that one connection
+ * sees. See SnapshotEncoder and SnapshotDecoder for the format.
+ */
+@Serializable
+public class CmdSnapshot implements Command, Encodable {
+
+    private byte[] data;
+
+    public CmdSnapshot() {
+    }
+
+    public CmdSnapshot(byte[] data) {
+        this.data = data;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public boolean isGuaranteed() {
+        return false;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        if (data == null) {
+            VarInt.put(buffer, 0);
+            return;
+        }
+
+        VarInt.put(buffer, data.length + 1);
+        buffer.put(data);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        int length = VarInt.get(buffer) - 1;
+        if (length < 0) {
+            data = null;
+            return;
+        }
+
+        data = new byte[length];
+        buffer.get(data);
+    }
+}
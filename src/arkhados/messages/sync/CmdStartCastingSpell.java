@@ -16,6 +16,8 @@
 package arkhados.messages.sync;
 
 import arkhados.controls.CActionPlayer;
+import arkhados.net.CommandCodecs;
+import arkhados.util.VarInt;
 import com.jme3.math.Vector3f;
 import com.jme3.network.serializing.Serializable;
 import com.jme3.scene.Spatial;
@@ -25,6 +27,7 @@ import arkhados.controls.CCharacterSound;
 import arkhados.controls.CSpellCast;
 import arkhados.messages.sync.statedata.StateData;
 import arkhados.spell.Spell;
+import java.nio.ByteBuffer;
 
 @Serializable
 public class CmdStartCastingSpell extends StateData {
@@ -58,4 +61,26 @@ public class CmdStartCastingSpell extends StateData {
         
         character.getControl(CCharacterSound.class).castSound(spellId);
     }
+
+    /**
+     * Cast speed factor is written only if it is not 1
+     */
+    @Override
+    public void write(ByteBuffer buffer) {
+        super.write(buffer);
+        VarInt.putSigned(buffer, spellId);
+        CommandCodecs.putVector(buffer, direction);
+        buffer.put((byte) (castSpeedFactor != 1f ? 1 : 0));
+        if (castSpeedFactor != 1f) {
+            buffer.putFloat(castSpeedFactor);
+        }
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        super.read(buffer);
+        spellId = (short) VarInt.getSigned(buffer);
+        CommandCodecs.getVector(buffer, direction);
+        castSpeedFactor = buffer.get() != 0 ? buffer.getFloat() : 1f;
+    }
 }
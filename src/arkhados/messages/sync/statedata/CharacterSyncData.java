@@ -15,25 +15,43 @@
 
 package arkhados.messages.sync.statedata;
 
+import arkhados.MatchContext;
+import arkhados.ServerInputState;
 import arkhados.controls.CCharacterHeal;
 import arkhados.controls.CCharacterPhysics;
-import arkhados.controls.CInfluenceInterface;
-import arkhados.controls.CSyncInterpolation;
+import arkhados.controls.CCharacterPrediction;
+import arkhados.controls.CUserInput;
+import arkhados.net.CommandCodecs;
+import arkhados.util.ComponentStore;
+import arkhados.util.EntityHandle;
 import arkhados.util.UserData;
+import arkhados.util.VarInt;
 import com.jme3.math.FastMath;
-import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import com.jme3.network.serializing.Serializable;
 import com.jme3.scene.Spatial;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class CharacterSyncData extends StateData {
+public class CharacterSyncData extends StateData implements QuantizedState {
+
+    protected static final int FIELD_COUNT = 10;
+    /**
+     * Older inputs are not useful for reconciliation
+     */
+    public static final int MAX_INPUT_AGE_MS = 1000;
 
     private Vector3f location = new Vector3f();
     private Vector3f walkDirection = new Vector3f();
     private Vector3f viewDirection = new Vector3f();
     private short halfHealth;
     private short halfRecordLowHealth;
+    /**
+     * Latest walk direction input of owning player and milliseconds since
+     * server received it
+     */
+    private int inputSequence = -1;
+    private int inputAge = MAX_INPUT_AGE_MS;
 
     public CharacterSyncData() {        
     }
@@ -41,15 +59,27 @@ public class CharacterSyncData extends StateData {
     public CharacterSyncData(int id, Spatial spatial) {
         super(id);        
         location.set(spatial.getLocalTranslation());
-        CCharacterPhysics body = spatial.getControl(CCharacterPhysics.class);
+        EntityHandle handle = EntityHandle.of(spatial);
+        CCharacterPhysics body = handle.getPhysics();
         walkDirection.set(body.getWalkDirection());
         viewDirection.set(body.getViewDirection());
-        float fHealth = spatial.getUserData(UserData.HEALTH_CURRENT);
+        float fHealth = handle.getInfluence()
+                .getFloat(ComponentStore.HEALTH_CURRENT);
         halfHealth = FastMath.convertFloatToHalf(fHealth);
         
         float fRecordLowHealth = spatial.getControl(CCharacterHeal.class)
                 .getRecordLowHealth();
         halfRecordLowHealth = FastMath.convertFloatToHalf(fRecordLowHealth);
+
+        CUserInput userInput = spatial.getControl(CUserInput.class);
+        ServerInputState inputState
+                = userInput != null ? userInput.getInputState() : null;
+        if (inputState != null && inputState.inputSequence >= 0) {
+            float age = MatchContext.current().getWorld().getWorldTime()
+                    - inputState.inputTime;
+            inputSequence = inputState.inputSequence;
+            inputAge = Math.min((int) (age * 1000f), MAX_INPUT_AGE_MS);
+        }
     }
 
     @Override
@@ -59,14 +89,21 @@ public class CharacterSyncData extends StateData {
         float health = FastMath.convertHalfToFloat(halfHealth);
         float recLowHealth = FastMath.convertHalfToFloat(halfRecordLowHealth);
         character.setUserData(UserData.HEALTH_LOW_RECORD, recLowHealth);
-        character.getControl(CInfluenceInterface.class).setHealth(health);
-        
-        Quaternion newRotation = new Quaternion();
-        newRotation.lookAt(viewDirection, Vector3f.UNIT_Y);
+        EntityHandle handle = EntityHandle.of(character);
+        handle.getInfluence().setHealth(health);
         
-        character.getControl(CSyncInterpolation.class)
-                .interpolate(location, newRotation);
-        CCharacterPhysics body = character.getControl(CCharacterPhysics.class);
+        CCharacterPhysics body = handle.getPhysics();
+        CCharacterPrediction prediction
+                = character.getControl(CCharacterPrediction.class);
+        if (prediction != null && prediction.isEnabled()) {
+            prediction.correct(location, walkDirection, inputSequence,
+                    inputAge / 1000f);
+            body.setViewDirection(viewDirection);
+            return;
+        }
+
+        handle.getInterpolation().interpolate(location, viewDirection,
+                walkDirection);
         body.warp(location);
         body.setViewDirection(viewDirection);
         body.setWalkDirection(walkDirection);
@@ -75,5 +112,67 @@ public class CharacterSyncData extends StateData {
     @Override
     public boolean isGuaranteed() {
         return false;
-    }   
+    }
+
+    @Override
+    public int getStateType() {
+        return TYPE_CHARACTER;
+    }
+
+    @Override
+    public int getFieldCount() {
+        return FIELD_COUNT;
+    }
+
+    @Override
+    public void writeFields(int[] fields) {
+        fields[0] = Quantization.position(location.x);
+        fields[1] = Quantization.position(location.y);
+        fields[2] = Quantization.position(location.z);
+        fields[3] = Quantization.angle(walkDirection);
+        fields[4] = Quantization.speed(walkDirection.length());
+        fields[5] = Quantization.angle(viewDirection);
+        fields[6] = halfHealth;
+        fields[7] = halfRecordLowHealth;
+        fields[8] = inputSequence;
+        fields[9] = inputAge;
+    }
+
+    @Override
+    public void readFields(int[] fields) {
+        location.set(Quantization.position(fields[0]),
+                Quantization.position(fields[1]),
+                Quantization.position(fields[2]));
+        Quantization.angle(fields[3], walkDirection)
+                .multLocal(Quantization.speed(fields[4]));
+        Quantization.angle(fields[5], viewDirection);
+        halfHealth = (short) fields[6];
+        halfRecordLowHealth = (short) fields[7];
+        inputSequence = fields[8];
+        inputAge = fields[9];
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        super.write(buffer);
+        CommandCodecs.putVector(buffer, location);
+        CommandCodecs.putVector(buffer, walkDirection);
+        CommandCodecs.putVector(buffer, viewDirection);
+        buffer.putShort(halfHealth);
+        buffer.putShort(halfRecordLowHealth);
+        VarInt.putSigned(buffer, inputSequence);
+        VarInt.put(buffer, inputAge);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        super.read(buffer);
+        CommandCodecs.getVector(buffer, location);
+        CommandCodecs.getVector(buffer, walkDirection);
+        CommandCodecs.getVector(buffer, viewDirection);
+        halfHealth = buffer.getShort();
+        halfRecordLowHealth = buffer.getShort();
+        inputSequence = VarInt.getSigned(buffer);
+        inputAge = VarInt.get(buffer);
+    }
 }
\ No newline at end of file
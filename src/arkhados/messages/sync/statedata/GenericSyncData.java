@@ -15,10 +15,12 @@
 package arkhados.messages.sync.statedata;
 
 import arkhados.controls.CSyncInterpolation;
+import arkhados.net.CommandCodecs;
 import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import com.jme3.network.serializing.Serializable;
 import com.jme3.scene.Spatial;
+import java.nio.ByteBuffer;
 
 @Serializable
 public class GenericSyncData extends StateData {
@@ -51,4 +53,26 @@ public class GenericSyncData extends StateData {
     public boolean isGuaranteed() {
         return false;
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        super.write(buffer);
+        CommandCodecs.putVector(buffer, location);
+        boolean rotated = !rotation.isIdentity();
+        buffer.put((byte) (rotated ? 1 : 0));
+        if (rotated) {
+            CommandCodecs.putQuaternion(buffer, rotation);
+        }
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        super.read(buffer);
+        CommandCodecs.getVector(buffer, location);
+        if (buffer.get() != 0) {
+            CommandCodecs.getQuaternion(buffer, rotation);
+        } else {
+            rotation.loadIdentity();
+        }
+    }
 }
\ No newline at end of file
@@ -14,18 +14,24 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados.messages.sync.statedata;
 
+import arkhados.net.CommandCodecs;
 import com.jme3.bullet.control.RigidBodyControl;
 import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import com.jme3.network.serializing.Serializable;
 import com.jme3.scene.Spatial;
+import java.nio.ByteBuffer;
 
 @Serializable
-public class ProjectileSyncData extends StateData {
+public class ProjectileSyncData extends StateData implements QuantizedState {
 
     private Vector3f location = new Vector3f();
     private Vector3f velocity = new Vector3f();
     private Quaternion rotation = new Quaternion();
+    /**
+     * Only server needs to know this
+     */
+    private transient boolean guaranteed = false;
 
     public ProjectileSyncData() {
     }
@@ -37,6 +43,14 @@ public class ProjectileSyncData extends StateData {
         control.getPhysicsRotation(this.rotation);
     }
 
+    public ProjectileSyncData(int syncId, Vector3f location,
+            Vector3f velocity, Quaternion rotation) {
+        super(syncId);
+        this.location.set(location);
+        this.velocity.set(velocity);
+        this.rotation.set(rotation);
+    }
+
     @Override
     public void applyData(Object target) {
         Spatial spatial = (Spatial) target;
@@ -47,6 +61,65 @@ public class ProjectileSyncData extends StateData {
 
     @Override
     public boolean isGuaranteed() {
-        return false;
+        return guaranteed;
+    }
+
+    public void setGuaranteed(boolean guaranteed) {
+        this.guaranteed = guaranteed;
+    }
+
+    @Override
+    public int getStateType() {
+        return TYPE_PROJECTILE;
+    }
+
+    @Override
+    public int getFieldCount() {
+        return 10;
+    }
+
+    @Override
+    public void writeFields(int[] fields) {
+        fields[0] = Quantization.position(location.x);
+        fields[1] = Quantization.position(location.y);
+        fields[2] = Quantization.position(location.z);
+        fields[3] = Quantization.speed(velocity.x);
+        fields[4] = Quantization.speed(velocity.y);
+        fields[5] = Quantization.speed(velocity.z);
+        fields[6] = Quantization.rotation(rotation.getX());
+        fields[7] = Quantization.rotation(rotation.getY());
+        fields[8] = Quantization.rotation(rotation.getZ());
+        fields[9] = Quantization.rotation(rotation.getW());
+    }
+
+    @Override
+    public void readFields(int[] fields) {
+        location.set(Quantization.position(fields[0]),
+                Quantization.position(fields[1]),
+                Quantization.position(fields[2]));
+        velocity.set(Quantization.speed(fields[3]),
+                Quantization.speed(fields[4]),
+                Quantization.speed(fields[5]));
+        rotation.set(Quantization.rotation(fields[6]),
+                Quantization.rotation(fields[7]),
+                Quantization.rotation(fields[8]),
+                Quantization.rotation(fields[9]));
+        rotation.normalizeLocal();
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        super.write(buffer);
+        CommandCodecs.putVector(buffer, location);
+        CommandCodecs.putVector(buffer, velocity);
+        CommandCodecs.putQuaternion(buffer, rotation);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        super.read(buffer);
+        CommandCodecs.getVector(buffer, location);
+        CommandCodecs.getVector(buffer, velocity);
+        CommandCodecs.getQuaternion(buffer, rotation);
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.messages.sync.statedata;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+
+/**
+ * Conversions between floats and quantized ints that are used in snapshots.
+ */
+public class Quantization {
+
+    /**
+     * Positions are clamped to this. Arenas are much smaller, so this only
+     * guarantees that every coordinate fits into 16 bits.
+     */
+    public static final float POSITION_LIMIT = 511f;
+    private static final float POSITION_SCALE = 64f;
+    private static final float SPEED_SCALE = 16f;
+    private static final float ANGLE_STEPS = 65536f;
+    private static final float ROTATION_SCALE = 32767f;
+
+    public static int position(float value) {
+        return Math.round(FastMath.clamp(value, -POSITION_LIMIT,
+                POSITION_LIMIT) * POSITION_SCALE);
+    }
+
+    public static float position(int value) {
+        return value / POSITION_SCALE;
+    }
+
+    public static int speed(float value) {
+        return Math.round(value * SPEED_SCALE);
+    }
+
+    public static float speed(int value) {
+        return value / SPEED_SCALE;
+    }
+
+    /**
+     * @return angle of direction on XZ-plane. Y is ignored
+     */
+    public static int angle(Vector3f direction) {
+        float angle = FastMath.atan2(direction.x, direction.z);
+        if (angle < 0f) {
+            angle += FastMath.TWO_PI;
+        }
+        return Math.round(angle / FastMath.TWO_PI * ANGLE_STEPS)
+                & 0xFFFF;
+    }
+
+    /**
+     * Sets store to be unit direction on XZ-plane
+     */
+    public static Vector3f angle(int value, Vector3f store) {
+        float angle = value / ANGLE_STEPS * FastMath.TWO_PI;
+        return store.set(FastMath.sin(angle), 0f, FastMath.cos(angle));
+    }
+
+    public static int rotation(float value) {
+        return Math.round(value * ROTATION_SCALE);
+    }
+
+    public static float rotation(int value) {
+        return value / ROTATION_SCALE;
+    }
+}
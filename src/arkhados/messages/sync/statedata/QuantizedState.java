@@ -0,0 +1,35 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.messages.sync.statedata;
+
+/**
+ * StateData that can be expressed as fixed amount of quantized int fields.
+ * Such states are sent inside CmdSnapshot and only fields that client might
+ * not have are written.
+ */
+public interface QuantizedState {
+
+    public static final int TYPE_CHARACTER = 0;
+    public static final int TYPE_ELITE_SOLDIER = 1;
+    public static final int TYPE_PROJECTILE = 2;
+
+    public int getStateType();
+
+    public int getFieldCount();
+
+    public void writeFields(int[] fields);
+
+    public void readFields(int[] fields);
+}
@@ -16,17 +16,20 @@
 package arkhados.messages.sync.statedata;
 
 import arkhados.net.Command;
+import arkhados.net.Encodable;
+import arkhados.util.EntityIds;
 import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
 
 @Serializable
-public abstract class StateData implements Command {
-    private short syncId = -1;
+public abstract class StateData implements Command, Encodable {
+    private int syncId = -1;
     
     public StateData() {
     }
 
     public StateData(int syncId) {
-        this.syncId = (short) syncId;
+        this.syncId = syncId;
     }
             
     public abstract void applyData(Object target);
@@ -41,6 +44,19 @@ public abstract class StateData implements Command {
     }
     
     public void setSyncId(int syncId) {
-        this.syncId = (short) syncId;
+        this.syncId = syncId;
+    }
+
+    /**
+     * Subclasses write their own fields after sync id
+     */
+    @Override
+    public void write(ByteBuffer buffer) {
+        EntityIds.put(buffer, syncId);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        syncId = EntityIds.get(buffer);
     }
 }
@@ -0,0 +1,139 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.messages.usercommands;
+
+import arkhados.net.Command;
+import arkhados.net.Encodable;
+import arkhados.util.VarInt;
+import com.jme3.network.serializing.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Latest input frames of player. Client sends one at fixed input rate and
+ * whenever keys are pressed. Every command repeats few previous frames, so
+ * lost commands do not have to be resent and command is not guaranteed.
+ *
+ * Format: varint sequence of newest frame, frame count and frames from
+ * newest to oldest. Sequences of older frames decrease by one. Every frame
+ * is one byte with keys and cast count, mouse target as signed varints and
+ * one byte per cast. Mouse targets of older frames are relative to newer
+ * frame.
+ */
+@Serializable
+public class CmdInputFrame implements Command, Encodable {
+
+    /**
+     * How many frames every command carries
+     */
+    public static final int FRAME_COUNT = 4;
+    private static final int MAX_FRAME_SIZE = 1 + 5 + 5
+            + InputFrame.MAX_CASTS;
+    private byte[] data;
+
+    public CmdInputFrame() {
+    }
+
+    /**
+     * @param frames ring of latest frames
+     * @param newest index of newest frame in ring
+     */
+    public CmdInputFrame(InputFrame[] frames, int newest, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(5 + 1
+                + count * MAX_FRAME_SIZE);
+        VarInt.put(buffer, frames[newest].sequence);
+        buffer.put((byte) count);
+
+        InputFrame newer = null;
+        for (int i = 0; i < count; ++i) {
+            InputFrame frame
+                    = frames[(newest - i + frames.length) % frames.length];
+            buffer.put((byte) ((frame.down + 1) | (frame.right + 1) << 2
+                    | frame.castCount << 4));
+            if (newer == null) {
+                VarInt.putSigned(buffer, frame.targetX);
+                VarInt.putSigned(buffer, frame.targetZ);
+            } else {
+                VarInt.putSigned(buffer, frame.targetX - newer.targetX);
+                VarInt.putSigned(buffer, frame.targetZ - newer.targetZ);
+            }
+            buffer.put(frame.casts, 0, frame.castCount);
+            newer = frame;
+        }
+
+        data = Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Reads frames from oldest to newest
+     *
+     * @param store where to read frames. Must have room for FRAME_COUNT
+     * frames
+     * @return count of read frames
+     */
+    public int read(InputFrame[] store) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int sequence = VarInt.get(buffer);
+        int count = Math.min(buffer.get(), FRAME_COUNT);
+
+        InputFrame newer = null;
+        for (int i = 0; i < count; ++i) {
+            InputFrame frame = store[count - 1 - i];
+            int keys = buffer.get();
+            frame.sequence = sequence - i;
+            frame.down = (keys & 0x3) - 1;
+            frame.right = (keys >> 2 & 0x3) - 1;
+            frame.castCount = Math.min(keys >> 4 & 0x7, InputFrame.MAX_CASTS);
+            frame.targetX = VarInt.getSigned(buffer);
+            frame.targetZ = VarInt.getSigned(buffer);
+            if (newer != null) {
+                frame.targetX += newer.targetX;
+                frame.targetZ += newer.targetZ;
+            }
+            buffer.get(frame.casts, 0, frame.castCount);
+            newer = frame;
+        }
+
+        return count;
+    }
+
+    @Override
+    public boolean isGuaranteed() {
+        return false;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        if (data == null) {
+            VarInt.put(buffer, 0);
+            return;
+        }
+
+        VarInt.put(buffer, data.length + 1);
+        buffer.put(data);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        int length = VarInt.get(buffer) - 1;
+        if (length < 0) {
+            data = null;
+            return;
+        }
+
+        data = new byte[length];
+        buffer.get(data);
+    }
+}
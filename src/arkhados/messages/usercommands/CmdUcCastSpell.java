@@ -14,44 +14,21 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados.messages.usercommands;
 
-import com.jme3.math.Vector3f;
 import com.jme3.network.serializing.Serializable;
-import com.jme3.scene.Spatial;
-import arkhados.controls.CSpellCast;
-import arkhados.controls.CUserInput;
 import arkhados.messages.sync.statedata.StateData;
 
+/**
+ * Replaced by CmdInputFrame. Stays registered to Serializer only so that
+ * ids of classes registered after it do not change.
+ */
+@Deprecated
 @Serializable
 public class CmdUcCastSpell extends StateData {
 
-    private byte input;
-    private Vector3f direction;
-
     public CmdUcCastSpell() {
     }
 
-    public CmdUcCastSpell(int input, boolean modifier, Vector3f location) {
-        this.input = (byte) (modifier ? -input : input);
-        this.direction = location;
-    }
-
     @Override
     public void applyData(Object target) {
-        Spatial character = (Spatial) target;
-        character.getControl(CSpellCast.class).castIfDifferentSpell(
-                input, direction);
-
-        CUserInput cInput = character.getControl(CUserInput.class);
-        if (cInput != null) {
-            cInput.setCastInput(input);
-        }
-    }
-
-    public int getInput() {
-        return input;
-    }
-
-    public Vector3f getLocation() {
-        return direction;
     }
 }
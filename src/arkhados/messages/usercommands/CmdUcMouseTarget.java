@@ -14,42 +14,21 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados.messages.usercommands;
 
-import arkhados.controls.CCharacterPhysics;
 import arkhados.messages.sync.statedata.StateData;
-import com.jme3.math.Vector3f;
 import com.jme3.network.serializing.Serializable;
-import com.jme3.scene.Spatial;
 
+/**
+ * Replaced by CmdInputFrame. Stays registered to Serializer only so that
+ * ids of classes registered after it do not change.
+ */
+@Deprecated
 @Serializable
 public class CmdUcMouseTarget extends StateData {
 
-    private Vector3f location;
-
     public CmdUcMouseTarget() {
     }
 
-    public CmdUcMouseTarget(Vector3f location) {  
-        this.location = location;
-    }
-    
     @Override
     public void applyData(Object target) {
-        Spatial character = (Spatial) target;
-        CCharacterPhysics physicsControl = character.getControl(CCharacterPhysics.class);
-        physicsControl.setTargetLocation(location);        
-        
-        if (!physicsControl.isMotionControlled()
-                && physicsControl.getWalkDirection().equals(Vector3f.ZERO)) {
-            physicsControl.lookAt(location);
-        }
-    }
-
-    @Override
-    public boolean isGuaranteed() {
-        return false;
-    }
-
-    public Vector3f getLocation() {
-        return location;
     }
 }
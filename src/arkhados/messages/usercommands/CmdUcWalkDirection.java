@@ -17,29 +17,18 @@ package arkhados.messages.usercommands;
 import com.jme3.network.serializing.Serializable;
 import arkhados.messages.sync.statedata.StateData;
 
+/**
+ * Replaced by CmdInputFrame. Stays registered to Serializer only so that
+ * ids of classes registered after it do not change.
+ */
+@Deprecated
 @Serializable
 public class CmdUcWalkDirection extends StateData {
 
-    private byte down;
-    private byte right;
-
     public CmdUcWalkDirection() {
     }
 
-    public CmdUcWalkDirection(int down, int right) {
-        this.down = (byte) down;
-        this.right = (byte) right;
-    }
-
     @Override
     public void applyData(Object target) {
-    }       
-
-    public byte getDown() {
-        return down;
-    }
-
-    public byte getRight() {
-        return right;
     }
 }
@@ -0,0 +1,78 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.messages.usercommands;
+
+import arkhados.messages.sync.statedata.Quantization;
+import com.jme3.math.Vector3f;
+
+/**
+ * Player's input during one input frame: movement keys, quantized mouse
+ * target and spells that were cast or released.
+ */
+public class InputFrame {
+
+    public static final int MAX_CASTS = 7;
+    /**
+     * Cast input that releases held spell
+     */
+    public static final int RELEASE = Byte.MAX_VALUE;
+    public int sequence = -1;
+    public int down;
+    public int right;
+    public int targetX;
+    public int targetZ;
+    public final byte[] casts = new byte[MAX_CASTS];
+    public int castCount;
+
+    /**
+     * @return false if frame is full
+     */
+    public boolean addCast(int input, boolean modifier) {
+        if (castCount == MAX_CASTS) {
+            return false;
+        }
+
+        casts[castCount++] = (byte) (modifier ? -input : input);
+        return true;
+    }
+
+    public void setTarget(Vector3f target) {
+        targetX = Quantization.position(target.x);
+        targetZ = Quantization.position(target.z);
+    }
+
+    public Vector3f getTarget(Vector3f store) {
+        return store.set(Quantization.position(targetX), 0f,
+                Quantization.position(targetZ));
+    }
+
+    public boolean sameDirection(InputFrame other) {
+        return down == other.down && right == other.right;
+    }
+
+    public void set(InputFrame other) {
+        sequence = other.sequence;
+        down = other.down;
+        right = other.right;
+        targetX = other.targetX;
+        targetZ = other.targetZ;
+        castCount = other.castCount;
+        System.arraycopy(other.casts, 0, casts, 0, castCount);
+    }
+
+    public void clearCasts() {
+        castCount = 0;
+    }
+}
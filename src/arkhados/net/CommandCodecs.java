@@ -0,0 +1,157 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.net;
+
+import arkhados.util.VarInt;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Reflection free encoding of commands inside OneTrueMessage. Every
+ * registered command class gets varint id in registration order, so client
+ * and server must register same classes in same order. Commands of other
+ * classes are written with id 0 followed by jME's Serializer.
+ *
+ * Classes must be registered before network is started. Lookups are not
+ * synchronized.
+ */
+public class CommandCodecs {
+
+    public interface Codec<T extends Command> {
+
+        public void write(ByteBuffer buffer, T command);
+
+        public T read(ByteBuffer buffer);
+    }
+
+    private static final Map<Class<?>, Integer> ids = new HashMap<>();
+    private static final List<Codec<?>> codecs = new ArrayList<>();
+
+    /**
+     * Does nothing if class is already registered
+     */
+    public static <T extends Command> void register(Class<T> type,
+            Codec<T> codec) {
+        if (ids.containsKey(type)) {
+            return;
+        }
+
+        codecs.add(codec);
+        ids.put(type, codecs.size());
+    }
+
+    public static <T extends Command & Encodable> void register(
+            Class<T> type, Supplier<T> factory) {
+        register(type, new Codec<T>() {
+            @Override
+            public void write(ByteBuffer buffer, T command) {
+                command.write(buffer);
+            }
+
+            @Override
+            public T read(ByteBuffer buffer) {
+                T command = factory.get();
+                command.read(buffer);
+                return command;
+            }
+        });
+    }
+
+    public static boolean isRegistered(Class<?> type) {
+        return ids.containsKey(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void writeCommand(ByteBuffer buffer, Command command)
+            throws IOException {
+        Integer id = ids.get(command.getClass());
+        if (id == null) {
+            VarInt.put(buffer, 0);
+            Serializer.writeClassAndObject(buffer, command);
+            return;
+        }
+
+        VarInt.put(buffer, id);
+        ((Codec<Command>) codecs.get(id - 1)).write(buffer, command);
+    }
+
+    public static Command readCommand(ByteBuffer buffer) throws IOException {
+        int id = VarInt.get(buffer);
+        if (id == 0) {
+            return (Command) Serializer.readClassAndObject(buffer);
+        }
+
+        if (id < 0 || id > codecs.size()) {
+            throw new IOException("Unknown command id " + id);
+        }
+
+        return codecs.get(id - 1).read(buffer);
+    }
+
+    public static void putVector(ByteBuffer buffer, Vector3f vector) {
+        buffer.putFloat(vector.x).putFloat(vector.y).putFloat(vector.z);
+    }
+
+    public static Vector3f getVector(ByteBuffer buffer, Vector3f store) {
+        return store.set(buffer.getFloat(), buffer.getFloat(),
+                buffer.getFloat());
+    }
+
+    public static void putQuaternion(ByteBuffer buffer,
+            Quaternion quaternion) {
+        buffer.putFloat(quaternion.getX()).putFloat(quaternion.getY())
+                .putFloat(quaternion.getZ()).putFloat(quaternion.getW());
+    }
+
+    public static Quaternion getQuaternion(ByteBuffer buffer,
+            Quaternion store) {
+        return store.set(buffer.getFloat(), buffer.getFloat(),
+                buffer.getFloat(), buffer.getFloat());
+    }
+
+    /**
+     * Writes UTF-8 length plus one as varint and bytes. Length 0 is null
+     */
+    public static void putString(ByteBuffer buffer, String string) {
+        if (string == null) {
+            VarInt.put(buffer, 0);
+            return;
+        }
+
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        VarInt.put(buffer, bytes.length + 1);
+        buffer.put(bytes);
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        int length = VarInt.get(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
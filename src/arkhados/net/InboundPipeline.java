@@ -0,0 +1,69 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.net;
+
+import com.jme3.app.state.AbstractAppState;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains InboundQueues of command handlers once per frame. This should be
+ * attached before other states so that commands are applied at the start of
+ * the frame like tasks that are given to Application.enqueue. Queues are
+ * drained in the order they were added, so handlers should add their
+ * queues in the order their commands depend on each other, for example
+ * World before Sync.
+ */
+public class InboundPipeline extends AbstractAppState {
+
+    private final List<InboundQueue<?>> queues = new ArrayList<>();
+
+    /**
+     * Adds queue unless it was already added. Main thread only, because
+     * calling thread is made consumer of the queue
+     */
+    public void add(InboundQueue<?> queue) {
+        queue.setConsumerThread(Thread.currentThread());
+        if (!queues.contains(queue)) {
+            queues.add(queue);
+        }
+    }
+
+    public void remove(InboundQueue<?> queue) {
+        queues.remove(queue);
+    }
+
+    @Override
+    public void update(float tpf) {
+        for (int i = 0; i < queues.size(); ++i) {
+            queues.get(i).drain();
+        }
+    }
+
+    public void appendReport(StringBuilder builder) {
+        builder.append("Inbound queues: commands / mean wait ms /"
+                + " max wait ms / max depth / ring full")
+                .append(System.lineSeparator());
+        for (InboundQueue<?> queue : queues) {
+            queue.appendReport(builder);
+        }
+    }
+
+    public void resetMetrics() {
+        for (InboundQueue<?> queue : queues) {
+            queue.resetMetrics();
+        }
+    }
+}
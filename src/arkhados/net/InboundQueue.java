@@ -0,0 +1,261 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.net;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands commands from network threads to main thread without allocating.
+ * Bounded ring buffer that many threads can offer to and that main thread
+ * drains. Every slot has a sequence number that tells whether it is free
+ * for producer whose position it is or ready for consumer.
+ *
+ * Producers never wait. If ring is full, unguaranteed commands are dropped
+ * and guaranteed ones are put to bounded overflow list. While overflow has
+ * commands, new ones go there too and ring is emptied before each of them is
+ * given to consumer, so commands of each producer stay in order. Main thread
+ * can be producer too, for example when replay is read, and then it drains
+ * the ring itself instead.
+ *
+ * Every command is tagged with time when it was received. Queue keeps count
+ * of drained commands, time they spent in queue and largest depth. Metrics
+ * are read and reset on main thread.
+ */
+public class InboundQueue<T extends Command> {
+
+    private static final Logger logger
+            = Logger.getLogger(InboundQueue.class.getName());
+    /**
+     * Overflow takes all commands while it has any, so it can hold this many
+     * times the ring
+     */
+    private static final int OVERFLOW_FACTOR = 8;
+
+    public interface Consumer<T> {
+
+        void accept(Object source, T command);
+    }
+    private final String name;
+    private final Consumer<T> consumer;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final Object[] sources;
+    private final Object[] commands;
+    private final long[] receiveTimes;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong fullWaits = new AtomicLong();
+    private final ConcurrentLinkedQueue<Overflow> overflow
+            = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger overflowSize = new AtomicInteger();
+    private volatile Thread consumerThread;
+    /**
+     * Owned by consumer
+     */
+    private long head = 0;
+    private long drained = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    private int maxDepth = 0;
+
+    /**
+     * @param capacity rounded up to power of two
+     */
+    public InboundQueue(String name, int capacity, Consumer<T> consumer) {
+        this.name = name;
+        this.consumer = consumer;
+        this.capacity = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+        mask = this.capacity - 1;
+        sequences = new AtomicLongArray(this.capacity);
+        sources = new Object[this.capacity];
+        commands = new Object[this.capacity];
+        receiveTimes = new long[this.capacity];
+        for (int i = 0; i < this.capacity; ++i) {
+            sequences.set(i, i);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets thread that drains this queue. If it is not set, first thread
+     * that drains is used.
+     */
+    public void setConsumerThread(Thread thread) {
+        consumerThread = thread;
+    }
+
+    /**
+     * Can be called from any thread. Never blocks
+     */
+    public void offer(Object source, T command) {
+        long receiveTime = System.nanoTime();
+        boolean consumer = Thread.currentThread() == consumerThread;
+        while (consumer || overflowSize.get() == 0) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    sources[index] = source;
+                    commands[index] = command;
+                    receiveTimes[index] = receiveTime;
+                    sequences.lazySet(index, position + 1);
+                    return;
+                }
+            } else if (sequence < position) {
+                fullWaits.incrementAndGet();
+                if (!consumer) {
+                    break;
+                }
+                drain();
+            }
+            // Otherwise other producer took the slot. Try next one
+        }
+
+        overflow(source, command, receiveTime);
+    }
+
+    private void overflow(Object source, T command, long receiveTime) {
+        if (!command.isGuaranteed()) {
+            return;
+        }
+
+        if (overflowSize.incrementAndGet() > capacity * OVERFLOW_FACTOR) {
+            overflowSize.decrementAndGet();
+            logger.log(Level.WARNING, "{0} queue overflowed. Dropped {1}",
+                    new Object[]{name, command.getClass().getSimpleName()});
+            return;
+        }
+
+        overflow.add(new Overflow(source, command, receiveTime));
+    }
+
+    /**
+     * Gives commands that were in queue when this was called to consumer in
+     * the order they were offered. Must be called from one thread only.
+     *
+     * @return count of drained commands
+     */
+    public int drain() {
+        if (consumerThread == null) {
+            consumerThread = Thread.currentThread();
+        }
+
+        maxDepth = Math.max(maxDepth, size());
+        long now = System.nanoTime();
+        int count = drainRing(now);
+
+        for (int left = overflowSize.get(); left > 0; --left) {
+            // Producer of overflowed command may have put older ones to
+            // ring, so ring must be empty before it is given to consumer
+            count += drainRing(now);
+            if (head != tail.get()) {
+                break;
+            }
+
+            Overflow entry = overflow.poll();
+            if (entry == null) {
+                // Counted but not added yet
+                break;
+            }
+
+            overflowSize.decrementAndGet();
+            long wait = now - entry.receiveTime;
+            totalWaitNanos += wait;
+            maxWaitNanos = Math.max(maxWaitNanos, wait);
+            ++count;
+            @SuppressWarnings("unchecked")
+            T command = (T) entry.command;
+            consumer.accept(entry.source, command);
+        }
+
+        drained += count;
+        return count;
+    }
+
+    private int drainRing(long now) {
+        long end = tail.get();
+        int count = 0;
+
+        while (head < end) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                // Producer has claimed the slot but not filled it yet
+                break;
+            }
+
+            Object source = sources[index];
+            @SuppressWarnings("unchecked")
+            T command = (T) commands[index];
+            long wait = now - receiveTimes[index];
+            sources[index] = null;
+            commands[index] = null;
+            sequences.lazySet(index, head + capacity);
+            ++head;
+
+            totalWaitNanos += wait;
+            maxWaitNanos = Math.max(maxWaitNanos, wait);
+            ++count;
+            consumer.accept(source, command);
+        }
+
+        return count;
+    }
+
+    /**
+     * @return commands that are waiting. Approximate if producers are
+     * offering at the same time
+     */
+    public int size() {
+        return (int) Math.max(tail.get() - head, 0) + overflowSize.get();
+    }
+
+    public void appendReport(StringBuilder builder) {
+        builder.append(String.format(Locale.ROOT,
+                "  %-28s %8d %8.3f %8.3f %8d %8d%n", name, drained,
+                drained > 0 ? totalWaitNanos / 1e6 / drained : 0.0,
+                maxWaitNanos / 1e6, maxDepth, fullWaits.get()));
+    }
+
+    public void resetMetrics() {
+        drained = 0;
+        totalWaitNanos = 0;
+        maxWaitNanos = 0;
+        maxDepth = 0;
+        fullWaits.set(0);
+    }
+
+    private static class Overflow {
+
+        final Object source;
+        final Object command;
+        final long receiveTime;
+
+        Overflow(Object source, Object command, long receiveTime) {
+            this.source = source;
+            this.command = command;
+            this.receiveTime = receiveTime;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.net;
+
+import arkhados.util.VarInt;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes OneTrueMessage with varints and CommandCodecs instead of
+ * FieldSerializer. Format: order number, count of guaranteed lists and
+ * every list as distance of its otm id from order number, command count
+ * and commands. Last come unreliable count and commands.
+ */
+public class OneTrueMessageSerializer extends Serializer {
+
+    @Override
+    public OneTrueMessage readObject(ByteBuffer data, Class c)
+            throws IOException {
+        int orderNum = VarInt.get(data);
+        OneTrueMessage otm = new OneTrueMessage(orderNum);
+
+        int pairCount = VarInt.get(data);
+        for (int i = 0; i < pairCount; ++i) {
+            int otmId = orderNum - VarInt.get(data);
+            otm.getGuaranteed().add(
+                    new OtmIdCommandListPair(otmId, readCommands(data)));
+        }
+
+        otm.getUnreliables().addAll(readCommands(data));
+        return otm;
+    }
+
+    @Override
+    public void writeObject(ByteBuffer buffer, Object object)
+            throws IOException {
+        OneTrueMessage otm = (OneTrueMessage) object;
+        int orderNum = otm.getOrderNum();
+        VarInt.put(buffer, orderNum);
+
+        List<OtmIdCommandListPair> guaranteed = otm.getGuaranteed();
+        VarInt.put(buffer, guaranteed.size());
+        for (int i = 0; i < guaranteed.size(); ++i) {
+            OtmIdCommandListPair pair = guaranteed.get(i);
+            VarInt.put(buffer, orderNum - pair.getOtmId());
+            writeCommands(buffer, pair.getCommandList());
+        }
+
+        writeCommands(buffer, otm.getUnreliables());
+    }
+
+    private static List<Command> readCommands(ByteBuffer data)
+            throws IOException {
+        int count = VarInt.get(data);
+        List<Command> commands = new ArrayList<>(Math.min(count, 64));
+        for (int i = 0; i < count; ++i) {
+            commands.add(CommandCodecs.readCommand(data));
+        }
+
+        return commands;
+    }
+
+    private static void writeCommands(ByteBuffer buffer,
+            List<Command> commands) throws IOException {
+        VarInt.put(buffer, commands.size());
+        for (int i = 0; i < commands.size(); ++i) {
+            CommandCodecs.writeCommand(buffer, commands.get(i));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.net;
+
+import com.jme3.network.HostedConnection;
+import java.nio.BufferOverflowException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends OneTrueMessages on its own thread. Main thread publishes finished
+ * message of every connection and send thread serializes it and gives it to
+ * the socket, so tick does not wait for Serializer or network kernel.
+ * Messages are sent in the order they were published.
+ *
+ * There is fixed amount of slots. If send thread falls behind, new messages
+ * are dropped like lost packets. Guaranteed commands in them are resent
+ * until they are acknowledged.
+ */
+public class OutboundPipeline {
+
+    private static final Logger logger
+            = Logger.getLogger(OutboundPipeline.class.getName());
+    private static final int CAPACITY = 256;
+    private final BlockingQueue<Outgoing> free
+            = new ArrayBlockingQueue<>(CAPACITY);
+    /**
+     * One extra slot for end marker
+     */
+    private final BlockingQueue<Outgoing> full
+            = new ArrayBlockingQueue<>(CAPACITY + 1);
+    private final Outgoing end = new Outgoing();
+    private final String name;
+    private Thread sendThread;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong sendNanos = new AtomicLong();
+    private final AtomicLong maxSendNanos = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private int maxDepth = 0;
+
+    public OutboundPipeline(String name) {
+        this.name = name;
+        for (int i = 0; i < CAPACITY; ++i) {
+            free.add(new Outgoing());
+        }
+    }
+
+    public void start() {
+        if (sendThread != null) {
+            return;
+        }
+
+        sendThread = new Thread(this::sendMessages, name);
+        sendThread.setDaemon(true);
+        sendThread.start();
+    }
+
+    /**
+     * Sends messages that were published before this and waits until send
+     * thread is done
+     */
+    public void close() {
+        if (sendThread == null) {
+            return;
+        }
+
+        full.add(end);
+        try {
+            sendThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        sendThread = null;
+    }
+
+    /**
+     * Main thread only. Message must not be changed after this
+     *
+     * @return false if message was dropped because send thread is behind
+     */
+    public boolean publish(HostedConnection connection,
+            OneTrueMessage message) {
+        if (sendThread == null) {
+            return false;
+        }
+
+        Outgoing outgoing = free.poll();
+        if (outgoing == null) {
+            if (dropped.getAndIncrement() == 0) {
+                logger.log(Level.WARNING, "Send thread is behind."
+                        + " Dropping messages");
+            }
+
+            return false;
+        }
+
+        outgoing.connection = connection;
+        outgoing.message = message;
+        full.add(outgoing);
+        maxDepth = Math.max(maxDepth, full.size());
+        return true;
+    }
+
+    private void sendMessages() {
+        try {
+            while (true) {
+                Outgoing outgoing = full.take();
+                if (outgoing == end) {
+                    break;
+                }
+
+                long start = System.nanoTime();
+                send(outgoing.connection, outgoing.message);
+                long time = System.nanoTime() - start;
+
+                sent.incrementAndGet();
+                sendNanos.addAndGet(time);
+                maxSendNanos.accumulateAndGet(time, Math::max);
+
+                outgoing.connection = null;
+                outgoing.message = null;
+                free.add(outgoing);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HostedConnection connection,
+            OneTrueMessage message) {
+        try {
+            connection.send(message);
+        } catch (BufferOverflowException ex) {
+            logger.log(Level.SEVERE, "", ex);
+            System.exit(1);
+        } catch (Exception ex) {
+            // Connection was probably closed after message was published
+            logger.log(Level.FINE, "Could not send message to connection "
+                    + connection.getId(), ex);
+        }
+    }
+
+    public void appendReport(StringBuilder builder) {
+        long count = sent.get();
+        builder.append(String.format(Locale.ROOT,
+                "Outbound %s: messages %d, mean send ms %.3f,"
+                + " max send ms %.3f, max depth %d, dropped %d%n", name,
+                count, count > 0 ? sendNanos.get() / 1e6 / count : 0.0,
+                maxSendNanos.get() / 1e6, maxDepth, dropped.get()));
+    }
+
+    public void resetMetrics() {
+        sent.set(0);
+        sendNanos.set(0);
+        maxSendNanos.set(0);
+        maxDepth = 0;
+        dropped.set(0);
+    }
+
+    private static class Outgoing {
+
+        HostedConnection connection;
+        OneTrueMessage message;
+    }
+}
@@ -14,44 +14,221 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados.net;
 
+import arkhados.MatchContext;
+import arkhados.ServerClientData;
+import arkhados.ServerFog;
 import arkhados.World;
-import arkhados.replay.ReplayData;
-import arkhados.replay.ReplaySerializer;
+import arkhados.profiling.NetworkMetrics;
+import arkhados.replay.ReplayHeader;
+import arkhados.replay.ReplayRecorder;
 import arkhados.settings.server.Settings;
 import arkhados.ui.hud.ServerClientDataStrings;
+import com.jme3.app.Application;
+import com.jme3.app.state.AppStateManager;
 import com.jme3.network.HostedConnection;
 import com.jme3.network.Server;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * ServerSender that records sent commands to replay and measures them.
+ * Messages are built on main thread but serialized and sent by
+ * OutboundPipeline's thread.
+ */
 public class RecordingServerSender extends ServerSender {
 
+    private static final Logger logger
+            = Logger.getLogger(RecordingServerSender.class.getName());
     private World world;
-    private final ReplayData replayData = new ReplayData();
     private final SimpleDateFormat dateFormat
             = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
 
-    private final ReplaySerializer replaySerializer = new ReplaySerializer();
+    private ReplayRecorder recorder;
+    private boolean recordingFailed = false;
+    /**
+     * Mirrors AbstractSender's private OneTrueMessage id counter so that
+     * snapshots can be matched with Acks.
+     */
+    private int otmIdCounter = 0;
+    private boolean shouldSend = false;
+    private final NetworkMetrics metrics = new NetworkMetrics();
+    private final Map<HostedConnection, SendTimes> sendTimes
+            = new HashMap<>();
+    private ServerFog fog;
+    private boolean flushingFog = false;
+    /**
+     * Connections are added from network thread
+     */
+    private final CopyOnWriteArrayList<HostedConnection> connections
+            = new CopyOnWriteArrayList<>();
+    private final OutboundPipeline outbound;
 
     public RecordingServerSender(Server server) {
         super(server);
+        MatchContext match = MatchContext.current();
+        outbound = new OutboundPipeline(match.isDefault() ? "net-send"
+                : "net-send-" + match.getMatchId());
+    }
+
+    @Override
+    public void initialize(AppStateManager stateManager, Application app) {
+        super.initialize(stateManager, app);
+        outbound.start();
+    }
+
+    @Override
+    public void cleanup() {
+        super.cleanup();
+        stopSending();
+    }
+
+    @Override
+    public void update(float tpf) {
+        flushFog();
+        boolean sends = shouldSend;
+        super.update(tpf);
+        if (sends) {
+            ++otmIdCounter;
+            shouldSend = false;
+        }
+
+        metrics.endTick();
+    }
+
+    /**
+     * Builds messages here and leaves serializing and sending to
+     * OutboundPipeline
+     */
+    @Override
+    public void sendMessage() {
+        if (!getServer().isRunning()) {
+            return;
+        }
+
+        for (HostedConnection connection : connections) {
+            outbound.publish(connection, createOneTrueMessage(connection));
+        }
+    }
+
+    /**
+     * Sends messages that are still waiting and stops send thread. Call
+     * before closing the server
+     */
+    public void stopSending() {
+        outbound.close();
+    }
+
+    public OutboundPipeline getOutbound() {
+        return outbound;
+    }
+
+    @Override
+    protected OneTrueMessage createOneTrueMessage(
+            HostedConnection connection) {
+        OneTrueMessage otm = super.createOneTrueMessage(connection);
+        metrics.countMessage(connection, otm);
+
+        SendTimes times = sendTimes.get(connection);
+        if (times == null) {
+            times = new SendTimes();
+            sendTimes.put(connection, times);
+        }
+
+        times.put(otm.getOrderNum(), System.nanoTime());
+        return otm;
+    }
+
+    /**
+     * Measures round trip time of acknowledged message and gives it to
+     * ServerClientData
+     */
+    public void acknowledge(HostedConnection connection, int otmId) {
+        SendTimes times = sendTimes.get(connection);
+        if (times == null) {
+            return;
+        }
+
+        long sent = times.take(otmId);
+        if (sent != -1 && ServerClientData.exists(connection.getId())) {
+            ServerClientData.addLatencySample(connection.getId(),
+                    (System.nanoTime() - sent) / 1e9f);
+        }
+    }
+
+    @Override
+    public void addConnection(HostedConnection connection) {
+        super.addConnection(connection);
+        connections.addIfAbsent(connection);
+    }
+
+    @Override
+    public void removeConnection(HostedConnection connection) {
+        super.removeConnection(connection);
+        connections.remove(connection);
+        metrics.removeConnection(connection);
+        sendTimes.remove(connection);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        connections.clear();
+    }
+
+    public NetworkMetrics getNetworkMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void setShouldSend(boolean shouldSend) {
+        super.setShouldSend(shouldSend);
+        this.shouldSend = shouldSend;
+    }
+
+    /**
+     * @return id of OneTrueMessage that commands added now will be sent in
+     */
+    public int getNextOtmId() {
+        return otmIdCounter;
     }
 
     @Override
     public void addCommandForSingle(Command command,
             HostedConnection connection) {
+        flushFog();
         super.addCommandForSingle(command, connection);
         saveCommand(command, connection);
     }
 
+    /**
+     * Commands that fog has buffered are added before others so that
+     * connections get commands in the order they were given
+     */
+    public void setFog(ServerFog fog) {
+        this.fog = fog;
+    }
+
+    private void flushFog() {
+        if (fog == null || flushingFog) {
+            return;
+        }
+
+        flushingFog = true;
+        try {
+            fog.flushCommands();
+        } finally {
+            flushingFog = false;
+        }
+    }
+
     private void saveCommand(Command command, HostedConnection connection) {
         if (command instanceof Ack) {
             return;
@@ -64,59 +241,95 @@ public class RecordingServerSender extends ServerSender {
             return;
         }
 
-        replayData.addCommand(command, playerId, world.getWorldTime());
+        if (recorder == null && !startRecording()) {
+            return;
+        }
+
+        recorder.addCommand(command, playerId, world.getWorldTime());
     }
 
-    public boolean saveToFile() {
+    private boolean startRecording() {
+        if (recordingFailed) {
+            return false;
+        }
+
         File replayDir = new File("replays");
         if (!replayDir.exists()) {
             replayDir.mkdir();
         }
 
-        replayData.getHeader().setVersion("0.7-dev");
-        replayData.getHeader().setGameMode(
-                Settings.get().General().getGameMode());
-        replayData.getHeader().setArena("Pillar Arena"); // TODO: Read arena
+        ReplayHeader header = new ReplayHeader();
+        header.setVersion("0.7-dev");
+        header.setGameMode(Settings.get().General().getGameMode());
+        header.setArena("Pillar Arena"); // TODO: Read arena
 
-        ByteBuffer target = ByteBuffer.allocate(314572800);
-        try {
-            replaySerializer.writeObject(target, replayData);
-            target.flip();
-        } catch (IOException ex) {
-            Logger.getLogger(RecordingServerSender.class.getName())
-                    .log(Level.SEVERE, null, ex);
+        String name = dateFormat.format(header.getDate()) + ".rep";
+        MatchContext match = MatchContext.current();
+        if (!match.isDefault()) {
+            // Many matches can start during the same second
+            name = "match" + match.getMatchId() + "_" + name;
         }
 
-        FileOutputStream out = null;
-
-        Date date = replayData.getHeader().getDate();
-        String name = dateFormat.format(date) + ".rep";
-        String path = Paths.get(replayDir.toString(), name).toString();
-
+        recorder = new ReplayRecorder(
+                Paths.get(replayDir.toString(), name), header);
         try {
-            out = new FileOutputStream(path, false);
-            out.getChannel().write(target);
-        } catch (FileNotFoundException ex) {
-            Logger.getLogger(RecordingServerSender.class.getName())
-                    .log(Level.WARNING, null, ex);
+            recorder.open();
         } catch (IOException ex) {
-            Logger.getLogger(RecordingServerSender.class.getName())
-                    .log(Level.WARNING, null, ex);
-        } finally {
-            if (out != null) {
-                try {
-                    out.close();
-                } catch (IOException ex) {
-                    Logger.getLogger(RecordingServerSender.class.getName())
-                            .log(Level.WARNING, null, ex);
-                }
-            }
+            logger.log(Level.WARNING, "Could not start recording replay", ex);
+            recorder = null;
+            recordingFailed = true;
+            return false;
         }
 
         return true;
     }
 
+    /**
+     * Finishes replay that has been written to disk during the game
+     */
+    public boolean saveToFile() {
+        if (recorder == null) {
+            return false;
+        }
+
+        return recorder.close();
+    }
+
     public void setWorld(World world) {
         this.world = world;
     }
+
+    /**
+     * Send times of latest messages. Message ids are consecutive so id tells
+     * the slot.
+     */
+    private static class SendTimes {
+
+        private static final int CAPACITY = 64;
+        final int[] ids = new int[CAPACITY];
+        final long[] nanos = new long[CAPACITY];
+
+        SendTimes() {
+            Arrays.fill(ids, -1);
+        }
+
+        void put(int otmId, long time) {
+            int slot = otmId & (CAPACITY - 1);
+            ids[slot] = otmId;
+            nanos[slot] = time;
+        }
+
+        /**
+         * @return send time or -1 if message is too old or already taken
+         */
+        long take(int otmId) {
+            int slot = otmId & (CAPACITY - 1);
+            if (ids[slot] != otmId) {
+                return -1;
+            }
+
+            ids[slot] = -1;
+            return nanos[slot];
+        }
+    }
 }
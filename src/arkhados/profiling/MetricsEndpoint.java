@@ -0,0 +1,99 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.profiling;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-only HTTP endpoint that serves latest reports of all TickProfilers
+ * of this process as plain text. Listens only on loopback address.
+ */
+public class MetricsEndpoint {
+
+    private static final Logger logger
+            = Logger.getLogger(MetricsEndpoint.class.getName());
+    private static final List<TickProfiler> profilers
+            = new CopyOnWriteArrayList<>();
+    private static HttpServer server;
+
+    /**
+     * Starts endpoint if it is not running yet. Port 0 or less disables it.
+     */
+    public static synchronized void start(int port) {
+        if (server != null || port <= 0) {
+            return;
+        }
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(
+                    InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Could not start metrics endpoint", ex);
+            return;
+        }
+
+        server.createContext("/", MetricsEndpoint::handle);
+        server.start();
+        logger.log(Level.INFO, "Metrics at http://localhost:{0}/",
+                String.valueOf(port));
+    }
+
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    public static void register(TickProfiler profiler) {
+        profilers.add(profiler);
+    }
+
+    public static void unregister(TickProfiler profiler) {
+        profilers.remove(profiler);
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (TickProfiler profiler : profilers) {
+            builder.append(profiler.getReport())
+                    .append(System.lineSeparator());
+        }
+
+        byte[] body = builder.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders()
+                .set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
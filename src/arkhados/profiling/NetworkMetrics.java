@@ -0,0 +1,156 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.profiling;
+
+import arkhados.net.Command;
+import arkhados.net.CommandCodecs;
+import arkhados.net.OneTrueMessage;
+import arkhados.net.OtmIdCommandListPair;
+import arkhados.ui.hud.ServerClientDataStrings;
+import com.jme3.network.HostedConnection;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counts commands and bytes that are sent to each connection, broken down
+ * by Command class. Bytes are sizes of commands as CommandCodecs writes
+ * them, without message and packet headers. Guaranteed commands are
+ * counted every time they are resent. Main thread only.
+ */
+public class NetworkMetrics {
+
+    private final Map<HostedConnection, ConnectionStats> connections
+            = new LinkedHashMap<>();
+    /**
+     * Same command is usually sent to many connections, so its size is
+     * measured once per tick
+     */
+    private final Map<Command, Integer> sizes = new IdentityHashMap<>();
+    private final ByteBuffer scratch = ByteBuffer.allocate(64 * 1024);
+
+    public void countMessage(HostedConnection connection,
+            OneTrueMessage otm) {
+        ConnectionStats stats = connections.get(connection);
+        if (stats == null) {
+            stats = new ConnectionStats(connection);
+            connections.put(connection, stats);
+        }
+
+        List<OtmIdCommandListPair> guaranteed = otm.getGuaranteed();
+        for (int i = 0; i < guaranteed.size(); ++i) {
+            List<Command> commands = guaranteed.get(i).getCommandList();
+            for (int j = 0; j < commands.size(); ++j) {
+                count(stats, commands.get(j));
+            }
+        }
+
+        List<Command> unreliables = otm.getUnreliables();
+        for (int i = 0; i < unreliables.size(); ++i) {
+            count(stats, unreliables.get(i));
+        }
+    }
+
+    public void endTick() {
+        sizes.clear();
+    }
+
+    public void removeConnection(HostedConnection connection) {
+        connections.remove(connection);
+    }
+
+    private void count(ConnectionStats stats, Command command) {
+        Integer size = sizes.get(command);
+        if (size == null) {
+            size = measure(command);
+            sizes.put(command, size);
+        }
+
+        long[] counts = stats.byClass.get(command.getClass());
+        if (counts == null) {
+            counts = new long[2];
+            stats.byClass.put(command.getClass(), counts);
+        }
+
+        ++counts[0];
+        counts[1] += size;
+    }
+
+    private int measure(Command command) {
+        scratch.clear();
+        try {
+            CommandCodecs.writeCommand(scratch, command);
+        } catch (IOException | BufferOverflowException ex) {
+            return 0;
+        }
+
+        return scratch.position();
+    }
+
+    void appendReport(StringBuilder builder) {
+        builder.append("Sent commands / bytes:")
+                .append(System.lineSeparator());
+        for (ConnectionStats stats : connections.values()) {
+            long commands = 0;
+            long bytes = 0;
+            for (long[] counts : stats.byClass.values()) {
+                commands += counts[0];
+                bytes += counts[1];
+            }
+
+            Integer playerId = stats.connection
+                    .getAttribute(ServerClientDataStrings.PLAYER_ID);
+            builder.append(String.format(Locale.ROOT,
+                    "  connection %d (player %s) %10d %12d%n",
+                    stats.connection.getId(), playerId, commands, bytes));
+
+            List<Map.Entry<Class<?>, long[]>> entries
+                    = new ArrayList<>(stats.byClass.entrySet());
+            entries.sort((a, b) -> Long.compare(b.getValue()[1],
+                    a.getValue()[1]));
+            for (Map.Entry<Class<?>, long[]> entry : entries) {
+                builder.append(String.format(Locale.ROOT,
+                        "    %-26s %10d %12d%n",
+                        entry.getKey().getSimpleName(), entry.getValue()[0],
+                        entry.getValue()[1]));
+            }
+        }
+    }
+
+    void reset() {
+        for (ConnectionStats stats : connections.values()) {
+            for (long[] counts : stats.byClass.values()) {
+                counts[0] = 0;
+                counts[1] = 0;
+            }
+        }
+    }
+
+    private static class ConnectionStats {
+
+        final HostedConnection connection;
+        final Map<Class<?>, long[]> byClass = new LinkedHashMap<>();
+
+        ConnectionStats(HostedConnection connection) {
+            this.connection = connection;
+        }
+    }
+}
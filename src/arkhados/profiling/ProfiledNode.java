@@ -0,0 +1,98 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.profiling;
+
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.Control;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Root node that updates its scene graph like Node does, but times every
+ * control update and charges it to control's type in TickProfiler.
+ */
+public class ProfiledNode extends Node {
+
+    private final TickProfiler profiler;
+    private final TickProfiler.Section geometricState;
+    /**
+     * Controls and children are copied here before they are updated,
+     * because updates can add and remove them. Shared by all levels of
+     * recursion so that nothing is allocated.
+     */
+    private final List<Control> controlQueue = new ArrayList<>();
+    private final List<Spatial> childQueue = new ArrayList<>();
+
+    public ProfiledNode(String name, TickProfiler profiler) {
+        super(name);
+        this.profiler = profiler;
+        geometricState = profiler.section("Geometric state",
+                TickProfiler.OTHER);
+    }
+
+    @Override
+    public void updateLogicalState(float tpf) {
+        update(this, tpf);
+    }
+
+    @Override
+    public void updateGeometricState() {
+        long start = System.nanoTime();
+        super.updateGeometricState();
+        geometricState.add(System.nanoTime() - start);
+    }
+
+    private void update(Spatial spatial, float tpf) {
+        int firstControl = controlQueue.size();
+        int controlCount = spatial.getNumControls();
+        for (int i = 0; i < controlCount; ++i) {
+            controlQueue.add(spatial.getControl(i));
+        }
+
+        for (int i = firstControl; i < firstControl + controlCount; ++i) {
+            Control control = controlQueue.get(i);
+            long start = System.nanoTime();
+            control.update(tpf);
+            profiler.section(control.getClass(), TickProfiler.CONTROL)
+                    .add(System.nanoTime() - start);
+        }
+
+        truncate(controlQueue, firstControl);
+
+        if (!(spatial instanceof Node)) {
+            return;
+        }
+
+        Node node = (Node) spatial;
+        int firstChild = childQueue.size();
+        int childCount = node.getQuantity();
+        for (int i = 0; i < childCount; ++i) {
+            childQueue.add(node.getChild(i));
+        }
+
+        for (int i = firstChild; i < firstChild + childCount; ++i) {
+            update(childQueue.get(i), tpf);
+        }
+
+        truncate(childQueue, firstChild);
+    }
+
+    private static void truncate(List<?> list, int size) {
+        while (list.size() > size) {
+            list.remove(list.size() - 1);
+        }
+    }
+}
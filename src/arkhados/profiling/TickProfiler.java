@@ -0,0 +1,347 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.profiling;
+
+import arkhados.Sync;
+import arkhados.net.InboundPipeline;
+import arkhados.net.OutboundPipeline;
+import com.jme3.app.state.AbstractAppState;
+import com.jme3.app.state.AppState;
+import com.jme3.app.state.AppStateManager;
+import com.jme3.renderer.RenderManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures where server's frame time goes. Every AppState, control type and
+ * few other parts of the frame have a Section that collects time spent in
+ * them per tick into a histogram. Summary of the histograms is logged and
+ * published for MetricsEndpoint periodically, after which they start over.
+ *
+ * AppStates are timed with markers: attach(state) attaches a marker after
+ * the state and the marker charges time since previous marker to the
+ * state. Controls are timed by ProfiledNode.
+ *
+ * Everything except getReport must be called on main thread.
+ */
+public class TickProfiler {
+
+    private static final Logger logger
+            = Logger.getLogger(TickProfiler.class.getName());
+    public static final int STATE = 0;
+    public static final int CONTROL = 1;
+    public static final int OTHER = 2;
+    private static final String[] KIND_TITLES
+            = {"AppStates", "Controls", "Other"};
+    private final String name;
+    private final long reportInterval;
+    private final Map<Object, Section> sections = new HashMap<>();
+    private final List<Section> sectionList = new ArrayList<>();
+    private final Section tick;
+    private final Section tasks;
+    private NetworkMetrics network;
+    private InboundPipeline inbound;
+    private OutboundPipeline outbound;
+    private Sync sync;
+    private boolean startAttached = false;
+    private long tickStart;
+    private long mark;
+    private long periodStart = System.nanoTime();
+    private volatile String report;
+
+    /**
+     * @param reportInterval seconds between reports
+     */
+    public TickProfiler(String name, float reportInterval) {
+        this.name = name;
+        this.reportInterval = (long) (reportInterval * 1e9f);
+        report = name + ": no data yet\n";
+        tick = section("Tick", OTHER);
+        tasks = section("Queued tasks", OTHER);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setNetworkMetrics(NetworkMetrics network) {
+        this.network = network;
+    }
+
+    public void setInbound(InboundPipeline inbound) {
+        this.inbound = inbound;
+    }
+
+    public void setSync(Sync sync) {
+        this.sync = sync;
+    }
+
+    public void setOutbound(OutboundPipeline outbound) {
+        this.outbound = outbound;
+    }
+
+    /**
+     * @return latest report. Can be called from any thread
+     */
+    public String getReport() {
+        return report;
+    }
+
+    public Section section(Class<?> type, int kind) {
+        Section section = sections.get(type);
+        if (section == null) {
+            section = section(type.getSimpleName(), kind);
+            sections.put(type, section);
+        }
+
+        return section;
+    }
+
+    public Section section(String sectionName, int kind) {
+        Section section = sections.get(sectionName);
+        if (section == null) {
+            section = new Section(sectionName, kind);
+            sections.put(sectionName, section);
+            sectionList.add(section);
+        }
+
+        return section;
+    }
+
+    /**
+     * Attaches state followed by a marker that times it
+     */
+    public void attach(AppStateManager stateManager, AppState state) {
+        if (!startAttached) {
+            startAttached = true;
+            stateManager.attach(new Marker(tasks, true));
+        }
+
+        stateManager.attach(state);
+        stateManager.attach(new Marker(section(state.getClass(), STATE),
+                false));
+    }
+
+    public void beginTick() {
+        tickStart = System.nanoTime();
+        mark = tickStart;
+    }
+
+    public void endTick() {
+        long now = System.nanoTime();
+        tick.add(now - tickStart);
+        for (int i = 0; i < sectionList.size(); ++i) {
+            sectionList.get(i).endTick();
+        }
+
+        if (now - periodStart >= reportInterval) {
+            publish(now);
+        }
+    }
+
+    private void mark(Section section) {
+        long now = System.nanoTime();
+        section.add(now - mark);
+        mark = now;
+    }
+
+    private void resetMark() {
+        mark = System.nanoTime();
+    }
+
+    private void publish(long now) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT,
+                "%s: %.1f s, %d ticks. Per tick in ms: mean / p50 / p99 /"
+                + " max%n", name, (now - periodStart) / 1e9,
+                tick.ticks));
+
+        appendSection(builder, tick);
+        for (int kind = STATE; kind <= OTHER; ++kind) {
+            List<Section> ofKind = new ArrayList<>();
+            for (Section section : sectionList) {
+                if (section.kind == kind && section != tick
+                        && section.ticks > 0) {
+                    ofKind.add(section);
+                }
+            }
+
+            if (ofKind.isEmpty()) {
+                continue;
+            }
+
+            ofKind.sort((a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+            builder.append(KIND_TITLES[kind]).append(':')
+                    .append(System.lineSeparator());
+            for (Section section : ofKind) {
+                appendSection(builder, section);
+            }
+        }
+
+        if (network != null) {
+            network.appendReport(builder);
+            network.reset();
+        }
+
+        if (inbound != null) {
+            inbound.appendReport(builder);
+            inbound.resetMetrics();
+        }
+
+        if (outbound != null) {
+            outbound.appendReport(builder);
+            outbound.resetMetrics();
+        }
+
+        if (sync != null) {
+            sync.appendReport(builder);
+            sync.resetMetrics();
+        }
+
+        for (Section section : sectionList) {
+            section.reset();
+        }
+
+        periodStart = now;
+        report = builder.toString();
+        logger.log(Level.INFO, report);
+    }
+
+    private static void appendSection(StringBuilder builder,
+            Section section) {
+        builder.append(String.format(Locale.ROOT,
+                "  %-28s %8.3f %8.3f %8.3f %8.3f%n", section.name,
+                section.totalNanos / 1e6 / section.ticks,
+                section.percentile(0.5), section.percentile(0.99),
+                section.maxNanos / 1e6));
+    }
+
+    /**
+     * Time spent in one part of the frame
+     */
+    public static class Section {
+
+        /**
+         * Bucket 0 is for ticks under 1 microsecond and bucket i for ticks
+         * under 2^i microseconds
+         */
+        private static final int BUCKETS = 24;
+        private final String name;
+        private final int kind;
+        private final long[] buckets = new long[BUCKETS];
+        private long tickNanos = 0;
+        private boolean ran = false;
+        private long ticks = 0;
+        private long totalNanos = 0;
+        private long maxNanos = 0;
+
+        Section(String name, int kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+
+        public void add(long nanos) {
+            tickNanos += nanos;
+            ran = true;
+        }
+
+        void endTick() {
+            if (!ran) {
+                return;
+            }
+
+            long micros = tickNanos / 1000;
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            ++buckets[Math.min(bucket, BUCKETS - 1)];
+            ++ticks;
+            totalNanos += tickNanos;
+            maxNanos = Math.max(maxNanos, tickNanos);
+            tickNanos = 0;
+            ran = false;
+        }
+
+        /**
+         * @return upper bound of bucket that has given percentile in
+         * milliseconds
+         */
+        double percentile(double fraction) {
+            long wanted = (long) Math.ceil(ticks * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; ++i) {
+                seen += buckets[i];
+                if (seen >= wanted) {
+                    return Math.min((1L << i) / 1000.0, maxNanos / 1e6);
+                }
+            }
+
+            return maxNanos / 1e6;
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; ++i) {
+                buckets[i] = 0;
+            }
+
+            ticks = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+        }
+    }
+
+    /**
+     * Charges time since previous marker to its section. Update, render and
+     * postRender are separate phases, so first marker only restarts timing
+     * in render and postRender. In update it charges queued tasks and
+     * states that were attached before profiling.
+     */
+    private class Marker extends AbstractAppState {
+
+        private final Section section;
+        private final boolean first;
+
+        Marker(Section section, boolean first) {
+            this.section = section;
+            this.first = first;
+        }
+
+        @Override
+        public void update(float tpf) {
+            mark(section);
+        }
+
+        @Override
+        public void render(RenderManager rm) {
+            if (first) {
+                resetMark();
+            } else {
+                mark(section);
+            }
+        }
+
+        @Override
+        public void postRender() {
+            if (first) {
+                resetMark();
+            } else {
+                mark(section);
+            }
+        }
+    }
+}
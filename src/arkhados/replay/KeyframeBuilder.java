@@ -0,0 +1,120 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.replay;
+
+import arkhados.SnapshotDecoder;
+import arkhados.messages.sync.CmdAddEntity;
+import arkhados.messages.sync.CmdRemoveEntity;
+import arkhados.messages.sync.CmdSnapshot;
+import arkhados.messages.sync.statedata.StateData;
+import arkhados.net.Command;
+import com.jme3.util.IntMap;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Follows recorded commands and tracks which entities every player knows
+ * about and their latest states. Keyframe is that knowledge written as
+ * commands: CmdAddEntity for every entity, one full CmdSnapshot and latest
+ * other StateDatas. Applying keyframe to empty world gives the same entities
+ * that player had at keyframe's time.
+ */
+public class KeyframeBuilder {
+
+    private final IntMap<PlayerKnowledge> players = new IntMap<>();
+
+    public void record(Command command, int playerId, float time) {
+        if (command instanceof CmdAddEntity) {
+            CmdAddEntity add = (CmdAddEntity) command;
+            PlayerKnowledge knowledge = knowledgeOf(playerId);
+            knowledge.forget(add.getEntityId());
+            knowledge.entities.put(add.getEntityId(),
+                    new AddedEntity(add, time));
+        } else if (command instanceof CmdRemoveEntity) {
+            knowledgeOf(playerId)
+                    .forget(((CmdRemoveEntity) command).getEntityId());
+        } else if (command instanceof CmdSnapshot) {
+            knowledgeOf(playerId).decoder.decode((CmdSnapshot) command, null);
+        } else if (command instanceof StateData) {
+            StateData state = (StateData) command;
+            PlayerKnowledge knowledge = knowledgeOf(playerId);
+            if (knowledge.entities.containsKey(state.getSyncId())) {
+                knowledge.states.put(state.getSyncId(), state);
+            }
+        }
+    }
+
+    /**
+     * Writes keyframe of all players as chunk commands
+     */
+    public void write(ByteBuffer buffer, float time) throws IOException {
+        for (IntMap.Entry<PlayerKnowledge> entry : players) {
+            int playerId = entry.getKey();
+            PlayerKnowledge knowledge = entry.getValue();
+
+            for (IntMap.Entry<AddedEntity> added : knowledge.entities) {
+                AddedEntity entity = added.getValue();
+                ReplaySerializer.writeCommand(buffer,
+                        entity.command.aged(time - entity.time), playerId,
+                        time);
+            }
+
+            CmdSnapshot snapshot = knowledge.decoder.fullSnapshot();
+            if (snapshot != null) {
+                ReplaySerializer.writeCommand(buffer, snapshot, playerId,
+                        time);
+            }
+
+            for (IntMap.Entry<StateData> state : knowledge.states) {
+                ReplaySerializer.writeCommand(buffer, state.getValue(),
+                        playerId, time);
+            }
+        }
+    }
+
+    private PlayerKnowledge knowledgeOf(int playerId) {
+        PlayerKnowledge knowledge = players.get(playerId);
+        if (knowledge == null) {
+            knowledge = new PlayerKnowledge();
+            players.put(playerId, knowledge);
+        }
+
+        return knowledge;
+    }
+
+    private static class PlayerKnowledge {
+
+        final IntMap<AddedEntity> entities = new IntMap<>();
+        final IntMap<StateData> states = new IntMap<>();
+        final SnapshotDecoder decoder = new SnapshotDecoder();
+
+        void forget(int entityId) {
+            entities.remove(entityId);
+            states.remove(entityId);
+            decoder.forget(entityId);
+        }
+    }
+
+    private static class AddedEntity {
+
+        final CmdAddEntity command;
+        final float time;
+
+        AddedEntity(CmdAddEntity command, float time) {
+            this.command = command;
+            this.time = time;
+        }
+    }
+}
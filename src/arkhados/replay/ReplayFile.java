@@ -0,0 +1,250 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.replay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Memory mapped replay file. Indexed replays are read one chunk at a time;
+ * older formats are read to ReplayData in one go.
+ */
+public class ReplayFile {
+
+    private static final Logger logger
+            = Logger.getLogger(ReplayFile.class.getName());
+    private final ReplaySerializer serializer = new ReplaySerializer();
+    private final MappedByteBuffer buffer;
+    private final ReplayHeader header = new ReplayHeader();
+    private final byte flag;
+    private final int dataStart;
+    private long[] offsets = new long[0];
+    private float[] startTimes = new float[0];
+    private float[] endTimes = new float[0];
+    private boolean[] keyframes = new boolean[0];
+    private int chunkCount = 0;
+
+    public ReplayFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+
+        serializer.readHeader(buffer, header);
+        flag = buffer.get();
+        dataStart = buffer.position();
+
+        if (flag == ReplaySerializer.FLAG_INDEXED && !readIndex()) {
+            logger.log(Level.WARNING, "Replay has no index. Recording was"
+                    + " probably interrupted. Scanning chunks");
+            scanChunks();
+        }
+    }
+
+    public boolean isIndexed() {
+        return flag == ReplaySerializer.FLAG_INDEXED;
+    }
+
+    public ReplayHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Reads whole replay. Used for replays that are not indexed
+     */
+    public ReplayData readAll() throws IOException {
+        ByteBuffer data = buffer.duplicate();
+        data.position(0);
+        return serializer.readObject(data, ReplayData.class);
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public float getStartTime(int chunk) {
+        return startTimes[chunk];
+    }
+
+    public float getEndTime(int chunk) {
+        return endTimes[chunk];
+    }
+
+    /**
+     * @return index of last chunk that starts at or before given time or 0
+     */
+    public int findChunk(float time) {
+        int index = Arrays.binarySearch(startTimes, 0, chunkCount, time);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // Many chunks can start at the same time
+            while (index + 1 < chunkCount
+                    && startTimes[index + 1] == time) {
+                ++index;
+            }
+        }
+
+        return Math.max(index, 0);
+    }
+
+    /**
+     * @return index of last chunk with keyframe that starts at or before
+     * given time or -1 if there is none
+     */
+    public int findKeyframe(float time) {
+        for (int i = findChunk(time); i >= 0; --i) {
+            if (keyframes[i]) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Reads commands of chunk that were sent to given player. Negative
+     * playerId reads commands of all players.
+     *
+     * @param keyframe where to add keyframe commands or null if they are not
+     * needed
+     */
+    public void readChunk(int chunk, int playerId,
+            List<ReplayCmdData> keyframe, List<ReplayCmdData> commands)
+            throws IOException {
+        ByteBuffer data = buffer.duplicate();
+        data.position((int) offsets[chunk]);
+
+        int compressedLength = data.getInt();
+        int length = data.getInt();
+        int keyframeLength = data.getInt();
+        data.getFloat(); // Start time
+        data.getFloat(); // End time
+
+        ByteBuffer uncompressed = ReplaySerializer.inflate(data,
+                compressedLength, length);
+
+        if (keyframeLength > 0) {
+            if (keyframe != null) {
+                uncompressed.limit(keyframeLength);
+                ReplaySerializer.readCommands(uncompressed, playerId,
+                        keyframe);
+                uncompressed.limit(length);
+            }
+
+            uncompressed.position(keyframeLength);
+        }
+
+        ReplaySerializer.readCommands(uncompressed, playerId, commands);
+    }
+
+    private boolean readIndex() throws IOException {
+        int limit = buffer.limit();
+        if (limit - dataStart < ReplaySerializer.TRAILER_LENGTH) {
+            return false;
+        }
+
+        ByteBuffer data = buffer.duplicate();
+        data.position(limit - ReplaySerializer.TRAILER_LENGTH);
+        long footerOffset = data.getLong();
+        if (data.getInt() != ReplaySerializer.INDEX_MAGIC
+                || footerOffset < dataStart || footerOffset >= limit) {
+            return false;
+        }
+
+        data.position((int) footerOffset);
+        if (data.getInt() != ReplaySerializer.END_OF_CHUNKS) {
+            return false;
+        }
+
+        serializer.readPlayers(data, header);
+
+        chunkCount = data.getInt();
+        offsets = new long[chunkCount];
+        startTimes = new float[chunkCount];
+        endTimes = new float[chunkCount];
+        keyframes = new boolean[chunkCount];
+        for (int i = 0; i < chunkCount; ++i) {
+            offsets[i] = data.getLong();
+            startTimes[i] = data.getFloat();
+            endTimes[i] = data.getFloat();
+            keyframes[i] = data.get() != 0;
+        }
+
+        return true;
+    }
+
+    /**
+     * Builds index by walking through chunks. Player names are lost with
+     * footer so players are found from commands.
+     */
+    private void scanChunks() throws IOException {
+        ByteBuffer data = buffer.duplicate();
+        data.position(dataStart);
+
+        List<long[]> found = new ArrayList<>();
+        List<ReplayCmdData> commands = new ArrayList<>();
+
+        while (data.remaining() >= 20) {
+            int offset = data.position();
+            int compressedLength = data.getInt();
+            if (compressedLength < 0
+                    || data.remaining() < compressedLength + 16) {
+                break;
+            }
+
+            data.getInt(); // Length
+            int keyframeLength = data.getInt();
+            float startTime = data.getFloat();
+            float endTime = data.getFloat();
+            data.position(data.position() + compressedLength);
+
+            found.add(new long[]{offset, Float.floatToIntBits(startTime),
+                Float.floatToIntBits(endTime), keyframeLength >= 0 ? 1 : 0});
+        }
+
+        chunkCount = found.size();
+        offsets = new long[chunkCount];
+        startTimes = new float[chunkCount];
+        endTimes = new float[chunkCount];
+        keyframes = new boolean[chunkCount];
+        for (int i = 0; i < chunkCount; ++i) {
+            long[] entry = found.get(i);
+            offsets[i] = entry[0];
+            startTimes[i] = Float.intBitsToFloat((int) entry[1]);
+            endTimes[i] = Float.intBitsToFloat((int) entry[2]);
+            keyframes[i] = entry[3] != 0;
+
+            commands.clear();
+            readChunk(i, -1, null, commands);
+            for (ReplayCmdData command : commands) {
+                if (!header.getPlayers().containsKey(command.getPlayerId())) {
+                    header.getPlayers().put(command.getPlayerId(),
+                            "Player " + command.getPlayerId());
+                }
+            }
+        }
+    }
+}
@@ -14,6 +14,8 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados.replay;
 
+import arkhados.Globals;
+import arkhados.World;
 import arkhados.net.Command;
 import arkhados.net.CommandHandler;
 import arkhados.net.Receiver;
@@ -22,38 +24,78 @@ import com.jme3.math.FastMath;
 import com.jme3.network.HostedConnection;
 import com.jme3.network.Message;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ReplayReader extends AbstractAppState implements Receiver {
 
+    private static final Logger logger
+            = Logger.getLogger(ReplayReader.class.getName());
     private List<CommandHandler> handlers = new ArrayList<>();
     private ReplayData data;
+    /**
+     * Null if replay is in older format that has no index
+     */
+    private ReplayFile file;
+    /**
+     * Commands that are currently loaded. With indexed replays this is one
+     * chunk at a time.
+     */
+    private List<ReplayCmdData> commands = new ArrayList<>();
+    private final List<ReplayCmdData> keyframe = new ArrayList<>();
+    private int position = 0;
+    private int nextChunk = 0;
+    private int playerId = -1;
     private float time = 0f;
     private float speed = 1f;
-    private final ReplaySerializer serializer = new ReplaySerializer();
 
     public void loadReplay(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        data = serializer.readObject(buffer, ReplayData.class);
+        file = new ReplayFile(Paths.get(path));
+        if (file.isIndexed()) {
+            data = new ReplayData();
+            data.getHeader().setDate(file.getHeader().getDate());
+            data.getHeader().setVersion(file.getHeader().getVersion());
+            data.getHeader().setGameMode(file.getHeader().getGameMode());
+            data.getHeader().setArena(file.getHeader().getArena());
+            data.getHeader().getPlayers()
+                    .putAll(file.getHeader().getPlayers());
+            commands = new ArrayList<>();
+        } else {
+            data = file.readAll();
+            commands = data.getCommands();
+            file = null;
+        }
+
+        position = 0;
+        nextChunk = 0;
+        time = 0f;
     }
 
     public void selectPlayer(int playerId) {
-        List<ReplayCmdData> commands = data.getCommands();
-        for (Iterator<ReplayCmdData> it = commands.iterator(); it.hasNext();) {
-            ReplayCmdData cmdData = it.next();
-            if (cmdData.getPlayerId() != playerId) {
-                it.remove();
+        this.playerId = playerId;
+
+        if (file == null) {
+            for (Iterator<ReplayCmdData> it = commands.iterator();
+                    it.hasNext();) {
+                ReplayCmdData cmdData = it.next();
+                if (cmdData.getPlayerId() != playerId) {
+                    it.remove();
+                }
+            }
+        } else {
+            commands.clear();
+            position = 0;
+            nextChunk = 0;
+            while (commands.isEmpty() && loadNextChunk()) {
             }
         }
 
-        if (!commands.isEmpty()) {
-            time = FastMath.clamp(commands.get(0).getTime() - 1, 0f,
+        if (position < commands.size()) {
+            time = FastMath.clamp(commands.get(position).getTime() - 1, 0f,
                     Float.MAX_VALUE);
         }
     }
@@ -63,20 +105,113 @@ public class ReplayReader extends AbstractAppState implements Receiver {
         super.update(tpf);
 
         time += tpf * speed;
+        playUntil(time);
+    }
 
-        for (Iterator<ReplayCmdData> it = data.getCommands().iterator();
-                it.hasNext();) {
-            ReplayCmdData cmdData = it.next();
-            if (cmdData.getTime() <= time) {
-                // TODO: Simulate
-                handleCommand(cmdData.getCommand());
-                it.remove();
-            } else {
-                break;
+    /**
+     * Moves replay to given time. Seeking forward plays commands between
+     * current and given time. Seeking backward, or far forward, removes all
+     * entities, applies nearest preceding keyframe and plays commands after
+     * it. Only indexed replays can seek backward.
+     */
+    public void seek(float targetTime) {
+        if (file == null || playerId == -1) {
+            playForward(targetTime);
+            return;
+        }
+
+        int chunk = file.findKeyframe(targetTime);
+        if (chunk < 1) {
+            // Commands of first chunk set up the game, so it is never replayed
+            if (file.getChunkCount() < 2) {
+                playForward(targetTime);
+                return;
+            }
+
+            chunk = 1;
+            targetTime = Math.max(targetTime, file.getStartTime(1));
+        }
+
+        if (targetTime >= time && chunk < nextChunk) {
+            // Keyframe would not skip anything
+            playForward(targetTime);
+            return;
+        }
+
+        // Commands of keyframe go through the same queue after this, so
+        // they are applied to empty world
+        Globals.app.getStateManager().getState(World.class)
+                .queueRemoveAllEntities();
+
+        keyframe.clear();
+        commands.clear();
+        position = 0;
+        try {
+            file.readChunk(chunk, playerId, keyframe, commands);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Could not read replay", ex);
+            return;
+        }
+
+        nextChunk = chunk + 1;
+        for (ReplayCmdData cmdData : keyframe) {
+            handleCommand(cmdData.getCommand());
+        }
+        keyframe.clear();
+
+        time = targetTime;
+        playUntil(time);
+    }
+
+    private void playForward(float targetTime) {
+        if (targetTime < time) {
+            logger.log(Level.WARNING, "Can't seek backward to {0}",
+                    targetTime);
+            return;
+        }
+
+        time = targetTime;
+        playUntil(time);
+    }
+
+    private void playUntil(float until) {
+        while (true) {
+            if (position >= commands.size()) {
+                if (file == null || !loadNextChunk()) {
+                    return;
+                }
+                continue;
+            }
+
+            ReplayCmdData cmdData = commands.get(position);
+            if (cmdData.getTime() > until) {
+                return;
             }
+
+            // TODO: Simulate
+            handleCommand(cmdData.getCommand());
+            ++position;
         }
     }
 
+    private boolean loadNextChunk() {
+        if (nextChunk >= file.getChunkCount()) {
+            return false;
+        }
+
+        commands.clear();
+        position = 0;
+        try {
+            file.readChunk(nextChunk++, playerId, null, commands);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Could not read replay", ex);
+            nextChunk = file.getChunkCount();
+            return false;
+        }
+
+        return true;
+    }
+
     @Override
     public void registerCommandHandler(CommandHandler handler) {
         if (handler == null) {
@@ -126,6 +261,20 @@ public class ReplayReader extends AbstractAppState implements Receiver {
         return time;
     }
 
+    /**
+     * @return time of last command or -1 if it is not known without reading
+     * whole replay
+     */
+    public float getDuration() {
+        if (file != null) {
+            int count = file.getChunkCount();
+            return count > 0 ? file.getEndTime(count - 1) : 0f;
+        }
+
+        return commands.isEmpty() ? -1f
+                : commands.get(commands.size() - 1).getTime();
+    }
+
     public float getSpeed() {
         return speed;
     }
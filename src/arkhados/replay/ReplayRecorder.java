@@ -0,0 +1,334 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.replay;
+
+import arkhados.PlayerData;
+import arkhados.net.Command;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+/**
+ * Writes replay to disk while game is running. Commands are serialized to
+ * chunks on main thread and full chunks are compressed and written by
+ * background thread. There is fixed amount of chunks, so memory use does not
+ * depend on length of the game. If writer falls behind, main thread waits
+ * for a free chunk.
+ *
+ * Every chunk starts with keyframe so that ReplayReader can seek.
+ *
+ * See ReplaySerializer for the file format.
+ */
+public class ReplayRecorder {
+
+    private static final Logger logger
+            = Logger.getLogger(ReplayRecorder.class.getName());
+    private static final int RING_SIZE = 4;
+    private static final int HEADER_CAPACITY = 64 * 1024;
+    private final ReplaySerializer serializer = new ReplaySerializer();
+    private final BlockingQueue<Chunk> free
+            = new ArrayBlockingQueue<>(RING_SIZE);
+    /**
+     * One extra slot for end marker
+     */
+    private final BlockingQueue<Chunk> full
+            = new ArrayBlockingQueue<>(RING_SIZE + 1);
+    private final Chunk end = new Chunk(0);
+    private final ByteBuffer commandBuffer
+            = ByteBuffer.allocate(ReplaySerializer.CHUNK_CAPACITY);
+    private final Map<Integer, String> players = new HashMap<>();
+    private final BitSet chunkPlayers = new BitSet();
+    private final KeyframeBuilder keyframes = new KeyframeBuilder();
+    private final ReplayHeader header;
+    private final Path path;
+    private DataOutputStream out;
+    private Thread writerThread;
+    private Chunk current;
+    private boolean closed = false;
+    private volatile IOException failure;
+    /**
+     * Owned by writer thread
+     */
+    private long position;
+    private long[] chunkOffsets = new long[64];
+    private float[] chunkStartTimes = new float[64];
+    private float[] chunkEndTimes = new float[64];
+    private boolean[] chunkKeyframes = new boolean[64];
+    private int chunkCount = 0;
+
+    public ReplayRecorder(Path path, ReplayHeader header) {
+        this.path = path;
+        this.header = header;
+    }
+
+    public void open() throws IOException {
+        out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)));
+
+        ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_CAPACITY);
+        serializer.writeHeader(headerBuffer, header);
+        headerBuffer.put(ReplaySerializer.FLAG_INDEXED);
+        out.write(headerBuffer.array(), 0, headerBuffer.position());
+        out.flush();
+        position = headerBuffer.position();
+
+        for (int i = 0; i < RING_SIZE; ++i) {
+            free.add(new Chunk(ReplaySerializer.CHUNK_CAPACITY));
+        }
+
+        writerThread = new Thread(this::writeChunks, "replay-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public void addCommand(Command command, int playerId, float time) {
+        if (out == null || closed) {
+            return;
+        }
+
+        commandBuffer.clear();
+        try {
+            ReplaySerializer.writeCommand(commandBuffer, command, playerId,
+                    time);
+        } catch (IOException | BufferOverflowException ex) {
+            logger.log(Level.WARNING, "Could not record "
+                    + command.getClass().getSimpleName(), ex);
+            return;
+        }
+
+        commandBuffer.flip();
+
+        if (current != null && (time - current.startTime
+                >= ReplaySerializer.CHUNK_DURATION
+                || current.data.remaining() < commandBuffer.remaining())) {
+            seal();
+        }
+
+        if (current == null) {
+            current = takeFree();
+            if (current == null) {
+                return;
+            }
+
+            current.startTime = time;
+            writeKeyframe(time);
+        }
+
+        current.data.put(commandBuffer);
+        current.endTime = time;
+        chunkPlayers.set(playerId & 0xFF);
+        keyframes.record(command, playerId, time);
+    }
+
+    /**
+     * Writes remaining commands and footer and waits until writer thread is
+     * done
+     *
+     * @return false if recording failed
+     */
+    public boolean close() {
+        if (out == null || closed) {
+            return false;
+        }
+
+        closed = true;
+
+        if (current != null) {
+            seal();
+        }
+
+        updatePlayers();
+        full.add(end);
+
+        try {
+            writerThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        return failure == null;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private void writeKeyframe(float time) {
+        try {
+            keyframes.write(current.data, time);
+            current.keyframeLength = current.data.position();
+        } catch (IOException | BufferOverflowException ex) {
+            logger.log(Level.WARNING, "Could not write keyframe", ex);
+            current.data.clear();
+            current.keyframeLength = -1;
+        }
+
+        if (current.data.remaining() < commandBuffer.remaining()) {
+            // Keyframe was too big to leave room for commands
+            current.data.clear();
+            current.keyframeLength = -1;
+        }
+    }
+
+    private Chunk takeFree() {
+        Chunk chunk = free.poll();
+        if (chunk != null) {
+            return chunk;
+        }
+
+        logger.log(Level.INFO, "Replay writer is behind. Waiting");
+        try {
+            return free.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void seal() {
+        updatePlayers();
+        full.add(current);
+        current = null;
+    }
+
+    /**
+     * Player names are read once per chunk instead of once per command
+     */
+    private void updatePlayers() {
+        for (int id = chunkPlayers.nextSetBit(0); id >= 0;
+                id = chunkPlayers.nextSetBit(id + 1)) {
+            players.put(id, PlayerData.getStringData(id, PlayerData.NAME));
+        }
+
+        chunkPlayers.clear();
+    }
+
+    private void writeChunks() {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try {
+            while (true) {
+                Chunk chunk = full.take();
+                if (chunk == end) {
+                    break;
+                }
+
+                if (failure == null) {
+                    try {
+                        writeChunk(chunk, deflater, compressed);
+                    } catch (IOException ex) {
+                        logger.log(Level.SEVERE, "Writing replay failed", ex);
+                        failure = ex;
+                    }
+                }
+
+                chunk.data.clear();
+                free.add(chunk);
+            }
+
+            if (failure == null) {
+                writeFooter();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Writing replay failed", ex);
+            failure = ex;
+        } finally {
+            deflater.end();
+            try {
+                out.close();
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, null, ex);
+            }
+        }
+    }
+
+    private void writeChunk(Chunk chunk, Deflater deflater,
+            ByteArrayOutputStream compressed) throws IOException {
+        ReplaySerializer.deflate(chunk.data, deflater, compressed);
+        addToIndex(chunk);
+        out.writeInt(compressed.size());
+        out.writeInt(chunk.data.position());
+        out.writeInt(chunk.keyframeLength);
+        out.writeFloat(chunk.startTime);
+        out.writeFloat(chunk.endTime);
+        compressed.writeTo(out);
+        out.flush();
+        position += 20 + compressed.size();
+    }
+
+    private void addToIndex(Chunk chunk) {
+        if (chunkCount == chunkOffsets.length) {
+            int length = chunkCount * 2;
+            chunkOffsets = Arrays.copyOf(chunkOffsets, length);
+            chunkStartTimes = Arrays.copyOf(chunkStartTimes, length);
+            chunkEndTimes = Arrays.copyOf(chunkEndTimes, length);
+            chunkKeyframes = Arrays.copyOf(chunkKeyframes, length);
+        }
+
+        chunkOffsets[chunkCount] = position;
+        chunkStartTimes[chunkCount] = chunk.startTime;
+        chunkEndTimes[chunkCount] = chunk.endTime;
+        chunkKeyframes[chunkCount] = chunk.keyframeLength >= 0;
+        ++chunkCount;
+    }
+
+    private void writeFooter() throws IOException {
+        long footerOffset = position;
+        out.writeInt(ReplaySerializer.END_OF_CHUNKS);
+        ByteBuffer footer = ByteBuffer.allocate(HEADER_CAPACITY);
+        serializer.writePlayers(footer, players);
+        out.write(footer.array(), 0, footer.position());
+
+        out.writeInt(chunkCount);
+        for (int i = 0; i < chunkCount; ++i) {
+            out.writeLong(chunkOffsets[i]);
+            out.writeFloat(chunkStartTimes[i]);
+            out.writeFloat(chunkEndTimes[i]);
+            out.writeBoolean(chunkKeyframes[i]);
+        }
+
+        out.writeLong(footerOffset);
+        out.writeInt(ReplaySerializer.INDEX_MAGIC);
+        out.flush();
+    }
+
+    private static class Chunk {
+
+        final ByteBuffer data;
+        int keyframeLength;
+        float startTime;
+        float endTime;
+
+        Chunk(int capacity) {
+            data = ByteBuffer.allocate(capacity);
+        }
+    }
+}
@@ -14,6 +14,7 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados.replay;
 
+import arkhados.net.Command;
 import com.jme3.network.serializing.Serializer;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -21,44 +22,58 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 
+/**
+ * Replay file starts with header and flag that tells how commands are stored.
+ * Flags 0 and 1 store one ArrayList of ReplayCmdDatas, either raw or
+ * deflated as a whole.
+ *
+ * Flag 2 stores commands in deflated chunks that each cover at most
+ * CHUNK_DURATION seconds. Every chunk is compressed length, uncompressed
+ * length, start time and end time followed by compressed bytes. Chunks end
+ * with compressed length of -1 and footer that has player names, since they
+ * are not known when header is written.
+ *
+ * Flag 3 is like flag 2 but every chunk also has keyframe length after
+ * uncompressed length. Uncompressed chunk starts with keyframe, see
+ * KeyframeBuilder. Length is -1 if chunk has no keyframe. After player names
+ * footer has chunk index: count and offset, start time, end time and
+ * keyframe flag of every chunk. File ends with offset of footer and
+ * INDEX_MAGIC so that index can be found without reading chunks.
+ */
 public class ReplaySerializer extends Serializer {
 
+    public static final byte FLAG_UNCOMPRESSED = 0;
+    public static final byte FLAG_COMPRESSED = 1;
+    public static final byte FLAG_CHUNKED = 2;
+    public static final byte FLAG_INDEXED = 3;
+    public static final int INDEX_MAGIC = 0x41524B49;
+    public static final int TRAILER_LENGTH = 12;
+    public static final int END_OF_CHUNKS = -1;
+    public static final float CHUNK_DURATION = 5f;
+    public static final int CHUNK_CAPACITY = 256 * 1024;
+
     @Override
     public ReplayData readObject(ByteBuffer data, Class c) throws IOException {
         ReplayData replayData = new ReplayData();
 
-        Serializer stringSerializer = getExactSerializer(String.class);
-        Serializer dateSerializer = getExactSerializer(Date.class);
-        Serializer mapSerializer = getExactSerializer(HashMap.class);
-        Serializer seqSerializer = getExactSerializer(ArrayList.class);
-
-        Date date = dateSerializer.readObject(data, Date.class);
-        replayData.getHeader().setDate(date);
-
-        String version = stringSerializer.readObject(data, String.class);
-        replayData.getHeader().setVersion(version);
-
-        String gameMode = stringSerializer.readObject(data, String.class);
-        replayData.getHeader().setGameMode(gameMode);
-
-        String arena = stringSerializer.readObject(data, String.class);
-        replayData.getHeader().setArena(arena);
+        readHeader(data, replayData.getHeader());
 
-        HashMap map = mapSerializer.readObject(data, HashMap.class);
-        replayData.getHeader().getPlayers().putAll(map);
+        Serializer seqSerializer = getExactSerializer(ArrayList.class);
 
         byte flag = data.get();
 
-        if (flag == 0) {
+        if (flag == FLAG_UNCOMPRESSED) {
             ArrayList replayCmds = seqSerializer.readObject(data, ArrayList.class);
             replayData.getCommands().addAll(replayCmds);
-        } else if (flag == 1) {
+        } else if (flag == FLAG_COMPRESSED) {
             int decompressedLength = data.getInt();
             
             byte[] compressedBytes = new byte[data.remaining()];
@@ -81,6 +96,8 @@ public class ReplaySerializer extends Serializer {
             ArrayList replayCmds = seqSerializer
                     .readObject(decompressedBuffer, ArrayList.class);
             replayData.getCommands().addAll(replayCmds);
+        } else if (flag == FLAG_CHUNKED || flag == FLAG_INDEXED) {
+            readChunks(data, replayData, flag == FLAG_INDEXED);
         }
 
         return replayData;
@@ -94,46 +111,203 @@ public class ReplaySerializer extends Serializer {
 
         ReplayData replayData = (ReplayData) object;
 
+        writeHeader(buffer, replayData.getHeader());
+        buffer.put(FLAG_CHUNKED);
+
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_CAPACITY);
+        ByteBuffer command = ByteBuffer.allocate(CHUNK_CAPACITY);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        float startTime = 0f;
+        float endTime = 0f;
+
+        for (ReplayCmdData cmdData : replayData.getCommands()) {
+            command.clear();
+            writeCommand(command, cmdData.getCommand(),
+                    cmdData.getPlayerId(), cmdData.getTime());
+            command.flip();
+
+            if (chunk.position() > 0
+                    && (cmdData.getTime() - startTime >= CHUNK_DURATION
+                    || chunk.remaining() < command.remaining())) {
+                putChunk(buffer, chunk, startTime, endTime, deflater,
+                        compressed);
+            }
+
+            if (chunk.position() == 0) {
+                startTime = cmdData.getTime();
+            }
+
+            chunk.put(command);
+            endTime = cmdData.getTime();
+        }
+
+        if (chunk.position() > 0) {
+            putChunk(buffer, chunk, startTime, endTime, deflater, compressed);
+        }
+
+        deflater.end();
+
+        buffer.putInt(END_OF_CHUNKS);
+        writePlayers(buffer, replayData.getHeader().getPlayers());
+    }
+
+    public void writeHeader(ByteBuffer buffer, ReplayHeader header)
+            throws IOException {
         Serializer stringSerializer = getExactSerializer(String.class);
         Serializer dateSerializer = getExactSerializer(Date.class);
-        Serializer mapSerializer = getExactSerializer(HashMap.class);
-        Serializer seqSerializer = getExactSerializer(ArrayList.class);
 
-        dateSerializer.writeObject(buffer, replayData.getHeader().getDate());
+        dateSerializer.writeObject(buffer, header.getDate());
+
+        stringSerializer.writeObject(buffer, header.getVersion());
+        stringSerializer.writeObject(buffer, header.getGameMode());
+        stringSerializer.writeObject(buffer, header.getArena());
+
+        writePlayers(buffer, header.getPlayers());
+    }
+
+    public void readHeader(ByteBuffer data, ReplayHeader header)
+            throws IOException {
+        Serializer stringSerializer = getExactSerializer(String.class);
+        Serializer dateSerializer = getExactSerializer(Date.class);
+
+        Date date = dateSerializer.readObject(data, Date.class);
+        header.setDate(date);
+
+        String version = stringSerializer.readObject(data, String.class);
+        header.setVersion(version);
+
+        String gameMode = stringSerializer.readObject(data, String.class);
+        header.setGameMode(gameMode);
 
-        stringSerializer.writeObject(buffer, replayData.getHeader().getVersion());
-        stringSerializer.writeObject(buffer, replayData.getHeader().getGameMode());
-        stringSerializer.writeObject(buffer, replayData.getHeader().getArena());
+        String arena = stringSerializer.readObject(data, String.class);
+        header.setArena(arena);
+
+        readPlayers(data, header);
+    }
 
-        mapSerializer.writeObject(buffer, replayData.getHeader().getPlayers());
+    public void writePlayers(ByteBuffer buffer, Map<Integer, String> players)
+            throws IOException {
+        getExactSerializer(HashMap.class).writeObject(buffer, players);
+    }
 
-        byte flag = 1; // Compression on (mode 1)
-        buffer.put(flag);
+    public void readPlayers(ByteBuffer data, ReplayHeader header)
+            throws IOException {
+        HashMap map = getExactSerializer(HashMap.class)
+                .readObject(data, HashMap.class);
+        header.getPlayers().putAll(map);
+    }
 
-        ByteBuffer sequenceBuffer = ByteBuffer.allocate(314572800);
+    /**
+     * Writes one command of chunk
+     */
+    public static void writeCommand(ByteBuffer buffer, Command command,
+            int playerId, float time) throws IOException {
+        buffer.putFloat(time);
+        buffer.put((byte) playerId);
+        Serializer.writeClassAndObject(buffer, command);
+    }
 
-        seqSerializer.writeObject(sequenceBuffer, replayData.getCommands());
-        sequenceBuffer.flip();
+    /**
+     * Reads all commands of uncompressed chunk
+     */
+    public static void readCommands(ByteBuffer chunk,
+            List<ReplayCmdData> store) throws IOException {
+        readCommands(chunk, -1, store);
+    }
 
-        byte[] sequenceOutput = new byte[sequenceBuffer.remaining()];
-        sequenceBuffer.get(sequenceOutput);
-        
-        buffer.putInt(sequenceOutput.length);
+    /**
+     * Reads commands of uncompressed chunk that were sent to given player.
+     * Negative playerId reads all.
+     */
+    public static void readCommands(ByteBuffer chunk, int playerId,
+            List<ReplayCmdData> store) throws IOException {
+        while (chunk.hasRemaining()) {
+            float time = chunk.getFloat();
+            int commandPlayerId = chunk.get();
+            Command command = (Command) Serializer.readClassAndObject(chunk);
+            if (playerId < 0 || playerId == commandPlayerId) {
+                store.add(new ReplayCmdData(commandPlayerId, command, time));
+            }
+        }
+    }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        Deflater def = new Deflater(Deflater.BEST_SPEED);
-        def.setInput(sequenceOutput);
-        def.finish();
+    /**
+     * Deflates contents of chunk, from 0 to its position, to store
+     */
+    public static void deflate(ByteBuffer chunk, Deflater deflater,
+            ByteArrayOutputStream store) {
+        store.reset();
+        deflater.reset();
+        deflater.setInput(chunk.array(), 0, chunk.position());
+        deflater.finish();
 
         byte[] buf = new byte[8192];
-        while (!def.finished()) {
-            int byteCount = def.deflate(buf);
-            out.write(buf, 0, byteCount);
+        while (!deflater.finished()) {
+            int byteCount = deflater.deflate(buf);
+            store.write(buf, 0, byteCount);
+        }
+    }
+
+    public static ByteBuffer inflate(ByteBuffer data, int compressedLength,
+            int length) throws IOException {
+        byte[] compressedBytes = new byte[compressedLength];
+        data.get(compressedBytes);
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressedBytes);
+        byte[] bytes = new byte[length];
+        try {
+            if (inflater.inflate(bytes) != length) {
+                throw new IOException("Replay chunk is corrupted");
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException(ex);
+        } finally {
+            inflater.end();
         }
 
-        def.end();
-        byte[] compressedBytes = out.toByteArray();
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private void putChunk(ByteBuffer buffer, ByteBuffer chunk,
+            float startTime, float endTime, Deflater deflater,
+            ByteArrayOutputStream compressed) {
+        deflate(chunk, deflater, compressed);
+        buffer.putInt(compressed.size());
+        buffer.putInt(chunk.position());
+        buffer.putFloat(startTime);
+        buffer.putFloat(endTime);
+        buffer.put(compressed.toByteArray());
+        chunk.clear();
+    }
+
+    private void readChunks(ByteBuffer data, ReplayData replayData,
+            boolean indexed) throws IOException {
+        int chunkHeaderLength = indexed ? 16 : 12;
+        while (data.remaining() >= 4) {
+            int compressedLength = data.getInt();
+            if (compressedLength == END_OF_CHUNKS) {
+                readPlayers(data, replayData.getHeader());
+                return;
+            }
+
+            if (data.remaining() < compressedLength + chunkHeaderLength) {
+                // Recording was interrupted while chunk was being written
+                break;
+            }
+
+            int length = data.getInt();
+            int keyframeLength = indexed ? data.getInt() : 0;
+            data.getFloat(); // Start time
+            data.getFloat(); // End time
+            ByteBuffer chunk = inflate(data, compressedLength, length);
+            chunk.position(Math.max(keyframeLength, 0));
+            readCommands(chunk, replayData.getCommands());
+        }
 
-        buffer.put(compressedBytes);
+        Logger.getLogger(ReplaySerializer.class.getName())
+                .log(Level.WARNING, "Replay has no footer. Recording was"
+                        + " probably interrupted");
     }
 }
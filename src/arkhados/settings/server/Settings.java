@@ -106,7 +106,11 @@ public class Settings {
             + "defaultSyncFrequency = 0.05%n"
             + "masterServerAddress = \"52.28.234.119\"%n"
             + "masterServerPort = 12346%n"
-            + "gameMode = \"TeamDeathmatch\"%n%n"
+            + "gameMode = \"TeamDeathmatch\"%n"
+            + "matchCount = 4%n"
+            + "metricsPort = 12350%n"
+            + "metricsInterval = 10.0%n"
+            + "stateBytesPerTick = 1000%n%n"
             + "[GameModes]%n"
             + "[GameModes.Deathmatch]%n"
             + "killLimit = 25%n"
@@ -13,6 +13,10 @@ public class SettingsGeneral {
     private String masterServerAddress;
     private int masterServerPort;
     private String gameMode;
+    private int matchCount;
+    private int metricsPort;
+    private float metricsInterval;
+    private int stateBytesPerTick;
 
     public int getPort() {
         return port;
@@ -37,4 +41,33 @@ public class SettingsGeneral {
     public int getMasterServerPort() {
         return masterServerPort;
     }
+
+    /**
+     * @return how many matches MatchHost runs at the same time
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * @return port of local metrics endpoint. 0 disables it
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * @return seconds between profiler reports
+     */
+    public float getMetricsInterval() {
+        return metricsInterval > 0f ? metricsInterval : 10f;
+    }
+
+    /**
+     * @return how many bytes of entity states can be sent to one connection
+     * per sync. 0 means no limit
+     */
+    public int getStateBytesPerTick() {
+        return stateBytesPerTick;
+    }
 }
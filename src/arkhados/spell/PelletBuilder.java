@@ -40,8 +40,14 @@ import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.shape.Sphere;
 
+/**
+ * Shotgun and Machinegun pellets. Server flies pellets with World's
+ * ProjectileEngine, so they get physics only on client, which flies them
+ * from the state that server sends when they are launched.
+ */
 public class PelletBuilder extends AbstractNodeBuilder {
 
+    public static final float RADIUS = 1.7f;
     private float damage;
 
     public PelletBuilder(float damage) {
@@ -64,7 +70,7 @@ public class PelletBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.MASS, 0.30f);
         node.setUserData(UserData.DAMAGE, damage);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
-        if (world.isClient()) {
+        if (world().isClient()) {
             node.addControl(new CEntityEvent());
             /**
              * Here we specify what happens on client side when pellet is
@@ -76,7 +82,14 @@ public class PelletBuilder extends AbstractNodeBuilder {
             node.getControl(CEntityEvent.class)
                     .setOnRemoval(removalAction);
         }
-        SphereCollisionShape collisionShape = new SphereCollisionShape(1.7f);
+        CSpellBuff buffControl = new CSpellBuff();
+        if (world().isServer()) {
+            node.addControl(buffControl);
+            return node;
+        }
+
+        SphereCollisionShape collisionShape
+                = new SphereCollisionShape(RADIUS);
         RigidBodyControl physicsBody = new RigidBodyControl(collisionShape,
                 (float) node.getUserData(UserData.MASS));       
         /**
@@ -95,7 +108,6 @@ public class PelletBuilder extends AbstractNodeBuilder {
         node.addControl(collision);
         node.addControl(physicsBody);
         node.addControl(new CProjectile());
-        CSpellBuff buffControl = new CSpellBuff();
         node.addControl(buffControl);
         return node;
     }
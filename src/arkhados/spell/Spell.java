@@ -15,9 +15,9 @@
 package arkhados.spell;
 
 import arkhados.Globals;
+import arkhados.MatchContext;
 import arkhados.World;
 import arkhados.actions.EntityAction;
-import arkhados.controls.CProjectile;
 import arkhados.spell.spells.electrobot.Disc;
 import arkhados.spell.spells.electrobot.ElectricPull;
 import arkhados.spell.spells.electrobot.ElectricPull2;
@@ -73,26 +73,12 @@ import java.util.Map;
  */
 public abstract class Spell {
 
-    protected static World world = null;
     /**
-     * Spells has all spells mapped by their name so that spell data can be
-     * retrieved from anywhere
+     * Creates each spell and saves them to Spells-map of current match.
+     * Should be called only once per match
      */
-    private static final IntMap<Spell> Spells = new IntMap<>();
-    private static final Map<String, Integer> SpellNameCreationIdMap =
-            new HashMap<>();
-
-    /**
-     * Creates each spell and saves them to Spells-map. Should be called only
-     * once
-     */
-    public static void initSpells(EntityFactory entityFactory, World world) {
-        Spell.world = world;
-
+    public static void initSpells(EntityFactory entityFactory) {
         AbstractNodeBuilder.setAssetManager(Globals.assets);
-        AbstractNodeBuilder.setWorld(world);
-
-        CProjectile.setWorld(world);
 
         // *************** INIT spells here ************************
 
@@ -145,22 +131,36 @@ public abstract class Spell {
     private static void addSpell(EntityFactory entityFactory, Spell spell) {
         int nodeBuilderId = entityFactory.addNodeBuilder(spell.nodeBuilder);
         spell.setId(nodeBuilderId);
-        Spells.put(nodeBuilderId, spell);
-        SpellNameCreationIdMap.put(spell.getName(), nodeBuilderId);
+        Registry registry = registry();
+        registry.spells.put(nodeBuilderId, spell);
+        registry.spellNameCreationIdMap.put(spell.getName(), nodeBuilderId);
     }
 
     public static Spell getSpell(int creationId) {
-        return Spells.get(creationId);
+        return registry().spells.get(creationId);
     }
 
     public static Spell getSpell(String spellName) {
-        Integer creationId = SpellNameCreationIdMap.get(spellName);
+        Registry registry = registry();
+        Integer creationId = registry.spellNameCreationIdMap.get(spellName);
 
         if (creationId == null) {
             return null;
         }
 
-        return Spells.get(creationId);
+        return registry.spells.get(creationId);
+    }
+
+    /**
+     * @return World of current match
+     */
+    protected static World world() {
+        return MatchContext.current().getWorld();
+    }
+
+    private static Registry registry() {
+        return MatchContext.current().getAttachment(Registry.class,
+                Registry::new);
     }
     private final String name;
     private int id;
@@ -248,4 +248,14 @@ public abstract class Spell {
     public void setId(int id) {
         this.id = id;
     }
-}
\ No newline at end of file
+
+    /**
+     * Spells of one match mapped by their id and name so that spell data can
+     * be retrieved from anywhere
+     */
+    private static class Registry {
+
+        final IntMap<Spell> spells = new IntMap<>();
+        final Map<String, Integer> spellNameCreationIdMap = new HashMap<>();
+    }
+}
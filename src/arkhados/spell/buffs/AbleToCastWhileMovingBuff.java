@@ -20,6 +20,11 @@ public class AbleToCastWhileMovingBuff extends AbstractBuff {
         super(duration);
     }
 
+    @Override
+    public boolean allowsCastingWhileMoving() {
+        return true;
+    }
+
     public static class MyBuilder extends AbstractBuffBuilder {
 
         public MyBuilder(float duration) {
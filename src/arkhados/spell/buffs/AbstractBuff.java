@@ -14,6 +14,7 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados.spell.buffs;
 
+import arkhados.MatchContext;
 import arkhados.ServerFog;
 import arkhados.controls.CEntityVariable;
 import arkhados.controls.CInfluenceInterface;
@@ -24,6 +25,7 @@ import arkhados.util.UserData;
 import com.jme3.scene.Spatial;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base class for all buffs, negative or positive.
@@ -45,9 +47,10 @@ public abstract class AbstractBuff {
         }
     }
 
-    private static int currentBuffId = 0;
-    // TODO: Consider removing this. If there's going to be way to
-    private static Sender sender;
+    /**
+     * Shared by all matches so that ids are unique in the whole server
+     */
+    private static final AtomicInteger currentBuffId = new AtomicInteger();
     protected String name = null;
     private int typeId = -1;
     private int stacks = 1;
@@ -55,7 +58,7 @@ public abstract class AbstractBuff {
     protected CInfluenceInterface targetInterface = null;
     private CInfluenceInterface ownerInterface = null;
     protected boolean friendly = false;
-    private final int buffId = ++currentBuffId;
+    private final int buffId = currentBuffId.incrementAndGet();
     
     private final List<EndEventListener> buffEndHandlers 
             = new ArrayList<>();
@@ -152,11 +155,11 @@ public abstract class AbstractBuff {
     }
 
     protected static Sender getSender() {
-        return sender;
+        return MatchContext.current().getAttachment(Sender.class);
     }
 
     public static void setSender(Sender aSender) {
-        sender = aSender;
+        MatchContext.current().setAttachment(Sender.class, aSender);
     }
 
     protected int getBuffId() {
@@ -174,6 +177,29 @@ public abstract class AbstractBuff {
     public boolean isDamageSensitive() {
         return false;
     }
+
+    /**
+     * Adds buff's effect to stats. Called every tick while buff is active
+     */
+    public void applyStats(BuffStats stats) {
+    }
+
+    /**
+     * CInfluenceInterface caches this when buffs change, so it must not
+     * change while buff is active. Same goes for preventsMoving and
+     * allowsCastingWhileMoving.
+     */
+    public boolean preventsCasting() {
+        return false;
+    }
+
+    public boolean preventsMoving() {
+        return false;
+    }
+
+    public boolean allowsCastingWhileMoving() {
+        return false;
+    }
     
     public void addEndListener(EndEventListener listener) {
         buffEndHandlers.add(listener);
@@ -0,0 +1,34 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.spell.buffs;
+
+/**
+ * Combined effect of entity's buffs. CInfluenceInterface resets it every
+ * tick and every active buff adds its effect with AbstractBuff.applyStats.
+ */
+public class BuffStats {
+
+    public float speedFactor;
+    public float speedConstant;
+    public float damageFactor;
+    public float lifeSteal;
+
+    public void reset(float lifeStealBase) {
+        speedFactor = 1f;
+        speedConstant = 0f;
+        damageFactor = 1f;
+        lifeSteal = lifeStealBase;
+    }
+}
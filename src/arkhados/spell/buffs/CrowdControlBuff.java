@@ -24,12 +24,4 @@ public abstract class CrowdControlBuff extends AbstractBuff {
     public CrowdControlBuff(float duration) {
         super(duration);
     }
-
-    public boolean preventsCasting() {
-        return false;
-    }
-
-    public boolean preventsMoving() {
-        return false;
-    }
 }
@@ -31,6 +31,11 @@ public class DamageBuff extends AbstractBuff {
     public boolean isFriendly() {
         return factor > 1f;
     }
+
+    @Override
+    public void applyStats(BuffStats stats) {
+        stats.damageFactor *= factor;
+    }
     
     public static class MyBuilder extends AbstractBuffBuilder {
 
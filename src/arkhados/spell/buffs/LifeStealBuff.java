@@ -28,6 +28,11 @@ public class LifeStealBuff extends AbstractBuff {
         return amount;
     }        
 
+    @Override
+    public void applyStats(BuffStats stats) {
+        stats.lifeSteal += amount;
+    }
+
     public static class MyBuilder extends AbstractBuffBuilder {
         private float amount;
 
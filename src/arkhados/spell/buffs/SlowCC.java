@@ -33,6 +33,11 @@ public class SlowCC extends CrowdControlBuff {
         this.slowFactor = slowFactor;
     }
 
+    @Override
+    public void applyStats(BuffStats stats) {
+        stats.speedFactor *= getSlowFactor();
+    }
+
     public static class MyBuilder extends AbstractBuffBuilder {
 
         private float slowFactor;
@@ -39,6 +39,12 @@ public class SpeedBuff extends AbstractBuff {
         this.factor = factor;
     }
 
+    @Override
+    public void applyStats(BuffStats stats) {
+        stats.speedFactor *= getFactor();
+        stats.speedConstant += getConstant();
+    }
+
     public static class MyBuilder extends AbstractBuffBuilder {
         private final float constant;
         private final float percent;
@@ -166,7 +166,8 @@ class CDisc extends AbstractControl implements PhysicsCollisionListener, CSync {
             }
 
             // Remove
-            World world = Globals.app.getStateManager().getState(World.class);
+            World world = Globals.getApp().getStateManager()
+                    .getState(World.class);
             world.removeEntity((int) spatial.getUserData(UserData.ENTITY_ID),
                     RemovalReasons.EXPIRED);
             return;
@@ -347,7 +348,7 @@ class DiscBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 200f);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             final ParticleEmitter smoke = createTrailEmitter();
             node.attachChild(smoke);
 
@@ -387,7 +388,7 @@ class DiscBuilder extends AbstractNodeBuilder {
         node.addControl(physicsBody);
         physicsBody.setGravity(Vector3f.ZERO);
 
-        if (world.isServer()) {
+        if (world().isServer()) {
             CDisc cDisc = new CDisc();
             node.addControl(cDisc);
         }
@@ -69,7 +69,7 @@ public class ElectricBomb extends Spell {
                 CAST_TIME);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
-            ACastProjectile action = new ACastProjectile(spell, world);
+            ACastProjectile action = new ACastProjectile(spell, world());
             return action;
         };
 
@@ -161,7 +161,7 @@ class ElectricBombBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 0f);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             final ParticleEmitter smoke = createTrailEmitter();
             node.attachChild(smoke);
 
@@ -66,7 +66,7 @@ public class ElectricPull2 extends Spell {
                 cooldown, range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec)
-                -> new ACastOnGround(world, spell);
+                -> new ACastOnGround(world(), spell);
 
         spell.nodeBuilder = new ElectricPull2Builder();
 
@@ -229,7 +229,7 @@ class ElectricPull2Builder extends AbstractNodeBuilder {
 
         final float remainTime = 1f;
 
-        if (world.isServer()) {
+        if (world().isServer()) {
             node.addControl(new CCircleVisibility(radius));
 
             GhostControl ghost = new GhostControl(new CylinderCollisionShape(
@@ -241,7 +241,7 @@ class ElectricPull2Builder extends AbstractNodeBuilder {
             node.addControl(cAreaEffect);
 
             actionQueue.enqueueAction(new AFinish(cAreaEffect, node));
-        } else if (world.isClient()) {
+        } else if (world().isClient()) {
             ParticleEmitter black = createBlack(radius / 15f, delay);
             node.attachChild(black);
             black.setLocalTranslation(0f, 1f, 0f);
@@ -253,14 +253,14 @@ class ElectricPull2Builder extends AbstractNodeBuilder {
                     Vector3f worldTranslation = spatial.getWorldTranslation();
 
                     ParticleEmitter cyan = createCyan(radius, remainTime);
-                    world.getWorldRoot().attachChild(cyan);
+                    world().getWorldRoot().attachChild(cyan);
                     cyan.setLocalTranslation(worldTranslation);
                     cyan.move(0f, 1f, 0f);
                     cyan.addControl(new CTimedExistence(5f));
                     cyan.emitAllParticles();
 
                     ParticleEmitter white = createWhite(radius, remainTime);
-                    world.getWorldRoot().attachChild(white);
+                    world().getWorldRoot().attachChild(white);
                     white.setLocalTranslation(worldTranslation);
                     white.move(0f, 1f, 0f);
                     white.addControl(new CTimedExistence(5f));
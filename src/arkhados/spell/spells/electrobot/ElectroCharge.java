@@ -92,7 +92,7 @@ public class ElectroCharge extends Spell {
     static void end(Spatial owner, PhysicsSpace space,
             ElectroChargeCollisionHandler collisionHandler,
             GhostControl ghost) {
-        Globals.app.enqueue(() -> {
+        Globals.getApp().enqueue(() -> {
             space.removeCollisionListener(collisionHandler);
             space.remove(ghost);
             owner.removeControl(ghost);
@@ -100,7 +100,7 @@ class ElectronArmorBuff extends ArmorBuff {
         }
 
         if (getAmount() > 0f) {
-            Globals.app.enqueue(() -> {
+            Globals.getApp().enqueue(() -> {
                 new PowerBuff(6f).attachToCharacter(getOwnerInterface());
             });
         }
@@ -57,7 +57,7 @@ public class Energize extends Spell {
         public boolean update(float tpf) {
             CActionQueue queue = spatial.getControl(CActionQueue.class);
 
-            queue.enqueueAction(new ACastOnGround(world, spell));
+            queue.enqueueAction(new ACastOnGround(world(), spell));
             
             ACastSelfBuff aSelfBuff = new ACastSelfBuff();
             aSelfBuff.addBuff(new PowerBuff.MyBuilder(6f));
@@ -238,7 +238,7 @@ class EnergizeBuilder extends AbstractNodeBuilder {
 
         final float remainTime = 1f;
 
-        if (world.isServer()) {
+        if (world().isServer()) {
             node.addControl(new CCircleVisibility(radius));
 
             GhostControl ghost = new GhostControl(new CylinderCollisionShape(
@@ -251,7 +251,7 @@ class EnergizeBuilder extends AbstractNodeBuilder {
 
             actionQueue.enqueueAction(new AFinish(cAreaEffect, node,
                     remainTime));
-        } else if (world.isClient()) {
+        } else if (world().isClient()) {
             ParticleEmitter black = createDimCyan(radius / 15f, delay);
             node.attachChild(black);
             black.setLocalTranslation(0f, 1f, 0f);
@@ -263,7 +263,7 @@ class EnergizeBuilder extends AbstractNodeBuilder {
                     Vector3f worldTranslation = spatial.getWorldTranslation();
 
                     final ParticleEmitter cyan = createCyan(radius, remainTime);
-                    world.getWorldRoot().attachChild(cyan);
+                    world().getWorldRoot().attachChild(cyan);
                     cyan.setLocalTranslation(worldTranslation);
                     cyan.move(0f, 1f, 0f);
                     cyan.addControl(new CTimedExistence(5f));
@@ -271,7 +271,7 @@ class EnergizeBuilder extends AbstractNodeBuilder {
 
                     final ParticleEmitter white = 
                             createWhite(radius, remainTime);
-                    world.getWorldRoot().attachChild(white);
+                    world().getWorldRoot().attachChild(white);
                     white.setLocalTranslation(worldTranslation);
                     white.move(0f, 1f, 0f);
                     white.addControl(new CTimedExistence(5f));
@@ -68,7 +68,7 @@ public class Paralyze extends Spell {
         Paralyze spell = new Paralyze("Paralyze", cooldown, range, CAST_TIME);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
-            ACastProjectile action = new ACastProjectile(spell, world);
+            ACastProjectile action = new ACastProjectile(spell, world());
             action.setTypeId(ElectroBot.ACTION_PARALYZE);
             return action;
         };
@@ -177,7 +177,7 @@ class ParalysisBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 200f);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             final ParticleEmitter smoke = createTrailEmitter();
             node.attachChild(smoke);
 
@@ -49,8 +49,6 @@ import com.jme3.scene.Geometry;
 import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
 import com.jme3.scene.control.AbstractControl;
-import java.util.Iterator;
-import java.util.List;
 
 public class Zap extends Spell {
 
@@ -73,19 +71,18 @@ public class Zap extends Spell {
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
             boolean hadBuff = false;
-            List<AbstractBuff> buffs = caster
-                    .getControl(CInfluenceInterface.class).getBuffs();
-            for (Iterator<AbstractBuff> it = buffs.iterator(); it.hasNext();) {
-                AbstractBuff buff = it.next();
+            CInfluenceInterface cInfluence
+                    = caster.getControl(CInfluenceInterface.class);
+            for (AbstractBuff buff : cInfluence.getBuffs()) {
                 if (buff instanceof PowerBuff) {
                     hadBuff = true;
                     buff.destroy();
-                    it.remove();
+                    cInfluence.removeBuff(buff);
                     break;
                 }
             }
 
-            ACastProjectile action = new ACastProjectile(spell, world);
+            ACastProjectile action = new ACastProjectile(spell, world());
             action.setTypeId(ElectroBot.ACTION_ZAP);
             if (hadBuff) {
                 action.addBuff(new TriggerBuff.TriggerBuffBuilder());
@@ -182,7 +179,7 @@ class ZapBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 150f);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
 //            final ParticleEmitter smoke = createTrailEmitter();
 //            node.attachChild(smoke);
 
@@ -62,7 +62,7 @@ public class BlindingRay extends Spell {
                 = new BlindingRay("Blinding Ray", cooldown, range, CAST_TIME);
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
             ACastProjectile action
-                    = new ACastProjectile(spell, world);
+                    = new ACastProjectile(spell, world());
             action.setTypeId(EliteSoldier.ACTION_RAILGUN);
             return action;
         };
@@ -121,7 +121,7 @@ class RayBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 150f);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             ParticleEmitter smoke = createTrailEmitter();
             node.attachChild(smoke);
 
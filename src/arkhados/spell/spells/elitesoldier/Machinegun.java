@@ -21,7 +21,6 @@ import arkhados.controls.CActionQueue;
 import arkhados.controls.CCharacterPhysics;
 import arkhados.controls.CEliteSoldierAmmunition;
 import arkhados.controls.CInfluenceInterface;
-import arkhados.controls.CProjectile;
 import arkhados.spell.PelletBuilder;
 import arkhados.spell.Spell;
 import arkhados.util.UserData;
@@ -51,7 +50,7 @@ public class Machinegun extends Spell {
                 range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
-            AShootBullet shoot = new AShootBullet(spell, world);
+            AShootBullet shoot = new AShootBullet(spell, world());
             AChannelingSpell channeling =
                     new AChannelingSpell(spell, 10, 0.16f, shoot);
             return channeling;
@@ -107,12 +106,11 @@ class AShootBullet extends EntityAction {
         Float damageFactor = spatial.getUserData(UserData.DAMAGE_FACTOR);
         projectile.setUserData(UserData.DAMAGE, damage * damageFactor);
 
-        CProjectile projectileControl =
-                projectile.getControl(CProjectile.class);
-        projectileControl.setRange(spell.getRange());
-        projectileControl.setDirection(pelletDirection);
-        projectileControl.setOwnerInterface(spatial
-                .getControl(CInfluenceInterface.class));
+        float speed = projectile.getUserData(UserData.SPEED);
+        world.launchProjectile(projectileId,
+                pelletDirection.setY(0f).normalizeLocal().multLocal(speed),
+                PelletBuilder.RADIUS, spell.getRange(),
+                spatial.getControl(CInfluenceInterface.class), false);
         return false;
     }
 }
@@ -122,7 +122,7 @@ class PlasmaGrenadeBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 60f);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             ParticleEmitter plasma = createPlasmaEmitter();
             node.attachChild(plasma);
 
@@ -163,7 +163,7 @@ class PlasmaGrenadeBuilder extends AbstractNodeBuilder {
 
         node.addControl(physicsBody);
 
-        PhysicsSpace space = Globals.app.getStateManager()
+        PhysicsSpace space = Globals.getApp().getStateManager()
                 .getState(BulletAppState.class).getPhysicsSpace();
 
         Vector3f gravity = new Vector3f();
@@ -171,7 +171,7 @@ class PlasmaGrenadeBuilder extends AbstractNodeBuilder {
         space.getGravity(gravity);
         physicsBody.setGravity(gravity);
 
-        if (world.isServer()) {
+        if (world().isServer()) {
             CGrenade cGrenade = new CGrenade();
             node.addControl(cGrenade);
 
@@ -77,7 +77,7 @@ public class Plasmagun extends Spell {
 
         spell.castSpellActionBuilder = (Node caster, Vector3f location) -> {
             ACastProjectile projectileAction
-                    = new ACastProjectile(spell, world);
+                    = new ACastProjectile(spell, world());
             projectileAction.setTypeId(EliteSoldier.ACTION_PLASMAGUN);
             AChannelingSpell channel = new AChannelingSpell(spell,
                     3, 0.12f, projectileAction, true);
@@ -138,7 +138,7 @@ class PlasmaBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 60f);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             ParticleEmitter plasma = createPlasmaEmitter();
             node.attachChild(plasma);
 
@@ -175,6 +175,7 @@ class PlasmaBuilder extends AbstractNodeBuilder {
         node.addControl(physicsBody);
 
         CProjectile projectileControl = new CProjectile();
+        projectileControl.setSpawnOnlySync(true);
         ASplash splash = new ASplash(23f, 23f,
                 DistanceScaling.CONSTANT, null);
         splash.setSpatial(node);
@@ -70,8 +70,9 @@ public class Railgun extends Spell {
         Railgun spell = new Railgun("Railgun", cooldown, range, CAST_TIME);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
-            ACastProjectile action = new ACastProjectile(spell, world);
+            ACastProjectile action = new ACastProjectile(spell, world());
             action.setTypeId(EliteSoldier.ACTION_RAILGUN);
+            action.setLagCompensated(true);
             return action;
         };
 
@@ -163,7 +164,7 @@ class RailgunBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 300f);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             final ParticleEmitter smoke = createTrailEmitter();
             node.attachChild(smoke);
 
@@ -81,7 +81,8 @@ class ACastRocketJump extends EntityAction {
         // We set y to 1 to prevent ground collision on start
         final Vector3f startLocation = 
                 spatial.getLocalTranslation().add(0, 1f, 0);
-        World world = Globals.app.getStateManager().getState(World.class);
+        World world = Globals.getApp().getStateManager()
+                .getState(World.class);
         Spatial walls = world.getWorldRoot().getChild("Walls");
         final Vector3f finalLocation =  PathCheck.closestNonColliding(walls,
                 startLocation, spatial.getControl(CSpellCast.class)
@@ -78,7 +78,7 @@ public class RocketLauncher extends Spell {
 
         spell.castSpellActionBuilder = (Node caster, Vector3f location) -> {
             ACastProjectile castProjectile
-                    = new ACastProjectile(spell, world);
+                    = new ACastProjectile(spell, world());
             castProjectile.setTypeId(EliteSoldier.ACTION_ROCKET_LAUNCHER);
             return castProjectile;
         };
@@ -178,7 +178,7 @@ class RocketBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 210f);
         node.setUserData(UserData.IMPULSE_FACTOR, 23000f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             ParticleEmitter fire = createFireEmitter();
             node.attachChild(fire);
 
@@ -186,7 +186,7 @@ class RocketBuilder extends AbstractNodeBuilder {
             node.attachChild(smokeTrail);
 
             ParticleEmitter smokePuff = createSmokePuff();
-            world.getWorldRoot().attachChild(smokePuff);
+            world().getWorldRoot().attachChild(smokePuff);
             smokePuff.setLocalTranslation(params.location);
             smokePuff.addControl(new CTimedExistence(5f));
             smokePuff.emitAllParticles();
@@ -225,6 +225,7 @@ class RocketBuilder extends AbstractNodeBuilder {
         node.addControl(physicsBody);
 
         CProjectile projectileControl = new CProjectile();
+        projectileControl.setSpawnOnlySync(true);
 
         ASplash splash
                 = new ASplash(25f, 120f, DistanceScaling.LINEAR, null);
@@ -19,7 +19,6 @@ import arkhados.actions.EntityAction;
 import arkhados.characters.EliteSoldier;
 import arkhados.controls.CCharacterPhysics;
 import arkhados.controls.CInfluenceInterface;
-import arkhados.controls.CProjectile;
 import arkhados.spell.PelletBuilder;
 import arkhados.spell.Spell;
 import arkhados.util.UserData;
@@ -53,7 +52,7 @@ public class Shotgun extends Spell {
 
         spell.castSpellActionBuilder = (Node caster, Vector3f location) -> {
             ACastShotgun castShotgun =
-                    new ACastShotgun(spell, Spell.world);
+                    new ACastShotgun(spell, Spell.world());
             return castShotgun;
         };
 
@@ -113,12 +112,11 @@ class ACastShotgun extends EntityAction {
             projectile.setUserData(UserData.DAMAGE,
                     damage * damageFactor);
 
-            CProjectile projectileControl =
-                    projectile.getControl(CProjectile.class);
-            projectileControl.setRange(spell.getRange());
-            projectileControl.setDirection(pelletDirection);
-            projectileControl.setOwnerInterface(spatial
-                    .getControl(CInfluenceInterface.class));
+            float speed = projectile.getUserData(UserData.SPEED);
+            world.launchProjectile(projectileId,
+                    pelletDirection.setY(0f).normalizeLocal().multLocal(speed),
+                    PelletBuilder.RADIUS, spell.getRange(),
+                    spatial.getControl(CInfluenceInterface.class), true);
         }
 
         return false;
@@ -69,7 +69,7 @@ public class EmberCircle extends Spell {
                 range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
-            ACastOnGround castOnGround = new ACastOnGround(world, spell);
+            ACastOnGround castOnGround = new ACastOnGround(world(), spell);
             AbstractBuffBuilder ignite
                     = Ignite.ifNotCooldownCreateDamageOverTimeBuff(caster);
             if (ignite != null) {
@@ -194,7 +194,7 @@ class EmberCircleBuilder extends AbstractNodeBuilder {
         float delay = Math.max(0.8f - params.age, 0f);
         actionQueue.enqueueAction(new ADelay(delay));
 
-        if (world.isServer()) {
+        if (world().isServer()) {
             node.addControl(new CEmberCircleVisibility(radius));
 
             GhostControl ghost = new GhostControl(new CylinderCollisionShape(
@@ -206,14 +206,14 @@ class EmberCircleBuilder extends AbstractNodeBuilder {
             node.addControl(cAreaEffect);
 
             actionQueue.enqueueAction(new AFinish(cAreaEffect, node));
-        } else if (world.isClient()) {
+        } else if (world().isClient()) {
             actionQueue.enqueueAction(new EntityAction() {
                 @Override
                 public boolean update(float tpf) {
                     Vector3f worldTranslation = spatial.getWorldTranslation();
 
                     final ParticleEmitter fire = createFire(radius);
-                    world.getWorldRoot().attachChild(fire);
+                    world().getWorldRoot().attachChild(fire);
                     fire.setLocalTranslation(worldTranslation);
                     fire.move(0f, 1f, 0f);
                     fire.addControl(new CTimedExistence(10f));
@@ -221,7 +221,7 @@ class EmberCircleBuilder extends AbstractNodeBuilder {
                     // Smoke causes performance problems so it's disabled now
                     // TODO: Find a way to make smoke useable performancewise
 //                    final ParticleEmitter smoke = createSmoke(radius);
-//                    world.getWorldRoot().attachChild(smoke);
+//                    world().getWorldRoot().attachChild(smoke);
 //                    smoke.setLocalTranslation(worldTranslation);
 //                    smoke.move(0f, 1f, 0f);
 //                    smoke.addControl(new CTimedExistence(10f));
@@ -296,4 +296,9 @@ class CEmberCircleVisibility extends AbstractControl implements CVisibility {
         vec.normalizeLocal().multLocal(radius);
         return vec.addLocal(spatial.getLocalTranslation());
     }
+
+    @Override
+    public float getRadius() {
+        return radius;
+    }
 }
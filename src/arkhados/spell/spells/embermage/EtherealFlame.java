@@ -161,7 +161,7 @@ class AFireTrance extends EntityAction implements ATrance {
     @Override
     public void activate(Spatial activator) {
         CSpellCast spellCast = spatial.getControl(CSpellCast.class);
-        Spatial walls = Globals.app.getStateManager().getState(World.class)
+        Spatial walls = Globals.getApp().getStateManager().getState(World.class)
                 .getWorldRoot().getChild("Walls");
         float room = spatial.getControl(CCharacterPhysics.class)
                 .getCapsuleShape().getRadius();
@@ -71,7 +71,7 @@ public class Fireball extends Spell {
 
         spell.castSpellActionBuilder = (Node caster, Vector3f location) -> {
             ACastProjectile castProjectile
-                    = new ACastProjectile(spell, world);
+                    = new ACastProjectile(spell, world());
             AbstractBuffBuilder ignite
                     = Ignite.ifNotCooldownCreateDamageOverTimeBuff(caster);
             if (ignite != null) {
@@ -159,7 +159,7 @@ class FireballBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 170f);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             ParticleEmitter fire = createFireEmitter();
             node.attachChild(fire);
 
@@ -200,7 +200,9 @@ class FireballBuilder extends AbstractNodeBuilder {
 
         node.addControl(physicsBody);
 
-        node.addControl(new CProjectile());
+        CProjectile cProjectile = new CProjectile();
+        cProjectile.setSpawnOnlySync(true);
+        node.addControl(cProjectile);
         CSpellBuff buffControl = new CSpellBuff();
         node.addControl(buffControl);
 
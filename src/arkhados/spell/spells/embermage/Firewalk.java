@@ -76,7 +76,7 @@ public class Firewalk extends Spell {
                 = new Firewalk("Firewalk", cooldown, range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
-            ACastFirewalk castAction = new ACastFirewalk(spell, world);
+            ACastFirewalk castAction = new ACastFirewalk(spell, world());
             AbstractBuffBuilder ignite
                     = Ignite.ifNotCooldownCreateDamageOverTimeBuff(caster);
             if (ignite != null) {
@@ -222,7 +222,7 @@ public class Firewalk extends Spell {
 
             node.addControl(new CGenericSync());
 
-            if (world.isServer()) {
+            if (world().isServer()) {
                 SphereCollisionShape shape = new SphereCollisionShape(8f);
 
                 GhostControl ghost = new GhostControl(shape);
@@ -233,7 +233,7 @@ public class Firewalk extends Spell {
 
                 node.addControl(new CFirewalkCollisionHandler());
             }
-            if (AbstractNodeBuilder.world.isClient()) {
+            if (AbstractNodeBuilder.world().isClient()) {
                 final ParticleEmitter fire = createFireEmitter();
                 node.attachChild(fire);
             }
@@ -60,7 +60,7 @@ public class MagmaBash extends Spell {
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
             ACastProjectile action =
-                    new ACastProjectile(spell, world);
+                    new ACastProjectile(spell, world());
             return action;
         };
 
@@ -91,7 +91,7 @@ class MagmaBashBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
         node.setUserData(UserData.INCAPACITATE_LENGTH, 7.4f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             ParticleEmitter fire = new ParticleEmitter("fire-emitter",
                     ParticleMesh.Type.Triangle, 80);
             Material materialRed = new Material(assets,
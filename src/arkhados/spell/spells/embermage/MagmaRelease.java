@@ -71,7 +71,7 @@ public class MagmaRelease extends Spell {
 
         spell.castSpellActionBuilder = (Node caster, Vector3f location) -> {
             ACastProjectile castProjectile =
-                    new ACastProjectile(spell, Spell.world);
+                    new ACastProjectile(spell, Spell.world());
             AbstractBuffBuilder ignite =
                     Ignite.ifNotCooldownCreateDamageOverTimeBuff(caster);
             if (ignite != null) {
@@ -158,7 +158,7 @@ class MagmaReleaseBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 220f);
         node.setUserData(UserData.IMPULSE_FACTOR, 25000f);                
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             ParticleEmitter fire = createFireEmitter();
             node.attachChild(fire);
 
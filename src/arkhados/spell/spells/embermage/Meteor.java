@@ -74,7 +74,7 @@ public class Meteor extends Spell {
         final Meteor spell = new Meteor("Meteor", cooldown, range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
-            ACastMeteor action = new ACastMeteor(world, spell);
+            ACastMeteor action = new ACastMeteor(world(), spell);
             AbstractBuffBuilder ignite
                     = Ignite.ifNotCooldownCreateDamageOverTimeBuff(caster);
             if (ignite != null) {
@@ -251,7 +251,7 @@ class MeteorNodeBuilder extends AbstractNodeBuilder {
 
         node.addControl(new CGenericSync());
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             node.addControl(new CSyncInterpolation());
             node.addControl(new CEntityEvent());
             ParticleEmitter fire = createFireEmitter();
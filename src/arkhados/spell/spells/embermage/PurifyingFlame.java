@@ -58,7 +58,7 @@ public class PurifyingFlame extends Spell {
             ACastSelfBuff action = new ACastSelfBuff();
             Node aoeContainer = new Node("purifying-flame");
             
-            if (world.isServer()) {
+            if (world().isServer()) {
                 int playerId = caster.getUserData(UserData.PLAYER_ID);
                 aoeContainer.setUserData(UserData.PLAYER_ID, playerId);
                 
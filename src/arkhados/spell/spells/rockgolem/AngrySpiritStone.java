@@ -35,7 +35,7 @@ public class AngrySpiritStone extends Spell {
                 SpiritStone.RANGE, SpiritStone.CAST_TIME);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec)
-                -> new ASpiritStoneCast(spell, world);
+                -> new ASpiritStoneCast(spell, world());
 
         spell.nodeBuilder = new SpiritStoneBuilder(false);
 
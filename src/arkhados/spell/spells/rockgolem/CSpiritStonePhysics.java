@@ -51,8 +51,11 @@ public class CSpiritStonePhysics extends RigidBodyControl implements CSync {
             collisionListener = new SpiritStoneCollisionListener((Node) spatial,
                     world);
             space.addCollisionListener(collisionListener);
+            // Pellets are not in physics space
+            world.addProjectileObstacle(spatial, SpiritStone.RADIUS);
         } else if (this.space != null) {
             this.space.removeCollisionListener(collisionListener);
+            world.removeProjectileObstacle(spatial);
         }
     }
 
@@ -49,7 +49,7 @@ public class SealingBoulder extends Spell {
         final SealingBoulder spell
                 = new SealingBoulder("SealingBoulder", cooldown, range, castTime);
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
-            ACastProjectile action = new ACastProjectile(spell, world);
+            ACastProjectile action = new ACastProjectile(spell, world());
             return action;
         };
 
@@ -72,7 +72,7 @@ class SealingBoulderBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
         node.setUserData(UserData.INCAPACITATE_LENGTH, 7.4f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             AudioNode sound = new AudioNode(assets,
                     "Effects/Sound/MagmaBash.wav");
             node.attachChild(sound);
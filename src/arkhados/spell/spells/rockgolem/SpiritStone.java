@@ -57,7 +57,7 @@ public class SpiritStone extends Spell {
                 = new SpiritStone("Spirit Stone", COOLDOWN, RANGE, CAST_TIME);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec)
-                -> new ASpiritStoneCast(spell, world);
+                -> new ASpiritStoneCast(spell, world());
 
         spell.nodeBuilder = new SpiritStoneBuilder(true);
 
@@ -135,7 +135,7 @@ class SpiritStoneBuilder extends AbstractNodeBuilder {
         SphereCollisionShape collisionShape = new SphereCollisionShape(RADIUS);
         CSpiritStonePhysics physicsBody
                 = new CSpiritStonePhysics(collisionShape,
-                        (float) node.getUserData(UserData.MASS), world);
+                        (float) node.getUserData(UserData.MASS), world());
         node.addControl(physicsBody);
         physicsBody.setCollisionGroup(CollisionGroups.SPIRIT_STONE);
         physicsBody.removeCollideWithGroup(CollisionGroups.SPIRIT_STONE);
@@ -147,7 +147,7 @@ class SpiritStoneBuilder extends AbstractNodeBuilder {
         node.addControl(new CRotation(0f, 2f, 0f));
         node.addControl(new CSyncInterpolation());
 
-        if (world.isServer()) {
+        if (world().isServer()) {
             GhostControl ghost = new GhostControl(new CylinderCollisionShape(
                     new Vector3f(influenceRadius, 0.05f, influenceRadius), 1));
             ghost.setCollideWithGroups(CollisionGroups.CHARACTERS);
@@ -117,7 +117,7 @@ class AToss extends EntityAction {
 
     private void toss(final Spatial target) {
         Vector3f startLocation = spatial.getLocalTranslation().clone().setY(1);
-        Spatial walls = Globals.app.getStateManager().getState(World.class)
+        Spatial walls = Globals.getApp().getStateManager().getState(World.class)
                 .getWorldRoot().getChild("Walls");
         Vector3f finalLocation = PathCheck.closestNonColliding(walls,
                 startLocation, spatial.getControl(CSpellCast.class)
@@ -71,7 +71,8 @@ public class DarkEnergy extends Spell {
                 cooldown, range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f location) -> {
-            ACastProjectile castProjectile = new ACastProjectile(spell, world);
+            ACastProjectile castProjectile
+                    = new ACastProjectile(spell, world());
             castProjectile.setTypeId(EliteSoldier.ACTION_ROCKET_LAUNCHER);
             castProjectile.detonateAtTarget(true);
             return castProjectile;
@@ -132,7 +133,7 @@ class EnergyBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 0f);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             ParticleEmitter energy = createEnergyEmitter();
             node.attachChild(energy);
 
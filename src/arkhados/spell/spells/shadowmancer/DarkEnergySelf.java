@@ -48,7 +48,8 @@ public class DarkEnergySelf extends Spell {
                 cooldown, range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f location) -> {
-            ACastProjectile castProjectile = new ACastProjectile(spell, world);
+            ACastProjectile castProjectile
+                    = new ACastProjectile(spell, world());
             castProjectile.setTypeId(EliteSoldier.ACTION_ROCKET_LAUNCHER);
             castProjectile.detonateAtTarget(true);
             return castProjectile;
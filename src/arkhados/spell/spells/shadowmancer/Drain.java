@@ -66,7 +66,7 @@ public class Drain extends Spell {
         final Drain spell = new Drain("Drain", cooldown, range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec)
-                -> new ACastProjectile(spell, world);
+                -> new ACastProjectile(spell, world());
 
         spell.nodeBuilder = new DrainBuilder(true);
 
@@ -147,7 +147,7 @@ class DrainBuilder extends AbstractNodeBuilder {
 
         node.addControl(buffControl);
         
-        if (world.isClient()) {
+        if (world().isClient()) {
             ParticleEmitter particles = createPurpleEmitter();
             node.attachChild(particles);
         }
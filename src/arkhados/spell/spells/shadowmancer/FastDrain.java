@@ -41,7 +41,7 @@ public class FastDrain extends Spell {
                 new FastDrain("Fast Drain", cooldown, range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec)
-                -> new ACastProjectile(spell, world);
+                -> new ACastProjectile(spell, world());
 
         spell.nodeBuilder = new DrainBuilder(false);
 
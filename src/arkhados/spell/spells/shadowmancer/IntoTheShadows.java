@@ -72,7 +72,7 @@ public class IntoTheShadows extends Spell {
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) -> {
             ACastIntoTheShadows castAction
-                    = new ACastIntoTheShadows(spell, world);
+                    = new ACastIntoTheShadows(spell, world());
             return castAction;
         };
 
@@ -181,7 +181,7 @@ public class IntoTheShadows extends Spell {
             CActionQueue actionQueue = new CActionQueue();
             node.addControl(actionQueue);
 
-            if (world.isServer()) {
+            if (world().isServer()) {
                 SphereCollisionShape collisionShape
                         = new SphereCollisionShape(8f);
 
@@ -189,7 +189,7 @@ public class IntoTheShadows extends Spell {
                 ghost.setCollisionGroup(CollisionGroups.NONE);
                 ghost.setCollideWithGroups(CollisionGroups.CHARACTERS);
             }
-            if (world.isClient()) {
+            if (world().isClient()) {
                 ParticleEmitter cloud = createCloudEmitter();
                 node.attachChild(cloud);
 
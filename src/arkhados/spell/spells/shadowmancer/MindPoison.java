@@ -62,7 +62,7 @@ public class MindPoison extends Spell {
                 range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec)
-                -> new ACastOnGround(world, spell);
+                -> new ACastOnGround(world(), spell);
 
         spell.nodeBuilder = new NewDrainBuilder();
 
@@ -216,7 +216,7 @@ class NewDrainBuilder extends AbstractNodeBuilder {
 
         final float remainTime = 1f;
 
-        if (world.isServer()) {
+        if (world().isServer()) {
             node.addControl(new CCircleVisibility(radius));
 
             GhostControl ghost = new GhostControl(new CylinderCollisionShape(
@@ -229,7 +229,7 @@ class NewDrainBuilder extends AbstractNodeBuilder {
 
             actionQueue.enqueueAction(new AFinish(cAreaEffect, node,
                     remainTime));
-        } else if (world.isClient()) {
+        } else if (world().isClient()) {
             ParticleEmitter black = createBlack(radius / 15f, delay);
             node.attachChild(black);
             black.setLocalTranslation(0f, 1f, 0f);
@@ -241,14 +241,14 @@ class NewDrainBuilder extends AbstractNodeBuilder {
                     Vector3f worldTranslation = spatial.getWorldTranslation();
 
                     final ParticleEmitter purple = createPurple(radius, remainTime);
-                    world.getWorldRoot().attachChild(purple);
+                    world().getWorldRoot().attachChild(purple);
                     purple.setLocalTranslation(worldTranslation);
                     purple.move(0f, 1f, 0f);
                     purple.addControl(new CTimedExistence(5f));
                     purple.emitAllParticles();
 
                     final ParticleEmitter white = createWhite(radius, remainTime);
-                    world.getWorldRoot().attachChild(white);
+                    world().getWorldRoot().attachChild(white);
                     white.setLocalTranslation(worldTranslation);
                     white.move(0f, 1f, 0f);
                     white.addControl(new CTimedExistence(5f));
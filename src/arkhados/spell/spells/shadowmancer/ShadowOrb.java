@@ -71,7 +71,7 @@ public class ShadowOrb extends Spell {
 
         spell.castSpellActionBuilder = (Node caster, Vector3f location) -> {
             ACastProjectile castProjectile
-                    = new ACastProjectile(spell, Spell.world);
+                    = new ACastProjectile(spell, Spell.world());
             return castProjectile;
         };
 
@@ -128,7 +128,7 @@ class OrbBuilder extends AbstractNodeBuilder {
         node.setUserData(UserData.DAMAGE, 140f);
         node.setUserData(UserData.IMPULSE_FACTOR, 0f);
 
-        if (world.isClient()) {
+        if (world().isClient()) {
             ParticleEmitter purple = createPurpleEmitter();
             node.attachChild(purple);
 
@@ -161,7 +161,9 @@ class OrbBuilder extends AbstractNodeBuilder {
 
         node.addControl(physicsBody);
 
-        node.addControl(new CProjectile());
+        CProjectile cProjectile = new CProjectile();
+        cProjectile.setSpawnOnlySync(true);
+        node.addControl(cProjectile);
         CSpellBuff buffControl = new CSpellBuff();
         node.addControl(buffControl);
         buffControl.addBuff(new ReduceCooldownBuff.MyBuilder(0));
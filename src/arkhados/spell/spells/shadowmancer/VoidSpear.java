@@ -60,7 +60,7 @@ public class VoidSpear extends Spell {
                 range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec)
-                -> new ACastProjectile(spell, world);
+                -> new ACastProjectile(spell, world());
 
         spell.nodeBuilder = new SpearBuilder();
 
@@ -151,7 +151,7 @@ class SpeedBleedBuff extends SlowCC {
             return;
         }
 
-        float speed = spatial.getUserData(UserData.SPEED);
+        float speed = spatial.getUserData(UserData.SPEED_BASE);
         currentFactor = FastMath.clamp(
                 currentFactor - speed * time * SLOW_PER_UNIT, 0, 1f);
     }
@@ -31,6 +31,7 @@ import arkhados.spell.buffs.AbstractBuffBuilder;
 import arkhados.spell.buffs.FearCC;
 import arkhados.spell.buffs.SpeedBuff;
 import arkhados.util.BuffTypeIds;
+import arkhados.util.ComponentStore;
 import arkhados.util.Selector;
 import arkhados.util.UserData;
 import com.jme3.material.Material;
@@ -43,7 +44,6 @@ import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.shape.Cylinder;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 public class Backlash extends Spell {
@@ -195,15 +195,15 @@ class ABacklash extends EntityAction implements ATrance {
         activated = true;
         timeLeft = 0f;
 
-        for (Iterator<AbstractBuff> it = cInfluence.getBuffs().iterator();
-                it.hasNext();) {
-            AbstractBuff buff = it.next();
+        List<AbstractBuff> buffs = cInfluence.getBuffs();
+        for (int i = buffs.size() - 1; i >= 0; --i) {
+            AbstractBuff buff = buffs.get(i);
             if (buff.isFriendly()) {
                 continue;
             }
 
             buff.destroy();
-            it.remove();
+            cInfluence.removeBuff(buff);
         }
         
         ArrayList<SpatialDistancePair> targets = new ArrayList<>();
@@ -254,15 +254,14 @@ class TriggerBuff extends AbstractBuff {
 
     @Override
     public void attachToCharacter(CInfluenceInterface targetInterface) {
-        Spatial ownerSpatial = getOwnerInterface().getSpatial();
-        float lifesteal = ownerSpatial.getUserData(UserData.LIFE_STEAL);
+        CInfluenceInterface owner = getOwnerInterface();
+        float lifesteal = owner.getFloat(ComponentStore.LIFE_STEAL);
 
-        ownerSpatial.setUserData(UserData.LIFE_STEAL, lifesteal + 1f);
-        CharacterInteraction.harm(getOwnerInterface(),
-                targetInterface, 100f, null, false);
-        ownerSpatial.setUserData(UserData.LIFE_STEAL, lifesteal);
+        owner.setFloat(ComponentStore.LIFE_STEAL, lifesteal + 1f);
+        CharacterInteraction.harm(owner, targetInterface, 100f, null, false);
+        owner.setFloat(ComponentStore.LIFE_STEAL, lifesteal);
 
         backlash.destroy();
-        getOwnerInterface().getBuffs().remove(backlash);
+        getOwnerInterface().removeBuff(backlash);
     }
 }
@@ -43,7 +43,7 @@ public class Dagger extends Spell {
         final Dagger spell = new Dagger("Damaging Dagger", cooldown,
                 range, castTime);
 
-        spell.castSpellActionBuilder = new CastDagger(spell, world);
+        spell.castSpellActionBuilder = new CastDagger(spell, world());
         spell.nodeBuilder = new DaggerBuilder(true);
 
         return spell;
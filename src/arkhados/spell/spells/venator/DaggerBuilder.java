@@ -59,7 +59,9 @@ public class DaggerBuilder extends AbstractNodeBuilder {
         physicsBody.removeCollideWithGroup(CollisionGroups.PROJECTILES);
         node.addControl(physicsBody);
 
-        node.addControl(new CProjectile());
+        CProjectile cProjectile = new CProjectile();
+        cProjectile.setSpawnOnlySync(true);
+        node.addControl(cProjectile);
         CSpellBuff buffControl = new CSpellBuff();
         if (primary) {
             buffControl.addBuff(new SlowCC.MyBuilder(6f, 0.33f));
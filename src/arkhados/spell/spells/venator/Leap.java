@@ -81,7 +81,7 @@ class ACastLeap extends EntityAction {
         final CCharacterPhysics physics
                 = spatial.getControl(CCharacterPhysics.class);
         physics.switchToMotionCollisionMode();
-        Spatial walls = Globals.app.getStateManager().getState(World.class)
+        Spatial walls = Globals.getApp().getStateManager().getState(World.class)
                 .getWorldRoot().getChild("Walls");
 
         // We set y to 1 to prevent ground collision on start
@@ -38,7 +38,7 @@ public class NumbingDagger extends Spell {
                 cooldown, range, castTime);
 
         spell.castSpellActionBuilder = (Node caster, Vector3f vec) 
-                -> new ACastProjectile(spell, world);
+                -> new ACastProjectile(spell, world());
 
         spell.nodeBuilder = new DaggerBuilder(false);
 
@@ -19,6 +19,7 @@ import arkhados.controls.CInfluenceInterface;
 import arkhados.spell.Spell;
 import arkhados.spell.buffs.AbstractBuff;
 import arkhados.spell.buffs.AbstractBuffBuilder;
+import arkhados.spell.buffs.BuffStats;
 import arkhados.spell.buffs.SpeedBuff;
 import arkhados.util.BuffTypeIds;
 import arkhados.util.UserData;
@@ -83,17 +84,13 @@ class DamagePerHealthPercentBuff extends AbstractBuff {
     }
 
     @Override
-    public void update(float time) {
-        super.update(time);
+    public void applyStats(BuffStats stats) {
         float healthCurrent =
                 spatial.getUserData(UserData.HEALTH_CURRENT);
         float healthMax = spatial.getUserData(UserData.HEALTH_MAX);
-        float damageFactor = spatial.getUserData(UserData.DAMAGE_FACTOR);
 
         float healthPercent = healthCurrent / healthMax;
-        damageFactor *= 1 + healthPercent / 10f;
-
-        spatial.setUserData(UserData.DAMAGE_FACTOR, damageFactor);
+        stats.damageFactor *= 1 + healthPercent / 10f;
     }
 
     static class MyBuilder extends AbstractBuffBuilder {
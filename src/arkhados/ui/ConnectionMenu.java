@@ -87,10 +87,24 @@ public final class ConnectionMenu extends Menu {
         String address = screen.findNiftyControl("server_ip",
                 TextField.class).getDisplayedText();
 
+        // Match of MatchHost can be chosen with address/match
+        int matchId = 0;
+        int separator = address.lastIndexOf('/');
+        if (separator != -1) {
+            try {
+                matchId = Integer.parseInt(address.substring(separator + 1));
+            } catch (NumberFormatException ex) {
+                setStatusText("Match must be a number");
+                return;
+            }
+
+            address = address.substring(0, separator);
+        }
+
         setStatusText("Connecting... " + username);
 
         ClientMain clientMain = (ClientMain) Globals.app;
-        clientMain.connect(username, address, port);
+        clientMain.connect(username, address, port, matchId);
     }
 
     @Override
@@ -16,6 +16,7 @@ package arkhados.ui;
 
 import arkhados.ClientMain;
 import arkhados.Globals;
+import arkhados.World;
 import arkhados.replay.ReplayInputHandler;
 import arkhados.replay.ReplayReader;
 import de.lessvoid.nifty.Nifty;
@@ -99,14 +100,14 @@ public class ReplayMenu implements ScreenController {
                 .getState(ReplayReader.class);
         replayReader.selectPlayer(model.getPlayerId());
         nifty.gotoScreen("default_hud");
-        new java.util.Timer().schedule(new java.util.TimerTask() {
-            @Override
-            public void run() {
-                replayReader.setEnabled(true);
-                Globals.app.getStateManager().getState(ReplayInputHandler.class)
-                        .setEnabled(true);
-            }
-        }, 500);
+        // Nifty calls this on update thread
+        Globals.app.getStateManager().getState(World.class).getTimers()
+                .schedule(0.5f, () -> {
+                    replayReader.setEnabled(true);
+                    Globals.app.getStateManager()
+                            .getState(ReplayInputHandler.class)
+                            .setEnabled(true);
+                });
 
     }
 
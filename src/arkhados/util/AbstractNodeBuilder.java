@@ -14,6 +14,7 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados.util;
 
+import arkhados.MatchContext;
 import arkhados.World;
 import arkhados.effects.EffectBox;
 import com.jme3.asset.AssetManager;
@@ -21,15 +22,17 @@ import com.jme3.scene.Node;
 
 public abstract class AbstractNodeBuilder implements NodeBuilder {
 
-    protected static World world;
     protected static AssetManager assets;
     private EffectBox effectBox = null;
 
     @Override
     public abstract Node build(BuildParameters params);
 
-    public static void setWorld(World world) {
-        AbstractNodeBuilder.world = world;
+    /**
+     * @return World of current match
+     */
+    protected static World world() {
+        return MatchContext.current().getWorld();
     }
 
     public static void setAssetManager(AssetManager assetManager) {
@@ -28,7 +28,7 @@ public class AudioQueue {
     public synchronized void enqueueAudio(final AudioNode audio) {
         if (current == null) {
             current = new AudioTracker(audio);
-            Globals.app.enqueue(() -> {
+            Globals.getApp().enqueue(() -> {
                 audio.play();
                 return null;
             });
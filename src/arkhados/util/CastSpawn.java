@@ -35,7 +35,8 @@ public class CastSpawn {
 
         Quaternion rotation = spatial.getLocalRotation();
 
-        World world = Globals.app.getStateManager().getState(World.class);
+        World world = Globals.getApp().getStateManager()
+                .getState(World.class);
         int id = world.addNewEntity(spell.getId(), spawnLocation, rotation,
                 playerId);
         
@@ -0,0 +1,180 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import com.jme3.scene.Spatial;
+import java.util.Arrays;
+
+/**
+ * Hot attributes of entities in primitive columns. Values are kept in
+ * arrays that are indexed by low 16 bits of entity id, so reading them does
+ * not go through Spatial's user data map or unbox anything.
+ *
+ * Columns are filled from user data when entity is registered and every
+ * change is written through to user data, so user data stays a valid view
+ * for code that reads it directly. Write these attributes through the store
+ * while entity is registered.
+ */
+public class ComponentStore {
+
+    public static final int HEALTH_CURRENT = 0;
+    public static final int HEALTH_MAX = 1;
+    public static final int SPEED = 2;
+    public static final int SPEED_BASE = 3;
+    public static final int DAMAGE_FACTOR = 4;
+    public static final int LIFE_STEAL = 5;
+    public static final int LIFE_STEAL_BASE = 6;
+    public static final int TEAM_ID = 0;
+    public static final int PLAYER_ID = 1;
+    private static final String[] FLOAT_KEYS = {UserData.HEALTH_CURRENT,
+        UserData.HEALTH_MAX, UserData.SPEED, UserData.SPEED_BASE,
+        UserData.DAMAGE_FACTOR, UserData.LIFE_STEAL, UserData.LIFE_STEAL_BASE};
+    private static final String[] INT_KEYS = {UserData.TEAM_ID,
+        UserData.PLAYER_ID};
+    private static final int MAX_CAPACITY = 1 << 16;
+    private static final int MASK = MAX_CAPACITY - 1;
+    private int[] ids = new int[0];
+    private Spatial[] spatials = new Spatial[0];
+    private final float[][] floats = new float[FLOAT_KEYS.length][0];
+    private final int[][] ints = new int[INT_KEYS.length][0];
+    private int size = 0;
+
+    public void register(int id, Spatial spatial) {
+        int index = id & MASK;
+        ensureCapacity(index + 1);
+        if (spatials[index] == null) {
+            ++size;
+        }
+
+        ids[index] = id;
+        spatials[index] = spatial;
+
+        for (int column = 0; column < FLOAT_KEYS.length; ++column) {
+            Number value = spatial.getUserData(FLOAT_KEYS[column]);
+            floats[column][index] = value != null ? value.floatValue() : 0f;
+        }
+
+        for (int column = 0; column < INT_KEYS.length; ++column) {
+            Number value = spatial.getUserData(INT_KEYS[column]);
+            ints[column][index] = value != null ? value.intValue() : -1;
+        }
+    }
+
+    public void unregister(int id) {
+        if (!contains(id)) {
+            return;
+        }
+
+        spatials[id & MASK] = null;
+        --size;
+    }
+
+    public boolean contains(int id) {
+        int index = id & MASK;
+        return index < spatials.length && spatials[index] != null
+                && ids[index] == id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(spatials, null);
+        size = 0;
+    }
+
+    /**
+     * Entity must be registered
+     */
+    public float getFloat(int id, int column) {
+        return floats[column][id & MASK];
+    }
+
+    /**
+     * Entity must be registered. Setting user data allocates, so it is
+     * written only when value changes.
+     */
+    public void setFloat(int id, int column, float value) {
+        int index = id & MASK;
+        if (floats[column][index] != value) {
+            floats[column][index] = value;
+            spatials[index].setUserData(FLOAT_KEYS[column], value);
+        }
+    }
+
+    /**
+     * Entity must be registered
+     */
+    public int getInt(int id, int column) {
+        return ints[column][id & MASK];
+    }
+
+    /**
+     * Reads int column of any spatial, for example projectile that has no
+     * CInfluenceInterface. Falls back to UserData when spatial is not
+     * registered entity.
+     */
+    public int getInt(Spatial spatial, int column) {
+        EntityHandle handle = EntityHandle.of(spatial);
+        if (handle != null && contains(handle.getEntityId())) {
+            return getInt(handle.getEntityId(), column);
+        }
+
+        Integer value = spatial.getUserData(INT_KEYS[column]);
+        return value != null ? value : -1;
+    }
+
+    /**
+     * Entity must be registered
+     */
+    public void setInt(int id, int column, int value) {
+        int index = id & MASK;
+        if (ints[column][index] != value) {
+            ints[column][index] = value;
+            spatials[index].setUserData(INT_KEYS[column], value);
+        }
+    }
+
+    public static String getFloatKey(int column) {
+        return FLOAT_KEYS[column];
+    }
+
+    public static String getIntKey(int column) {
+        return INT_KEYS[column];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(64, ids.length);
+        while (newCapacity < capacity) {
+            newCapacity <<= 1;
+        }
+
+        newCapacity = Math.min(newCapacity, MAX_CAPACITY);
+        ids = Arrays.copyOf(ids, newCapacity);
+        spatials = Arrays.copyOf(spatials, newCapacity);
+        for (int column = 0; column < floats.length; ++column) {
+            floats[column] = Arrays.copyOf(floats[column], newCapacity);
+        }
+
+        for (int column = 0; column < ints.length; ++column) {
+            ints[column] = Arrays.copyOf(ints[column], newCapacity);
+        }
+    }
+}
@@ -27,8 +27,9 @@ public class ConnectionHelper {
             ConnectionHelper.class.getName());
     
     public static HostedConnection getSource(int playerId) {
-        Collection<HostedConnection> connections = Globals.app.getStateManager()
-                .getState(ServerSender.class).getServer().getConnections();
+        Collection<HostedConnection> connections = Globals.getApp()
+                .getStateManager().getState(ServerSender.class).getServer()
+                .getConnections();
 
         for (HostedConnection hostedConnection : connections) {
             // FIXME: NullPointerException may happen here when player joins!
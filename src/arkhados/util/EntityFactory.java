@@ -56,6 +56,7 @@ public class EntityFactory {
         }
         Node node = nodeBuilders.get(id).build(params);
         node.setUserData(UserData.NODE_BUILDER_ID, id);
+        EntityHandle.attach(node);
         return node;
     }
 
@@ -0,0 +1,157 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import arkhados.controls.CActionQueue;
+import arkhados.controls.CCharacterAnimation;
+import arkhados.controls.CCharacterMovement;
+import arkhados.controls.CCharacterPhysics;
+import arkhados.controls.CEntityVariable;
+import arkhados.controls.CInfluenceInterface;
+import arkhados.controls.CProjectile;
+import arkhados.controls.CSpellCast;
+import arkhados.controls.CSyncInterpolation;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.Savable;
+import com.jme3.scene.Spatial;
+
+/**
+ * Direct references to standard controls of an entity. Spatial.getControl
+ * scans all controls of spatial so hot code gets this once with of() and
+ * uses its fields instead. EntityFactory builds it after entity's controls
+ * are added and stores it to user data. Controls that entity does not have
+ * are null.
+ *
+ * Handle is Savable only so that it can be user data. It is not saved.
+ */
+public class EntityHandle implements Savable {
+
+    private final Spatial spatial;
+    private final CCharacterPhysics physics;
+    private final CInfluenceInterface influence;
+    private final CActionQueue actionQueue;
+    private final CSpellCast spellCast;
+    private final CCharacterMovement movement;
+    private final CCharacterAnimation animation;
+    private final CSyncInterpolation interpolation;
+    private final CProjectile projectile;
+    private CEntityVariable variable;
+    private int entityId = -1;
+
+    private EntityHandle(Spatial spatial) {
+        this.spatial = spatial;
+        physics = spatial.getControl(CCharacterPhysics.class);
+        influence = spatial.getControl(CInfluenceInterface.class);
+        actionQueue = spatial.getControl(CActionQueue.class);
+        spellCast = spatial.getControl(CSpellCast.class);
+        movement = spatial.getControl(CCharacterMovement.class);
+        animation = spatial.getControl(CCharacterAnimation.class);
+        interpolation = spatial.getControl(CSyncInterpolation.class);
+        projectile = spatial.getControl(CProjectile.class);
+    }
+
+    /**
+     * Builds handle for spatial whose controls have all been added
+     */
+    public static EntityHandle attach(Spatial spatial) {
+        EntityHandle handle = new EntityHandle(spatial);
+        spatial.setUserData(UserData.ENTITY_HANDLE, handle);
+        return handle;
+    }
+
+    /**
+     * @return handle or null if spatial was not built by EntityFactory
+     */
+    public static EntityHandle of(Spatial spatial) {
+        return spatial.getUserData(UserData.ENTITY_HANDLE);
+    }
+
+    /**
+     * @return CInfluenceInterface of spatial or null if it has none. Spatials
+     * that were not built by EntityFactory have their controls scanned
+     */
+    public static CInfluenceInterface influenceOf(Spatial spatial) {
+        EntityHandle handle = of(spatial);
+        return handle != null ? handle.influence
+                : spatial.getControl(CInfluenceInterface.class);
+    }
+
+    public Spatial getSpatial() {
+        return spatial;
+    }
+
+    public CCharacterPhysics getPhysics() {
+        return physics;
+    }
+
+    public CInfluenceInterface getInfluence() {
+        return influence;
+    }
+
+    public CActionQueue getActionQueue() {
+        return actionQueue;
+    }
+
+    public CSpellCast getSpellCast() {
+        return spellCast;
+    }
+
+    public CCharacterMovement getMovement() {
+        return movement;
+    }
+
+    public CCharacterAnimation getAnimation() {
+        return animation;
+    }
+
+    public CSyncInterpolation getInterpolation() {
+        return interpolation;
+    }
+
+    public CProjectile getProjectile() {
+        return projectile;
+    }
+
+    /**
+     * @return CEntityVariable or null if entity has not been added to World
+     */
+    public CEntityVariable getVariable() {
+        return variable;
+    }
+
+    /**
+     * @return id of entity or -1 if entity has not been added to World
+     */
+    public int getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * World calls this when it adds entity
+     */
+    public void setEntity(int entityId, CEntityVariable variable) {
+        this.entityId = entityId;
+        this.variable = variable;
+    }
+
+    @Override
+    public void write(JmeExporter ex) {
+    }
+
+    @Override
+    public void read(JmeImporter im) {
+    }
+}
@@ -0,0 +1,206 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Gives out entity ids. Id is slot index in low 16 bits and generation of
+ * the slot above it, so id & 0xFFFF can still be used as array index. Freed
+ * slots go to free list and get next generation when they are given out
+ * again, so stale ids that still refer to old entity of the slot can be
+ * told apart from the current one.
+ *
+ * Slot 0 is never used, so ids are always positive and -1 can mean none.
+ * Generation wraps after 32768 reuses of same slot.
+ *
+ * Server allocates and frees ids. Client does not give out ids but claims
+ * and releases ids that server sends, so isCurrent works on both.
+ */
+public class EntityIds {
+
+    public static final int INDEX_BITS = 16;
+    public static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    public static final int GENERATION_MASK = 0x7FFF;
+    public static final int NONE = -1;
+    private int[] generations = new int[64];
+    private boolean[] live = new boolean[64];
+    private int[] free = new int[64];
+    private int freeCount = 0;
+    /**
+     * Slots from this on have never been used
+     */
+    private int nextIndex = 1;
+    private int size = 0;
+
+    public static int indexOf(int id) {
+        return id & INDEX_MASK;
+    }
+
+    public static int generationOf(int id) {
+        return (id >>> INDEX_BITS) & GENERATION_MASK;
+    }
+
+    public static int compose(int index, int generation) {
+        return ((generation & GENERATION_MASK) << INDEX_BITS) | index;
+    }
+
+    /**
+     * @throws IllegalStateException if all slots are in use
+     */
+    public int allocate() {
+        int index;
+        if (freeCount > 0) {
+            index = free[--freeCount];
+            generations[index] = (generations[index] + 1) & GENERATION_MASK;
+        } else {
+            if (nextIndex > INDEX_MASK) {
+                throw new IllegalStateException("All " + INDEX_MASK
+                        + " entity ids are in use");
+            }
+
+            index = nextIndex++;
+            ensureCapacity(index);
+            generations[index] = 0;
+        }
+
+        live[index] = true;
+        ++size;
+        return compose(index, generations[index]);
+    }
+
+    /**
+     * Puts slot of id to free list. Does nothing if id is not current
+     */
+    public void free(int id) {
+        if (!release(id)) {
+            return;
+        }
+
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+
+        free[freeCount++] = indexOf(id);
+    }
+
+    /**
+     * Marks id that was given out elsewhere as current. Used on client
+     */
+    public void claim(int id) {
+        int index = indexOf(id);
+        if (id <= 0 || index == 0) {
+            return;
+        }
+
+        ensureCapacity(index);
+        if (!live[index]) {
+            ++size;
+        }
+
+        generations[index] = generationOf(id);
+        live[index] = true;
+        nextIndex = Math.max(nextIndex, index + 1);
+    }
+
+    /**
+     * Marks id as no longer current without putting its slot to free list
+     *
+     * @return false if id was not current
+     */
+    public boolean release(int id) {
+        if (!isCurrent(id)) {
+            return false;
+        }
+
+        live[indexOf(id)] = false;
+        --size;
+        return true;
+    }
+
+    /**
+     * @return true if id refers to entity that currently has its slot
+     */
+    public boolean isCurrent(int id) {
+        int index = id & INDEX_MASK;
+        return id > 0 && index < live.length && live[index]
+                && generations[index] == generationOf(id);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(generations, 0);
+        Arrays.fill(live, false);
+        freeCount = 0;
+        nextIndex = 1;
+        size = 0;
+    }
+
+    private void ensureCapacity(int index) {
+        if (index < live.length) {
+            return;
+        }
+
+        int capacity = Math.min(Math.max(live.length * 2, index + 1),
+                INDEX_MASK + 1);
+        generations = Arrays.copyOf(generations, capacity);
+        live = Arrays.copyOf(live, capacity);
+    }
+
+    /**
+     * Writes id so that small slot index takes one byte and generation is
+     * written only when it is not 0. -1 takes one byte too.
+     */
+    public static void put(ByteBuffer buffer, int id) {
+        if (id <= 0) {
+            VarInt.put(buffer, 0);
+            return;
+        }
+
+        int generation = generationOf(id);
+        VarInt.put(buffer, (indexOf(id) << 1) | (generation != 0 ? 1 : 0));
+        if (generation != 0) {
+            VarInt.put(buffer, generation);
+        }
+    }
+
+    /**
+     * @return id written with put or -1
+     */
+    public static int get(ByteBuffer buffer) {
+        int value = VarInt.get(buffer);
+        if (value == 0) {
+            return NONE;
+        }
+
+        int generation = (value & 1) != 0 ? VarInt.get(buffer) : 0;
+        // Mask so that corrupt index can not spill into generation bits
+        return compose((value >>> 1) & INDEX_MASK, generation);
+    }
+
+    public static int size(int id) {
+        if (id <= 0) {
+            return 1;
+        }
+
+        int generation = generationOf(id);
+        int size = VarInt.size((indexOf(id) << 1) | (generation != 0 ? 1 : 0));
+        return generation != 0 ? size + VarInt.size(generation) : size;
+    }
+}
@@ -0,0 +1,268 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import arkhados.controls.CCharacterPhysics;
+import com.jme3.bullet.collision.shapes.CapsuleCollisionShape;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Recent locations of characters on server. Every world tick writes one slot
+ * of fixed size ring, so hit tests can be done against locations that
+ * attacker saw instead of present ones. Rings are preallocated and queries
+ * do not allocate.
+ */
+public class PositionHistory {
+
+    /**
+     * Ticks in ring. About one second at 60 ticks per second
+     */
+    private static final int CAPACITY = 64;
+    /**
+     * How many parts swept path is split into. Target moves between parts
+     */
+    private static final int SWEEP_STEPS = 8;
+    private final float[] times = new float[CAPACITY];
+    private final ArrayDeque<Track> pool = new ArrayDeque<>();
+    private final Vector3f location = new Vector3f();
+    private final Vector3f direction = new Vector3f();
+    private Track[] tracks = new Track[16];
+    private int count = 0;
+    /**
+     * Total amount of recorded ticks. Slot of tick is tick % CAPACITY
+     */
+    private int tick = 0;
+
+    public void track(Spatial character) {
+        if (indexOf(character) != -1) {
+            return;
+        }
+
+        if (count == tracks.length) {
+            tracks = Arrays.copyOf(tracks, count * 2);
+        }
+
+        Track track = pool.isEmpty() ? new Track() : pool.poll();
+        track.spatial = character;
+        CapsuleCollisionShape capsule = character
+                .getControl(CCharacterPhysics.class).getCapsuleShape();
+        track.radius = capsule.getRadius();
+        track.height = capsule.getHeight() + 2f * capsule.getRadius();
+        track.firstTick = tick;
+        tracks[count++] = track;
+    }
+
+    public void untrack(Spatial character) {
+        int index = indexOf(character);
+        if (index == -1) {
+            return;
+        }
+
+        Track track = tracks[index];
+        track.spatial = null;
+        pool.add(track);
+        tracks[index] = tracks[--count];
+        tracks[count] = null;
+    }
+
+    public void clear() {
+        for (int i = 0; i < count; ++i) {
+            tracks[i].spatial = null;
+            pool.add(tracks[i]);
+            tracks[i] = null;
+        }
+
+        count = 0;
+    }
+
+    /**
+     * Stores current locations of tracked characters. Should be called once
+     * per tick.
+     */
+    public void record(float time) {
+        int slot = tick % CAPACITY;
+        times[slot] = time;
+        for (int i = 0; i < count; ++i) {
+            Track track = tracks[i];
+            Vector3f current = track.spatial.getLocalTranslation();
+            track.x[slot] = current.x;
+            track.y[slot] = current.y;
+            track.z[slot] = current.z;
+        }
+
+        ++tick;
+    }
+
+    /**
+     * @return time of oldest tick that can be rewound to
+     */
+    public float getOldestTime() {
+        return tick == 0 ? 0f
+                : times[Math.max(0, tick - CAPACITY) % CAPACITY];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public Spatial getCharacter(int index) {
+        return tracks[index].spatial;
+    }
+
+    public float getRadius(int index) {
+        return tracks[index].radius;
+    }
+
+    /**
+     * @return height of character's capsule from its feet to its top
+     */
+    public float getHeight(int index) {
+        return tracks[index].height;
+    }
+
+    /**
+     * Stores character's location at given time. Times after latest tick
+     * give current location and times before oldest tick give oldest one.
+     *
+     * @return store
+     */
+    public Vector3f getLocation(int index, float time, Vector3f store) {
+        Track track = tracks[index];
+        int newest = tick - 1;
+        if (newest < track.firstTick || time >= times[newest % CAPACITY]) {
+            return store.set(track.spatial.getLocalTranslation());
+        }
+
+        int oldest = Math.max(track.firstTick, tick - CAPACITY);
+        for (int older = newest - 1; older >= oldest; --older) {
+            int olderSlot = older % CAPACITY;
+            if (times[olderSlot] <= time) {
+                int newerSlot = (older + 1) % CAPACITY;
+                float span = times[newerSlot] - times[olderSlot];
+                float factor = span > 0f
+                        ? (time - times[olderSlot]) / span : 1f;
+                return store.set(
+                        FastMath.interpolateLinear(factor,
+                                track.x[olderSlot], track.x[newerSlot]),
+                        FastMath.interpolateLinear(factor,
+                                track.y[olderSlot], track.y[newerSlot]),
+                        FastMath.interpolateLinear(factor,
+                                track.z[olderSlot], track.z[newerSlot]));
+            }
+        }
+
+        int slot = oldest % CAPACITY;
+        return store.set(track.x[slot], track.y[slot], track.z[slot]);
+    }
+
+    /**
+     * Finds closest character inside cone as it was at given time. Distance
+     * is measured to the edge of character.
+     *
+     * @return character or null if there is none
+     */
+    public Spatial closestInCone(Vector3f origin, Vector3f forward,
+            float range, float coneAngle, float time,
+            Predicate<Spatial> predicate) {
+        Spatial closest = null;
+        float closestDistance = Float.MAX_VALUE;
+        for (int i = 0; i < count; ++i) {
+            getLocation(i, time, location);
+            float distance = Math.max(0f,
+                    location.distance(origin) - tracks[i].radius);
+            if (distance > range || distance >= closestDistance) {
+                continue;
+            }
+
+            direction.set(location).subtractLocal(origin).normalizeLocal();
+            if (FastMath.abs(direction.angleBetween(forward))
+                    > FastMath.abs(coneAngle)) {
+                continue;
+            }
+
+            Spatial character = tracks[i].spatial;
+            if (predicate.test(character)) {
+                closest = character;
+                closestDistance = distance;
+            }
+        }
+
+        return closest;
+    }
+
+    /**
+     * Moves sphere from start along velocity for duration, starting at
+     * startTime, and checks when it first touches character on XZ-plane.
+     * Character moves along its history during the sweep.
+     *
+     * @return fraction of duration when sphere hits or -1 if it does not
+     */
+    public float sweep(int index, Vector3f start, Vector3f velocity,
+            float radius, float startTime, float duration) {
+        float reach = radius + tracks[index].radius;
+        float reachSquared = reach * reach;
+        float stepTime = duration / SWEEP_STEPS;
+        for (int step = 0; step < SWEEP_STEPS; ++step) {
+            float t0 = step * stepTime;
+            getLocation(index, startTime + t0 + stepTime * 0.5f, location);
+
+            // Closest point of this part of path to character
+            float fromX = start.x + velocity.x * t0;
+            float fromZ = start.z + velocity.z * t0;
+            float toTargetX = location.x - fromX;
+            float toTargetZ = location.z - fromZ;
+            float pathX = velocity.x * stepTime;
+            float pathZ = velocity.z * stepTime;
+            float lengthSquared = pathX * pathX + pathZ * pathZ;
+            float along = lengthSquared > 0f
+                    ? FastMath.clamp((toTargetX * pathX + toTargetZ * pathZ)
+                            / lengthSquared, 0f, 1f)
+                    : 0f;
+            float dx = toTargetX - pathX * along;
+            float dz = toTargetZ - pathZ * along;
+            if (dx * dx + dz * dz <= reachSquared) {
+                return (step + along) / SWEEP_STEPS;
+            }
+        }
+
+        return -1f;
+    }
+
+    private int indexOf(Spatial character) {
+        for (int i = 0; i < count; ++i) {
+            if (tracks[i].spatial == character) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static class Track {
+
+        Spatial spatial;
+        float radius;
+        float height;
+        int firstTick;
+        final float[] x = new float[CAPACITY];
+        final float[] y = new float[CAPACITY];
+        final float[] z = new float[CAPACITY];
+    }
+}
@@ -0,0 +1,492 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import java.util.Arrays;
+
+/**
+ * Straight flying projectiles in flat arrays. Server moves them all in one
+ * loop every tick and sweeps them against character capsules, movable
+ * circular obstacles and static wall segments on XZ-plane, so they need no
+ * physics bodies or controls. Characters, obstacles and walls are given as
+ * plain numbers too. Main thread only.
+ * Nothing is allocated after arrays have grown to their working size.
+ */
+public class ProjectileEngine {
+
+    public interface Listener {
+
+        /**
+         * Projectile is already removed from engine when this is called.
+         *
+         * @param ownerId entity id of shooter
+         * @param targetId entity id of hit character or -1 for wall
+         * or obstacle
+         */
+        void projectileHit(int projectileId, int ownerId, int targetId,
+                float x, float z);
+
+        void projectileExpired(int projectileId);
+    }
+
+    public static final int WALL = -1;
+    private static final float NO_HIT = 2f;
+    private final int[] slots = new int[65536];
+    private int count = 0;
+    private int[] ids = new int[64];
+    private float[] xs = new float[64];
+    private float[] ys = new float[64];
+    private float[] zs = new float[64];
+    private float[] velocityXs = new float[64];
+    private float[] velocityZs = new float[64];
+    private float[] radiuses = new float[64];
+    private float[] ranges = new float[64];
+    private int[] owners = new int[64];
+    private int[] teams = new int[64];
+    private int targetCount = 0;
+    private int[] targetIds = new int[16];
+    private int[] targetTeams = new int[16];
+    private float[] targetXs = new float[16];
+    private float[] targetZs = new float[16];
+    private float[] targetBottoms = new float[16];
+    private float[] targetTops = new float[16];
+    private float[] targetRadiuses = new float[16];
+    private int obstacleCount = 0;
+    private float[] obstacleXs = new float[4];
+    private float[] obstacleZs = new float[4];
+    private float[] obstacleBottoms = new float[4];
+    private float[] obstacleTops = new float[4];
+    private float[] obstacleRadiuses = new float[4];
+    /**
+     * x1, z1, x2, z2 of every segment
+     */
+    private float[] walls = new float[64];
+    private int wallCount = 0;
+
+    public ProjectileEngine() {
+        Arrays.fill(slots, -1);
+    }
+
+    /**
+     * @param range how far projectile flies before it expires
+     * @param owner entity id of shooter. Shooter is never hit
+     */
+    public void add(int id, float x, float y, float z, float velocityX,
+            float velocityZ, float radius, float range, int owner,
+            int team) {
+        remove(id);
+        if (count == ids.length) {
+            grow(count * 2);
+        }
+
+        int slot = count++;
+        ids[slot] = id;
+        xs[slot] = x;
+        ys[slot] = y;
+        zs[slot] = z;
+        velocityXs[slot] = velocityX;
+        velocityZs[slot] = velocityZ;
+        radiuses[slot] = radius;
+        ranges[slot] = range;
+        owners[slot] = owner;
+        teams[slot] = team;
+        slots[id & 0xFFFF] = slot;
+    }
+
+    /**
+     * @return false if there was no such projectile
+     */
+    public boolean remove(int id) {
+        int slot = slotOf(id);
+        if (slot == -1) {
+            return false;
+        }
+
+        removeSlot(slot);
+        return true;
+    }
+
+    public boolean contains(int id) {
+        return slotOf(id) != -1;
+    }
+
+    /**
+     * @return index of projectile for getters or -1
+     */
+    public int slotOf(int id) {
+        int slot = slots[id & 0xFFFF];
+        return slot != -1 && ids[slot] == id ? slot : -1;
+    }
+
+    public void clear() {
+        for (int i = 0; i < count; ++i) {
+            slots[ids[i] & 0xFFFF] = -1;
+        }
+
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getId(int slot) {
+        return ids[slot];
+    }
+
+    public float getX(int slot) {
+        return xs[slot];
+    }
+
+    public float getY(int slot) {
+        return ys[slot];
+    }
+
+    public float getZ(int slot) {
+        return zs[slot];
+    }
+
+    public float getVelocityX(int slot) {
+        return velocityXs[slot];
+    }
+
+    public float getVelocityZ(int slot) {
+        return velocityZs[slot];
+    }
+
+    public int getOwner(int slot) {
+        return owners[slot];
+    }
+
+    /**
+     * Characters are given again every tick before update
+     */
+    public void clearTargets() {
+        targetCount = 0;
+    }
+
+    /**
+     * @param bottom lowest point of character's capsule
+     * @param top highest point of character's capsule
+     */
+    public void addTarget(int id, int team, float x, float z, float bottom,
+            float top, float radius) {
+        if (targetCount == targetIds.length) {
+            int length = targetCount * 2;
+            targetIds = Arrays.copyOf(targetIds, length);
+            targetTeams = Arrays.copyOf(targetTeams, length);
+            targetXs = Arrays.copyOf(targetXs, length);
+            targetZs = Arrays.copyOf(targetZs, length);
+            targetBottoms = Arrays.copyOf(targetBottoms, length);
+            targetTops = Arrays.copyOf(targetTops, length);
+            targetRadiuses = Arrays.copyOf(targetRadiuses, length);
+        }
+
+        int target = targetCount++;
+        targetIds[target] = id;
+        targetTeams[target] = team;
+        targetXs[target] = x;
+        targetZs[target] = z;
+        targetBottoms[target] = bottom;
+        targetTops[target] = top;
+        targetRadiuses[target] = radius;
+    }
+
+    /**
+     * Obstacles are given again every tick before update, like characters
+     */
+    public void clearObstacles() {
+        obstacleCount = 0;
+    }
+
+    /**
+     * Adds vertical cylinder that stops every projectile like wall. Used for
+     * things that move, such as spirit stones
+     */
+    public void addObstacle(float x, float z, float bottom, float top,
+            float radius) {
+        if (obstacleCount == obstacleXs.length) {
+            int length = obstacleCount * 2;
+            obstacleXs = Arrays.copyOf(obstacleXs, length);
+            obstacleZs = Arrays.copyOf(obstacleZs, length);
+            obstacleBottoms = Arrays.copyOf(obstacleBottoms, length);
+            obstacleTops = Arrays.copyOf(obstacleTops, length);
+            obstacleRadiuses = Arrays.copyOf(obstacleRadiuses, length);
+        }
+
+        int obstacle = obstacleCount++;
+        obstacleXs[obstacle] = x;
+        obstacleZs[obstacle] = z;
+        obstacleBottoms[obstacle] = bottom;
+        obstacleTops[obstacle] = top;
+        obstacleRadiuses[obstacle] = radius;
+    }
+
+    public void clearWalls() {
+        wallCount = 0;
+    }
+
+    public void addWall(float x1, float z1, float x2, float z2) {
+        if (wallCount * 4 == walls.length) {
+            walls = Arrays.copyOf(walls, walls.length * 2);
+        }
+
+        int offset = wallCount++ * 4;
+        walls[offset] = x1;
+        walls[offset + 1] = z1;
+        walls[offset + 2] = x2;
+        walls[offset + 3] = z2;
+    }
+
+    /**
+     * Adds edges of axis aligned rectangle as walls
+     */
+    public void addBox(float minX, float minZ, float maxX, float maxZ) {
+        addWall(minX, minZ, maxX, minZ);
+        addWall(maxX, minZ, maxX, maxZ);
+        addWall(maxX, maxZ, minX, maxZ);
+        addWall(minX, maxZ, minX, minZ);
+    }
+
+    /**
+     * Moves every projectile and reports those that hit something or fly
+     * their whole range. Listener may remove projectiles, but it must not
+     * add them.
+     */
+    public void update(float tpf, Listener listener) {
+        int slot = 0;
+        while (slot < count) {
+            float moveX = velocityXs[slot] * tpf;
+            float moveZ = velocityZs[slot] * tpf;
+            float length = (float) Math.sqrt(moveX * moveX + moveZ * moveZ);
+            boolean expires = length >= ranges[slot];
+            if (expires && length > 0f) {
+                float fraction = ranges[slot] / length;
+                moveX *= fraction;
+                moveZ *= fraction;
+            }
+
+            float hitTime = Math.min(sweepWalls(slot, moveX, moveZ),
+                    sweepObstacles(slot, moveX, moveZ));
+            int hitTarget = WALL;
+            for (int target = 0; target < targetCount; ++target) {
+                if (targetIds[target] == owners[slot]
+                        || targetTeams[target] == teams[slot]) {
+                    continue;
+                }
+
+                float radius = radiuses[slot];
+                if (ys[slot] + radius < targetBottoms[target]
+                        || ys[slot] - radius > targetTops[target]) {
+                    continue;
+                }
+
+                float time = sweepCircle(xs[slot], zs[slot], moveX, moveZ,
+                        targetXs[target], targetZs[target],
+                        radius + targetRadiuses[target]);
+                if (time < hitTime) {
+                    hitTime = time;
+                    hitTarget = targetIds[target];
+                }
+            }
+
+            int id = ids[slot];
+            if (hitTime <= 1f) {
+                int owner = owners[slot];
+                float hitX = xs[slot] + moveX * hitTime;
+                float hitZ = zs[slot] + moveZ * hitTime;
+                removeSlot(slot);
+                listener.projectileHit(id, owner, hitTarget, hitX, hitZ);
+                continue;
+            }
+
+            xs[slot] += moveX;
+            zs[slot] += moveZ;
+            ranges[slot] -= length;
+            if (expires) {
+                removeSlot(slot);
+                listener.projectileExpired(id);
+                continue;
+            }
+
+            ++slot;
+        }
+    }
+
+    /**
+     * @return fraction of move when projectile first touches wall or NO_HIT
+     */
+    private float sweepWalls(int slot, float moveX, float moveZ) {
+        float x = xs[slot];
+        float z = zs[slot];
+        float radius = radiuses[slot];
+        float minX = Math.min(x, x + moveX) - radius;
+        float maxX = Math.max(x, x + moveX) + radius;
+        float minZ = Math.min(z, z + moveZ) - radius;
+        float maxZ = Math.max(z, z + moveZ) + radius;
+
+        float first = NO_HIT;
+        for (int offset = 0; offset < wallCount * 4; offset += 4) {
+            float x1 = walls[offset];
+            float z1 = walls[offset + 1];
+            float x2 = walls[offset + 2];
+            float z2 = walls[offset + 3];
+            if (Math.max(x1, x2) < minX || Math.min(x1, x2) > maxX
+                    || Math.max(z1, z2) < minZ || Math.min(z1, z2) > maxZ) {
+                continue;
+            }
+
+            float time = sweepSegment(x, z, moveX, moveZ, x1, z1, x2, z2,
+                    radius);
+            if (time < first) {
+                first = time;
+            }
+        }
+
+        return first;
+    }
+
+    /**
+     * @return fraction of move when projectile first touches obstacle or
+     * NO_HIT
+     */
+    private float sweepObstacles(int slot, float moveX, float moveZ) {
+        float radius = radiuses[slot];
+        float first = NO_HIT;
+        for (int obstacle = 0; obstacle < obstacleCount; ++obstacle) {
+            if (ys[slot] + radius < obstacleBottoms[obstacle]
+                    || ys[slot] - radius > obstacleTops[obstacle]) {
+                continue;
+            }
+
+            float time = sweepCircle(xs[slot], zs[slot], moveX, moveZ,
+                    obstacleXs[obstacle], obstacleZs[obstacle],
+                    radius + obstacleRadiuses[obstacle]);
+            if (time < first) {
+                first = time;
+            }
+        }
+
+        return first;
+    }
+
+    /**
+     * Moves point from x, z by move and finds when it first comes within
+     * reach of center.
+     *
+     * @return fraction of move or NO_HIT
+     */
+    static float sweepCircle(float x, float z, float moveX, float moveZ,
+            float centerX, float centerZ, float reach) {
+        float fromX = x - centerX;
+        float fromZ = z - centerZ;
+        float c = fromX * fromX + fromZ * fromZ - reach * reach;
+        if (c <= 0f) {
+            return 0f;
+        }
+
+        float a = moveX * moveX + moveZ * moveZ;
+        float b = fromX * moveX + fromZ * moveZ;
+        if (a == 0f || b >= 0f) {
+            return NO_HIT;
+        }
+
+        float discriminant = b * b - a * c;
+        if (discriminant < 0f) {
+            return NO_HIT;
+        }
+
+        float time = (-b - (float) Math.sqrt(discriminant)) / a;
+        return time <= 1f ? time : NO_HIT;
+    }
+
+    /**
+     * Sweeps circle of radius against segment, that is point against
+     * segment's sides and rounded ends.
+     *
+     * @return fraction of move or NO_HIT
+     */
+    static float sweepSegment(float x, float z, float moveX, float moveZ,
+            float x1, float z1, float x2, float z2, float radius) {
+        float edgeX = x2 - x1;
+        float edgeZ = z2 - z1;
+        float lengthSquared = edgeX * edgeX + edgeZ * edgeZ;
+        float first = NO_HIT;
+
+        if (lengthSquared > 0f) {
+            float length = (float) Math.sqrt(lengthSquared);
+            float normalX = -edgeZ / length;
+            float normalZ = edgeX / length;
+            float distance = (x - x1) * normalX + (z - z1) * normalZ;
+            float approach = moveX * normalX + moveZ * normalZ;
+
+            float time;
+            if (Math.abs(distance) <= radius) {
+                time = 0f;
+            } else if (approach != 0f) {
+                float side = distance > 0f ? radius : -radius;
+                time = (side - distance) / approach;
+            } else {
+                time = NO_HIT;
+            }
+
+            if (time >= 0f && time <= 1f) {
+                float along = ((x + moveX * time - x1) * edgeX
+                        + (z + moveZ * time - z1) * edgeZ) / lengthSquared;
+                if (along >= 0f && along <= 1f) {
+                    first = time;
+                }
+            }
+        }
+
+        first = Math.min(first,
+                sweepCircle(x, z, moveX, moveZ, x1, z1, radius));
+        return Math.min(first,
+                sweepCircle(x, z, moveX, moveZ, x2, z2, radius));
+    }
+
+    private void removeSlot(int slot) {
+        slots[ids[slot] & 0xFFFF] = -1;
+        int last = --count;
+        if (slot == last) {
+            return;
+        }
+
+        ids[slot] = ids[last];
+        xs[slot] = xs[last];
+        ys[slot] = ys[last];
+        zs[slot] = zs[last];
+        velocityXs[slot] = velocityXs[last];
+        velocityZs[slot] = velocityZs[last];
+        radiuses[slot] = radiuses[last];
+        ranges[slot] = ranges[last];
+        owners[slot] = owners[last];
+        teams[slot] = teams[last];
+        slots[ids[slot] & 0xFFFF] = slot;
+    }
+
+    private void grow(int length) {
+        ids = Arrays.copyOf(ids, length);
+        xs = Arrays.copyOf(xs, length);
+        ys = Arrays.copyOf(ys, length);
+        zs = Arrays.copyOf(zs, length);
+        velocityXs = Arrays.copyOf(velocityXs, length);
+        velocityZs = Arrays.copyOf(velocityZs, length);
+        radiuses = Arrays.copyOf(radiuses, length);
+        ranges = Arrays.copyOf(ranges, length);
+        owners = Arrays.copyOf(owners, length);
+        teams = Arrays.copyOf(teams, length);
+    }
+}
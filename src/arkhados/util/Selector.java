@@ -14,23 +14,24 @@
  along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
 package arkhados.util;
 
+import arkhados.MatchContext;
 import arkhados.SpatialDistancePair;
-import arkhados.World;
 import arkhados.controls.CCharacterPhysics;
 import arkhados.controls.CInfluenceInterface;
 import com.jme3.math.FastMath;
 import com.jme3.math.Plane;
 import com.jme3.math.Vector3f;
-import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.function.Predicate;
 
 public class Selector {
 
-    private static World world;
+    private static final ThreadLocal<ArrayList<Spatial>> candidates
+            = ThreadLocal.withInitial(ArrayList::new);
 
     public static <T extends Collection<SpatialDistancePair>> T coneSelect(
             T collection,
@@ -99,10 +100,13 @@ public class Selector {
             Vector3f location,
             float distance,
             Predicate<Spatial> predicate) {
-        Node worldRoot = world.getWorldRoot();
+        ArrayList<Spatial> candidates = Selector.candidates.get();
+        candidates.clear();
+        MatchContext.current().getWorld().getSpatialGrid()
+                .query(candidates, location, distance);
 
-        for (Spatial child : worldRoot.getChildren()) {
-            // This filters out camNode and maybe other useless ones
+        for (int i = 0; i < candidates.size(); ++i) {
+            Spatial child = candidates.get(i);
             if (child.getWorldBound() == null) {
                 continue;
             }
@@ -118,6 +122,8 @@ public class Selector {
 
             collection.add(new SpatialDistancePair(child, distanceBetween));
         }
+
+        candidates.clear();
         return collection;
     }
 
@@ -135,15 +141,11 @@ public class Selector {
         return smallest;
     }
 
-    public static void setWorld(World world) {
-        Selector.world = world;
-    }
-
     public static class IsCharacter implements Predicate<Spatial> {
 
         @Override
         public boolean test(Spatial value) {
-            return value.getControl(CInfluenceInterface.class) != null;
+            return EntityHandle.influenceOf(value) != null;
         }        
     }
     
@@ -157,11 +159,8 @@ public class Selector {
 
         @Override
         public boolean test(Spatial spatial) {
-            if (spatial.getControl(CInfluenceInterface.class) == null) {
-                return false;
-            }
-
-            return !spatial.getUserData(UserData.TEAM_ID).equals(myTeam);
+            CInfluenceInterface cInfluence = EntityHandle.influenceOf(spatial);
+            return cInfluence != null && cInfluence.getTeamId() != myTeam;
         }
     }
     
@@ -174,11 +173,8 @@ public class Selector {
 
         @Override
         public boolean test(Spatial value) {
-            if (value.getControl(CInfluenceInterface.class) == null) {
-                return false;
-            }
-            
-            return value.getUserData(UserData.TEAM_ID).equals(myTeam);
+            CInfluenceInterface cInfluence = EntityHandle.influenceOf(value);
+            return cInfluence != null && cInfluence.getTeamId() == myTeam;
         }        
     }
 }
@@ -0,0 +1,250 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+import com.jme3.util.IntMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Uniform grid on XZ-plane that is used as broadphase for range queries.
+ * Every entity is put to each cell that its extent overlaps, so query only
+ * has to look at cells within its own range. Entities that would cover too
+ * many cells are kept in separate list that every query returns. Caller
+ * still has to do exact distance test.
+ */
+public class SpatialGrid {
+
+    /**
+     * Entities might move after grid has been updated for this frame. Slack
+     * makes sure that they are still found.
+     */
+    private static final float SLACK = 5f;
+    /**
+     * Entities with larger extent, counted in cells, are oversized
+     */
+    private static final int MAX_CELL_EXTENT = 2;
+    private final float cellSize;
+    private final IntMap<List<Entry>> cells = new IntMap<>();
+    private final IntMap<Entry> entries = new IntMap<>();
+    private final List<Entry> oversized = new ArrayList<>();
+    /**
+     * Query marks entries it has returned with this so that entity that is
+     * in many cells is returned once
+     */
+    private int queryStamp = 0;
+
+    public SpatialGrid(float cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    public void add(int id, Spatial spatial) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            remove(id);
+        }
+
+        entry = new Entry(spatial);
+        entries.put(id, entry);
+        place(entry);
+    }
+
+    public void remove(int id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            unplace(entry);
+        }
+    }
+
+    /**
+     * Moves entities to cells they currently overlap. Should be called once
+     * per frame.
+     */
+    public void update() {
+        for (IntMap.Entry<Entry> mapEntry : entries) {
+            Entry entry = mapEntry.getValue();
+            Vector3f location = entry.spatial.getLocalTranslation();
+            float extent = extentOf(entry.spatial);
+            int minX = cellCoord(location.x - extent);
+            int maxX = cellCoord(location.x + extent);
+            int minZ = cellCoord(location.z - extent);
+            int maxZ = cellCoord(location.z + extent);
+            if (minX != entry.minX || maxX != entry.maxX
+                    || minZ != entry.minZ || maxZ != entry.maxZ) {
+                unplace(entry);
+                place(entry, minX, maxX, minZ, maxZ);
+            }
+        }
+    }
+
+    /**
+     * Adds all entities that might be within range to collection. Every
+     * entity is added once.
+     */
+    public <T extends Collection<Spatial>> T query(T collection,
+            Vector3f location, float range) {
+        int stamp = ++queryStamp;
+        float reach = range + SLACK;
+        int minX = cellCoord(location.x - reach);
+        int maxX = cellCoord(location.x + reach);
+        int minZ = cellCoord(location.z - reach);
+        int maxZ = cellCoord(location.z + reach);
+
+        for (int x = minX; x <= maxX; ++x) {
+            for (int z = minZ; z <= maxZ; ++z) {
+                List<Entry> cell = cells.get(cellKey(x, z));
+                if (cell == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < cell.size(); ++i) {
+                    Entry entry = cell.get(i);
+                    if (entry.stamp != stamp) {
+                        entry.stamp = stamp;
+                        collection.add(entry.spatial);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < oversized.size(); ++i) {
+            collection.add(oversized.get(i).spatial);
+        }
+
+        return collection;
+    }
+
+    public void clear() {
+        cells.clear();
+        entries.clear();
+        oversized.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void place(Entry entry) {
+        Vector3f location = entry.spatial.getLocalTranslation();
+        float extent = extentOf(entry.spatial);
+        place(entry, cellCoord(location.x - extent),
+                cellCoord(location.x + extent),
+                cellCoord(location.z - extent),
+                cellCoord(location.z + extent));
+    }
+
+    private void place(Entry entry, int minX, int maxX, int minZ,
+            int maxZ) {
+        entry.minX = minX;
+        entry.maxX = maxX;
+        entry.minZ = minZ;
+        entry.maxZ = maxZ;
+        entry.oversized = maxX - minX > 2 * MAX_CELL_EXTENT
+                || maxZ - minZ > 2 * MAX_CELL_EXTENT;
+        if (entry.oversized) {
+            oversized.add(entry);
+            return;
+        }
+
+        for (int x = minX; x <= maxX; ++x) {
+            for (int z = minZ; z <= maxZ; ++z) {
+                cellFor(cellKey(x, z)).add(entry);
+            }
+        }
+    }
+
+    private void unplace(Entry entry) {
+        if (entry.oversized) {
+            oversized.remove(entry);
+            return;
+        }
+
+        for (int x = entry.minX; x <= entry.maxX; ++x) {
+            for (int z = entry.minZ; z <= entry.maxZ; ++z) {
+                List<Entry> cell = cells.get(cellKey(x, z));
+                if (cell != null) {
+                    cell.remove(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return distance from entity's location to farthest point of its
+     * world bound on XZ-plane
+     */
+    private static float extentOf(Spatial spatial) {
+        BoundingVolume bound = spatial.getWorldBound();
+        if (bound == null) {
+            return 0f;
+        }
+
+        float radius;
+        if (bound instanceof BoundingBox) {
+            BoundingBox box = (BoundingBox) bound;
+            radius = FastMath.sqrt(box.getXExtent() * box.getXExtent()
+                    + box.getZExtent() * box.getZExtent());
+        } else if (bound instanceof BoundingSphere) {
+            radius = ((BoundingSphere) bound).getRadius();
+        } else {
+            return 0f;
+        }
+
+        Vector3f center = bound.getCenter();
+        Vector3f location = spatial.getLocalTranslation();
+        float dx = center.x - location.x;
+        float dz = center.z - location.z;
+        return FastMath.sqrt(dx * dx + dz * dz) + radius;
+    }
+
+    private List<Entry> cellFor(int key) {
+        List<Entry> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>(4);
+            cells.put(key, cell);
+        }
+        return cell;
+    }
+
+    private int cellCoord(float value) {
+        return (int) FastMath.floor(value / cellSize);
+    }
+
+    private static int cellKey(int x, int z) {
+        return (x << 16) | (z & 0xFFFF);
+    }
+
+    private static class Entry {
+
+        final Spatial spatial;
+        int minX;
+        int maxX;
+        int minZ;
+        int maxZ;
+        boolean oversized;
+        int stamp;
+
+        Entry(Spatial spatial) {
+            this.spatial = spatial;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+/**
+ * Hierarchical timer wheel that runs callbacks in game time. World advances
+ * it with its world time, so callbacks run on update thread and no threads
+ * are needed for waiting. Scheduling and cancelling are O(1) and advancing
+ * does work only for ticks that pass and timers that are due.
+ *
+ * Time is divided to ticks of RESOLUTION seconds. Each level has SLOTS
+ * slots and one slot of a level spans whole lower level. Timers are kept on
+ * the lowest level that can hold their deadline and are moved down when
+ * their slot of higher level comes up.
+ *
+ * Not thread safe. Schedule from update thread.
+ */
+public class TimerWheel {
+
+    public static final float RESOLUTION = 0.01f;
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    /**
+     * About 46 hours. Longer delays are clamped
+     */
+    private static final long MAX_DELAY_TICKS = (1L << (BITS * LEVELS)) - 1;
+    private final Task[][] slots = new Task[LEVELS][SLOTS];
+    private long now = 0;
+    private int size = 0;
+
+    public TimerWheel() {
+    }
+
+    /**
+     * @param time time that wheel starts at
+     */
+    public TimerWheel(float time) {
+        now = toTicks(time);
+    }
+
+    /**
+     * Runs callback on update thread after given game time. Callback runs
+     * at the first advance that passes its deadline, so it is late by at
+     * most one frame.
+     *
+     * @return task that can be cancelled
+     */
+    public Task schedule(float delay, Runnable callback) {
+        Task task = new Task(callback);
+        long ticks = Math.max(1, (long) Math.ceil(delay / RESOLUTION));
+        task.deadline = now + Math.min(ticks, MAX_DELAY_TICKS);
+        insert(task);
+        ++size;
+        return task;
+    }
+
+    /**
+     * Does nothing if task has already run or been cancelled
+     */
+    public void cancel(Task task) {
+        if (task == null || !task.isScheduled()) {
+            return;
+        }
+
+        unlink(task);
+        --size;
+    }
+
+    /**
+     * @return seconds until task runs or 0 if it is not scheduled
+     */
+    public float getTimeLeft(Task task) {
+        if (task == null || !task.isScheduled()) {
+            return 0f;
+        }
+
+        return (task.deadline - now) * RESOLUTION;
+    }
+
+    /**
+     * Runs callbacks of all timers whose deadline is at or before given
+     * time. Callbacks can schedule and cancel timers and clear the wheel.
+     */
+    public void advance(float time) {
+        long target = toTicks(time);
+        while (now < target) {
+            if (size == 0) {
+                now = target;
+                return;
+            }
+
+            ++now;
+            int index = (int) (now & MASK);
+            if (index == 0) {
+                cascade(1);
+            }
+
+            Task task;
+            while ((task = slots[0][index]) != null) {
+                unlink(task);
+                --size;
+                task.callback.run();
+            }
+        }
+    }
+
+    public void clear() {
+        for (Task[] level : slots) {
+            for (int i = 0; i < SLOTS; ++i) {
+                while (level[i] != null) {
+                    unlink(level[i]);
+                }
+            }
+        }
+
+        size = 0;
+    }
+
+    /**
+     * @return number of scheduled timers
+     */
+    public int size() {
+        return size;
+    }
+
+    private void cascade(int level) {
+        int index = (int) ((now >>> (level * BITS)) & MASK);
+        if (index == 0 && level + 1 < LEVELS) {
+            cascade(level + 1);
+        }
+
+        Task task = slots[level][index];
+        slots[level][index] = null;
+        while (task != null) {
+            Task next = task.next;
+            task.level = -1;
+            task.next = null;
+            task.previous = null;
+            insert(task);
+            task = next;
+        }
+    }
+
+    private void insert(Task task) {
+        long delta = task.deadline - now;
+        int level = 0;
+        while (level + 1 < LEVELS && delta >= 1L << ((level + 1) * BITS)) {
+            ++level;
+        }
+
+        int index = (int) ((task.deadline >>> (level * BITS)) & MASK);
+        Task head = slots[level][index];
+        task.level = level;
+        task.index = index;
+        task.previous = null;
+        task.next = head;
+        if (head != null) {
+            head.previous = task;
+        }
+
+        slots[level][index] = task;
+    }
+
+    private void unlink(Task task) {
+        if (task.previous != null) {
+            task.previous.next = task.next;
+        } else {
+            slots[task.level][task.index] = task.next;
+        }
+
+        if (task.next != null) {
+            task.next.previous = task.previous;
+        }
+
+        task.level = -1;
+        task.next = null;
+        task.previous = null;
+    }
+
+    private static long toTicks(float time) {
+        return (long) (time / RESOLUTION);
+    }
+
+    public static class Task {
+
+        private final Runnable callback;
+        private long deadline;
+        private int level = -1;
+        private int index;
+        private Task previous;
+        private Task next;
+
+        private Task(Runnable callback) {
+            this.callback = callback;
+        }
+
+        public boolean isScheduled() {
+            return level != -1;
+        }
+    }
+}
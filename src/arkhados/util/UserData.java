@@ -15,6 +15,12 @@
 
 package arkhados.util;
 
+/**
+ * Keys of Spatial's user data. Health, speed, damage factor, life steal,
+ * team and player of entities in World are owned by ComponentStore and
+ * their user data is kept as a read-only view of it. Change them with
+ * CInfluenceInterface.setFloat or ComponentStore.
+ */
 public class UserData {
     public final static String SPEED_BASE = "speed-movement-base";
     public final static String SPEED = "speed-movement";
@@ -49,4 +55,8 @@ public class UserData {
     public final static String TEAM_ID = "team-id";
     
     public final static String FOLLOW_ME = "follow-me";
+    /**
+     * EntityHandle of entity. Use EntityHandle.of
+     */
+    public final static String ENTITY_HANDLE = "entity-handle";
 }
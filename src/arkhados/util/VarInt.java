@@ -0,0 +1,67 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Variable length integer encoding. Small values take one byte, full int
+ * takes five. Signed values are zigzag encoded so that small negative numbers
+ * stay small too.
+ */
+public class VarInt {
+
+    public static void put(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static int get(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        return value;
+    }
+
+    public static void putSigned(ByteBuffer buffer, int value) {
+        put(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    public static int getSigned(ByteBuffer buffer) {
+        int value = get(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static int sizeSigned(int value) {
+        return size((value << 1) ^ (value >> 31));
+    }
+
+    public static int size(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            ++size;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,344 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.SceneGraphVisitorAdapter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Static 2D occlusion structure that is built once from wall geometry.
+ * Triangle edges of walls are projected to XZ-plane and bucketed into uniform
+ * grid. Line of sight test walks only those cells that line crosses.
+ *
+ * Walls are treated as infinitely tall, which is true for all arenas since
+ * walls are higher than characters. Instance is immutable after construction
+ * so it can be queried from many threads at the same time.
+ */
+public class WallOcclusion {
+
+    private static final float EPSILON = 0.0001f;
+    /**
+     * Scale that is used when detecting duplicate edges. Quads and boxes
+     * share many edges after projection.
+     */
+    private static final float DUPLICATE_SCALE = 16f;
+    private final float cellSize;
+    private final float minX;
+    private final float minZ;
+    private final float maxX;
+    private final float maxZ;
+    private final int cellsX;
+    private final int cellsZ;
+    /**
+     * Edges as ax, az, bx, bz
+     */
+    private final float[] segments;
+    /**
+     * Edges of cell i are cellSegments[cellStart[i]] ...
+     * cellSegments[cellStart[i + 1] - 1]
+     */
+    private final int[] cellStart;
+    private final int[] cellSegments;
+
+    public WallOcclusion(Node walls, float cellSize) {
+        this.cellSize = cellSize;
+        segments = collectSegments(walls);
+
+        int count = segments.length / 4;
+        if (count == 0) {
+            minX = minZ = maxX = maxZ = 0f;
+            cellsX = cellsZ = 0;
+            cellStart = new int[1];
+            cellSegments = new int[0];
+            return;
+        }
+
+        float lowX = Float.POSITIVE_INFINITY;
+        float lowZ = Float.POSITIVE_INFINITY;
+        float highX = Float.NEGATIVE_INFINITY;
+        float highZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < segments.length; i += 2) {
+            lowX = Math.min(lowX, segments[i]);
+            highX = Math.max(highX, segments[i]);
+            lowZ = Math.min(lowZ, segments[i + 1]);
+            highZ = Math.max(highZ, segments[i + 1]);
+        }
+
+        minX = lowX;
+        minZ = lowZ;
+        cellsX = Math.max(1, (int) Math.ceil((highX - lowX) / cellSize));
+        cellsZ = Math.max(1, (int) Math.ceil((highZ - lowZ) / cellSize));
+        maxX = minX + cellsX * cellSize;
+        maxZ = minZ + cellsZ * cellSize;
+
+        int[] cellCounts = new int[cellsX * cellsZ];
+        for (int i = 0; i < count; ++i) {
+            forEachCell(i, cellCounts, null, null);
+        }
+
+        cellStart = new int[cellCounts.length + 1];
+        for (int i = 0; i < cellCounts.length; ++i) {
+            cellStart[i + 1] = cellStart[i] + cellCounts[i];
+        }
+
+        cellSegments = new int[cellStart[cellCounts.length]];
+        int[] fill = new int[cellCounts.length];
+        for (int i = 0; i < count; ++i) {
+            forEachCell(i, null, fill, cellSegments);
+        }
+    }
+
+    /**
+     * @return true if any wall is between given points
+     */
+    public boolean isBlocked(float fromX, float fromZ, float toX, float toZ) {
+        if (cellsX == 0) {
+            return false;
+        }
+
+        float dx = toX - fromX;
+        float dz = toZ - fromZ;
+
+        // Clip line to grid bounds (Liang-Barsky)
+        float t0 = 0f;
+        float t1 = 1f;
+        for (int i = 0; i < 4; ++i) {
+            float p;
+            float q;
+            switch (i) {
+                case 0:
+                    p = -dx;
+                    q = fromX - minX;
+                    break;
+                case 1:
+                    p = dx;
+                    q = maxX - fromX;
+                    break;
+                case 2:
+                    p = -dz;
+                    q = fromZ - minZ;
+                    break;
+                default:
+                    p = dz;
+                    q = maxZ - fromZ;
+                    break;
+            }
+
+            if (p == 0f) {
+                if (q < 0f) {
+                    return false;
+                }
+            } else {
+                float t = q / p;
+                if (p < 0f) {
+                    t0 = Math.max(t0, t);
+                } else {
+                    t1 = Math.min(t1, t);
+                }
+            }
+        }
+
+        if (t0 > t1) {
+            return false;
+        }
+
+        float startX = fromX + dx * t0;
+        float startZ = fromZ + dz * t0;
+
+        int cellX = cellX(startX);
+        int cellZ = cellZ(startZ);
+        int endX = cellX(fromX + dx * t1);
+        int endZ = cellZ(fromZ + dz * t1);
+
+        int stepX = dx > 0f ? 1 : dx < 0f ? -1 : 0;
+        int stepZ = dz > 0f ? 1 : dz < 0f ? -1 : 0;
+        float deltaX = stepX != 0 ? cellSize / Math.abs(dx)
+                : Float.POSITIVE_INFINITY;
+        float deltaZ = stepZ != 0 ? cellSize / Math.abs(dz)
+                : Float.POSITIVE_INFINITY;
+        float nextX = stepX > 0
+                ? (minX + (cellX + 1) * cellSize - fromX) / dx
+                : stepX < 0 ? (minX + cellX * cellSize - fromX) / dx
+                : Float.POSITIVE_INFINITY;
+        float nextZ = stepZ > 0
+                ? (minZ + (cellZ + 1) * cellSize - fromZ) / dz
+                : stepZ < 0 ? (minZ + cellZ * cellSize - fromZ) / dz
+                : Float.POSITIVE_INFINITY;
+
+        for (int steps = cellsX + cellsZ; steps >= 0; --steps) {
+            if (cellBlocks(cellX + cellZ * cellsX, fromX, fromZ, dx, dz)) {
+                return true;
+            }
+
+            if (cellX == endX && cellZ == endZ) {
+                break;
+            }
+
+            if (nextX < nextZ) {
+                cellX += stepX;
+                nextX += deltaX;
+            } else {
+                cellZ += stepZ;
+                nextZ += deltaZ;
+            }
+
+            if (cellX < 0 || cellX >= cellsX || cellZ < 0
+                    || cellZ >= cellsZ) {
+                break;
+            }
+        }
+
+        return false;
+    }
+
+    public int getSegmentCount() {
+        return segments.length / 4;
+    }
+
+    private boolean cellBlocks(int cell, float fromX, float fromZ, float dx,
+            float dz) {
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; ++i) {
+            int index = cellSegments[i] * 4;
+            float ax = segments[index];
+            float az = segments[index + 1];
+            float sx = segments[index + 2] - ax;
+            float sz = segments[index + 3] - az;
+
+            float denominator = dx * sz - dz * sx;
+            if (Math.abs(denominator) < EPSILON) {
+                // Parallel edges are handled by neighbouring edges
+                continue;
+            }
+
+            float ox = ax - fromX;
+            float oz = az - fromZ;
+            float t = (ox * sz - oz * sx) / denominator;
+            float u = (ox * dz - oz * dx) / denominator;
+            if (t >= 0f && t <= 1f && u >= 0f && u <= 1f) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Counts segment into cellCounts or writes it to target, depending on
+     * which one is given
+     */
+    private void forEachCell(int segment, int[] cellCounts, int[] fill,
+            int[] target) {
+        int index = segment * 4;
+        int lowX = cellX(Math.min(segments[index], segments[index + 2]));
+        int highX = cellX(Math.max(segments[index], segments[index + 2]));
+        int lowZ = cellZ(Math.min(segments[index + 1], segments[index + 3]));
+        int highZ = cellZ(Math.max(segments[index + 1], segments[index + 3]));
+
+        for (int z = lowZ; z <= highZ; ++z) {
+            for (int x = lowX; x <= highX; ++x) {
+                int cell = x + z * cellsX;
+                if (cellCounts != null) {
+                    ++cellCounts[cell];
+                } else {
+                    target[cellStart[cell] + fill[cell]++] = segment;
+                }
+            }
+        }
+    }
+
+    private int cellX(float x) {
+        int cell = (int) ((x - minX) / cellSize);
+        return Math.max(0, Math.min(cellsX - 1, cell));
+    }
+
+    private int cellZ(float z) {
+        int cell = (int) ((z - minZ) / cellSize);
+        return Math.max(0, Math.min(cellsZ - 1, cell));
+    }
+
+    private static float[] collectSegments(Node walls) {
+        final List<Float> collected = new ArrayList<>();
+        if (walls == null) {
+            return new float[0];
+        }
+
+        final Set<Long> seen = new HashSet<>();
+        final Vector3f[] triangle
+                = {new Vector3f(), new Vector3f(), new Vector3f()};
+
+        walls.depthFirstTraversal(new SceneGraphVisitorAdapter() {
+            @Override
+            public void visit(Geometry geometry) {
+                Mesh mesh = geometry.getMesh();
+                Transform transform = geometry.getWorldTransform();
+                for (int i = 0; i < mesh.getTriangleCount(); ++i) {
+                    mesh.getTriangle(i, triangle[0], triangle[1],
+                            triangle[2]);
+                    for (Vector3f vertex : triangle) {
+                        transform.transformVector(vertex, vertex);
+                    }
+
+                    for (int j = 0; j < 3; ++j) {
+                        addSegment(triangle[j], triangle[(j + 1) % 3],
+                                collected, seen);
+                    }
+                }
+            }
+        });
+
+        float[] result = new float[collected.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = collected.get(i);
+        }
+
+        return result;
+    }
+
+    private static void addSegment(Vector3f a, Vector3f b, List<Float> store,
+            Set<Long> seen) {
+        float dx = b.x - a.x;
+        float dz = b.z - a.z;
+        if (dx * dx + dz * dz < EPSILON) {
+            // Vertical edge projects to a point
+            return;
+        }
+
+        long keyA = quantize(a.x, a.z);
+        long keyB = quantize(b.x, b.z);
+        long key = keyA < keyB ? (keyA << 32) | keyB : (keyB << 32) | keyA;
+        if (!seen.add(key)) {
+            return;
+        }
+
+        store.add(a.x);
+        store.add(a.z);
+        store.add(b.x);
+        store.add(b.z);
+    }
+
+    private static long quantize(float x, float z) {
+        long qx = Math.round(x * DUPLICATE_SCALE) & 0xFFFF;
+        long qz = Math.round(z * DUPLICATE_SCALE) & 0xFFFF;
+        return (qx << 16) | qz;
+    }
+}
@@ -0,0 +1,148 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados;
+
+import com.jme3.util.IntMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares PlayerData's lock-free columns against the old design, where
+ * every access locked the class and looked values up from boxed maps.
+ * Readers look up entity ids like Sync and collision listeners do while one
+ * thread keeps writing. Run with main method.
+ */
+public class PlayerDataBenchmark {
+
+    private static final int PLAYERS = 8;
+    private static final int READS = 2000000;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int i = 0; i < PLAYERS; ++i) {
+            int id = PlayerData.getNew("player-" + i);
+            PlayerData.setData(id, PlayerData.ENTITY_ID, 1000 + id);
+            PlayerData.setData(id, PlayerData.TEAM_ID, id);
+            Locked.add(id);
+        }
+
+        for (int readers : new int[]{1, 2, 4, 8}) {
+            // First round warms up
+            run(readers, true);
+            run(readers, false);
+
+            long locked = run(readers, true);
+            long columns = run(readers, false);
+            System.out.printf("%d readers: locked %8.2f ns/read, "
+                    + "columns %8.2f ns/read%n", readers,
+                    (double) locked / READS, (double) columns / READS);
+        }
+    }
+
+    /**
+     * @return nanoseconds that slowest reader took
+     */
+    private static long run(int readers, boolean locked)
+            throws InterruptedException {
+        String name = locked ? "locked" : "columns";
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(readers);
+        long[] times = new long[readers];
+        long[] sums = new long[readers];
+
+        for (int r = 0; r < readers; ++r) {
+            final int reader = r;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+
+                long begin = System.nanoTime();
+                long sum = 0;
+                for (int i = 0; i < READS; ++i) {
+                    sum += locked
+                            ? Locked.getIntData(i % PLAYERS)
+                            : PlayerData.getIntData(i % PLAYERS,
+                                    PlayerData.ENTITY_ID);
+                }
+                times[reader] = System.nanoTime() - begin;
+                sums[reader] = sum;
+                done.countDown();
+            }, name + "-reader-" + r);
+            thread.start();
+        }
+
+        Thread writer = new Thread(() -> {
+            int team = 0;
+            while (done.getCount() > 0) {
+                int id = team % PLAYERS;
+                if (locked) {
+                    Locked.setData(id, team);
+                } else {
+                    PlayerData.setData(id, PlayerData.TEAM_ID, team);
+                }
+                ++team;
+            }
+        }, name + "-writer");
+        writer.start();
+
+        start.countDown();
+        done.await();
+        writer.join();
+
+        long slowest = 0;
+        for (int r = 0; r < readers; ++r) {
+            slowest = Math.max(slowest, times[r]);
+            if (sums[r] == 0) {
+                System.out.println("Reads returned nothing");
+            }
+        }
+
+        return slowest;
+    }
+
+    /**
+     * Old PlayerData: class level lock and boxed values in maps
+     */
+    private static class Locked {
+
+        private static final IntMap<Map<String, Integer>> players
+                = new IntMap<>();
+
+        static synchronized void add(int id) {
+            Map<String, Integer> data = new HashMap<>();
+            data.put(PlayerData.ENTITY_ID, 1000 + id);
+            data.put(PlayerData.TEAM_ID, id);
+            players.put(id, data);
+        }
+
+        static synchronized int getIntData(int id) {
+            if (!players.containsKey(id)) {
+                return -1;
+            }
+            Integer data = players.get(id).get(PlayerData.ENTITY_ID);
+            return data != null ? data : -1;
+        }
+
+        static synchronized void setData(int id, int team) {
+            if (!players.containsKey(id)) {
+                return;
+            }
+            players.get(id).put(PlayerData.TEAM_ID, team);
+        }
+    }
+}
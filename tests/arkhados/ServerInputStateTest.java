@@ -0,0 +1,83 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados;
+
+import arkhados.messages.usercommands.InputFrame;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks that frames which earlier commands already carried are skipped
+ */
+public class ServerInputStateTest {
+
+    private final ServerInputState state = new ServerInputState();
+
+    @Test
+    public void testFirstCommandAppliesAll() {
+        assertEquals(0, state.takeNewFrames(frames(3, 4), 4));
+        assertEquals(3, state.lastFrame);
+    }
+
+    @Test
+    public void testOverlappingFramesAreSkipped() {
+        state.takeNewFrames(frames(3, 4), 4);
+
+        // Frames 2 and 3 came with previous command
+        assertEquals(2, state.takeNewFrames(frames(5, 4), 4));
+        assertEquals(5, state.lastFrame);
+    }
+
+    @Test
+    public void testLateCommandAppliesNothing() {
+        state.takeNewFrames(frames(5, 4), 4);
+
+        assertEquals(4, state.takeNewFrames(frames(4, 4), 4));
+        assertEquals(5, state.lastFrame);
+
+        assertEquals(1, state.takeNewFrames(frames(5, 1), 1));
+        assertEquals(5, state.lastFrame);
+    }
+
+    @Test
+    public void testFramesAfterLossAreApplied() {
+        state.takeNewFrames(frames(5, 4), 4);
+
+        // Commands that had frames 6 to 9 were lost
+        assertEquals(0, state.takeNewFrames(frames(13, 4), 4));
+        assertEquals(13, state.lastFrame);
+    }
+
+    @Test
+    public void testSingleFrameCommands() {
+        for (int sequence = 0; sequence < 5; ++sequence) {
+            assertEquals(0, state.takeNewFrames(frames(sequence, 1), 1));
+            assertEquals(sequence, state.lastFrame);
+        }
+    }
+
+    /**
+     * @return frames from oldest to newest like CmdInputFrame.read gives
+     */
+    private static InputFrame[] frames(int newest, int count) {
+        InputFrame[] frames = new InputFrame[count];
+        for (int i = 0; i < count; ++i) {
+            frames[i] = new InputFrame();
+            frames[i].sequence = newest - count + 1 + i;
+        }
+
+        return frames;
+    }
+}
@@ -0,0 +1,205 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados;
+
+import arkhados.messages.sync.CmdSnapshot;
+import arkhados.messages.sync.statedata.ProjectileSyncData;
+import arkhados.messages.sync.statedata.StateData;
+import arkhados.util.EntityIds;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.HostedConnection;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks that snapshots carry only what client might not have and that
+ * client ends up with server's state whatever was acknowledged
+ */
+public class SnapshotEncoderTest {
+
+    private static final int ID = EntityIds.compose(5, 3);
+    private static final int MAX_BYTES = 1024;
+    private final HostedConnection connection = connection();
+    private final SnapshotEncoder encoder = new SnapshotEncoder();
+    private final SnapshotDecoder decoder = new SnapshotDecoder();
+    private final Vector3f location = new Vector3f(10f, 2f, -30f);
+    private final Vector3f velocity = new Vector3f(40f, 0f, 25f);
+    private int otmId = 0;
+
+    @Test
+    public void testFullStateRoundTrip() {
+        int id = EntityIds.compose(EntityIds.INDEX_MASK,
+                EntityIds.GENERATION_MASK);
+        ProjectileSyncData state = state(id);
+
+        CmdSnapshot snapshot = send(id, state);
+        List<StateData> decoded = decoder.decode(snapshot, new ArrayList<>());
+
+        assertEquals(1, decoded.size());
+        assertEquals(id, decoded.get(0).getSyncId());
+        assertArrayEquals(fields(state), fields(decoded.get(0)));
+    }
+
+    @Test
+    public void testDeltaAgainstAckedBaseline() {
+        CmdSnapshot full = send(ID, state(ID));
+        encoder.acknowledge(connection, otmId);
+
+        location.x += 1f;
+        ProjectileSyncData moved = state(ID);
+        CmdSnapshot delta = send(ID, moved);
+
+        // Id, type, mask and one changed field
+        assertTrue(delta.getData().length < full.getData().length);
+        assertEquals(EntityIds.size(ID) + 1 + 1 + 2, delta.getData().length);
+
+        decoder.decode(full, null);
+        List<StateData> decoded = decoder.decode(delta, new ArrayList<>());
+        assertArrayEquals(fields(moved), fields(decoded.get(0)));
+    }
+
+    @Test
+    public void testIdleEntityEncodesToZeroBytes() {
+        send(ID, state(ID));
+        encoder.acknowledge(connection, otmId);
+
+        encoder.begin(connection, ++otmId);
+        assertEquals(0, encoder.write(ID, state(ID), MAX_BYTES));
+        assertNull(encoder.end());
+    }
+
+    @Test
+    public void testUnacknowledgedChangeIsRepeated() {
+        send(ID, state(ID));
+        encoder.acknowledge(connection, otmId);
+
+        location.x += 1f;
+        send(ID, state(ID));
+
+        // Client might have lost the change, so it is sent again
+        encoder.begin(connection, ++otmId);
+        assertTrue(encoder.write(ID, state(ID), MAX_BYTES) > 0);
+
+        encoder.acknowledge(connection, otmId);
+        encoder.begin(connection, ++otmId);
+        assertEquals(0, encoder.write(ID, state(ID), MAX_BYTES));
+    }
+
+    @Test
+    public void testLostAndStaleAcks() {
+        // Ack of first snapshot is lost. Second one is still full
+        send(ID, state(ID));
+        int lost = otmId;
+        location.x += 1f;
+        CmdSnapshot second = send(ID, state(ID));
+        assertEquals(1, new SnapshotDecoder()
+                .decode(second, new ArrayList<>()).size());
+
+        encoder.acknowledge(connection, otmId);
+        // Ack of older snapshot arrives late and must not move baseline
+        encoder.acknowledge(connection, lost);
+
+        encoder.begin(connection, ++otmId);
+        assertEquals(0, encoder.write(ID, state(ID), MAX_BYTES));
+    }
+
+    @Test
+    public void testTooManyPendingStatesFallBackToFull() {
+        send(ID, state(ID));
+        encoder.acknowledge(connection, otmId);
+
+        // Acks stop coming. When MAX_PENDING states are in flight baseline is
+        // dropped and full state is sent, which client that lost everything
+        // can apply. This happens before FULL_REFRESH_INTERVAL
+        boolean full = false;
+        for (int i = 0; i < 34 && !full; ++i) {
+            location.x += 1f;
+            CmdSnapshot snapshot = send(ID, state(ID));
+            full = !new SnapshotDecoder()
+                    .decode(snapshot, new ArrayList<>()).isEmpty();
+        }
+
+        assertTrue(full);
+    }
+
+    @Test
+    public void testFullRefreshInterval() {
+        send(ID, state(ID));
+        encoder.acknowledge(connection, otmId);
+
+        int fullCount = 0;
+        for (int i = 0; i < 40; ++i) {
+            location.x += 1f;
+            CmdSnapshot snapshot = send(ID, state(ID));
+            encoder.acknowledge(connection, otmId);
+            if (!new SnapshotDecoder().decode(snapshot, new ArrayList<>())
+                    .isEmpty()) {
+                ++fullCount;
+            }
+        }
+
+        assertEquals(1, fullCount);
+    }
+
+    @Test
+    public void testClientFullSnapshotRoundTrip() {
+        ProjectileSyncData state = state(ID);
+        decoder.decode(send(ID, state), null);
+
+        List<StateData> decoded = new SnapshotDecoder()
+                .decode(decoder.fullSnapshot(), new ArrayList<>());
+        assertEquals(1, decoded.size());
+        assertEquals(ID, decoded.get(0).getSyncId());
+        assertArrayEquals(fields(state), fields(decoded.get(0)));
+    }
+
+    private CmdSnapshot send(int id, ProjectileSyncData state) {
+        encoder.begin(connection, ++otmId);
+        assertTrue(encoder.write(id, state, MAX_BYTES) > 0);
+        return encoder.end();
+    }
+
+    private ProjectileSyncData state(int id) {
+        return new ProjectileSyncData(id, location, velocity,
+                new Quaternion());
+    }
+
+    private static int[] fields(StateData state) {
+        ProjectileSyncData projectile = (ProjectileSyncData) state;
+        int[] fields = new int[projectile.getFieldCount()];
+        projectile.writeFields(fields);
+        return fields;
+    }
+
+    private static HostedConnection connection() {
+        return (HostedConnection) Proxy.newProxyInstance(
+                HostedConnection.class.getClassLoader(),
+                new Class<?>[]{HostedConnection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
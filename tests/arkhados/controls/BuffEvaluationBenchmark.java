@@ -0,0 +1,134 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.controls;
+
+import arkhados.Globals;
+import arkhados.spell.buffs.AbleToCastWhileMovingBuff;
+import arkhados.spell.buffs.AbstractBuffBuilder;
+import arkhados.spell.buffs.DamageBuff;
+import arkhados.spell.buffs.LifeStealBuff;
+import arkhados.spell.buffs.SlowCC;
+import arkhados.spell.buffs.SpeedBuff;
+import arkhados.util.EntityHandle;
+import arkhados.util.UserData;
+import com.jme3.scene.Node;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures time and allocations of CInfluenceInterface updates with 6 heroes
+ * that have 10 buffs each, updated at 60 Hz. Run with main method.
+ */
+public class BuffEvaluationBenchmark {
+
+    private static final int HEROES = 6;
+    private static final float TPF = 1f / 60f;
+    /**
+     * One minute of game time
+     */
+    private static final int TICKS = 60 * 60;
+
+    public static void main(String[] args) {
+        Globals.setWorldRunning(true);
+
+        CInfluenceInterface[] heroes = new CInfluenceInterface[HEROES];
+        for (int i = 0; i < HEROES; ++i) {
+            heroes[i] = createHero(i);
+        }
+
+        // Warm up so that JIT has compiled update before measuring
+        for (int i = 0; i < 10; ++i) {
+            run(heroes);
+        }
+
+        com.sun.management.ThreadMXBean threads
+                = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int allowed = run(heroes);
+        long time = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId)
+                - allocatedBefore;
+
+        System.out.printf("%d heroes x 10 buffs: %8.3f us/tick, "
+                + "%d bytes/tick allocated (%d checks passed)%n", HEROES,
+                time / 1000f / TICKS, allocated / TICKS, allowed);
+    }
+
+    private static int run(CInfluenceInterface[] heroes) {
+        int allowed = 0;
+        for (int tick = 0; tick < TICKS; ++tick) {
+            for (CInfluenceInterface hero : heroes) {
+                hero.update(TPF);
+                // Movement and casting ask these many times per tick
+                if (hero.canMove()) {
+                    ++allowed;
+                }
+
+                if (hero.canCast()) {
+                    ++allowed;
+                }
+
+                if (hero.isAbleToCastWhileMoving()) {
+                    ++allowed;
+                }
+            }
+        }
+
+        return allowed;
+    }
+
+    private static CInfluenceInterface createHero(int index) {
+        Node hero = new Node("hero-" + index);
+        hero.setUserData(UserData.SPEED_BASE, 36f);
+        hero.setUserData(UserData.SPEED, 36f);
+        hero.setUserData(UserData.DAMAGE_FACTOR, 1f);
+        hero.setUserData(UserData.LIFE_STEAL_BASE, 0f);
+        hero.setUserData(UserData.LIFE_STEAL, 0f);
+        hero.setUserData(UserData.HEALTH_MAX, 1700f);
+        hero.setUserData(UserData.HEALTH_CURRENT, 1700f);
+
+        hero.addControl(new CResting());
+        hero.addControl(new CCharacterMovement());
+        CInfluenceInterface cInfluence = new CInfluenceInterface();
+        // Server would also update movement, which needs physics
+        cInfluence.setIsServer(false);
+        hero.addControl(cInfluence);
+        EntityHandle.attach(hero);
+
+        // Long enough that no buff ends during benchmark
+        float duration = 1000000f;
+        AbstractBuffBuilder[] builders = {
+            new SpeedBuff.MyBuilder(0.2f, 0f, duration),
+            new SpeedBuff.MyBuilder(0f, 5f, duration),
+            new SpeedBuff.MyBuilder(0.1f, 2f, duration),
+            new SlowCC.MyBuilder(duration, 0.3f),
+            new SlowCC.MyBuilder(duration, 0.1f),
+            new DamageBuff.MyBuilder(duration, 0.25f),
+            new DamageBuff.MyBuilder(duration, -0.1f),
+            new LifeStealBuff.MyBuilder(0.1f, duration),
+            new LifeStealBuff.MyBuilder(0.05f, duration),
+            new AbleToCastWhileMovingBuff.MyBuilder(duration)
+        };
+
+        for (AbstractBuffBuilder builder : builders) {
+            cInfluence.addBuff(builder.build());
+        }
+
+        return cInfluence;
+    }
+}
@@ -0,0 +1,131 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.messages.usercommands;
+
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks that frames survive writing and reading with every frame count,
+ * targets that move both ways and full casts
+ */
+public class CmdInputFrameTest {
+
+    private static final int RING = 8;
+
+    @Test
+    public void testRoundTripWithEveryCount() {
+        for (int count = 1; count <= CmdInputFrame.FRAME_COUNT; ++count) {
+            // Newest is near the start of ring so that older ones wrap
+            InputFrame[] ring = ring(1_000_000, 1);
+            InputFrame[] read = roundTrip(ring, 1, count);
+
+            for (int i = 0; i < count; ++i) {
+                assertFrame(ring[(1 - i + RING) % RING], read[count - 1 - i]);
+            }
+        }
+    }
+
+    @Test
+    public void testTargetsMoveBothWays() {
+        InputFrame[] ring = ring(50, RING - 1);
+        int limit = Math.round(511f * 64f);
+        ring[RING - 1].targetX = limit;
+        ring[RING - 1].targetZ = -limit;
+        ring[RING - 2].targetX = -limit;
+        ring[RING - 2].targetZ = limit;
+        ring[RING - 3].targetX = 0;
+        ring[RING - 3].targetZ = -1;
+
+        InputFrame[] read = roundTrip(ring, RING - 1,
+                CmdInputFrame.FRAME_COUNT);
+        for (int i = 0; i < CmdInputFrame.FRAME_COUNT; ++i) {
+            assertFrame(ring[RING - 1 - i],
+                    read[CmdInputFrame.FRAME_COUNT - 1 - i]);
+        }
+    }
+
+    @Test
+    public void testMaxCasts() {
+        InputFrame[] ring = ring(7, 3);
+        ring[3].clearCasts();
+        for (int i = 0; i < InputFrame.MAX_CASTS - 1; ++i) {
+            assertTrue(ring[3].addCast(i + 1, i % 2 == 0));
+        }
+        assertTrue(ring[3].addCast(InputFrame.RELEASE, false));
+        assertFalse(ring[3].addCast(1, false));
+
+        InputFrame[] read = roundTrip(ring, 3, 2);
+        assertEquals(InputFrame.MAX_CASTS, read[1].castCount);
+        assertFrame(ring[3], read[1]);
+        assertFrame(ring[2], read[0]);
+    }
+
+    /**
+     * @return ring whose frames have different keys, targets and casts.
+     * Sequences decrease by one from newest
+     */
+    private static InputFrame[] ring(int newestSequence, int newest) {
+        InputFrame[] ring = new InputFrame[RING];
+        for (int i = 0; i < RING; ++i) {
+            int age = (newest - i + RING) % RING;
+            InputFrame frame = new InputFrame();
+            frame.sequence = newestSequence - age;
+            frame.down = age % 3 - 1;
+            frame.right = (age / 3) % 3 - 1;
+            frame.targetX = 100 * age - 250;
+            frame.targetZ = -70 * age + 30;
+            for (int cast = 0; cast < age % 3; ++cast) {
+                frame.addCast(cast + 2, age % 2 == 0);
+            }
+            ring[i] = frame;
+        }
+
+        return ring;
+    }
+
+    /**
+     * Writes command from ring, sends it as bytes and reads its frames
+     */
+    private static InputFrame[] roundTrip(InputFrame[] ring, int newest,
+            int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        new CmdInputFrame(ring, newest, count).write(buffer);
+        buffer.flip();
+        CmdInputFrame received = new CmdInputFrame();
+        received.read(buffer);
+        assertFalse(buffer.hasRemaining());
+
+        InputFrame[] store = new InputFrame[CmdInputFrame.FRAME_COUNT];
+        for (int i = 0; i < store.length; ++i) {
+            store[i] = new InputFrame();
+        }
+        assertEquals(count, received.read(store));
+        return store;
+    }
+
+    private static void assertFrame(InputFrame expected, InputFrame actual) {
+        assertEquals(expected.sequence, actual.sequence);
+        assertEquals(expected.down, actual.down);
+        assertEquals(expected.right, actual.right);
+        assertEquals(expected.targetX, actual.targetX);
+        assertEquals(expected.targetZ, actual.targetZ);
+        assertEquals(expected.castCount, actual.castCount);
+        for (int i = 0; i < expected.castCount; ++i) {
+            assertEquals(expected.casts[i], actual.casts[i]);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.net;
+
+import arkhados.messages.CmdTopicOnly;
+import arkhados.messages.CmdWorldEffect;
+import arkhados.messages.MessageUtils;
+import arkhados.messages.sync.CmdAction;
+import arkhados.messages.sync.CmdAddEntity;
+import arkhados.messages.sync.CmdBuff;
+import arkhados.messages.sync.CmdRemoveEntity;
+import arkhados.messages.sync.CmdSetCooldown;
+import arkhados.messages.sync.CmdSnapshot;
+import arkhados.messages.sync.CmdStartCastingSpell;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.serializing.serializers.FieldSerializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares OneTrueMessageSerializer and CommandCodecs against jME's
+ * FieldSerializer, which was used for OneTrueMessage and all commands
+ * before. Messages look like what server sends during a fight. Prints
+ * bytes per message and time to write and read one. Run with main method.
+ */
+public class CommandCodecBenchmark {
+
+    private static final int MESSAGES = 200;
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) throws IOException {
+        MessageUtils.registerDataClasses();
+        MessageUtils.registerMessages();
+
+        Serializer fields = new FieldSerializer();
+        fields.initialize(OneTrueMessage.class);
+        Serializer codecs = new OneTrueMessageSerializer();
+
+        List<OneTrueMessage> messages = createMessages(new Random(42));
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        // First round warms up
+        run(fields, messages, buffer);
+        run(codecs, messages, buffer);
+
+        long[] field = run(fields, messages, buffer);
+        long[] codec = run(codecs, messages, buffer);
+
+        print("FieldSerializer", field);
+        print("CommandCodecs", codec);
+    }
+
+    private static void print(String name, long[] result) {
+        int count = MESSAGES * ROUNDS;
+        System.out.printf("%-16s %7.1f bytes/message, write %8.2f us,"
+                + " read %8.2f us%n", name, (double) result[0] / MESSAGES,
+                result[1] / 1000.0 / count, result[2] / 1000.0 / count);
+    }
+
+    /**
+     * @return total bytes of one round, write nanos and read nanos
+     */
+    private static long[] run(Serializer serializer,
+            List<OneTrueMessage> messages, ByteBuffer buffer)
+            throws IOException {
+        long bytes = 0;
+        long writeTime = 0;
+        long readTime = 0;
+        int commands = 0;
+
+        for (int round = 0; round < ROUNDS; ++round) {
+            bytes = 0;
+            for (OneTrueMessage message : messages) {
+                buffer.clear();
+                long start = System.nanoTime();
+                serializer.writeObject(buffer, message);
+                writeTime += System.nanoTime() - start;
+                bytes += buffer.position();
+
+                buffer.flip();
+                start = System.nanoTime();
+                OneTrueMessage read
+                        = serializer.readObject(buffer, OneTrueMessage.class);
+                readTime += System.nanoTime() - start;
+                commands += read.getUnreliables().size();
+            }
+        }
+
+        if (commands == 0) {
+            throw new AssertionError("Nothing was read");
+        }
+
+        return new long[]{bytes, writeTime, readTime};
+    }
+
+    private static List<OneTrueMessage> createMessages(Random random) {
+        List<OneTrueMessage> messages = new ArrayList<>();
+        Quaternion rotation = new Quaternion();
+        for (int i = 0; i < MESSAGES; ++i) {
+            int otmId = 5000 + i;
+            OneTrueMessage message = new OneTrueMessage(otmId);
+
+            List<Command> guaranteed = new ArrayList<>();
+            for (int j = 0; j < 1 + random.nextInt(3); ++j) {
+                int entity = random.nextInt(300);
+                switch (random.nextInt(6)) {
+                    case 0:
+                        rotation.fromAngleNormalAxis(random.nextFloat(),
+                                Vector3f.UNIT_Y);
+                        guaranteed.add(new CmdAddEntity(entity,
+                                random.nextInt(40), randomLocation(random),
+                                rotation, random.nextInt(8)));
+                        break;
+                    case 1:
+                        guaranteed.add(new CmdRemoveEntity(entity, 1));
+                        break;
+                    case 2:
+                        guaranteed.add(new CmdBuff(entity, 12, otmId * 4 + j,
+                                3f, 1, true));
+                        break;
+                    case 3:
+                        guaranteed.add(new CmdStartCastingSpell(entity,
+                                random.nextInt(60), Vector3f.UNIT_X, 1f));
+                        break;
+                    case 4:
+                        guaranteed.add(new CmdSetCooldown(entity,
+                                random.nextInt(60), 4.5f, true));
+                        break;
+                    default:
+                        guaranteed.add(new CmdWorldEffect(random.nextInt(20),
+                                randomLocation(random)));
+                }
+            }
+
+            // Unacknowledged lists are resent with newer ones
+            message.getGuaranteed().add(
+                    new OtmIdCommandListPair(otmId - 1, guaranteed));
+            message.getGuaranteed().add(
+                    new OtmIdCommandListPair(otmId, guaranteed));
+
+            byte[] snapshot = new byte[60 + random.nextInt(120)];
+            random.nextBytes(snapshot);
+            message.getUnreliables().add(new CmdSnapshot(snapshot));
+            message.getUnreliables().add(new Ack(otmId - 3));
+            message.getUnreliables().add(new CmdAction(random.nextInt(300),
+                    random.nextInt(10)));
+            message.getUnreliables().add(new CmdTopicOnly(3, false));
+            messages.add(message);
+        }
+
+        return messages;
+    }
+
+    private static Vector3f randomLocation(Random random) {
+        return new Vector3f((random.nextFloat() - 0.5f) * 200f, 0f,
+                (random.nextFloat() - 0.5f) * 200f);
+    }
+}
@@ -0,0 +1,232 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.net;
+
+import arkhados.characters.EliteSoldierSyncData;
+import arkhados.messages.ChatMessage;
+import arkhados.messages.CmdClientLogin;
+import arkhados.messages.CmdClientSettings;
+import arkhados.messages.CmdJoinMatch;
+import arkhados.messages.CmdPlayerKill;
+import arkhados.messages.CmdPlayerStatusChange;
+import arkhados.messages.CmdSelectHero;
+import arkhados.messages.CmdSelectTeam;
+import arkhados.messages.CmdServerLogin;
+import arkhados.messages.CmdSetPlayersCharacter;
+import arkhados.messages.CmdTeamAcceptance;
+import arkhados.messages.CmdTopicOnly;
+import arkhados.messages.CmdWorldEffect;
+import arkhados.messages.MessageUtils;
+import arkhados.messages.sync.CmdAction;
+import arkhados.messages.sync.CmdAddEntity;
+import arkhados.messages.sync.CmdBuff;
+import arkhados.messages.sync.CmdBuffStacks;
+import arkhados.messages.sync.CmdEndAction;
+import arkhados.messages.sync.CmdRemoveEntity;
+import arkhados.messages.sync.CmdSetCooldown;
+import arkhados.messages.sync.CmdSnapshot;
+import arkhados.messages.sync.CmdStartCastingSpell;
+import arkhados.messages.sync.statedata.CharacterSyncData;
+import arkhados.messages.sync.statedata.GenericSyncData;
+import arkhados.messages.sync.statedata.ProjectileSyncData;
+import arkhados.messages.usercommands.CmdInputFrame;
+import arkhados.messages.usercommands.InputFrame;
+import arkhados.util.EntityIds;
+import arkhados.util.VarInt;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Writes and reads sample of every command that has a codec and compares
+ * all fields that are sent. Optional fields are tested both present and
+ * absent.
+ */
+public class CommandCodecsTest {
+
+    private static final int ID = EntityIds.compose(300, 2);
+
+    static {
+        MessageUtils.registerDataClasses();
+        MessageUtils.registerMessages();
+    }
+
+    @Test
+    public void testEveryCodecRoundTrips() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        Set<Integer> ids = new HashSet<>();
+
+        for (Command command : samples()) {
+            String name = command.getClass().getSimpleName();
+            assertTrue(name, CommandCodecs.isRegistered(command.getClass()));
+
+            buffer.clear();
+            CommandCodecs.writeCommand(buffer, command);
+            buffer.flip();
+            ids.add(VarInt.get(buffer));
+            buffer.rewind();
+
+            Command read = CommandCodecs.readCommand(buffer);
+            assertFalse(name, buffer.hasRemaining());
+            assertSame(command.getClass(), read.getClass());
+            assertFieldsEqual(command, read);
+        }
+
+        // Samples cover ids 1..n and there is no codec n + 1
+        for (int id = 1; id <= ids.size(); ++id) {
+            assertTrue("No sample for codec " + id, ids.contains(id));
+        }
+
+        buffer.clear();
+        VarInt.put(buffer, ids.size() + 1);
+        // Codec that is missing a sample would read zeros instead of failing
+        buffer.put(new byte[64]);
+        buffer.flip();
+        try {
+            CommandCodecs.readCommand(buffer);
+            fail("No sample for codec " + (ids.size() + 1));
+        } catch (IOException ex) {
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeIdIsRejected() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        VarInt.put(buffer, -1);
+        buffer.flip();
+        CommandCodecs.readCommand(buffer);
+    }
+
+    private static List<Command> samples() {
+        Vector3f location = new Vector3f(12.5f, 1f, -40.25f);
+        Vector3f direction = new Vector3f(0.6f, 0f, -0.8f);
+        Quaternion rotation = new Quaternion(0.1f, 0.7f, 0.1f, 0.7f);
+
+        List<Command> samples = new ArrayList<>();
+        samples.add(new Ack(1234));
+        samples.add(new CmdTopicOnly(12));
+
+        samples.add(new CmdServerLogin("Name", 3, true, "Deathmatch"));
+        samples.add(new CmdServerLogin(null, -1, false, null));
+        samples.add(new CmdClientLogin("N\u00e4me"));
+        samples.add(new CmdClientSettings(true, 0.125f));
+        samples.add(new ChatMessage("Name", "Hello"));
+        samples.add(new CmdSelectHero("Venator"));
+        samples.add(new CmdPlayerStatusChange(4).setLeft());
+        samples.add(new CmdSelectTeam("Red"));
+        samples.add(new CmdTeamAcceptance(2, 1));
+
+        // Optional rotation and age present and absent
+        samples.add(new CmdAddEntity(ID, 12, location, rotation, 3, 1.5f));
+        samples.add(new CmdAddEntity(ID, 12, location, new Quaternion(), -1,
+                0f));
+        samples.add(new CmdRemoveEntity(ID, 2));
+
+        CharacterSyncData character = new CharacterSyncData();
+        character.setSyncId(ID);
+        character.readFields(new int[]{800, 64, -2576, 16384, 80, 49152,
+            0x5640, 0x5000, 123, 45});
+        samples.add(character);
+
+        samples.add(new GenericSyncData(ID, spatial(location, rotation)));
+        samples.add(new GenericSyncData(ID,
+                spatial(location, new Quaternion())));
+        samples.add(new ProjectileSyncData(ID, location, direction,
+                rotation));
+
+        // Fields of CharacterSyncData and EliteSoldierSyncData
+        EliteSoldierSyncData eliteSoldier = new EliteSoldierSyncData();
+        eliteSoldier.setSyncId(ID);
+        eliteSoldier.readFields(new int[]{800, 64, -2576, 16384, 80, 49152,
+            0x5640, 0x5000, 123, 45, 30, 4, 2});
+        samples.add(eliteSoldier);
+
+        // Optional cast speed factor present and absent
+        samples.add(new CmdStartCastingSpell(ID, 5, direction, 1.25f));
+        samples.add(new CmdStartCastingSpell(ID, 5, direction, 1f));
+        samples.add(new CmdSetCooldown(ID, 3, 2.5f, true));
+        samples.add(new CmdAction(ID, 4));
+        samples.add(new CmdEndAction(ID));
+
+        // Optional duration present and absent
+        samples.add(new CmdBuff(ID, 10, 300, 4f, 2, true));
+        CmdBuff removal = new CmdBuff(ID, 10, 300, 0f, 0, false);
+        removal.setJustCreated(false);
+        samples.add(removal);
+        samples.add(new CmdBuffStacks(ID, 300, 3));
+
+        InputFrame[] frames = {new InputFrame(), new InputFrame()};
+        frames[0].sequence = 41;
+        frames[1].sequence = 42;
+        frames[1].down = -1;
+        frames[1].targetX = -300;
+        frames[1].addCast(2, true);
+        samples.add(new CmdInputFrame(frames, 1, 2));
+
+        samples.add(new CmdSetPlayersCharacter(ID, 2));
+        samples.add(new CmdPlayerKill(1, 2, 3, 4, 5));
+        samples.add(new CmdWorldEffect(7, location));
+        samples.add(new CmdSnapshot(new byte[]{1, 2, 3}));
+        samples.add(new CmdSnapshot());
+        samples.add(new CmdJoinMatch(9));
+        return samples;
+    }
+
+    private static Spatial spatial(Vector3f location, Quaternion rotation) {
+        Node node = new Node("sample");
+        node.setLocalTranslation(location);
+        node.setLocalRotation(rotation);
+        return node;
+    }
+
+    /**
+     * Compares fields of class and its superclasses. Transient fields are
+     * not sent
+     */
+    private static void assertFieldsEqual(Object expected, Object actual)
+            throws IllegalAccessException {
+        for (Class<?> type = expected.getClass(); type != Object.class;
+                type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers)
+                        || Modifier.isTransient(modifiers)) {
+                    continue;
+                }
+
+                field.setAccessible(true);
+                String name = type.getSimpleName() + "." + field.getName();
+                Object value = field.get(expected);
+                if (value instanceof byte[]) {
+                    assertArrayEquals(name, (byte[]) value,
+                            (byte[]) field.get(actual));
+                } else {
+                    assertEquals(name, value, field.get(actual));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.net;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks that commands of many producers reach consumer once and in the
+ * order each producer offered them, and that producers never block
+ */
+public class InboundQueueTest {
+
+    private static final int CAPACITY = 16;
+
+    @Test
+    public void testManyProducersOneConsumer() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 10000;
+        // Keeps commands in flight within ring and overflow list, so none
+        // is dropped, while still overflowing the ring
+        final int maxInFlight = CAPACITY * 3 / 2;
+        AtomicInteger inFlight = new AtomicInteger();
+        int[] next = new int[producers];
+        int[] received = new int[1];
+
+        InboundQueue<Numbered> queue = new InboundQueue<>("Test", CAPACITY,
+                (source, command) -> {
+                    inFlight.decrementAndGet();
+                    assertEquals(Integer.valueOf(command.producer), source);
+                    assertEquals(next[command.producer], command.sequence);
+                    ++next[command.producer];
+                    ++received[0];
+                });
+        queue.setConsumerThread(Thread.currentThread());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; ++p) {
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; ++i) {
+                    while (inFlight.get() >= maxInFlight) {
+                        Thread.yield();
+                    }
+                    inFlight.incrementAndGet();
+                    queue.offer(producer, new Numbered(producer, i, true));
+                }
+            });
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (received[0] < producers * perProducer
+                && System.nanoTime() < deadline) {
+            queue.drain();
+        }
+
+        for (Thread thread : threads) {
+            thread.join(1000);
+        }
+
+        queue.drain();
+        assertEquals(producers * perProducer, received[0]);
+        for (int p = 0; p < producers; ++p) {
+            assertEquals(perProducer, next[p]);
+        }
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testFullRingDoesNotBlockProducer()
+            throws InterruptedException {
+        List<Numbered> drained = new ArrayList<>();
+        InboundQueue<Numbered> queue = new InboundQueue<>("Test", CAPACITY,
+                (source, command) -> drained.add(command));
+        queue.setConsumerThread(Thread.currentThread());
+
+        // Unguaranteed ones that do not fit are dropped. Guaranteed ones
+        // go to overflow and come after the ring
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < CAPACITY + 8; ++i) {
+                queue.offer(null, new Numbered(0, i, false));
+            }
+            for (int i = 0; i < 4; ++i) {
+                queue.offer(null, new Numbered(1, i, true));
+            }
+        });
+        producer.start();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+
+        assertEquals(CAPACITY + 4, queue.drain());
+        for (int i = 0; i < CAPACITY; ++i) {
+            assertEquals(0, drained.get(i).producer);
+            assertEquals(i, drained.get(i).sequence);
+        }
+        for (int i = 0; i < 4; ++i) {
+            assertEquals(1, drained.get(CAPACITY + i).producer);
+            assertEquals(i, drained.get(CAPACITY + i).sequence);
+        }
+    }
+
+    @Test
+    public void testConsumerThreadDrainsWhenFull() {
+        List<Numbered> drained = new ArrayList<>();
+        InboundQueue<Numbered> queue = new InboundQueue<>("Test", CAPACITY,
+                (source, command) -> drained.add(command));
+        queue.setConsumerThread(Thread.currentThread());
+
+        for (int i = 0; i <= CAPACITY; ++i) {
+            queue.offer(null, new Numbered(0, i, false));
+        }
+
+        // Ring was drained inline when last one was offered
+        assertEquals(CAPACITY, drained.size());
+        assertEquals(1, queue.drain());
+        for (int i = 0; i <= CAPACITY; ++i) {
+            assertEquals(i, drained.get(i).sequence);
+        }
+    }
+
+    private static class Numbered implements Command {
+
+        final int producer;
+        final int sequence;
+        final boolean guaranteed;
+
+        Numbered(int producer, int sequence, boolean guaranteed) {
+            this.producer = producer;
+            this.sequence = sequence;
+            this.guaranteed = guaranteed;
+        }
+
+        @Override
+        public boolean isGuaranteed() {
+            return guaranteed;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import arkhados.controls.CActionQueue;
+import arkhados.controls.CCharacterDamage;
+import arkhados.controls.CCharacterHeal;
+import arkhados.controls.CCharacterMovement;
+import arkhados.controls.CInfluenceInterface;
+import arkhados.controls.CResting;
+import arkhados.controls.CSpellCast;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Node;
+import com.jme3.scene.control.AbstractControl;
+
+/**
+ * Compares Spatial.getControl against EntityHandle for lookups that server
+ * does for every character every tick: movement twice in
+ * CInfluenceInterface, influence in CSpellCast and action queue and spell
+ * cast when buffs are added. Heroes have as many controls as real ones.
+ * Run with main method.
+ */
+public class EntityHandleBenchmark {
+
+    private static final int HEROES = 6;
+    private static final int TICKS = 60 * 60;
+    /**
+     * Controls that real heroes have but that are not needed here
+     */
+    private static final int FILLERS = 9;
+
+    public static void main(String[] args) {
+        Node[] heroes = new Node[HEROES];
+        for (int i = 0; i < HEROES; ++i) {
+            heroes[i] = createHero(i);
+        }
+
+        // Warm up so that JIT has compiled both before measuring
+        for (int i = 0; i < 10; ++i) {
+            scan(heroes);
+            handle(heroes);
+        }
+
+        long start = System.nanoTime();
+        int found = scan(heroes);
+        long scanTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        found += handle(heroes);
+        long handleTime = System.nanoTime() - start;
+
+        System.out.printf("%d heroes, %d controls each (%d found)%n",
+                HEROES, heroes[0].getNumControls(), found);
+        System.out.printf("getControl:   %8.3f us/tick%n",
+                scanTime / 1000f / TICKS);
+        System.out.printf("EntityHandle: %8.3f us/tick%n",
+                handleTime / 1000f / TICKS);
+    }
+
+    private static int scan(Node[] heroes) {
+        int found = 0;
+        for (int tick = 0; tick < TICKS; ++tick) {
+            for (Node hero : heroes) {
+                found += hero.getControl(CCharacterMovement.class) != null
+                        ? 1 : 0;
+                found += hero.getControl(CCharacterMovement.class) != null
+                        ? 1 : 0;
+                found += hero.getControl(CInfluenceInterface.class) != null
+                        ? 1 : 0;
+                found += hero.getControl(CActionQueue.class) != null
+                        ? 1 : 0;
+                found += hero.getControl(CSpellCast.class) != null ? 1 : 0;
+            }
+        }
+
+        return found;
+    }
+
+    private static int handle(Node[] heroes) {
+        int found = 0;
+        for (int tick = 0; tick < TICKS; ++tick) {
+            for (Node hero : heroes) {
+                // Controls keep handle after first lookup but sync data and
+                // collisions start from spatial
+                EntityHandle handle = EntityHandle.of(hero);
+                found += handle.getMovement() != null ? 1 : 0;
+                found += handle.getMovement() != null ? 1 : 0;
+                found += handle.getInfluence() != null ? 1 : 0;
+                found += handle.getActionQueue() != null ? 1 : 0;
+                found += handle.getSpellCast() != null ? 1 : 0;
+            }
+        }
+
+        return found;
+    }
+
+    private static Node createHero(int index) {
+        Node hero = new Node("hero-" + index);
+        hero.setUserData(UserData.HEALTH_MAX, 1700f);
+        hero.setUserData(UserData.HEALTH_CURRENT, 1700f);
+
+        // Same order as in character builders. Physics and animation need
+        // native Bullet and model so fillers stand in for them
+        hero.addControl(new Filler());
+        hero.addControl(new CCharacterMovement());
+        hero.addControl(new CActionQueue());
+        hero.addControl(new CSpellCast());
+        hero.addControl(new Filler());
+        hero.addControl(new CInfluenceInterface());
+        hero.addControl(new CCharacterDamage());
+        hero.addControl(new CCharacterHeal());
+        hero.addControl(new CResting());
+        for (int i = 2; i < FILLERS; ++i) {
+            hero.addControl(new Filler());
+        }
+
+        EntityHandle.attach(hero);
+        return hero;
+    }
+
+    private static class Filler extends AbstractControl {
+
+        @Override
+        protected void controlUpdate(float tpf) {
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks that stale ids are told apart from current ones and that ids
+ * survive the wire
+ */
+public class EntityIdsTest {
+
+    @Test
+    public void testSlotZeroIsNeverUsed() {
+        EntityIds ids = new EntityIds();
+        int id = ids.allocate();
+
+        assertEquals(1, EntityIds.indexOf(id));
+        assertEquals(0, EntityIds.generationOf(id));
+        assertTrue(ids.isCurrent(id));
+        assertFalse(ids.isCurrent(EntityIds.NONE));
+        assertFalse(ids.isCurrent(0));
+    }
+
+    @Test
+    public void testFreedSlotGetsNextGeneration() {
+        EntityIds ids = new EntityIds();
+        int old = ids.allocate();
+        ids.free(old);
+        int reused = ids.allocate();
+
+        assertEquals(EntityIds.indexOf(old), EntityIds.indexOf(reused));
+        assertEquals(1, EntityIds.generationOf(reused));
+        assertFalse(ids.isCurrent(old));
+        assertTrue(ids.isCurrent(reused));
+        assertEquals(1, ids.size());
+    }
+
+    @Test
+    public void testFreeingStaleIdDoesNothing() {
+        EntityIds ids = new EntityIds();
+        int old = ids.allocate();
+        ids.free(old);
+        int current = ids.allocate();
+        ids.free(old);
+
+        assertTrue(ids.isCurrent(current));
+        assertEquals(1, ids.size());
+        // Slot was not put to free list twice
+        assertNotEquals(EntityIds.indexOf(current),
+                EntityIds.indexOf(ids.allocate()));
+    }
+
+    @Test
+    public void testGenerationWraps() {
+        EntityIds ids = new EntityIds();
+        int first = ids.allocate();
+        int id = first;
+        for (int i = 0; i <= EntityIds.GENERATION_MASK; ++i) {
+            ids.free(id);
+            id = ids.allocate();
+            assertTrue(id > 0);
+        }
+
+        assertEquals(EntityIds.indexOf(first), EntityIds.indexOf(id));
+        assertEquals(0, EntityIds.generationOf(id));
+        assertTrue(ids.isCurrent(first));
+    }
+
+    @Test
+    public void testClaimAndRelease() {
+        EntityIds ids = new EntityIds();
+        int old = EntityIds.compose(5, 3);
+        int current = EntityIds.compose(5, 4);
+
+        ids.claim(old);
+        assertTrue(ids.isCurrent(old));
+        assertFalse(ids.isCurrent(EntityIds.compose(5, 2)));
+
+        ids.claim(current);
+        assertFalse(ids.isCurrent(old));
+        assertTrue(ids.isCurrent(current));
+        assertEquals(1, ids.size());
+
+        assertFalse(ids.release(old));
+        assertTrue(ids.release(current));
+        assertFalse(ids.isCurrent(current));
+        assertEquals(0, ids.size());
+
+        ids.claim(EntityIds.NONE);
+        ids.claim(EntityIds.compose(0, 1));
+        assertEquals(0, ids.size());
+    }
+
+    @Test
+    public void testAllocateAfterClaimSkipsClaimedSlots() {
+        EntityIds ids = new EntityIds();
+        ids.claim(EntityIds.compose(3, 0));
+
+        assertEquals(4, EntityIds.indexOf(ids.allocate()));
+    }
+
+    @Test
+    public void testWireRoundTrip() {
+        int[] samples = {EntityIds.NONE, EntityIds.compose(1, 0),
+            EntityIds.compose(63, 0), EntityIds.compose(64, 0),
+            EntityIds.compose(1, 1),
+            EntityIds.compose(EntityIds.INDEX_MASK, 0),
+            EntityIds.compose(1, EntityIds.GENERATION_MASK),
+            EntityIds.compose(EntityIds.INDEX_MASK,
+            EntityIds.GENERATION_MASK)};
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        for (int id : samples) {
+            buffer.clear();
+            EntityIds.put(buffer, id);
+            assertEquals(EntityIds.size(id), buffer.position());
+
+            buffer.flip();
+            assertEquals(id, EntityIds.get(buffer));
+            assertFalse(buffer.hasRemaining());
+        }
+    }
+
+    @Test
+    public void testSmallIdsTakeOneByte() {
+        assertEquals(1, EntityIds.size(EntityIds.NONE));
+        assertEquals(1, EntityIds.size(EntityIds.compose(63, 0)));
+        assertEquals(2, EntityIds.size(EntityIds.compose(1, 1)));
+    }
+
+    @Test
+    public void testCorruptIndexDoesNotSpillIntoGeneration() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        VarInt.put(buffer, (EntityIds.INDEX_MASK + 2) << 1);
+        buffer.flip();
+
+        int id = EntityIds.get(buffer);
+        assertEquals(0, EntityIds.generationOf(id));
+        assertEquals(1, EntityIds.indexOf(id));
+    }
+}
@@ -0,0 +1,247 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import arkhados.CollisionGroups;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.PhysicsCollisionEvent;
+import com.jme3.bullet.collision.PhysicsCollisionListener;
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+import com.jme3.bullet.collision.shapes.CapsuleCollisionShape;
+import com.jme3.bullet.collision.shapes.SphereCollisionShape;
+import com.jme3.bullet.control.GhostControl;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import java.util.Random;
+
+/**
+ * Compares ProjectileEngine against pellets that are rigid bodies in Bullet
+ * physics space, like they were before. Both fly same amount of pellets
+ * through 6 characters and 20 walls for 10 seconds at 60 Hz and relaunch
+ * pellets that hit or expire. Run with main method.
+ */
+public class ProjectileEngineBenchmark {
+
+    private static final float TPF = 1f / 60f;
+    private static final int TICKS = 60 * 10;
+    private static final int CHARACTERS = 6;
+    private static final int WALLS = 20;
+    private static final float SPEED = 220f;
+    private static final float RANGE = 80f;
+    private static final float RADIUS = 1.7f;
+    private static final float ARENA = 100f;
+
+    public static void main(String[] args) {
+        for (int pellets : new int[]{50, 200, 400}) {
+            // Warm up before measuring
+            runEngine(pellets);
+            runBullet(pellets);
+
+            long engineNanos = runEngine(pellets);
+            long bulletNanos = runBullet(pellets);
+            System.out.printf("%4d pellets: engine %8.3f ms/tick,"
+                    + " bullet %8.3f ms/tick%n", pellets,
+                    engineNanos / 1e6 / TICKS, bulletNanos / 1e6 / TICKS);
+        }
+    }
+
+    private static long runEngine(int pellets) {
+        Random random = new Random(pellets);
+        ProjectileEngine engine = new ProjectileEngine();
+        float[] characters = characters(random);
+        float[] walls = walls(random);
+        for (int i = 0; i < WALLS; ++i) {
+            engine.addBox(walls[i * 2] - 4f, walls[i * 2 + 1] - 4f,
+                    walls[i * 2] + 4f, walls[i * 2 + 1] + 4f);
+        }
+
+        // Engine must not be added to during update, so pellets that hit or
+        // expire are counted and relaunched after it
+        int[] relaunches = {0};
+        ProjectileEngine.Listener relaunch = new ProjectileEngine.Listener() {
+            @Override
+            public void projectileHit(int projectileId, int ownerId,
+                    int targetId, float x, float z) {
+                ++relaunches[0];
+            }
+
+            @Override
+            public void projectileExpired(int projectileId) {
+                ++relaunches[0];
+            }
+        };
+
+        int nextId = 0;
+
+        for (int i = 0; i < pellets; ++i) {
+            launch(engine, random, nextId++);
+        }
+
+        long start = System.nanoTime();
+        for (int tick = 0; tick < TICKS; ++tick) {
+            engine.clearTargets();
+            for (int i = 0; i < CHARACTERS; ++i) {
+                engine.addTarget(100000 + i, 1, characters[i * 2],
+                        characters[i * 2 + 1], 0f, 10f, 2.5f);
+            }
+
+            engine.update(TPF, relaunch);
+            for (; relaunches[0] > 0; --relaunches[0]) {
+                launch(engine, random, nextId++);
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private static void launch(ProjectileEngine engine, Random random,
+            int id) {
+        float angle = random.nextFloat() * FastMath.TWO_PI;
+        engine.add(id, randomCoord(random), 5f, randomCoord(random),
+                FastMath.cos(angle) * SPEED, FastMath.sin(angle) * SPEED,
+                RADIUS, RANGE, -1, 0);
+    }
+
+    private static long runBullet(int pellets) {
+        Random random = new Random(pellets);
+        PhysicsSpace space = new PhysicsSpace(
+                new Vector3f(-1000f, -1000f, -1000f),
+                new Vector3f(1000f, 1000f, 1000f),
+                PhysicsSpace.BroadphaseType.DBVT);
+
+        float[] characters = characters(random);
+        for (int i = 0; i < CHARACTERS; ++i) {
+            Node character = new Node("character");
+            RigidBodyControl body = new RigidBodyControl(
+                    new CapsuleCollisionShape(2.5f, 5f), 0f);
+            body.setCollisionGroup(CollisionGroups.CHARACTERS);
+            character.addControl(body);
+            body.setPhysicsLocation(new Vector3f(characters[i * 2], 5f,
+                    characters[i * 2 + 1]));
+            space.add(body);
+        }
+
+        float[] walls = walls(random);
+        for (int i = 0; i < WALLS; ++i) {
+            Node wall = new Node("wall");
+            RigidBodyControl body = new RigidBodyControl(
+                    new BoxCollisionShape(new Vector3f(4f, 10f, 4f)), 0f);
+            body.setCollisionGroup(CollisionGroups.WALLS);
+            body.setCollideWithGroups(CollisionGroups.NONE);
+            wall.addControl(body);
+            body.setPhysicsLocation(new Vector3f(walls[i * 2], 10f,
+                    walls[i * 2 + 1]));
+            space.add(body);
+        }
+
+        Node[] nodes = new Node[pellets];
+        float[] flown = new float[pellets];
+        boolean[] hit = new boolean[pellets];
+        SphereCollisionShape shape = new SphereCollisionShape(RADIUS);
+        for (int i = 0; i < pellets; ++i) {
+            Node pellet = new Node("pellet");
+            pellet.setUserData("index", i);
+            RigidBodyControl body = new RigidBodyControl(shape, 0.3f);
+            body.setCollisionGroup(CollisionGroups.PROJECTILES);
+            body.setCollideWithGroups(CollisionGroups.WALLS);
+            GhostControl ghost = new GhostControl(shape);
+            ghost.setCollisionGroup(CollisionGroups.PROJECTILES);
+            ghost.setCollideWithGroups(CollisionGroups.CHARACTERS);
+            pellet.addControl(ghost);
+            pellet.addControl(body);
+            space.addAll(pellet);
+            body.setGravity(Vector3f.ZERO);
+            nodes[i] = pellet;
+            relaunch(body, random);
+        }
+
+        // Looks up controls like ServerWorldCollisionListener does
+        space.addCollisionListener(new PhysicsCollisionListener() {
+            @Override
+            public void collision(PhysicsCollisionEvent event) {
+                if (event.getNodeA() == null || event.getNodeB() == null) {
+                    return;
+                }
+
+                for (int i = 0; i < 3; ++i) {
+                    event.getNodeA().getControl(GhostControl.class);
+                    event.getNodeB().getControl(GhostControl.class);
+                }
+
+                Integer index = event.getNodeA().getUserData("index");
+                if (index == null) {
+                    index = event.getNodeB().getUserData("index");
+                }
+
+                if (index != null) {
+                    hit[index] = true;
+                }
+            }
+        });
+
+        Vector3f velocity = new Vector3f();
+        long start = System.nanoTime();
+        for (int tick = 0; tick < TICKS; ++tick) {
+            space.update(TPF);
+            space.distributeEvents();
+            for (int i = 0; i < pellets; ++i) {
+                RigidBodyControl body
+                        = nodes[i].getControl(RigidBodyControl.class);
+                flown[i] += body.getLinearVelocity(velocity).length() * TPF;
+                if (hit[i] || flown[i] >= RANGE) {
+                    hit[i] = false;
+                    flown[i] = 0f;
+                    relaunch(body, random);
+                }
+            }
+        }
+
+        long time = System.nanoTime() - start;
+        space.destroy();
+        return time;
+    }
+
+    private static void relaunch(RigidBodyControl body, Random random) {
+        float angle = random.nextFloat() * FastMath.TWO_PI;
+        body.setPhysicsLocation(new Vector3f(randomCoord(random), 5f,
+                randomCoord(random)));
+        body.setLinearVelocity(new Vector3f(FastMath.cos(angle) * SPEED,
+                0f, FastMath.sin(angle) * SPEED));
+    }
+
+    private static float[] characters(Random random) {
+        float[] locations = new float[CHARACTERS * 2];
+        for (int i = 0; i < locations.length; ++i) {
+            locations[i] = randomCoord(random);
+        }
+
+        return locations;
+    }
+
+    private static float[] walls(Random random) {
+        float[] locations = new float[WALLS * 2];
+        for (int i = 0; i < locations.length; ++i) {
+            locations[i] = randomCoord(random);
+        }
+
+        return locations;
+    }
+
+    private static float randomCoord(Random random) {
+        return (random.nextFloat() * 2f - 1f) * ARENA;
+    }
+}
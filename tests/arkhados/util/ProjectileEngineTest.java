@@ -0,0 +1,283 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks that projectiles hit characters, walls and movable obstacles such as
+ * spirit stones at right place, skip those they must not hit and expire after
+ * their range
+ */
+public class ProjectileEngineTest {
+
+    private static final float TPF = 1f / 60f;
+
+    @Test
+    public void testPelletStopsAtObstacle() {
+        ProjectileEngine engine = new ProjectileEngine();
+        Recorder recorder = new Recorder();
+        engine.add(1, 0f, 5f, 0f, 200f, 0f, 0.5f, 80f, 10, 0);
+
+        for (int tick = 0; tick < 60 && engine.size() > 0; ++tick) {
+            // Spirit stone of radius 6.5 stands in pellet's way
+            engine.clearObstacles();
+            engine.addObstacle(30f, 0f, 5f - 6.5f, 5f + 6.5f, 6.5f);
+            engine.update(TPF, recorder);
+        }
+
+        assertEquals(1, recorder.hitId);
+        assertEquals(ProjectileEngine.WALL, recorder.targetId);
+        assertEquals(30f - 6.5f - 0.5f, recorder.hitX, 0.001f);
+        assertEquals(-1, recorder.expiredId);
+        assertFalse(engine.contains(1));
+    }
+
+    @Test
+    public void testPelletFliesOverLowObstacle() {
+        ProjectileEngine engine = new ProjectileEngine();
+        Recorder recorder = new Recorder();
+        engine.add(1, 0f, 20f, 0f, 200f, 0f, 0.5f, 80f, 10, 0);
+
+        for (int tick = 0; tick < 60 && engine.size() > 0; ++tick) {
+            engine.clearObstacles();
+            engine.addObstacle(30f, 0f, 5f - 6.5f, 5f + 6.5f, 6.5f);
+            engine.update(TPF, recorder);
+        }
+
+        assertEquals(-1, recorder.hitId);
+        assertEquals(1, recorder.expiredId);
+    }
+
+    @Test
+    public void testPelletPassesAfterObstacleIsGone() {
+        ProjectileEngine engine = new ProjectileEngine();
+        Recorder recorder = new Recorder();
+        engine.add(1, 0f, 5f, 0f, 200f, 0f, 0.5f, 80f, 10, 0);
+        engine.addObstacle(30f, 0f, 5f - 6.5f, 5f + 6.5f, 6.5f);
+        engine.clearObstacles();
+
+        for (int tick = 0; tick < 60 && engine.size() > 0; ++tick) {
+            engine.update(TPF, recorder);
+        }
+
+        assertEquals(-1, recorder.hitId);
+        assertEquals(1, recorder.expiredId);
+    }
+
+    @Test
+    public void testSweepCircle() {
+        // Reach of 2 around (10, 0) is first touched at x = 8
+        assertEquals(0.8f, ProjectileEngine.sweepCircle(0f, 0f, 10f, 0f,
+                10f, 0f, 2f), 0.0001f);
+        // Already within reach
+        assertEquals(0f, ProjectileEngine.sweepCircle(9f, 0f, 10f, 0f,
+                10f, 0f, 2f), 0f);
+        // Moving away, passing by and stopping short
+        assertTrue(ProjectileEngine.sweepCircle(0f, 0f, -10f, 0f,
+                10f, 0f, 2f) > 1f);
+        assertTrue(ProjectileEngine.sweepCircle(0f, 3f, 20f, 0f,
+                10f, 0f, 2f) > 1f);
+        assertTrue(ProjectileEngine.sweepCircle(0f, 0f, 5f, 0f,
+                10f, 0f, 2f) > 1f);
+        assertTrue(ProjectileEngine.sweepCircle(0f, 0f, 0f, 0f,
+                10f, 0f, 2f) > 1f);
+    }
+
+    @Test
+    public void testSweepSegment() {
+        // Side of wall from (10, -5) to (10, 5) is touched at x = 9
+        assertEquals(0.45f, ProjectileEngine.sweepSegment(0f, 0f, 20f, 0f,
+                10f, -5f, 10f, 5f, 1f), 0.0001f);
+        // From other side too
+        assertEquals(0.45f, ProjectileEngine.sweepSegment(20f, 0f, -20f, 0f,
+                10f, -5f, 10f, 5f, 1f), 0.0001f);
+        // Rounded end: passes beyond end at z = 5.5, touches it at x = 10 -
+        // sqrt(1 - 0.25)
+        float touch = 10f - (float) Math.sqrt(0.75);
+        assertEquals(touch / 20f, ProjectileEngine.sweepSegment(0f, 5.5f,
+                20f, 0f, 10f, -5f, 10f, 5f, 1f), 0.0001f);
+        // Passes whole wall beyond its end
+        assertTrue(ProjectileEngine.sweepSegment(0f, 7f, 20f, 0f,
+                10f, -5f, 10f, 5f, 1f) > 1f);
+        // Flies along wall without touching it
+        assertTrue(ProjectileEngine.sweepSegment(0f, 0f, 0f, 20f,
+                10f, -5f, 10f, 5f, 1f) > 1f);
+        // Already touching
+        assertEquals(0f, ProjectileEngine.sweepSegment(9.5f, 0f, 20f, 0f,
+                10f, -5f, 10f, 5f, 1f), 0f);
+    }
+
+    @Test
+    public void testHitsCharacterCapsule() {
+        ProjectileEngine engine = new ProjectileEngine();
+        Recorder recorder = new Recorder();
+        engine.add(1, 0f, 5f, 0f, 200f, 0f, 0.5f, 80f, 10, 0);
+
+        fly(engine, recorder, 1, 0f, 0f, 10f);
+
+        assertEquals(1, recorder.hitId);
+        assertEquals(20, recorder.targetId);
+        assertEquals(10, recorder.ownerId);
+        assertEquals(30f - 2.5f - 0.5f, recorder.hitX, 0.001f);
+        assertEquals(0f, recorder.hitZ, 0.001f);
+        assertEquals(-1, recorder.expiredId);
+        assertFalse(engine.contains(1));
+    }
+
+    @Test
+    public void testSkipsSameTeam() {
+        ProjectileEngine engine = new ProjectileEngine();
+        Recorder recorder = new Recorder();
+        engine.add(1, 0f, 5f, 0f, 200f, 0f, 0.5f, 80f, 10, 1);
+
+        fly(engine, recorder, 1, 0f, 0f, 10f);
+
+        assertEquals(-1, recorder.hitId);
+        assertEquals(1, recorder.expiredId);
+    }
+
+    @Test
+    public void testSkipsOwner() {
+        ProjectileEngine engine = new ProjectileEngine();
+        Recorder recorder = new Recorder();
+        // Owner is of other team, like when team changes mid flight
+        engine.add(1, 0f, 5f, 0f, 200f, 0f, 0.5f, 80f, 20, 0);
+
+        fly(engine, recorder, 1, 0f, 0f, 10f);
+
+        assertEquals(-1, recorder.hitId);
+        assertEquals(1, recorder.expiredId);
+    }
+
+    @Test
+    public void testRejectsByHeight() {
+        ProjectileEngine engine = new ProjectileEngine();
+        Recorder recorder = new Recorder();
+        // Flies over capsule
+        engine.add(1, 0f, 10.6f, 0f, 200f, 0f, 0.5f, 80f, 10, 0);
+        // Flies under it
+        engine.add(2, 0f, -0.6f, 0f, 200f, 0f, 0.5f, 80f, 10, 0);
+        // Grazes its top
+        engine.add(3, 0f, 10.4f, 0f, 200f, 0f, 0.5f, 80f, 10, 0);
+
+        fly(engine, recorder, 1, 0f, 0f, 10f);
+
+        assertEquals(3, recorder.hitId);
+        assertEquals(20, recorder.targetId);
+        assertEquals(2, recorder.expiredCount);
+    }
+
+    @Test
+    public void testHitsWall() {
+        ProjectileEngine engine = new ProjectileEngine();
+        Recorder recorder = new Recorder();
+        engine.addBox(40f, -10f, 50f, 10f);
+        engine.add(1, 0f, 5f, 0f, 200f, 0f, 0.5f, 80f, 10, 0);
+        // Diagonally at box's corner at (40, 10)
+        engine.add(2, 30f, 5f, 20f, 100f, -100f, 0.5f, 80f, 10, 0);
+
+        for (int tick = 0; tick < 60 && engine.size() > 0; ++tick) {
+            engine.update(TPF, recorder);
+        }
+
+        assertEquals(2, recorder.hitCount);
+        assertEquals(0, recorder.expiredCount);
+        assertEquals(ProjectileEngine.WALL, recorder.targetId);
+        // Pellet 2 hits first, so pellet 1 is recorded last
+        assertEquals(1, recorder.hitId);
+        assertEquals(40f - 0.5f, recorder.hitX, 0.001f);
+        assertEquals(0f, recorder.hitZ, 0.001f);
+    }
+
+    @Test
+    public void testWallIsHitBeforeCharacterBehindIt() {
+        ProjectileEngine engine = new ProjectileEngine();
+        Recorder recorder = new Recorder();
+        engine.addWall(20f, -10f, 20f, 10f);
+        engine.add(1, 0f, 5f, 0f, 200f, 0f, 0.5f, 80f, 10, 0);
+
+        fly(engine, recorder, 1, 0f, 0f, 10f);
+
+        assertEquals(1, recorder.hitId);
+        assertEquals(ProjectileEngine.WALL, recorder.targetId);
+        assertEquals(20f - 0.5f, recorder.hitX, 0.001f);
+    }
+
+    @Test
+    public void testExpiresAfterRange() {
+        ProjectileEngine engine = new ProjectileEngine();
+        Recorder recorder = new Recorder();
+        // Flies 10 per tick, so range of 25 runs out on third tick
+        engine.add(1, 0f, 5f, 0f, 600f, 0f, 0.5f, 25f, 10, 0);
+        engine.update(TPF, recorder);
+        engine.update(TPF, recorder);
+
+        int slot = engine.slotOf(1);
+        assertEquals(20f, engine.getX(slot), 0.001f);
+        assertEquals(-1, recorder.expiredId);
+
+        // Wall just beyond range is not hit
+        engine.addWall(25.6f, -10f, 25.6f, 10f);
+        engine.update(TPF, recorder);
+
+        assertEquals(1, recorder.expiredId);
+        assertEquals(-1, recorder.hitId);
+        assertEquals(0, engine.size());
+    }
+
+    /**
+     * Flies projectiles for a second past character 20 of team 1 standing
+     * at (30, 0) with capsule of radius 2.5
+     */
+    private static void fly(ProjectileEngine engine, Recorder recorder,
+            int team, float bottom, float z, float top) {
+        for (int tick = 0; tick < 60 && engine.size() > 0; ++tick) {
+            engine.clearTargets();
+            engine.addTarget(20, team, 30f, z, bottom, top, 2.5f);
+            engine.update(TPF, recorder);
+        }
+    }
+
+    private static class Recorder implements ProjectileEngine.Listener {
+
+        int hitId = -1;
+        int ownerId = -1;
+        int targetId = 0;
+        float hitX;
+        float hitZ;
+        int hitCount = 0;
+        int expiredId = -1;
+        int expiredCount = 0;
+
+        @Override
+        public void projectileHit(int projectileId, int ownerId,
+                int targetId, float x, float z) {
+            hitId = projectileId;
+            this.ownerId = ownerId;
+            this.targetId = targetId;
+            hitX = x;
+            hitZ = z;
+            ++hitCount;
+        }
+
+        @Override
+        public void projectileExpired(int projectileId) {
+            expiredId = projectileId;
+            ++expiredCount;
+        }
+    }
+}
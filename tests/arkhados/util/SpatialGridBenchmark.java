@@ -0,0 +1,118 @@
+/*    This file is part of Arkhados.
+
+ Arkhados is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Arkhados is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares SpatialGrid against linear scan over world root's children. Run
+ * with main method.
+ */
+public class SpatialGridBenchmark {
+
+    private static final float ARENA_HALF_SIZE = 100f;
+    private static final float QUERY_RANGE = 20f;
+    private static final int QUERIES = 20000;
+
+    public static void main(String[] args) {
+        for (int count : new int[]{50, 500, 5000}) {
+            run(count);
+        }
+    }
+
+    private static void run(int count) {
+        Random random = new Random(count);
+        Node root = new Node("root");
+        SpatialGrid grid = new SpatialGrid(16f);
+        Box box = new Box(1f, 1f, 1f);
+
+        for (int i = 0; i < count; ++i) {
+            Geometry geom = new Geometry("entity-" + i, box);
+            geom.setLocalTranslation(randomCoord(random), 0f,
+                    randomCoord(random));
+            root.attachChild(geom);
+        }
+
+        root.updateGeometricState();
+
+        for (int i = 0; i < count; ++i) {
+            grid.add(i, root.getChild(i));
+        }
+
+        Vector3f[] queryPoints = new Vector3f[QUERIES];
+        for (int i = 0; i < QUERIES; ++i) {
+            queryPoints[i] = new Vector3f(randomCoord(random), 0f,
+                    randomCoord(random));
+        }
+
+        // Warm up both paths before timing
+        linear(root, queryPoints);
+        gridded(grid, queryPoints);
+
+        long start = System.nanoTime();
+        int linearHits = linear(root, queryPoints);
+        long linearTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int gridHits = gridded(grid, queryPoints);
+        long gridTime = System.nanoTime() - start;
+
+        System.out.printf("%5d entities: linear %8.3f us/query, "
+                + "grid %8.3f us/query, hits %d/%d%n", count,
+                linearTime / 1000f / QUERIES, gridTime / 1000f / QUERIES,
+                linearHits, gridHits);
+    }
+
+    private static int linear(Node root, Vector3f[] queryPoints) {
+        int hits = 0;
+        for (Vector3f point : queryPoints) {
+            for (Spatial child : root.getChildren()) {
+                if (child.getWorldBound().distanceToEdge(point)
+                        <= QUERY_RANGE) {
+                    ++hits;
+                }
+            }
+        }
+        return hits;
+    }
+
+    private static int gridded(SpatialGrid grid, Vector3f[] queryPoints) {
+        int hits = 0;
+        List<Spatial> candidates = new ArrayList<>();
+        for (Vector3f point : queryPoints) {
+            candidates.clear();
+            grid.query(candidates, point, QUERY_RANGE);
+            for (int i = 0; i < candidates.size(); ++i) {
+                if (candidates.get(i).getWorldBound().distanceToEdge(point)
+                        <= QUERY_RANGE) {
+                    ++hits;
+                }
+            }
+        }
+        return hits;
+    }
+
+    private static float randomCoord(Random random) {
+        return (random.nextFloat() * 2f - 1f) * ARENA_HALF_SIZE;
+    }
+}
@@ -0,0 +1,91 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SpatialGridTest {
+
+    private static Spatial entity(float x, float z, float radius) {
+        Geometry geometry = new Geometry("entity", new Mesh());
+        geometry.setModelBound(new BoundingSphere(radius, Vector3f.ZERO));
+        geometry.setLocalTranslation(x, 0f, z);
+        geometry.updateGeometricState();
+        return geometry;
+    }
+
+    @Test
+    public void testLargeEntityDoesNotWidenOtherQueries() {
+        SpatialGrid grid = new SpatialGrid(16f);
+        Spatial small = entity(100f, 100f, 1f);
+        grid.add(1, small);
+        grid.add(2, entity(-500f, -500f, 400f));
+
+        List<Spatial> found = grid.query(new ArrayList<>(),
+                new Vector3f(0f, 0f, 0f), 10f);
+        assertFalse(found.contains(small));
+    }
+
+    @Test
+    public void testEntityIsFoundByItsBound() {
+        SpatialGrid grid = new SpatialGrid(16f);
+        Spatial wide = entity(0f, 0f, 30f);
+        grid.add(1, wide);
+
+        List<Spatial> found = grid.query(new ArrayList<>(),
+                new Vector3f(35f, 0f, 0f), 2f);
+        assertTrue(found.contains(wide));
+    }
+
+    @Test
+    public void testEntityInManyCellsIsFoundOnce() {
+        SpatialGrid grid = new SpatialGrid(16f);
+        grid.add(1, entity(0f, 0f, 20f));
+        grid.add(2, entity(0f, 0f, 1000f));
+
+        List<Spatial> found = grid.query(new ArrayList<>(),
+                new Vector3f(0f, 0f, 0f), 40f);
+        assertEquals(2, found.size());
+    }
+
+    @Test
+    public void testMovedEntityIsFoundAfterUpdate() {
+        SpatialGrid grid = new SpatialGrid(16f);
+        Spatial moving = entity(0f, 0f, 1f);
+        grid.add(1, moving);
+
+        moving.setLocalTranslation(200f, 0f, 0f);
+        moving.updateGeometricState();
+        grid.update();
+
+        assertTrue(grid.query(new ArrayList<>(), new Vector3f(200f, 0f, 0f),
+                1f).contains(moving));
+        assertFalse(grid.query(new ArrayList<>(), Vector3f.ZERO, 1f)
+                .contains(moving));
+
+        grid.remove(1);
+        assertEquals(0, grid.size());
+        assertTrue(grid.query(new ArrayList<>(), new Vector3f(200f, 0f, 0f),
+                1f).isEmpty());
+    }
+}
@@ -0,0 +1,87 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import java.util.Random;
+
+/**
+ * Compares TimerWheel against counting down every timer every tick, which
+ * is what timed controls did. Timers are restarted when they run out so
+ * count stays the same. Run with main method.
+ */
+public class TimerWheelBenchmark {
+
+    private static final float TPF = 1f / 60f;
+    private static final int TICKS = 60 * 60;
+
+    public static void main(String[] args) {
+        for (int count : new int[]{100, 1000, 10000}) {
+            // Second round is measured after JIT has compiled both
+            run(count, false);
+            run(count, true);
+        }
+    }
+
+    private static void run(int count, boolean print) {
+        Random random = new Random(count);
+        float[] delays = new float[count];
+        for (int i = 0; i < count; ++i) {
+            delays[i] = 0.5f + random.nextFloat() * 10f;
+        }
+
+        float[] timeLeft = delays.clone();
+        int expired = 0;
+        long start = System.nanoTime();
+        for (int tick = 0; tick < TICKS; ++tick) {
+            for (int i = 0; i < count; ++i) {
+                timeLeft[i] -= TPF;
+                if (timeLeft[i] <= 0f) {
+                    timeLeft[i] = delays[i];
+                    ++expired;
+                }
+            }
+        }
+        long countdownTime = System.nanoTime() - start;
+
+        TimerWheel wheel = new TimerWheel();
+        int[] fired = new int[1];
+        for (int i = 0; i < count; ++i) {
+            schedule(wheel, delays[i], fired);
+        }
+
+        start = System.nanoTime();
+        float time = 0f;
+        for (int tick = 0; tick < TICKS; ++tick) {
+            time += TPF;
+            wheel.advance(time);
+        }
+        long wheelTime = System.nanoTime() - start;
+
+        if (print) {
+            System.out.printf("%5d timers: countdown %8.3f us/tick (%d),"
+                    + " wheel %8.3f us/tick (%d)%n", count,
+                    countdownTime / 1000f / TICKS, expired,
+                    wheelTime / 1000f / TICKS, fired[0]);
+        }
+    }
+
+    private static void schedule(TimerWheel wheel, float delay,
+            int[] fired) {
+        wheel.schedule(delay, () -> {
+            ++fired[0];
+            schedule(wheel, delay, fired);
+        });
+    }
+}
@@ -0,0 +1,167 @@
+/*    This file is part of Arkhados.
+
+    Arkhados is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Arkhados is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Arkhados.  If not, see <http://www.gnu.org/licenses/>. */
+package arkhados.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks that timers run at their exact tick across level boundaries and
+ * that callbacks can change the wheel while it advances
+ */
+public class TimerWheelTest {
+
+    /**
+     * Not aligned to any level so that deadlines cross slot boundaries
+     */
+    private static final long START = 37;
+
+    @Test
+    public void testExactTickAcrossLevels() {
+        for (int ticks : new int[]{1, 63, 64, 65, 4095, 4096, 4097}) {
+            TimerWheel wheel = new TimerWheel(time(START));
+            int[] runs = new int[1];
+            wheel.schedule(delay(ticks), () -> ++runs[0]);
+
+            for (long tick = START + 1; tick < START + ticks; ++tick) {
+                wheel.advance(time(tick));
+            }
+            assertEquals("Early at " + ticks, 0, runs[0]);
+
+            wheel.advance(time(START + ticks));
+            assertEquals("Not run at " + ticks, 1, runs[0]);
+            assertEquals(0, wheel.size());
+        }
+    }
+
+    @Test
+    public void testExactTickWithLongAdvances() {
+        for (int ticks : new int[]{63, 64, 4095, 4096, 262144}) {
+            TimerWheel wheel = new TimerWheel(time(START));
+            int[] runs = new int[1];
+            wheel.schedule(delay(ticks), () -> ++runs[0]);
+
+            wheel.advance(time(START + ticks - 1));
+            assertEquals("Early at " + ticks, 0, runs[0]);
+
+            wheel.advance(time(START + ticks));
+            assertEquals("Not run at " + ticks, 1, runs[0]);
+        }
+    }
+
+    @Test
+    public void testCancelAfterCascade() {
+        TimerWheel wheel = new TimerWheel(time(START));
+        int[] runs = new int[1];
+        // Starts on second level and is moved down at tick 128
+        TimerWheel.Task task = wheel.schedule(delay(100), () -> ++runs[0]);
+
+        wheel.advance(time(130));
+        assertTrue(task.isScheduled());
+        assertEquals(7 * TimerWheel.RESOLUTION, wheel.getTimeLeft(task),
+                0.0001f);
+
+        wheel.cancel(task);
+        assertFalse(task.isScheduled());
+        assertEquals(0, wheel.size());
+
+        wheel.advance(time(300));
+        assertEquals(0, runs[0]);
+    }
+
+    @Test
+    public void testCallbackReschedules() {
+        TimerWheel wheel = new TimerWheel(time(START));
+        int[] runs = new int[1];
+        Runnable[] again = new Runnable[1];
+        again[0] = () -> {
+            ++runs[0];
+            wheel.schedule(delay(1), again[0]);
+        };
+        wheel.schedule(delay(1), again[0]);
+
+        // One advance that passes ten ticks runs chain ten times
+        wheel.advance(time(START + 10));
+        assertEquals(10, runs[0]);
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    public void testCallbackCancelsTimerOfSameTick() {
+        TimerWheel wheel = new TimerWheel(time(START));
+        int[] runs = new int[1];
+        TimerWheel.Task[] other = new TimerWheel.Task[1];
+        // Tasks of same slot run newest first
+        other[0] = wheel.schedule(delay(5), () -> ++runs[0]);
+        wheel.schedule(delay(5), () -> wheel.cancel(other[0]));
+
+        wheel.advance(time(START + 5));
+        assertEquals(0, runs[0]);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCallbackClears() {
+        TimerWheel wheel = new TimerWheel(time(START));
+        int[] runs = new int[1];
+        wheel.schedule(delay(5), () -> ++runs[0]);
+        wheel.schedule(delay(500), () -> ++runs[0]);
+        wheel.schedule(delay(5), wheel::clear);
+
+        wheel.advance(time(START + 1000));
+        assertEquals(0, runs[0]);
+        assertEquals(0, wheel.size());
+
+        // Wheel still works after clear
+        wheel.schedule(delay(3), () -> ++runs[0]);
+        wheel.advance(time(START + 1003));
+        assertEquals(1, runs[0]);
+    }
+
+    @Test
+    public void testLongDelaysAreClamped() {
+        TimerWheel wheel = new TimerWheel();
+        int[] runs = new int[1];
+        // MAX_DELAY_TICKS is 2^24 - 1, about 46 hours
+        float max = ((1 << 24) - 1) * TimerWheel.RESOLUTION;
+        TimerWheel.Task task = wheel.schedule(1e9f, () -> ++runs[0]);
+        TimerWheel.Task infinite = wheel.schedule(Float.POSITIVE_INFINITY,
+                () -> ++runs[0]);
+
+        assertEquals(max, wheel.getTimeLeft(task), 0f);
+        assertEquals(max, wheel.getTimeLeft(infinite), 0f);
+
+        wheel.advance(max - 1f);
+        assertEquals(0, runs[0]);
+
+        wheel.advance(max + 1f);
+        assertEquals(2, runs[0]);
+    }
+
+    /**
+     * @return time in the middle of tick so that float error does not move
+     * it to neighbouring tick
+     */
+    private static float time(long tick) {
+        return (tick + 0.5f) * TimerWheel.RESOLUTION;
+    }
+
+    /**
+     * @return delay that rounds up to given ticks
+     */
+    private static float delay(int ticks) {
+        return (ticks - 0.5f) * TimerWheel.RESOLUTION;
+    }
+}